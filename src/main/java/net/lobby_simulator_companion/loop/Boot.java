@@ -1,8 +1,15 @@
 package net.lobby_simulator_companion.loop;
 
 import net.lobby_simulator_companion.loop.config.AppProperties;
+import net.lobby_simulator_companion.loop.repository.FileLoopStore;
+import net.lobby_simulator_companion.loop.repository.export.ExportFormat;
+import net.lobby_simulator_companion.loop.repository.journal.EventJournal;
+import net.lobby_simulator_companion.loop.repository.merge.LoopDataMerger;
+import net.lobby_simulator_companion.loop.service.DataExporter;
+import net.lobby_simulator_companion.loop.service.LoopDataService;
 import net.lobby_simulator_companion.loop.ui.MainWindow;
 import net.lobby_simulator_companion.loop.util.FileUtil;
+import net.lobby_simulator_companion.loop.util.concurrent.ShutdownCoordinator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +22,12 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author PsiLupan
@@ -23,13 +36,27 @@ import java.nio.file.Path;
  */
 public class Boot {
 
+    private static final String ARG__EXPORT = "--export";
+    private static final String ARG__MERGE = "--merge";
+    private static final String ARG__RESTORE = "--restore";
+
     private static Logger log;
     private static MainWindow ui;
+    private static ShutdownCoordinator shutdownCoordinator;
 
 
     public static void main(String[] args) {
         try {
             configureLogger();
+            if (args.length > 0 && ARG__EXPORT.equals(args[0])) {
+                exportData(args);
+            }
+            if (args.length > 0 && ARG__MERGE.equals(args[0])) {
+                mergeData(args);
+            }
+            if (args.length > 0 && ARG__RESTORE.equals(args[0])) {
+                restoreBackup(args);
+            }
             init();
         } catch (Exception e) {
             log.error("Failed to initialize application: {}", e.getMessage(), e);
@@ -45,6 +72,96 @@ public class Boot {
         log = LoggerFactory.getLogger(Boot.class);
     }
 
+    /**
+     * Exports the data without starting the UI, and exits: {@code --export [csv|arrow] [directory]}. The format
+     * defaults to CSV and the directory to "export" in the app home. Meant to be run while the app is not running.
+     */
+    private static void exportData(String[] args) {
+        ExportFormat format;
+        Path dir;
+        try {
+            format = ExportFormat.valueOf(args.length > 1 ? args[1].toUpperCase() : "CSV");
+            dir = args.length > 2 ? Paths.get(args[2])
+                    : Paths.get(Factory.appProperties().get("app.home")).resolve("export");
+        } catch (IllegalArgumentException e) {
+            // an unknown format, or an invalid path
+            System.err.println("Usage: " + ARG__EXPORT + " [csv|arrow] [directory]");
+            System.exit(2);
+            return;
+        }
+
+        int status = 0;
+        try {
+            LoopDataService dataService = Factory.loopDataService();
+            dataService.start();
+            DataExporter.ExportReport report = Factory.dataExporter().export(dir, format);
+            System.out.printf("Exported %d matches to %s%nExported %d players to %s%n",
+                    report.getMatches(), report.getMatchesFile(), report.getPlayers(), report.getPlayersFile());
+            dataService.close();
+        } catch (Exception e) {
+            log.error("Failed to export data.", e);
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Merges the data of several installations into a new one, without starting the UI, and exits:
+     * {@code --merge <output directory> <installation directory>...}. The output directory must not have any data
+     * yet; its files can then replace the ones in the app home. Meant to be run while the app is not running.
+     */
+    private static void mergeData(String[] args) {
+        int status = 0;
+        if (args.length < 3) {
+            System.err.println("Usage: " + ARG__MERGE + " <output directory> <installation directory>...");
+            System.exit(2);
+        }
+        try {
+            List<Path> inputDirs = Arrays.stream(args, 2, args.length).map(Paths::get).collect(Collectors.toList());
+            LoopDataMerger.MergeReport report = Factory.loopDataMerger().merge(inputDirs, Paths.get(args[1]));
+            System.out.printf("Merged %d installations into %s: %d players (%d read), %d matches, in %d ms%n",
+                    report.getInputs(), args[1], report.getPlayers(), report.getPlayersRead(), report.getMatches(),
+                    report.getElapsed().toMillis());
+        } catch (Exception e) {
+            log.error("Failed to merge data.", e);
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Lists the backups of the data, or restores one of them, without starting the UI, and exits:
+     * {@code --restore [time]}, where the time is one of the listed ones. The changes made since the backup are
+     * discarded. Meant to be run while the app is not running.
+     */
+    private static void restoreBackup(String[] args) {
+        int status = 0;
+        if ("sql".equalsIgnoreCase(Factory.appProperties().get("storage.backend"))) {
+            System.err.println("The data is not backed up when it is stored in the SQL database.");
+            System.exit(1);
+        }
+        try {
+            FileLoopStore store = new FileLoopStore(Factory.loopRepository(), Factory.changeLog());
+            if (args.length < 2) {
+                List<LocalDateTime> backups = store.listBackups();
+                backups.forEach(System.out::println);
+                System.out.printf("%d backups%n", backups.size());
+            } else {
+                LocalDateTime time = LocalDateTime.parse(args[1]);
+                store.restoreBackup(time);
+                store.close();
+                System.out.printf("Restored the backup of %s%n", time);
+            }
+        } catch (DateTimeParseException e) {
+            System.err.println("Usage: " + ARG__RESTORE + " [time]");
+            status = 2;
+        } catch (Exception e) {
+            log.error("Failed to restore the backup.", e);
+            status = 1;
+        }
+        System.exit(status);
+    }
+
     private static void init() throws Exception {
         log.info("Initializing...");
         Factory.appProperties();
@@ -79,7 +196,59 @@ public class Boot {
     private static void startServices() throws IOException {
         Factory.loopDataService().start();
         Factory.statsPanel().refreshStatsOnScreen();
+        startPlayerSync();
+        startEventJournal();
         Factory.dbdLogMonitor().start();
+        initShutdown();
+    }
+
+    /**
+     * The I/O tasks in progress (lookups, exports) are cancelled first. The game events stop next, since they produce
+     * data. The data and the settings are saved after, so that nothing produced on the way out is lost.
+     */
+    private static void initShutdown() {
+        shutdownCoordinator = Factory.shutdownCoordinator();
+        shutdownCoordinator
+                .addStep("io tasks", () -> {
+                    Factory.ioExecutor().cancelAll();
+                    Factory.dataExportUi().cancel();
+                })
+                .addStep("log monitor", () -> Factory.dbdLogMonitor().stop())
+                .addStep("event journal", Boot::closeEventJournal)
+                .addStep("player sync", Boot::closePlayerSync)
+                .addStep("data", () -> Factory.loopDataService().close())
+                .addStep("settings", () -> Factory.settings().forceSave());
+        shutdownCoordinator.installHook();
+    }
+
+    private static boolean isPlayerSyncEnabled() {
+        String syncDir = Factory.appProperties().get("sync.dir");
+
+        return Factory.appProperties().getBoolean("sync.enabled") && syncDir != null && !syncDir.trim().isEmpty();
+    }
+
+    private static void startPlayerSync() {
+        if (!isPlayerSyncEnabled()) {
+            return;
+        }
+        try {
+            Factory.playerSyncService().start();
+        } catch (IOException e) {
+            log.error("Failed to start the player sync. Players will not be synced.", e);
+        }
+    }
+
+    private static void startEventJournal() {
+        if (!Factory.appProperties().getBoolean("journal.enabled")) {
+            return;
+        }
+        try {
+            EventJournal eventJournal = Factory.eventJournal();
+            eventJournal.open();
+            Factory.dbdLogMonitor().registerListener(eventJournal::append);
+        } catch (IOException e) {
+            log.error("Failed to open the event journal. Game events will not be recorded.", e);
+        }
     }
 
     // TODO: separate tray icon
@@ -88,6 +257,7 @@ public class Boot {
         final SystemTray tray = SystemTray.getSystemTray();
         final PopupMenu popup = new PopupMenu();
         final MenuItem info = new MenuItem();
+        final MenuItem export = new MenuItem();
         final MenuItem exit = new MenuItem();
 
         BufferedImage trayIconImage = ImageIO.read(FileUtil.localResource("loop_logo.png"));
@@ -108,12 +278,16 @@ public class Boot {
             JOptionPane.showMessageDialog(null, message, title, JOptionPane.INFORMATION_MESSAGE);
         });
 
+        export.addActionListener(e -> Factory.dataExportUi().show());
+
         exit.addActionListener(e -> {
             exitApplication(0);
         });
         info.setLabel("Help");
+        export.setLabel("Export data...");
         exit.setLabel("Exit");
         popup.add(info);
+        popup.add(export);
         popup.add(exit);
         tray.add(trayIcon);
     }
@@ -130,9 +304,34 @@ public class Boot {
         }
 
         log.info("Terminated UI.");
+        if (shutdownCoordinator != null) {
+            shutdownCoordinator.shutdown();
+        }
         System.exit(status);
     }
 
+    private static void closeEventJournal() {
+        if (!Factory.appProperties().getBoolean("journal.enabled")) {
+            return;
+        }
+        try {
+            Factory.eventJournal().close();
+        } catch (IOException e) {
+            log.error("Failed to close the event journal.", e);
+        }
+    }
+
+    private static void closePlayerSync() {
+        if (!isPlayerSyncEnabled()) {
+            return;
+        }
+        try {
+            Factory.playerSyncService().close();
+        } catch (IOException e) {
+            log.error("Failed to close the player sync.", e);
+        }
+    }
+
     private static void fatalErrorDialog(String msg) {
         msg += "\nExiting application.";
         JOptionPane.showMessageDialog(null, msg, "Fatal Error", JOptionPane.ERROR_MESSAGE);
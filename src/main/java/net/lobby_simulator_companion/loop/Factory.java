@@ -6,18 +6,31 @@ import net.lobby_simulator_companion.loop.config.AppProperties;
 import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
 import net.lobby_simulator_companion.loop.config.Settings;
 import net.lobby_simulator_companion.loop.repository.ExtremeIpDao;
+import net.lobby_simulator_companion.loop.repository.FileLoopStore;
 import net.lobby_simulator_companion.loop.repository.LoopRepository;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
 import net.lobby_simulator_companion.loop.repository.ServerDao;
 import net.lobby_simulator_companion.loop.repository.SteamProfileDao;
+import net.lobby_simulator_companion.loop.repository.archive.MatchArchive;
+import net.lobby_simulator_companion.loop.repository.changelog.ChangeLog;
+import net.lobby_simulator_companion.loop.repository.journal.EventJournal;
+import net.lobby_simulator_companion.loop.repository.merge.LoopDataMerger;
+import net.lobby_simulator_companion.loop.repository.playerstore.HeapPlayerStore;
+import net.lobby_simulator_companion.loop.repository.playerstore.MappedPlayerStore;
+import net.lobby_simulator_companion.loop.repository.playerstore.PlayerStore;
+import net.lobby_simulator_companion.loop.repository.sql.SqlLoopStore;
+import net.lobby_simulator_companion.loop.service.DataExporter;
 import net.lobby_simulator_companion.loop.service.DbdLogMonitor;
 import net.lobby_simulator_companion.loop.service.GameStateManager;
 import net.lobby_simulator_companion.loop.service.LoopDataService;
+import net.lobby_simulator_companion.loop.service.PlayerSyncService;
 import net.lobby_simulator_companion.loop.service.log_event_orchestrators.ChaseEventManager;
 import net.lobby_simulator_companion.loop.service.log_processing.impl.ChaseLogProcessor;
 import net.lobby_simulator_companion.loop.service.log_processing.impl.KillerLogProcessor;
 import net.lobby_simulator_companion.loop.service.log_processing.impl.MainLogProcessor;
 import net.lobby_simulator_companion.loop.service.log_processing.impl.RealmMapLogProcessor;
 import net.lobby_simulator_companion.loop.service.plugin.PluginManager;
+import net.lobby_simulator_companion.loop.ui.DataExportUi;
 import net.lobby_simulator_companion.loop.ui.KillerPanel;
 import net.lobby_simulator_companion.loop.ui.MainWindow;
 import net.lobby_simulator_companion.loop.ui.MatchPanel;
@@ -28,11 +41,20 @@ import net.lobby_simulator_companion.loop.ui.StatsPanel;
 import net.lobby_simulator_companion.loop.ui.SurvivalInputPanel;
 import net.lobby_simulator_companion.loop.ui.common.UiEventOrchestrator;
 import net.lobby_simulator_companion.loop.ui.startup.PluginLoadUi;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import net.lobby_simulator_companion.loop.util.concurrent.ManagedIoExecutor;
+import net.lobby_simulator_companion.loop.util.concurrent.ShutdownCoordinator;
 import net.lobby_simulator_companion.loop.util.event.EventSupport;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import static net.lobby_simulator_companion.loop.util.LangUtil.unchecked;
@@ -48,6 +70,7 @@ import static net.lobby_simulator_companion.loop.util.LangUtil.unchecked;
 public final class Factory {
 
     private static final String PROPERTY__WRITE_ENCRYPTED = "storage.write.encrypted";
+    private static final String STORAGE_BACKEND__SQL = "sql";
     private static final Map<Class, Object> instances = new HashMap<>();
 
     private Factory() {
@@ -84,9 +107,124 @@ public final class Factory {
                 () -> new LoopRepository(appProperties(), gson()));
     }
 
+    public static LoopDataMerger loopDataMerger() {
+        return getInstance(LoopDataMerger.class, () -> new LoopDataMerger(appProperties(), gson(),
+                appProperties().getInt("storage.merge.partitions"), Runtime.getRuntime().availableProcessors()));
+    }
+
     public static LoopDataService loopDataService() {
         return getInstance(LoopDataService.class, unchecked(
-                () -> new LoopDataService(loopRepository())));
+                () -> new LoopDataService(loopStore(), playerStore(),
+                        LoopDataService.Durability.valueOf(appProperties().get("storage.durability").toUpperCase()),
+                        timer())));
+    }
+
+    public static PlayerSyncService playerSyncService() {
+        return getInstance(PlayerSyncService.class, () -> new PlayerSyncService(loopDataService(),
+                Paths.get(appProperties().get("sync.dir")),
+                Paths.get(appProperties().get("app.home")).resolve(appProperties().get("sync.state.file")),
+                LoopGsonFactory.gson(false), appProperties().getBoolean(PROPERTY__WRITE_ENCRYPTED),
+                TimeUnit.SECONDS.toMillis(appProperties().getInt("sync.period_seconds")),
+                appProperties().getInt("sync.checkpoint_deltas"), timer()));
+    }
+
+    /**
+     * The file store, unless the SQL store is enabled. The SQL database is populated from the file store, if there
+     * is one, the first time it is opened.
+     */
+    public static LoopStore loopStore() {
+        return getInstance(LoopStore.class, unchecked(() -> {
+            Path appHome = Paths.get(appProperties().get("app.home"));
+            if (!STORAGE_BACKEND__SQL.equalsIgnoreCase(appProperties().get("storage.backend"))) {
+                return new FileLoopStore(loopRepository(), changeLog(),
+                        openMatchArchive(appHome.resolve(appProperties().get("storage.match_archive.dir"))));
+            }
+            LoopStore fileStore = new FileLoopStore(loopRepository(), changeLog());
+            SqlLoopStore sqlStore = SqlLoopStore.open(appHome.resolve(appProperties().get("storage.sql.file")),
+                    LoopGsonFactory.gson(false));
+            if (sqlStore.isEmpty() && Files.exists(appHome.resolve(appProperties().get("storage.file")))) {
+                sqlStore.importFrom(fileStore);
+            }
+            return sqlStore;
+        }));
+    }
+
+    private static MatchArchive openMatchArchive(Path dir) {
+        try {
+            return MatchArchive.open(dir);
+        } catch (IOException e) {
+            log.error("Failed to open the match archive. Keeping only the latest matches instead.", e);
+            return null;
+        }
+    }
+
+    public static PlayerStore playerStore() {
+        return getInstance(PlayerStore.class, () -> {
+            if (!appProperties().getBoolean("storage.player_store.mapped")) {
+                return new HeapPlayerStore();
+            }
+            try {
+                return MappedPlayerStore.open(
+                        Paths.get(appProperties().get("app.home")).resolve(appProperties().get("storage.player_store.dir")),
+                        appProperties().getInt("storage.player_store.cache_size"));
+            } catch (IOException e) {
+                log.error("Failed to open the player store. Keeping all the players in memory instead.", e);
+                return new HeapPlayerStore();
+            }
+        });
+    }
+
+    public static ChangeLog changeLog() {
+        return getInstance(ChangeLog.class, () -> new ChangeLog(
+                Paths.get(appProperties().get("app.home")).resolve(appProperties().get("storage.changelog.dir")),
+                LoopGsonFactory.gson(false),
+                appProperties().getBoolean(PROPERTY__WRITE_ENCRYPTED),
+                appProperties().getInt("storage.changelog.compaction_bytes")));
+    }
+
+    public static EventJournal eventJournal() {
+        return getInstance(EventJournal.class, () -> new EventJournal(
+                Paths.get(appProperties().get("app.home")).resolve(appProperties().get("journal.dir")),
+                appProperties().getInt("journal.segment.max_bytes"),
+                timer()));
+    }
+
+    public static ShutdownCoordinator shutdownCoordinator() {
+        return getInstance(ShutdownCoordinator.class,
+                () -> new ShutdownCoordinator(appProperties().getInt("shutdown.deadline_ms")));
+    }
+
+    public static HashedWheelTimer timer() {
+        return getInstance(HashedWheelTimer.class, () -> {
+            HashedWheelTimer timer = new HashedWheelTimer("timer");
+            timer.start();
+            return timer;
+        });
+    }
+
+    /**
+     * The metrics of the executor are logged periodically, unless the period is 0.
+     */
+    public static ManagedIoExecutor ioExecutor() {
+        return getInstance(ManagedIoExecutor.class, () -> {
+            ManagedIoExecutor executor = ManagedIoExecutor.create("io",
+                    appProperties().getInt("io.executor.max_concurrency"),
+                    appProperties().getInt("io.executor.task_deadline_ms"),
+                    timer());
+            int metricsLogPeriodSeconds = appProperties().getInt("io.executor.metrics_log_period_seconds");
+            if (metricsLogPeriodSeconds > 0) {
+                executor.logMetricsPeriodically(timer(), TimeUnit.SECONDS.toMillis(metricsLogPeriodSeconds));
+            }
+            return executor;
+        });
+    }
+
+    public static DataExporter dataExporter() {
+        return getInstance(DataExporter.class, () -> new DataExporter(loopDataService()));
+    }
+
+    public static DataExportUi dataExportUi() {
+        return getInstance(DataExportUi.class, () -> new DataExportUi(appProperties(), dataExporter(), timer()));
     }
 
     public static PluginLoadUi pluginLoadUi() {
@@ -157,7 +295,9 @@ public final class Factory {
                         dbdLogMonitor(),
                         loopDataService(),
                         steamProfileDao(),
-                        chaseEventManager()
+                        chaseEventManager(),
+                        Clock.systemDefaultZone(),
+                        ioExecutor()
                 ));
     }
 
@@ -168,7 +308,7 @@ public final class Factory {
 
     public static MainWindow mainWindow() {
         return getInstance(MainWindow.class, () ->
-                new MainWindow(settings(), appProperties(), loopDataService(),
+                new MainWindow(settings(), appProperties(),
                         gameStateManager(), uiEventOrchestrator(),
                         serverPanel(), matchPanel(), killerPanel(), statsPanel(), survivalInputPanel()));
     }
@@ -180,13 +320,13 @@ public final class Factory {
 
     public static ServerPanel serverPanel() {
         return getInstance(ServerPanel.class, () -> new ServerPanel(
-                settings(), appProperties(), gameStateManager(), uiEventOrchestrator(), serverDao()));
+                settings(), appProperties(), gameStateManager(), uiEventOrchestrator(), serverDao(), ioExecutor()));
     }
 
     public static KillerPanel killerPanel() {
         return getInstance(KillerPanel.class, () ->
                 new KillerPanel(settings(), loopDataService(), gameStateManager(),
-                        uiEventOrchestrator()));
+                        uiEventOrchestrator(), timer()));
     }
 
     public static MatchPanel matchPanel() {
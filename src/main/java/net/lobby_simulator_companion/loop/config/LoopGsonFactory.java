@@ -3,8 +3,7 @@ package net.lobby_simulator_companion.loop.config;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import lombok.experimental.UtilityClass;
-import net.lobby_simulator_companion.loop.domain.MatchLog;
-import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.json.LoopTypeAdapterFactory;
 import net.lobby_simulator_companion.loop.util.gson.LocalDateTimeTypeAdapter;
 import net.lobby_simulator_companion.loop.util.gson.LowercaseEnumTypeAdapterFactory;
 
@@ -30,10 +29,8 @@ public class LoopGsonFactory {
 
     private void configureTypeAdapters(GsonBuilder gsonBuilder) {
         gsonBuilder.registerTypeAdapter(LocalDateTime.class, new LocalDateTimeTypeAdapter());
-        gsonBuilder.registerTypeAdapter(Stats.class, new Stats.Serializer());
-        gsonBuilder.registerTypeAdapter(Stats.class, new Stats.Deserializer());
-        gsonBuilder.registerTypeAdapter(MatchLog.class, new MatchLog.Deserializer());
         gsonBuilder.registerTypeAdapterFactory(new LowercaseEnumTypeAdapterFactory());
+        gsonBuilder.registerTypeAdapterFactory(new LoopTypeAdapterFactory());
     }
 
 
@@ -21,14 +21,15 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
 
 /**
  * Handles user preferences storing them in memory and in disk.
  * A thread will periodically check to see if there are changes in memory that need to be stored in disk.
+ * The timer only hands the check over to that thread, so that it is never held up by the disk.
  * This thread will only perform a save to disk if no properties have been changed during a predefined interval
  * (this is to avoid saving unnecessarily frequently).
  * This means that as long as properties keep being updated within the interval, we will not save and wait until
@@ -47,6 +48,11 @@ public class Settings {
     private final Random r = new Random();
     private final Set<Integer> featuresEnabled = new HashSet<>();
     private final Map<Integer, Double> featureChances = new HashMap<>();
+    private final Executor saveExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "settings-save");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private volatile boolean dirty;
     private Instant lastChange = Instant.now();
@@ -66,13 +72,8 @@ public class Settings {
         }
         globalSection = ini.get("?");
 
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                save();
-            }
-        }, SAVE_INTERVAL_SECONDS * 1000, SAVE_INTERVAL_SECONDS * 1000);
+        Factory.timer().scheduleAtFixedRate(() -> saveExecutor.execute(this::save),
+                SAVE_INTERVAL_SECONDS * 1000, SAVE_INTERVAL_SECONDS * 1000);
 
         initSwitches();
     }
@@ -192,7 +193,7 @@ public class Settings {
         }
     }
 
-    public void forceSave() {
+    public synchronized void forceSave() {
         if (dirty) {
             try {
                 log.debug("Saving settings.");
@@ -1,10 +1,12 @@
 package net.lobby_simulator_companion.loop.domain;
 
 import lombok.Getter;
+import lombok.Setter;
 import net.lobby_simulator_companion.loop.domain.stats.Stats;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -15,10 +17,34 @@ import java.util.List;
 @Getter
 public class LoopData {
 
-    private final int version = 3;
+    /**
+     * Version of the stored data. It must be increased with every change to the stored classes which older versions
+     * cannot read, along with a migration from the previous version
+     * (see {@link net.lobby_simulator_companion.loop.repository.migration.LoopDataMigrator}).
+     */
+    public static final int CURRENT_VERSION = 3;
+
+    private final int version = CURRENT_VERSION;
     private final List<Player> players = new ArrayList<>();
-    private final Stats stats = new Stats();
-    private final MatchLog matchLog = new MatchLog();
+    private final Stats stats;
+    private final MatchLog matchLog;
+
+    /**
+     * Sequence of the last change log segment whose changes are included in this data.
+     */
+    @Setter
+    private long changeLogSequence;
+
+
+    public LoopData() {
+        this(new Stats(), new MatchLog(), Collections.emptyList());
+    }
+
+    public LoopData(Stats stats, MatchLog matchLog, Collection<Player> players) {
+        this.stats = stats;
+        this.matchLog = matchLog;
+        this.players.addAll(players);
+    }
 
 
     public void addPlayers(Collection<Player> players) {
@@ -1,18 +1,16 @@
 package net.lobby_simulator_companion.loop.domain;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
 import net.lobby_simulator_companion.loop.domain.stats.AggregateStats;
 import net.lobby_simulator_companion.loop.domain.stats.Match;
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 
-import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +19,7 @@ import static java.lang.Math.max;
 /**
  * @author NickyRamone
  */
+@Slf4j
 public class MatchLog {
 
     @RequiredArgsConstructor
@@ -41,6 +40,19 @@ public class MatchLog {
         }
     }
 
+    /**
+     * The aggregated stats of the rolling groups, saved along with the matches so that they do not need to be
+     * calculated again when loaded. They are only valid for the matches with the same content hash.
+     */
+    @Value
+    public static class Snapshot {
+        long contentHash;
+        Map<RollingGroup, AggregateStats> stats;
+    }
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     private final CircularFifoQueue<Match> matches;
     private final transient Map<RollingGroup, AggregateStats> statsByGroup = new HashMap<>();
 
@@ -67,6 +79,115 @@ public class MatchLog {
         matches.add(match);
     }
 
+    /**
+     * Adds the given matches, from oldest to newest, calculating the stats of every group only once rather than once
+     * per match.
+     */
+    public void addAll(Collection<Match> newMatches) {
+        matches.addAll(newMatches);
+        recalculateStats();
+    }
+
+    /**
+     * Creates a log with the given matches, from oldest to newest, taking the stats of the groups from the given
+     * snapshot when it was taken of the same matches. Otherwise, the stats are calculated again.
+     *
+     * @param snapshot null if there is none.
+     */
+    public static MatchLog restore(Collection<Match> matches, Snapshot snapshot) {
+        MatchLog matchLog = new MatchLog();
+        matchLog.matches.addAll(matches);
+
+        boolean snapshotValid = snapshot != null
+                && snapshot.getStats().keySet().containsAll(Arrays.asList(RollingGroup.values()))
+                && snapshot.getContentHash() == matchLog.contentHash();
+        if (snapshotValid) {
+            snapshot.getStats().forEach((group, stats) -> matchLog.statsByGroup.put(group, stats.copy()));
+        } else {
+            if (snapshot != null) {
+                log.info("The rolling stats snapshot does not match the matches. Recalculating the stats.");
+            }
+            matchLog.recalculateStats();
+        }
+
+        return matchLog;
+    }
+
+    /**
+     * @return a snapshot of the stats of the groups, with copies of the stats.
+     */
+    public Snapshot snapshot() {
+        Map<RollingGroup, AggregateStats> stats = new EnumMap<>(RollingGroup.class);
+        statsByGroup.forEach((group, groupStats) -> stats.put(group, groupStats.copy()));
+
+        return new Snapshot(contentHash(), stats);
+    }
+
+    /**
+     * Each group aggregates its latest matches, in order, as {@link #add(Match)} does one match at a time.
+     */
+    private void recalculateStats() {
+        for (RollingGroup group : RollingGroup.values()) {
+            AggregateStats stats = statsByGroup.get(group);
+            stats.reset();
+            for (int i = max(0, matches.size() - group.aggregateSize); i < matches.size(); i++) {
+                stats.addMatchStats(matches.get(i));
+            }
+        }
+    }
+
+    /**
+     * A hash of the matches and the group sizes (a 64-bit FNV-1a). Unlike {@link Match#hashCode()}, it does not
+     * change between runs, since the enums are hashed by name.
+     */
+    public long contentHash() {
+        long hash = FNV_OFFSET_BASIS;
+        for (RollingGroup group : RollingGroup.values()) {
+            hash = hash(hash, group.aggregateSize);
+        }
+        for (Match match : matches) {
+            hash = hash(hash, match.getLobbiesFound());
+            hash = hash(hash, match.getSecondsQueued());
+            hash = hash(hash, match.getSecondsWaited());
+            hash = hash(hash, match.getSecondsPlayed());
+            hash = hash(hash, match.getMatchStartTime() == null ? null : match.getMatchStartTime().toString());
+            hash = hash(hash, match.getEscaped() == null ? null : match.getEscaped() ? 1 : 0);
+            hash = hash(hash, match.getKiller() == null ? null : match.getKiller().name());
+            hash = hash(hash, match.getRealmMap() == null ? null : match.getRealmMap().name());
+            hash = hash(hash, match.getKillerPlayerSteamId64());
+            hash = hash(hash, match.getKillerPlayerDbdId());
+        }
+
+        return hash;
+    }
+
+    private static long hash(long hash, Integer value) {
+        if (value == null) {
+            return hashByte(hash, 0);
+        }
+        hash = hashByte(hash, 1);
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            hash = hashByte(hash, value >>> shift);
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hashByte(hash, 0);
+        }
+        hash = hash(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = hashByte(hashByte(hash, c), c >>> Byte.SIZE);
+        }
+        return hash;
+    }
+
+    private static long hashByte(long hash, int value) {
+        return (hash ^ (value & 0xff)) * FNV_PRIME;
+    }
+
 
     /**
      * When the queue is full we cannot calculate the escape streaks/records in O(1) with no additional structure.
@@ -106,6 +227,17 @@ public class MatchLog {
     }
 
 
+    /**
+     * @return a copy of this log. Matches are shared but the aggregated stats are deep-copied.
+     */
+    public MatchLog copy() {
+        MatchLog copy = new MatchLog();
+        copy.matches.addAll(matches);
+        statsByGroup.forEach((group, stats) -> copy.statsByGroup.put(group, stats.copy()));
+
+        return copy;
+    }
+
     public AggregateStats getStats(RollingGroup group) {
         return statsByGroup.get(group);
     }
@@ -114,22 +246,11 @@ public class MatchLog {
         return matches.size();
     }
 
-
-    public static class Deserializer implements JsonDeserializer<MatchLog> {
-
-        @Override
-        public MatchLog deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            MatchLog result = new MatchLog();
-            JsonObject matchLog = (JsonObject) json;
-            JsonArray matches = matchLog.getAsJsonArray("matches");
-
-            for (JsonElement e : matches) {
-                Match match = context.deserialize(e, Match.class);
-                result.add(match);
-            }
-
-            return result;
-        }
+    /**
+     * @return the matches in this log, from oldest to newest.
+     */
+    public Collection<Match> getMatches() {
+        return Collections.unmodifiableCollection(matches);
     }
 
 }
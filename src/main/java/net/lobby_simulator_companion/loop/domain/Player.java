@@ -8,6 +8,7 @@ import lombok.Data;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -89,6 +90,14 @@ public class Player implements Serializable, Cloneable {
         rating = Rating.UNRATED;
     }
 
+    /**
+     * @return a deep copy of this player.
+     */
+    public Player copy() {
+        return new Player(steamId64, dbdPlayerId, firstSeen, lastSeen, timesEncountered, matchesPlayed,
+                secondsPlayed, escapes, deaths, names == null ? null : new ArrayList<>(names), rating, description);
+    }
+
     public void updateLastSeen() {
         lastSeen = LocalDateTime.now();
     }
@@ -138,6 +147,39 @@ public class Player implements Serializable, Cloneable {
         names.add(normalizedName);
     }
 
+    /**
+     * Adds to this player what was recorded about it elsewhere, for example in the data of another installation:
+     * counters are summed, and the earliest and latest times seen are kept. The names of the player seen less recently
+     * are added first, so that the most recent name is the last one seen. For the Steam id, rating and description,
+     * the values of the player seen most recently win, unless they are not set.
+     */
+    public void merge(Player other) {
+        boolean otherIsNewer = lastSeen == null
+                || other.lastSeen != null && other.lastSeen.isAfter(lastSeen);
+        Player older = otherIsNewer ? copy() : other;
+        Player newer = otherIsNewer ? other : copy();
+
+        if (firstSeen == null || other.firstSeen != null && other.firstSeen.isBefore(firstSeen)) {
+            firstSeen = other.firstSeen;
+        }
+        lastSeen = newer.lastSeen != null ? newer.lastSeen : older.lastSeen;
+        timesEncountered += other.timesEncountered;
+        matchesPlayed += other.matchesPlayed;
+        secondsPlayed += other.secondsPlayed;
+        escapes += other.escapes;
+        deaths += other.deaths;
+
+        names = new ArrayList<>(MAX_NAMES_STORED);
+        for (Player player : Arrays.asList(older, newer)) {
+            if (player.names != null) {
+                player.names.forEach(this::addName);
+            }
+        }
+        dbdPlayerId = newer.dbdPlayerId != null ? newer.dbdPlayerId : older.dbdPlayerId;
+        rating = newer.rating != Rating.UNRATED ? newer.rating : older.rating;
+        description = newer.description != null ? newer.description : older.description;
+    }
+
     public void setDescription(String description) {
         if (isBlank(description)) {
             description = null;
@@ -127,6 +127,34 @@ public class AggregateStats {
     }
 
 
+    /**
+     * @return a deep copy of these stats.
+     */
+    public AggregateStats copy() {
+        AggregateStats copy = new AggregateStats();
+        copy.copyFrom(this);
+
+        return copy;
+    }
+
+    protected void copyFrom(AggregateStats other) {
+        lobbiesFound = other.lobbiesFound;
+        secondsQueued = other.secondsQueued;
+        secondsWaited = other.secondsWaited;
+        secondsPlayed = other.secondsPlayed;
+        matchesPlayed = other.matchesPlayed;
+        escapes = other.escapes;
+        escapesInARow = other.escapesInARow;
+        maxEscapesInARow = other.maxEscapesInARow;
+        deaths = other.deaths;
+        deathsInARow = other.deathsInARow;
+        maxDeathsInARow = other.maxDeathsInARow;
+        killersStats.clear();
+        other.killersStats.forEach((killer, stats) -> killersStats.put(killer, stats.clone()));
+        mapStats.clear();
+        other.mapStats.forEach((realmMap, stats) -> mapStats.put(realmMap, stats.clone()));
+    }
+
     public void reset() {
         lobbiesFound = 0;
         secondsQueued = 0;
@@ -31,6 +31,11 @@ public class Match {
     private String killerPlayerSteamId64;
     private String killerPlayerDbdId;
 
+    public Match copy() {
+        return new Match(lobbiesFound, secondsQueued, secondsWaited, secondsPlayed, matchStartTime, cancelled, escaped,
+                killer, realmMap, killerPlayerSteamId64, killerPlayerDbdId);
+    }
+
     public boolean escaped() {
         return Optional.ofNullable(escaped).orElse(false);
     }
@@ -1,12 +1,5 @@
 package net.lobby_simulator_companion.loop.domain.stats;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
 import lombok.RequiredArgsConstructor;
 import net.lobby_simulator_companion.loop.domain.stats.periodic.DailyStats;
 import net.lobby_simulator_companion.loop.domain.stats.periodic.GlobalStats;
@@ -15,7 +8,6 @@ import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
 import net.lobby_simulator_companion.loop.domain.stats.periodic.WeeklyStats;
 import net.lobby_simulator_companion.loop.domain.stats.periodic.YearlyStats;
 
-import java.lang.reflect.Type;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.stream.Stream;
@@ -68,59 +60,21 @@ public class Stats {
         }
     }
 
-    public Stream<PeriodStats> asStream() {
-        return Arrays.stream(periodsStats);
-    }
-
-
-    public static final class Serializer implements JsonSerializer<Stats> {
-        @Override
-        public JsonElement serialize(Stats src, Type typeOfSrc, JsonSerializationContext context) {
-            JsonObject jsonObj = new JsonObject();
-
-            for (Stats.Period period : Stats.Period.values()) {
-                jsonObj.add(period.name().toLowerCase(), context.serialize(src.get(period)));
-            }
+    /**
+     * @return a deep copy of these stats.
+     */
+    public Stats copy() {
+        Stats copy = new Stats();
 
-            return jsonObj;
+        for (Period period : Period.values()) {
+            copy.set(period, get(period).copy());
         }
-    }
-
 
-    public static final class Deserializer implements JsonDeserializer<Stats> {
+        return copy;
+    }
 
-        @Override
-        public Stats deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            Stats result = new Stats();
-
-            JsonObject jsonObj = json.getAsJsonObject();
-            jsonObj.entrySet().forEach(e -> {
-                Stats.Period period = Stats.Period.valueOf(e.getKey().toUpperCase());
-                PeriodStats periodStats = null;
-
-                switch (period) {
-                    case DAILY:
-                        periodStats = context.deserialize(e.getValue(), DailyStats.class);
-                        break;
-                    case WEEKLY:
-                        periodStats = context.deserialize(e.getValue(), WeeklyStats.class);
-                        break;
-                    case MONTHLY:
-                        periodStats = context.deserialize(e.getValue(), MonthlyStats.class);
-                        break;
-                    case YEARLY:
-                        periodStats = context.deserialize(e.getValue(), YearlyStats.class);
-                        break;
-                    case GLOBAL:
-                        periodStats = context.deserialize(e.getValue(), GlobalStats.class);
-                        break;
-                }
-
-                result.set(period, periodStats);
-            });
-
-            return result;
-        }
+    public Stream<PeriodStats> asStream() {
+        return Arrays.stream(periodsStats);
     }
 
 }
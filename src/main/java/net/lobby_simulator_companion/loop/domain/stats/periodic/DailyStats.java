@@ -22,4 +22,9 @@ public class DailyStats extends PeriodStats {
         return now.toLocalDate().atTime(LocalTime.MAX);
     }
 
+    @Override
+    protected DailyStats newInstance(LocalDateTime now) {
+        return new DailyStats(now);
+    }
+
 }
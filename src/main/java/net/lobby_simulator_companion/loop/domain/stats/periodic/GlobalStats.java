@@ -21,4 +21,9 @@ public class GlobalStats extends PeriodStats {
         return null;
     }
 
+    @Override
+    protected GlobalStats newInstance(LocalDateTime now) {
+        return new GlobalStats(now);
+    }
+
 }
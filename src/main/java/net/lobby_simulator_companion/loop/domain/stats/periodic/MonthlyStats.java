@@ -22,4 +22,9 @@ public class MonthlyStats extends PeriodStats {
         return now.toLocalDate().withDayOfMonth(now.toLocalDate().lengthOfMonth()).atTime(LocalTime.MAX);
     }
 
+    @Override
+    protected MonthlyStats newInstance(LocalDateTime now) {
+        return new MonthlyStats(now);
+    }
+
 }
@@ -22,9 +22,42 @@ public abstract class PeriodStats extends AggregateStats {
         periodEnd = getPeriodEnd(now);
     }
 
+    @Override
+    public PeriodStats copy() {
+        PeriodStats copy = newInstance(periodStart);
+        copy.copyFrom(this);
+
+        return copy;
+    }
+
+    @Override
+    protected void copyFrom(AggregateStats other) {
+        super.copyFrom(other);
+
+        if (other instanceof PeriodStats) {
+            periodStart = ((PeriodStats) other).periodStart;
+            periodEnd = ((PeriodStats) other).periodEnd;
+        }
+    }
+
+    /**
+     * Replaces the content of these stats with the given ones. Used when loading stored data.
+     */
+    public void restore(AggregateStats stats, LocalDateTime periodStart, LocalDateTime periodEnd) {
+        super.copyFrom(stats);
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd;
+    }
+
     public void reset() {
+        reset(LocalDateTime.now());
+    }
+
+    /**
+     * Resets the stats, starting the period that contains the given time.
+     */
+    public void reset(LocalDateTime now) {
         super.reset();
-        LocalDateTime now = LocalDateTime.now();
         periodStart = getPeriodStart(now);
         periodEnd = getPeriodEnd(now);
     }
@@ -33,4 +66,6 @@ public abstract class PeriodStats extends AggregateStats {
 
     abstract LocalDateTime getPeriodEnd(LocalDateTime now);
 
+    abstract PeriodStats newInstance(LocalDateTime now);
+
 }
@@ -24,4 +24,9 @@ public class WeeklyStats extends PeriodStats {
         return now.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY)).toLocalDate().atTime(LocalTime.MAX);
     }
 
+    @Override
+    protected WeeklyStats newInstance(LocalDateTime now) {
+        return new WeeklyStats(now);
+    }
+
 }
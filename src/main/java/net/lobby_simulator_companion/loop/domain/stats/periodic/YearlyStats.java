@@ -22,4 +22,9 @@ public class YearlyStats extends PeriodStats {
         return now.toLocalDate().withDayOfYear(now.toLocalDate().lengthOfYear()).atTime(LocalTime.MAX);
     }
 
+    @Override
+    protected YearlyStats newInstance(LocalDateTime now) {
+        return new YearlyStats(now);
+    }
+
 }
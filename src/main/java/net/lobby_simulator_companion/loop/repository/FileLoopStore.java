@@ -0,0 +1,249 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+import net.lobby_simulator_companion.loop.repository.archive.MatchArchive;
+import net.lobby_simulator_companion.loop.repository.changelog.ChangeLog;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Stores the data as a full snapshot file ({@link LoopRepository}) plus the {@link ChangeLog} of the changes made
+ * since the snapshot. Compacting writes a new snapshot.
+ * <p>
+ * The snapshot only holds the latest matches (the {@link MatchLog}). When a {@link MatchArchive} is given, every
+ * match is also archived once its change has been written, and the match log is the tail of the archive. The archive
+ * is caught up with the match log on load, so a match missed by the archive (for example, if the app died right
+ * before archiving it) is archived then.
+ * Period stats are only kept for the current periods.
+ * <p>
+ * The players written to the change log are tracked until they are included in a snapshot, so that the snapshot only
+ * rewrites the player shards which hold any of them.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class FileLoopStore implements LoopStore {
+
+    private final LoopRepository repository;
+    private final ChangeLog changeLog;
+    private final MatchArchive archive;
+    /**
+     * Players written to the change log since the last snapshot was started.
+     */
+    private final Set<String> modifiedSteamIds = new HashSet<>();
+
+
+    public FileLoopStore(LoopRepository repository, ChangeLog changeLog) {
+        this(repository, changeLog, null);
+    }
+
+    /**
+     * @param archive where every match is archived, or null to keep only the match log.
+     */
+    public FileLoopStore(LoopRepository repository, ChangeLog changeLog, MatchArchive archive) {
+        this.repository = repository;
+        this.changeLog = changeLog;
+        this.archive = archive;
+    }
+
+
+    @Override
+    public TieredLoad load() throws IOException {
+        try {
+            return repository.loadTiered();
+        } catch (FileNotFoundException e) {
+            LoopData data = new LoopData();
+            repository.save(data);
+
+            return TieredLoad.of(data);
+        }
+    }
+
+    @Override
+    public int replay(LoopData loadedData, Consumer<DataChange> consumer) throws IOException {
+        List<Match> recentMatches = new ArrayList<>(loadedData.getMatchLog().getMatches());
+        int count = changeLog.replay(loadedData.getChangeLogSequence(), change -> {
+            if (change.getType() == DataChange.Type.MATCH_ADD) {
+                recentMatches.add(change.getMatch());
+            }
+            // the players replayed are not in the snapshot either
+            trackModifiedPlayer(change);
+            consumer.accept(change);
+        });
+        if (archive == null) {
+            return count;
+        }
+
+        int archived = archive.appendMissing(recentMatches);
+        if (archived > 0) {
+            archive.force();
+            log.info("Archived {} matches missing from the match archive.", archived);
+        }
+
+        return count;
+    }
+
+    @Override
+    public void write(List<DataChange> changes, boolean force) throws IOException {
+        changeLog.append(changes, force);
+        changes.forEach(this::trackModifiedPlayer);
+        if (archive != null) {
+            archiveMatches(changes, force);
+        }
+    }
+
+    private void trackModifiedPlayer(DataChange change) {
+        if (change.getType() == DataChange.Type.PLAYER_UPSERT) {
+            synchronized (modifiedSteamIds) {
+                modifiedSteamIds.add(change.getPlayer().getSteamId64());
+            }
+        }
+    }
+
+    /**
+     * The changes have already been written, so a failure here must not fail the write: the matches will be
+     * archived on the next load instead.
+     */
+    private void archiveMatches(List<DataChange> changes, boolean force) {
+        try {
+            boolean archived = false;
+            for (DataChange change : changes) {
+                if (change.getType() == DataChange.Type.MATCH_ADD) {
+                    archive.append(change.getMatch());
+                    archived = true;
+                }
+            }
+            if (archived && force) {
+                archive.force();
+            }
+        } catch (IOException e) {
+            log.error("Failed to archive matches.", e);
+        }
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return changeLog.needsCompaction();
+    }
+
+    @Override
+    public CompactionWriter startCompaction() throws IOException {
+        long sequence = changeLog.roll();
+        Set<String> snapshotModifiedSteamIds;
+        synchronized (modifiedSteamIds) {
+            snapshotModifiedSteamIds = new HashSet<>(modifiedSteamIds);
+            modifiedSteamIds.clear();
+        }
+
+        return (data, players) -> {
+            data.setChangeLogSequence(sequence);
+            try {
+                repository.save(data, players, snapshotModifiedSteamIds);
+            } catch (IOException e) {
+                // the players must still be written by the next snapshot
+                synchronized (modifiedSteamIds) {
+                    modifiedSteamIds.addAll(snapshotModifiedSteamIds);
+                }
+                throw e;
+            }
+            changeLog.deleteUpTo(sequence);
+        };
+    }
+
+    @Override
+    public boolean keepsMatchHistory() {
+        return archive != null;
+    }
+
+    @Override
+    public boolean keepsPeriodHistory() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The archive is not indexed by player, so the matches are found by scanning it.
+     */
+    @Override
+    public List<Match> findMatchesAgainst(String killerSteamId) {
+        if (archive == null) {
+            throw new UnsupportedOperationException("The match history is not kept");
+        }
+        List<Match> matches = new ArrayList<>();
+        long size = archive.size();
+        for (long index = 0; index < size; index++) {
+            Match match = archive.get(index);
+            if (killerSteamId.equals(match.getKillerPlayerSteamId64())) {
+                matches.add(match);
+            }
+        }
+
+        return matches;
+    }
+
+    @Override
+    public long forEachMatch(Consumer<Match> consumer) {
+        if (archive == null) {
+            throw new UnsupportedOperationException("The match history is not kept");
+        }
+        long size = archive.size();
+        for (long index = 0; index < size; index++) {
+            consumer.accept(archive.get(index));
+        }
+
+        return size;
+    }
+
+    @Override
+    public Optional<PeriodStats> findPeriodStats(Stats.Period period, LocalDateTime time) {
+        throw new UnsupportedOperationException("The period history is not kept");
+    }
+
+    /**
+     * @return the times of the backups of the snapshot, oldest first.
+     */
+    public List<LocalDateTime> listBackups() throws IOException {
+        return repository.listBackups();
+    }
+
+    /**
+     * Replaces the snapshot with the one in the backup made at the given time, and discards the change log, whose
+     * changes were made after the backup. The archived matches are kept.
+     * Must be called before the data is loaded.
+     */
+    public void restoreBackup(LocalDateTime time) throws IOException {
+        repository.restoreBackup(time);
+        changeLog.discard();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            changeLog.close();
+        } finally {
+            try {
+                if (archive != null) {
+                    archive.close();
+                }
+            } finally {
+                repository.close();
+            }
+        }
+    }
+
+}
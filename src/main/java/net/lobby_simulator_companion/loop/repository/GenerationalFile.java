@@ -0,0 +1,434 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A file which is replaced atomically on every write, keeping a number of previous generations as backups.
+ * <p>
+ * A write goes to a temporary file, which is forced to disk and then renamed over the current file, so a crash
+ * never leaves a half-written file behind. Before that, the current file becomes the first backup generation
+ * through a hard link (or a rename, where links are not supported), and older generations are shifted by renaming.
+ * No data is copied, so a save costs a single write of the content.
+ * <p>
+ * A footer with the length and CRC32 of the content is appended to every file. When reading, a generation whose
+ * checksum does not match, or which cannot be parsed, is skipped in favor of the next newest one.
+ * Files without a footer (written by older versions) are accepted as long as they can be parsed.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class GenerationalFile {
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ContentReader<T> {
+        T read(InputStream inputStream) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface GenerationReader<T> {
+        T read(Path generation) throws IOException;
+    }
+
+    private static final int FOOTER_MAGIC = 0x4C4F4F50; // "LOOP"
+    static final int FOOTER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Path tempFile;
+    private final int generations;
+
+
+    /**
+     * @param generations number of previous versions of the file to keep as backups.
+     */
+    public GenerationalFile(Path file, int generations) {
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        this.generations = generations;
+    }
+
+
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    /**
+     * Deletes the file and its backup generations.
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+        for (int i = 1; i <= generations; i++) {
+            Files.deleteIfExists(generationPath(i));
+        }
+    }
+
+    /**
+     * Snapshots the file and its backup generations under another path, through hard links (or copies, where links
+     * are not supported). The files are only ever replaced, never modified, so later writes do not affect the
+     * snapshot.
+     *
+     * @return the snapshot, which reads like this file.
+     */
+    public GenerationalFile snapshotTo(Path target) throws IOException {
+        GenerationalFile snapshot = new GenerationalFile(target, generations);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        for (int i = 0; i <= generations; i++) {
+            Path generation = i == 0 ? file : generationPath(i);
+            if (Files.exists(generation)) {
+                Path snapshotGeneration = i == 0 ? target : snapshot.generationPath(i);
+                try {
+                    Files.createLink(snapshotGeneration, generation);
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    Files.copy(generation, snapshotGeneration);
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Writes new content for the file, making the current content the newest backup generation.
+     */
+    public void write(ContentWriter contentWriter) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            CountingOutputStream countingStream = new CountingOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), crc));
+            contentWriter.write(new FilterOutputStream(countingStream) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // the footer still has to be written
+                    flush();
+                }
+            });
+            countingStream.flush();
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            footer.putInt(FOOTER_MAGIC).putInt((int) crc.getValue()).putLong(countingStream.count).flip();
+            while (footer.hasRemaining()) {
+                channel.write(footer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        rotateGenerations();
+        move(tempFile, file);
+        syncDirectory();
+    }
+
+    private void rotateGenerations() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        if (generations <= 0) {
+            // nothing to keep; the current file will be replaced atomically
+            return;
+        }
+        Files.deleteIfExists(generationPath(generations));
+        for (int i = generations - 1; i >= 1; i--) {
+            Path generation = generationPath(i);
+            if (Files.exists(generation)) {
+                move(generation, generationPath(i + 1));
+            }
+        }
+
+        Path newestGeneration = generationPath(1);
+        try {
+            // the current file stays in place until the new one atomically replaces it
+            Files.createLink(newestGeneration, file);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("Hard links not supported. Falling back to renaming the current file.");
+            move(file, newestGeneration);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Makes the renames durable. Not supported on every platform (e.g., Windows), where it is skipped.
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            log.trace("Cannot sync directory.", e);
+        }
+    }
+
+
+    /**
+     * Reads the newest valid generation of the file.
+     *
+     * @throws FileNotFoundException if no generation of the file exists.
+     * @throws IOException           if generations exist, but none of them is valid.
+     */
+    public <T> T read(ContentReader<T> contentReader) throws IOException {
+        return readNewestValid(generation -> readGeneration(generation, contentReader));
+    }
+
+    /**
+     * Like {@link #read(ContentReader)}, but the reader takes ownership of the stream and is responsible for closing
+     * it, so it can read the beginning of the content and leave the rest for later.
+     * For that reason, the checksum is verified in a first pass, before the reader is called.
+     */
+    public <T> T open(ContentReader<T> contentReader) throws IOException {
+        return readNewestValid(generation -> openGeneration(generation, contentReader));
+    }
+
+    private <T> T readNewestValid(GenerationReader<T> generationReader) throws IOException {
+        IOException lastError = null;
+        boolean found = false;
+
+        for (int i = 0; i <= generations; i++) {
+            Path generation = i == 0 ? file : generationPath(i);
+            if (!Files.exists(generation)) {
+                continue;
+            }
+            found = true;
+            try {
+                T content = generationReader.read(generation);
+                if (i > 0) {
+                    log.warn("Recovered data from backup generation {}: {}", i, generation);
+                }
+                return content;
+            } catch (IOException e) {
+                log.error("Failed to read {}. Trying an older generation...", generation, e);
+                lastError = e;
+            }
+        }
+
+        if (!found) {
+            throw new FileNotFoundException(file.toString());
+        }
+        throw lastError;
+    }
+
+    private <T> T readGeneration(Path path, ContentReader<T> contentReader) throws IOException {
+        Footer footer = readFooter(path);
+        CRC32 crc = new CRC32();
+
+        try (BoundedInputStream contentStream = openContent(path, footer.contentLength, crc)) {
+            T content = parse(path, new FilterInputStream(contentStream) {
+                @Override
+                public void close() {
+                    // the remaining content still has to be checked
+                }
+            }, contentReader);
+
+            if (footer.checksum != null) {
+                contentStream.skipToEnd();
+                verifyChecksum(path, footer, crc);
+            }
+            return content;
+        }
+    }
+
+    private <T> T openGeneration(Path path, ContentReader<T> contentReader) throws IOException {
+        Footer footer = readFooter(path);
+
+        if (footer.checksum != null) {
+            CRC32 crc = new CRC32();
+            try (BoundedInputStream contentStream = openContent(path, footer.contentLength, crc)) {
+                contentStream.skipToEnd();
+            }
+            verifyChecksum(path, footer, crc);
+        }
+
+        BoundedInputStream contentStream = openContent(path, footer.contentLength, new CRC32());
+        try {
+            return parse(path, contentStream, contentReader);
+        } catch (IOException e) {
+            contentStream.close();
+            throw e;
+        }
+    }
+
+    private static <T> T parse(Path path, InputStream contentStream, ContentReader<T> contentReader)
+            throws IOException {
+        try {
+            return contentReader.read(contentStream);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to parse " + path, e);
+        }
+    }
+
+    private static Footer readFooter(Path path) throws IOException {
+        long fileSize = Files.size(path);
+
+        if (fileSize >= FOOTER_SIZE) {
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                channel.position(fileSize - FOOTER_SIZE);
+                while (footer.hasRemaining() && channel.read(footer) >= 0) {
+                    // keep reading
+                }
+            }
+            footer.flip();
+            if (footer.getInt() == FOOTER_MAGIC) {
+                int checksum = footer.getInt();
+                long length = footer.getLong();
+                if (length == fileSize - FOOTER_SIZE) {
+                    return new Footer(length, checksum);
+                }
+            }
+        }
+
+        return new Footer(fileSize, null);
+    }
+
+    private static BoundedInputStream openContent(Path path, long contentLength, CRC32 crc) throws IOException {
+        InputStream fileStream = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        return new BoundedInputStream(new CheckedInputStream(fileStream, crc), contentLength);
+    }
+
+    private static void verifyChecksum(Path path, Footer footer, CRC32 crc) throws IOException {
+        if ((int) crc.getValue() != footer.checksum) {
+            throw new IOException("Checksum mismatch in " + path);
+        }
+    }
+
+    /**
+     * Follows the same naming as the backups made by {@link net.lobby_simulator_companion.loop.util.FileUtil}.
+     */
+    Path generationPath(int generation) {
+        return file.resolveSibling(file.getFileName() + "." + generation + ".bak");
+    }
+
+
+    @RequiredArgsConstructor
+    private static final class Footer {
+        private final long contentLength;
+        /**
+         * Null for files written without a footer.
+         */
+        private final Integer checksum;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Reads (rather than skips) the rest of the content, so that it goes through the checksum.
+         */
+        void skipToEnd() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // keep reading
+            }
+        }
+    }
+
+}
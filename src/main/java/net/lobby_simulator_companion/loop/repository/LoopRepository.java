@@ -6,29 +6,42 @@ import com.google.gson.stream.JsonWriter;
 import lombok.extern.slf4j.Slf4j;
 import net.lobby_simulator_companion.loop.config.AppProperties;
 import net.lobby_simulator_companion.loop.domain.LoopData;
-import net.lobby_simulator_companion.loop.util.FileUtil;
-
-import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.DESKeySpec;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.backup.BackupStore;
+import net.lobby_simulator_companion.loop.repository.backup.RetentionPolicy;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataReader;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataWriter;
+import net.lobby_simulator_companion.loop.repository.compression.BlockGzipInputStream;
+import net.lobby_simulator_companion.loop.repository.compression.BlockGzipOutputStream;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+import net.lobby_simulator_companion.loop.repository.migration.LoopDataMigrator;
+
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 /**
  * File-based repository for Loop-data storage.
@@ -38,20 +51,71 @@ import java.util.zip.GZIPOutputStream;
 @Slf4j
 public class LoopRepository {
 
-    private static final byte[] CIPHER_KEY_MATERIAL = new byte[]{2, 3, -57, 11, 73, 57, -66, 21};
     private static final String PROPERTY__READ_ENCRYPTED = "storage.read.encrypted";
     private static final String PROPERTY__WRITE_ENCRYPTED = "storage.write.encrypted";
 
+    private static final String PROPERTY__WRITE_FORMAT = "storage.write.format";
+    private static final String PROPERTY__BACKUP_GENERATIONS = "storage.backup.generations";
+    private static final String PROPERTY__PLAYER_SHARDS_DIR = "storage.player_shards.dir";
+    private static final String PROPERTY__PLAYER_SHARDS_COUNT = "storage.player_shards.count";
+    private static final String PROPERTY__BACKUP_DIR = "storage.backup.dir";
+    private static final String PROPERTY__BACKUP_INTERVAL_MINUTES = "storage.backup.interval_minutes";
+    private static final String PROPERTY__BACKUP_KEEP_DAILY = "storage.backup.keep_daily";
+    private static final String PROPERTY__BACKUP_KEEP_WEEKLY = "storage.backup.keep_weekly";
+    private static final String PROPERTY__BACKUP_KEEP_MONTHLY = "storage.backup.keep_monthly";
+    private static final String FORMAT__BINARY = "binary";
+
     private AppProperties properties;
-    private File saveFile;
+    private final Path homeDir;
+    private final Path saveFilePath;
+    private final GenerationalFile saveFile;
+    private final PlayerShards playerShards;
     private final Gson gson;
+    private final LoopDataMigrator migrator = new LoopDataMigrator();
     private final String jsonIndent;
+    private final boolean writeBinary;
+    private final Duration backupInterval;
+    private final Executor backupExecutor;
+    /*
+     * Held while the files are written and while they are snapshotted for a backup, so that a backup does not mix
+     * files of different saves.
+     */
+    private final Object filesLock = new Object();
+    private BackupStore backupStore;
+    private CompletableFuture<Void> backup = CompletableFuture.completedFuture(null);
 
 
     public LoopRepository(AppProperties properties, Gson gson) {
+        this(properties, gson, Paths.get(properties.get("app.home")));
+    }
+
+    /**
+     * Repository for the data of the installation in the given directory, instead of the one of this app.
+     */
+    public LoopRepository(AppProperties properties, Gson gson, Path homeDir) {
+        this(properties, gson, homeDir, Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "loop-data-backup");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @param backupExecutor executor where the backups run, so that they do not delay the saves.
+     */
+    public LoopRepository(AppProperties properties, Gson gson, Path homeDir, Executor backupExecutor) {
         this.properties = properties;
         this.gson = gson;
-        saveFile = Paths.get(properties.get("app.home")).resolve(properties.get("storage.file")).toFile();
+        this.homeDir = homeDir;
+        saveFilePath = homeDir.resolve(properties.get("storage.file"));
+        saveFile = new GenerationalFile(saveFilePath, properties.getInt(PROPERTY__BACKUP_GENERATIONS));
+        writeBinary = FORMAT__BINARY.equalsIgnoreCase(properties.get(PROPERTY__WRITE_FORMAT));
+        backupInterval = Duration.ofMinutes(properties.getInt(PROPERTY__BACKUP_INTERVAL_MINUTES));
+        this.backupExecutor = backupExecutor;
+        playerShards = new PlayerShards(
+                homeDir.resolve(properties.get(PROPERTY__PLAYER_SHARDS_DIR)),
+                properties.getInt(PROPERTY__PLAYER_SHARDS_COUNT), Runtime.getRuntime().availableProcessors(),
+                properties.getInt(PROPERTY__BACKUP_GENERATIONS), this::createInputStream, this::createOutputStream);
 
         if (properties.getBoolean(PROPERTY__WRITE_ENCRYPTED)) {
             jsonIndent = "";
@@ -60,111 +124,333 @@ public class LoopRepository {
         }
     }
 
+    /**
+     * @return whether there is a data file.
+     */
+    public boolean exists() {
+        return saveFile.exists();
+    }
+
     public LoopData load() throws IOException {
-        log.info("Loading data...");
+        Instant loadStartTime = Instant.now();
         LoopData loopData;
 
-        try {
-            Instant loadStartTime = Instant.now();
-            Cipher cipher = getCipher(true);
-            JsonReader reader = createJsonReader(saveFile, cipher);
-            loopData = gson.fromJson(reader, LoopData.class);
-            reader.close();
-            Duration elapsed = Duration.between(loadStartTime, Instant.now());
-            log.info("Loaded data ({} players; {} matches) in {} ms.",
-                    loopData.getPlayers().size(),
-                    loopData.getMatchLog().matchCount(),
-                    elapsed.toMillis());
-
-        } catch (FileNotFoundException e1) {
-            throw e1;
-        } catch (Exception e2) {
-            throw new IOException("Failed to load data. File corrupt?", e2);
+        try (TieredLoad load = loadTiered()) {
+            loopData = load.getData();
+            load.readPlayers(loopData.getPlayers()::add);
         }
+        Duration elapsed = Duration.between(loadStartTime, Instant.now());
+        log.info("Loaded data ({} players; {} matches) in {} ms.",
+                loopData.getPlayers().size(),
+                loopData.getMatchLog().matchCount(),
+                elapsed.toMillis());
 
         return loopData;
     }
 
+    /**
+     * Loads everything but the players, which are left to be read from the returned object: first the ones in the
+     * data file, then the ones in the player shards.
+     * Files in the JSON format are read at once, since players come first in them.
+     */
+    public TieredLoad loadTiered() throws IOException {
+        log.info("Loading data...");
+        Instant loadStartTime = Instant.now();
+        TieredLoad load = saveFile.open(this::openData);
+        Duration elapsed = Duration.between(loadStartTime, Instant.now());
+        log.info("Loaded stats ({} matches) in {} ms.", load.getData().getMatchLog().matchCount(), elapsed.toMillis());
+
+        return load.withMorePlayers(playerShards::read);
+    }
+
+    /**
+     * Reads the data in either of the storage formats. Files in the JSON format are converted to the binary format
+     * (when enabled) on the next save, and migrated to the current version while they are read.
+     */
+    private TieredLoad openData(InputStream fileStream) throws IOException {
+        InputStream inputStream = new BufferedInputStream(createInputStream(fileStream));
+        try {
+            inputStream.mark(1);
+            int firstByte = inputStream.read();
+            if (firstByte < 0) {
+                throw new IOException("Failed to load data. File is empty.");
+            }
+            inputStream.reset();
+
+            if (LoopDataReader.isBinaryFormat(firstByte)) {
+                LoopDataReader reader = new LoopDataReader(inputStream);
+                migrator.checkBinaryVersion(reader.getDataVersion());
+                return new TieredLoad(reader.readUpToPlayers(), reader::readRemainingPlayers, inputStream);
+            }
+
+            int version = LoopDataMigrator.peekVersion(inputStream);
+            JsonReader reader = migrator.migrate(
+                    gson.newJsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)), version);
+            LoopData loopData = gson.fromJson(reader, LoopData.class);
+            inputStream.close();
+            if (loopData == null) {
+                throw new IOException("Failed to load data. File is empty.");
+            }
+            return TieredLoad.of(loopData);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        } catch (Exception e) {
+            inputStream.close();
+            throw new IOException("Failed to load data. File corrupt?", e);
+        }
+    }
+
     public void save(LoopData loopData) throws IOException {
-        log.debug("Saving data ({} players)...", loopData.getPlayers().size());
+        save(loopData, loopData.getPlayers());
+    }
+
+    /**
+     * Saves the data with the given players instead of its own ones.
+     * In the binary format, the players are written as they are iterated.
+     * <p>
+     * When the players are sharded, they are written to the shards before the data file, which is left without
+     * players. Otherwise, the shards are deleted once the players have been written to the data file.
+     * <p>
+     * The saved files are then backed up in the background, if the last backup is older than the backup interval.
+     * The files are not written while a backup is snapshotting them.
+     */
+    public void save(LoopData loopData, Iterable<Player> players) throws IOException {
+        save(loopData, players, null);
+    }
+
+    /**
+     * Like {@link #save(LoopData, Iterable)}, but only the player shards which hold any of the given players are
+     * rewritten (see {@link PlayerShards#write(Iterable, Collection)}).
+     *
+     * @param modifiedSteamIds the players modified since the last save or load, or null if unknown.
+     */
+    public void save(LoopData loopData, Iterable<Player> players, Collection<String> modifiedSteamIds)
+            throws IOException {
+        log.debug("Saving data...");
         Instant saveStartTime = Instant.now();
-        if (this.saveFile.exists()) {
-            FileUtil.saveFile(this.saveFile, "");
+        int[] playerCount = new int[1];
+        synchronized (filesLock) {
+            if (playerShards.isEnabled()) {
+                int shardedPlayers = playerShards.write(players, modifiedSteamIds);
+                writeDataFile(loopData, Collections.emptyList(), playerCount);
+                playerCount[0] = shardedPlayers;
+            } else {
+                writeDataFile(loopData, players, playerCount);
+                playerShards.deleteShardsFrom(0);
+            }
         }
-
-        JsonWriter writer = createJsonWriter();
-        writer.setIndent(jsonIndent);
-        gson.toJson(loopData, LoopData.class, writer);
-        writer.close();
         Duration elapsed = Duration.between(saveStartTime, Instant.now());
         log.debug("Saved data ({} players; {} matches) in {} ms.",
-                loopData.getPlayers().size(),
+                playerCount[0],
                 loopData.getMatchLog().matchCount(),
                 elapsed.toMillis());
+
+        scheduleBackup();
     }
 
+    private void writeDataFile(LoopData loopData, Iterable<Player> players, int[] playerCount) throws IOException {
+        saveFile.write(fileStream -> {
+            playerCount[0] = 0;
+            try (OutputStream outputStream = createOutputStream(fileStream)) {
+                if (writeBinary) {
+                    LoopDataWriter writer = new LoopDataWriter(outputStream, loopData.getVersion());
+                    writer.writeChangeLogSequence(loopData.getChangeLogSequence());
+                    writer.writeStats(loopData.getStats());
+                    writer.writeMatchLog(loopData.getMatchLog());
+                    writer.beginPlayers();
+                    for (Player player : players) {
+                        writer.writePlayer(player);
+                        playerCount[0]++;
+                    }
+                    writer.endSection();
+                    writer.finish();
+                } else {
+                    LoopData data = loopData;
+                    if (players != loopData.getPlayers()) {
+                        data = new LoopData(loopData.getStats(), loopData.getMatchLog(), Collections.emptyList());
+                        data.setChangeLogSequence(loopData.getChangeLogSequence());
+                        players.forEach(data.getPlayers()::add);
+                    }
+                    playerCount[0] = data.getPlayers().size();
+                    JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                    writer.setIndent(jsonIndent);
+                    gson.toJson(data, LoopData.class, writer);
+                    writer.flush();
+                }
+            }
+        });
+    }
 
-    private JsonReader createJsonReader(File file, Cipher cipher) throws IOException {
-        InputStream inputStream;
 
-        if (properties.getBoolean(PROPERTY__READ_ENCRYPTED)) {
-            CipherInputStream decStream;
-            FileInputStream fis = new FileInputStream(file);
+    /**
+     * @return the times of the backups, oldest first.
+     */
+    public List<LocalDateTime> listBackups() throws IOException {
+        return backupStore().list();
+    }
+
+    private synchronized BackupStore backupStore() throws IOException {
+        if (backupStore == null) {
+            backupStore = BackupStore.open(homeDir.resolve(properties.get(PROPERTY__BACKUP_DIR)),
+                    properties.getBoolean(PROPERTY__WRITE_ENCRYPTED));
+        }
+        return backupStore;
+    }
+
+    /**
+     * Starts a backup in the background, unless one is already in progress.
+     */
+    private synchronized void scheduleBackup() {
+        if (backupInterval.isZero() || backupInterval.isNegative()) {
+            return;
+        }
+        if (backup.isDone()) {
+            backup = CompletableFuture.runAsync(this::backUpIfDue, backupExecutor);
+        }
+    }
+
+    /**
+     * Backs up the data file and the player shards, decrypted and decompressed so that unchanged content is
+     * deduplicated, and deletes the backups which the retention policy does not keep. Failures are only logged:
+     * the data itself has been saved.
+     */
+    private void backUpIfDue() {
+        try {
+            BackupStore store = backupStore();
+            List<LocalDateTime> backups = store.list();
+            LocalDateTime now = LocalDateTime.now();
+            if (!backups.isEmpty() && backups.get(backups.size() - 1).plus(backupInterval).isAfter(now)) {
+                return;
+            }
+
+            Instant backupStartTime = Instant.now();
+            BackupStore.Report report;
+            // the snapshots are hard links where possible, so the saves are only held up for a moment
+            Path snapshotDir = Files.createTempDirectory(homeDir, "backup-");
             try {
-                decStream = new CipherInputStream(fis, cipher);
-            } catch (Exception e) {
-                log.error("Failed to create encrypted stream.", e);
-                throw new IOException(e.getMessage());
+                Map<String, BackupStore.ContentSource> files = new LinkedHashMap<>();
+                synchronized (filesLock) {
+                    if (saveFile.exists()) {
+                        files.put(backupName(saveFilePath), backupSource(saveFilePath, snapshotDir));
+                    }
+                    for (Path shard : playerShards.files()) {
+                        files.put(backupName(shard), backupSource(shard, snapshotDir));
+                    }
+                }
+                report = store.backup(now, files);
+            } finally {
+                deleteRecursively(snapshotDir);
             }
-            inputStream = new GZIPInputStream(decStream);
-        } else {
-            inputStream = new FileInputStream(file);
+            store.prune(new RetentionPolicy(properties.getInt(PROPERTY__BACKUP_KEEP_DAILY),
+                    properties.getInt(PROPERTY__BACKUP_KEEP_WEEKLY), properties.getInt(PROPERTY__BACKUP_KEEP_MONTHLY)));
+            Duration elapsed = Duration.between(backupStartTime, Instant.now());
+            log.info("Backed up data ({} files; {} KB; {} of {} chunks new; {} KB written) in {} ms.",
+                    report.getFiles(), report.getBytesRead() / 1024, report.getNewChunks(), report.getChunks(),
+                    report.getBytesWritten() / 1024, elapsed.toMillis());
+        } catch (IOException e) {
+            log.error("Failed to back up data.", e);
         }
+    }
+
+    /**
+     * @return the path of the file relative to the app home, which names it in the backups.
+     */
+    private String backupName(Path file) {
+        return homeDir.relativize(file).toString().replace('\\', '/');
+    }
 
-        return gson.newJsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    /**
+     * Snapshots the file into the given directory, so that it can be backed up without holding up the saves.
+     */
+    private BackupStore.ContentSource backupSource(Path file, Path snapshotDir) throws IOException {
+        GenerationalFile snapshot = new GenerationalFile(file, properties.getInt(PROPERTY__BACKUP_GENERATIONS))
+                .snapshotTo(snapshotDir.resolve(backupName(file)));
+        return outputStream -> snapshot.read(fileStream -> {
+            try (InputStream inputStream = createInputStream(fileStream)) {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = inputStream.read(buffer)) > 0) {
+                    outputStream.write(buffer, 0, n);
+                }
+            }
+            return null;
+        });
     }
 
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Failed to delete the backup snapshots in {}.", dir, e);
+        }
+    }
 
-    private JsonWriter createJsonWriter() throws IOException {
-        OutputStream outputStream;
+    /**
+     * Waits for the backup in progress, if any.
+     */
+    public void close() {
+        CompletableFuture<Void> lastBackup;
+        synchronized (this) {
+            lastBackup = backup;
+        }
+        try {
+            lastBackup.join();
+        } catch (CompletionException e) {
+            log.error("Failed to back up data.", e.getCause());
+        }
+    }
 
-        if (properties.getBoolean(PROPERTY__WRITE_ENCRYPTED)) {
-            Cipher cipher;
-            try {
-                cipher = getCipher(false);
-            } catch (Exception e) {
-                log.error("Failed to configure encryption.", e);
-                throw new IOException(e.getMessage());
+    /**
+     * Replaces the data file and the player shards with the ones in the backup made at the given time; their current
+     * content becomes their newest backup generation. The shards which are not in the backup are deleted.
+     * <p>
+     * Meant to be called before the data is loaded: the changes logged since the backup are not part of it.
+     */
+    public void restoreBackup(LocalDateTime time) throws IOException {
+        close();
+        BackupStore store = backupStore();
+        Set<Path> restoredFiles = new HashSet<>();
+        synchronized (filesLock) {
+            for (String name : store.files(time)) {
+                Path file = homeDir.resolve(name);
+                new GenerationalFile(file, properties.getInt(PROPERTY__BACKUP_GENERATIONS)).write(fileStream -> {
+                    try (OutputStream outputStream = createOutputStream(fileStream)) {
+                        store.restore(time, name, outputStream);
+                    }
+                });
+                restoredFiles.add(file);
             }
-            outputStream = new GZIPOutputStream(new CipherOutputStream(new FileOutputStream(saveFile), cipher));
-        } else {
-            outputStream = new FileOutputStream(this.saveFile.getAbsolutePath());
+            for (Path shard : playerShards.files()) {
+                if (!restoredFiles.contains(shard)) {
+                    new GenerationalFile(shard, properties.getInt(PROPERTY__BACKUP_GENERATIONS)).delete();
+                }
+            }
+            playerShards.forgetContent();
         }
-
-        return gson.newJsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        log.info("Restored the backup of {}.", time);
     }
 
 
     /**
-     * Builds the Cipher Object used for encryption/decryption.
-     *
-     * @param readMode The Cipher will be initiated in either encrypt/decrypt mode.
-     * @return Cipher argument, ready to go.
-     * @throws Exception Many possible issues can arise, so this is a catch-all.
+     * Files encrypted with DES or compressed as a single gzip stream by older versions are also read; they are
+     * converted on the next save.
      */
-    public static Cipher getCipher(boolean readMode) throws Exception {
+    private InputStream createInputStream(InputStream fileStream) throws IOException {
+        if (!properties.getBoolean(PROPERTY__READ_ENCRYPTED)) {
+            return fileStream;
+        }
+
+        return BlockGzipInputStream.open(StorageCipher.decryptingStream(fileStream));
+    }
 
-        DESKeySpec key = new DESKeySpec(CIPHER_KEY_MATERIAL);
-        SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("DES");
-        SecretKey desKey = keyFactory.generateSecret(key);
-        Cipher cipher = Cipher.getInstance("DES");
 
-        if (readMode) {
-            cipher.init(Cipher.DECRYPT_MODE, desKey);
-        } else {
-            cipher.init(Cipher.ENCRYPT_MODE, desKey);
+    private OutputStream createOutputStream(OutputStream fileStream) throws IOException {
+        if (!properties.getBoolean(PROPERTY__WRITE_ENCRYPTED)) {
+            return fileStream;
         }
-        return cipher;
+
+        return new BlockGzipOutputStream(StorageCipher.encryptingStream(fileStream));
     }
 
 }
@@ -0,0 +1,103 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Durable storage of the Loop data, written incrementally as a sequence of {@link DataChange}s.
+ * <p>
+ * Writes are called from a single thread at a time. Loads and queries may be called from any thread.
+ *
+ * @author NickyRamone
+ */
+public interface LoopStore extends Closeable {
+
+    /**
+     * Opens the stored data, creating it if there is none.
+     */
+    TieredLoad load() throws IOException;
+
+    /**
+     * Feeds the changes written after the loaded data, in order, to the given consumer.
+     *
+     * @param loadedData the data of the load the changes will be applied to.
+     * @return the number of changes read.
+     */
+    int replay(LoopData loadedData, Consumer<DataChange> consumer) throws IOException;
+
+    /**
+     * Writes changes, either all of them or none.
+     *
+     * @param force whether the changes must have reached the disk when returning. If not, they survive the app dying
+     *              but may be lost if the system does.
+     */
+    void write(List<DataChange> changes, boolean force) throws IOException;
+
+    /**
+     * @return true if a compaction would reduce what is read on load.
+     */
+    boolean needsCompaction();
+
+    /**
+     * Starts a compaction, so that the changes written from now on are kept apart from the compacted data.
+     * Must be called from the thread which writes the changes, right after writing the last ones included in the
+     * compacted data.
+     *
+     * @return the writer of the compacted data, which may run concurrently with later writes.
+     */
+    CompactionWriter startCompaction() throws IOException;
+
+    /**
+     * @return true if every match played is kept, so that they can be queried with
+     * {@link #findMatchesAgainst(String)}. Otherwise, only the matches in memory can be queried.
+     */
+    boolean keepsMatchHistory();
+
+    /**
+     * @return true if the stats of the periods which have ended are kept, so that they can be queried with
+     * {@link #findPeriodStats(Stats.Period, LocalDateTime)}. Otherwise, only the current periods can be queried.
+     */
+    boolean keepsPeriodHistory();
+
+    /**
+     * @return the matches played against the given killer player, from oldest to newest.
+     * @throws UnsupportedOperationException if the store does not keep the match history.
+     */
+    List<Match> findMatchesAgainst(String killerSteamId) throws IOException;
+
+    /**
+     * Feeds every match played, from oldest to newest, to the given consumer, without holding them all in memory.
+     *
+     * @return the number of matches.
+     * @throws UnsupportedOperationException if the store does not keep the match history.
+     */
+    long forEachMatch(Consumer<Match> consumer) throws IOException;
+
+    /**
+     * @return the stats of the period of the given type which included the given time, if they were kept.
+     * @throws UnsupportedOperationException if the store does not keep the period history.
+     */
+    Optional<PeriodStats> findPeriodStats(Stats.Period period, LocalDateTime time) throws IOException;
+
+
+    @FunctionalInterface
+    interface CompactionWriter {
+        /**
+         * @param data    the data, without the players.
+         * @param players the players. They may be replaced in the store while they are written.
+         */
+        void write(LoopData data, Iterable<Player> players) throws IOException;
+    }
+
+}
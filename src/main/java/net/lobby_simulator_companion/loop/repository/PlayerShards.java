@@ -0,0 +1,484 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataReader;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The players of the snapshot, split into a number of shard files by the hash of their Steam id, so that they can be
+ * read and written in parallel. Compressing and encrypting the data is what takes most of the time, and it is done
+ * for every shard on its own thread.
+ * <p>
+ * Every shard is a {@link GenerationalFile} holding the players in the binary format. The shards which hold none of
+ * the players modified since they were last read or written are not rewritten. Reading and writing hold only a
+ * bounded number of players in memory, however many there are.
+ * <p>
+ * Every shard file present is read, whatever the current number of shards: when the number changes, the players are
+ * split again on the next write, and the shards left over are deleted.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class PlayerShards {
+
+    @FunctionalInterface
+    public interface InputWrapper {
+        InputStream wrap(InputStream inputStream) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface OutputWrapper {
+        OutputStream wrap(OutputStream outputStream) throws IOException;
+    }
+
+    private static final Pattern SHARD_FILE_PATTERN = Pattern.compile("players-(\\d+)\\.dat");
+    private static final int UNKNOWN_COUNT = -1;
+    private static final int READ_BUFFER_PLAYERS = 1024;
+    private static final int WRITE_BUFFER_PLAYERS = 1024;
+    private static final Object END_OF_SHARD = new Object();
+    private static final long HANDOVER_POLL_MS = 100;
+    private static final long WRITER_KEEP_ALIVE_SECONDS = 30;
+
+    private final Path dir;
+    private final int shardCount;
+    private final int backupGenerations;
+    private final InputWrapper inputWrapper;
+    private final OutputWrapper outputWrapper;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final Executor writers;
+    /**
+     * Number of players in each shard, as last read or written, or {@link #UNKNOWN_COUNT} if its content is not known.
+     */
+    private final int[] playerCounts;
+
+
+    /**
+     * @param shardCount  number of shards to split the players into when writing. If 0, the players are not
+     *                    sharded, and writing deletes the shards.
+     * @param parallelism number of shards read at the same time.
+     */
+    public PlayerShards(Path dir, int shardCount, int parallelism, int backupGenerations, InputWrapper inputWrapper,
+                        OutputWrapper outputWrapper) {
+        this.dir = dir;
+        this.shardCount = shardCount;
+        this.backupGenerations = backupGenerations;
+        this.inputWrapper = inputWrapper;
+        this.outputWrapper = outputWrapper;
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+        AtomicInteger writerCount = new AtomicInteger();
+        ThreadPoolExecutor writerPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                WRITER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(), task -> {
+            Thread thread = new Thread(task, "player-shard-writer-" + writerCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writers = writerPool;
+        playerCounts = new int[shardCount];
+        Arrays.fill(playerCounts, UNKNOWN_COUNT);
+    }
+
+
+    public boolean isEnabled() {
+        return shardCount > 0;
+    }
+
+    static int shardOf(String steamId, int shardCount) {
+        int hash = steamId.hashCode();
+
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    private Path shardPath(int shard) {
+        return dir.resolve(String.format("players-%d.dat", shard));
+    }
+
+    private GenerationalFile shardFile(int shard) {
+        return new GenerationalFile(shardPath(shard), backupGenerations);
+    }
+
+    /**
+     * @return the shard files present.
+     */
+    public List<Path> files() throws IOException {
+        return listShards().stream().map(this::shardPath).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the indexes of the shard files present.
+     */
+    private List<Integer> listShards() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        List<Integer> shards = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                Matcher matcher = SHARD_FILE_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    shards.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        Collections.sort(shards);
+
+        return shards;
+    }
+
+
+    /**
+     * Reads the shards in parallel, feeding their players to the given consumer from the calling thread, one shard
+     * after the other.
+     * <p>
+     * At most {@code parallelism} shards are read at a time, and each of them hands its players over as they are
+     * decoded, through a buffer of {@link #READ_BUFFER_PLAYERS} players. So the players held in memory do not depend
+     * on how many there are.
+     *
+     * @return the number of players read.
+     */
+    public int read(Consumer<Player> consumer) throws IOException {
+        List<Integer> shards = listShards();
+        Deque<ShardReading> readings = new ArrayDeque<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        int nextShard = 0;
+        int count = 0;
+
+        try {
+            while (nextShard < shards.size() || !readings.isEmpty()) {
+                while (nextShard < shards.size() && readings.size() < parallelism) {
+                    ShardReading reading = new ShardReading(shards.get(nextShard++), abandoned);
+                    pool.execute(reading);
+                    readings.add(reading);
+                }
+                count += readings.poll().feed(consumer);
+            }
+        } finally {
+            // stops the readings still in progress if this one failed
+            abandoned.set(true);
+        }
+        if (shards.stream().anyMatch(shard -> shard >= shardCount || playerCounts[shard] == UNKNOWN_COUNT)) {
+            // the players were split into another number of shards
+            forgetContent();
+        }
+
+        return count;
+    }
+
+    private void readShard(int shard, Consumer<Player> consumer) throws IOException {
+        shardFile(shard).read(fileStream -> {
+            try (InputStream inputStream = inputWrapper.wrap(fileStream)) {
+                LoopDataReader reader = new LoopDataReader(inputStream);
+                LoopDataReader.Section section;
+                int count = 0;
+                boolean misplaced = false;
+                while ((section = reader.nextSection()) != LoopDataReader.Section.END) {
+                    if (section != LoopDataReader.Section.PLAYERS) {
+                        throw new IOException("Unexpected section in a player shard: " + section);
+                    }
+                    Player player;
+                    while ((player = reader.readPlayer()) != null) {
+                        misplaced |= shard >= shardCount || shardOf(player.getSteamId64(), shardCount) != shard;
+                        consumer.accept(player);
+                        count++;
+                    }
+                }
+                if (shard < shardCount) {
+                    playerCounts[shard] = misplaced ? UNKNOWN_COUNT : count;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Writes the players into every shard, and deletes the shards beyond the current number of them.
+     *
+     * @return the number of players written.
+     */
+    public int write(Iterable<Player> players) throws IOException {
+        return write(players, null);
+    }
+
+    /**
+     * Writes the players into the shards, and deletes the shards beyond the current number of them. Only the shards
+     * which hold any of the given players are rewritten, besides those whose content is not known from a previous
+     * read or write.
+     * <p>
+     * The players are gone through once, handing each of them over to the task writing its shard, through a buffer
+     * of {@link #WRITE_BUFFER_PLAYERS} players. Since every shard being written must take its players as they come,
+     * there is a task for each of them, on their own threads. The checksum of the content is computed while it is
+     * written, and is stored in the footer of the file ({@link GenerationalFile}).
+     *
+     * @param modifiedSteamIds the players modified since the shards were last read or written, or null if unknown,
+     *                         to rewrite every shard.
+     * @return the number of players in the shards.
+     */
+    public int write(Iterable<Player> players, Collection<String> modifiedSteamIds) throws IOException {
+        boolean[] rewritten = new boolean[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            rewritten[shard] = modifiedSteamIds == null || playerCounts[shard] == UNKNOWN_COUNT
+                    || !shardFile(shard).exists();
+        }
+        if (modifiedSteamIds != null) {
+            modifiedSteamIds.forEach(steamId -> rewritten[shardOf(steamId, shardCount)] = true);
+        }
+
+        Map<Integer, ShardWriting> writings = new LinkedHashMap<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        try {
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (rewritten[shard]) {
+                    ShardWriting writing = new ShardWriting(shard, abandoned);
+                    writing.future = CompletableFuture.runAsync(writing, writers);
+                    writings.put(shard, writing);
+                }
+            }
+            if (!writings.isEmpty()) {
+                for (Player player : players) {
+                    ShardWriting writing = writings.get(shardOf(player.getSteamId64(), shardCount));
+                    if (writing != null) {
+                        writing.handOver(player);
+                    }
+                }
+                for (ShardWriting writing : writings.values()) {
+                    writing.handOver(END_OF_SHARD);
+                }
+            }
+            for (ShardWriting writing : writings.values()) {
+                playerCounts[writing.shard] = writing.await();
+            }
+        } catch (IOException | RuntimeException e) {
+            // the shards not written completely are not replaced
+            abandoned.set(true);
+            for (ShardWriting writing : writings.values()) {
+                playerCounts[writing.shard] = UNKNOWN_COUNT;
+                writing.awaitQuietly();
+            }
+            throw e;
+        }
+        deleteShardsFrom(shardCount);
+        log.debug("Wrote {} of {} player shards.", writings.size(), shardCount);
+
+        return Arrays.stream(playerCounts).sum();
+    }
+
+    /**
+     * Deletes the shards from the given index on, including their backups.
+     */
+    public void deleteShardsFrom(int firstShard) throws IOException {
+        for (int shard : listShards()) {
+            if (shard >= firstShard) {
+                shardFile(shard).delete();
+            }
+        }
+    }
+
+    /**
+     * Forgets the content of the shards as last read or written, for when the files have been replaced by other
+     * means, so that every shard is rewritten on the next write.
+     */
+    void forgetContent() {
+        Arrays.fill(playerCounts, UNKNOWN_COUNT);
+    }
+
+
+    /**
+     * The writing of a shard, which takes its players as they are handed over by the thread going through them.
+     */
+    private final class ShardWriting implements Runnable {
+
+        private final int shard;
+        private final AtomicBoolean abandoned;
+        private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(WRITE_BUFFER_PLAYERS);
+        private CompletableFuture<Void> future;
+        private int count;
+
+
+        private ShardWriting(int shard, AtomicBoolean abandoned) {
+            this.shard = shard;
+            this.abandoned = abandoned;
+        }
+
+        @Override
+        public void run() {
+            try {
+                shardFile(shard).write(fileStream -> {
+                    try (OutputStream outputStream = outputWrapper.wrap(fileStream)) {
+                        LoopDataWriter writer = new LoopDataWriter(outputStream, LoopData.CURRENT_VERSION);
+                        writer.beginPlayers();
+                        Object item;
+                        while ((item = take()) != END_OF_SHARD) {
+                            writer.writePlayer((Player) item);
+                            count++;
+                        }
+                        writer.endSection();
+                        writer.finish();
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Object take() throws IOException {
+            try {
+                Object item;
+                while ((item = buffer.poll(HANDOVER_POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+                    if (abandoned.get()) {
+                        throw new IOException("The writing of the player shards was abandoned.");
+                    }
+                }
+                return item;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing a player shard.", e);
+            }
+        }
+
+        /**
+         * Waits for room in the buffer, unless the writing of the shard has failed.
+         */
+        void handOver(Object item) throws IOException {
+            try {
+                while (!buffer.offer(item, HANDOVER_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    if (future.isDone()) {
+                        await();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing player shards.", e);
+            }
+        }
+
+        /**
+         * @return the number of players written.
+         */
+        int await() throws IOException {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                throw new IOException("Failed to write player shard " + shard + ".", cause);
+            }
+            return count;
+        }
+
+        void awaitQuietly() {
+            try {
+                await();
+            } catch (IOException e) {
+                log.debug("Failed to write player shard {}.", shard, e);
+            }
+        }
+    }
+
+    /**
+     * The reading of a shard, which hands its players over to the thread feeding them to the consumer.
+     */
+    private final class ShardReading implements Runnable {
+
+        private final int shard;
+        private final AtomicBoolean abandoned;
+        private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(READ_BUFFER_PLAYERS);
+        private volatile Throwable failure;
+
+
+        private ShardReading(int shard, AtomicBoolean abandoned) {
+            this.shard = shard;
+            this.abandoned = abandoned;
+        }
+
+        @Override
+        public void run() {
+            try {
+                readShard(shard, this::handOver);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                handOver(END_OF_SHARD);
+            }
+        }
+
+        /**
+         * Waits for room in the buffer, unless the reading has been abandoned.
+         */
+        private void handOver(Object item) {
+            try {
+                while (!buffer.offer(item, HANDOVER_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    if (abandoned.get()) {
+                        throw new CancellationException("The reading of the player shards was abandoned.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while reading a player shard.");
+            }
+        }
+
+        /**
+         * @return the number of players fed to the consumer.
+         */
+        int feed(Consumer<Player> consumer) throws IOException {
+            int count = 0;
+            try {
+                Object item;
+                while ((item = buffer.take()) != END_OF_SHARD) {
+                    consumer.accept((Player) item);
+                    count++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading player shards.", e);
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw new IOException("Failed to read player shard " + shard + ".", failure);
+            }
+
+            return count;
+        }
+    }
+
+}
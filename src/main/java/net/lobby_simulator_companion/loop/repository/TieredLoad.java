@@ -0,0 +1,85 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Data being loaded in two tiers: the stats and the match log are available as soon as the load is opened
+ * (see {@link LoopStore#load()}), while the players, which make up most of the data, are read afterwards.
+ *
+ * @author NickyRamone
+ */
+@RequiredArgsConstructor
+public class TieredLoad implements Closeable {
+
+    @FunctionalInterface
+    public interface PlayerSource {
+        int readPlayers(Consumer<Player> consumer) throws IOException;
+    }
+
+    /**
+     * The data without the players.
+     */
+    @Getter
+    private final LoopData data;
+    private final PlayerSource playerSource;
+    private final Closeable resource;
+
+
+    /**
+     * @return a load of data which has already been read completely. Its players are moved to the load.
+     */
+    public static TieredLoad of(LoopData loopData) {
+        List<Player> players = new ArrayList<>(loopData.getPlayers());
+        loopData.getPlayers().clear();
+
+        return new TieredLoad(loopData, consumer -> {
+            players.forEach(consumer);
+            return players.size();
+        }, () -> {
+        });
+    }
+
+
+    /**
+     * @return a load which reads the given players after its own ones. This load is closed before reading them.
+     */
+    public TieredLoad withMorePlayers(PlayerSource morePlayers) {
+        return new TieredLoad(data, consumer -> {
+            int count;
+            try {
+                count = playerSource.readPlayers(consumer);
+            } finally {
+                resource.close();
+            }
+            return count + morePlayers.readPlayers(consumer);
+        }, resource);
+    }
+
+    /**
+     * Reads the players, feeding them to the given consumer as they are read, and closes the load.
+     *
+     * @return the number of players read.
+     */
+    public int readPlayers(Consumer<Player> consumer) throws IOException {
+        try {
+            return playerSource.readPlayers(consumer);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        resource.close();
+    }
+
+}
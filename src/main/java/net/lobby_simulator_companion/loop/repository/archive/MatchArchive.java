@@ -0,0 +1,426 @@
+package net.lobby_simulator_companion.loop.repository.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only archive of every match played, kept on disk in memory-mapped files.
+ * <p>
+ * The matches are stored as fixed-width records of {@link #RECORD_SIZE} bytes after a header, so the match at any
+ * index is found in constant time. The records file is mapped in chunks of {@link #CHUNK_RECORDS} records, which are
+ * never unmapped. A record holds:
+ * {@code [present fields: byte][escaped: byte][killer: short][realm map: short][unused: short]
+ * [lobbies found: int][seconds queued: int][seconds waited: int][seconds played: int]
+ * [start time: long epoch second, int nanos][unused: int][killer Steam id: long][killer DBD id: long]
+ * [unused: int][crc32 of the preceding bytes: int]}.
+ * <p>
+ * Strings do not fit fixed-width records, so they are appended to a strings file as
+ * {@code [length: int][UTF-8 bytes]}, and records hold their position in it plus one (0 for null). Killers and maps
+ * are stored as their index in a dictionary file holding the names of the constants, one per line, so that constants
+ * can be added to the enums without breaking the archive.
+ * <p>
+ * The header holds the number of records, which is updated after every append. Since the pages of a mapped file can
+ * reach the disk in any order, the records at the end are checked when opening the archive, and the ones which were
+ * not completely written are dropped.
+ * <p>
+ * Appends are serialized. Reads are not locked: a record is never modified once it is counted.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class MatchArchive implements Closeable {
+
+    private static final String RECORDS_FILE = "matches.arc";
+    private static final String STRINGS_FILE = "strings.dat";
+    private static final String NAMES_FILE = "names.txt";
+
+    /**
+     * "LMA1".
+     */
+    private static final int MAGIC = 0x4C4D4131;
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_COUNT_OFFSET = 8;
+    static final int RECORD_SIZE = 64;
+    static final int CHUNK_RECORDS = 1 << 14;
+    private static final int CHUNK_SIZE = CHUNK_RECORDS * RECORD_SIZE;
+    private static final int CRC_OFFSET = RECORD_SIZE - Integer.BYTES;
+    /**
+     * Number of records at the end which are checked when opening.
+     */
+    private static final int RECORDS_CHECKED = 64;
+
+    private static final int FIELD_LOBBIES_FOUND = 1;
+    private static final int FIELD_SECONDS_QUEUED = 1 << 1;
+    private static final int FIELD_SECONDS_WAITED = 1 << 2;
+    private static final int FIELD_SECONDS_PLAYED = 1 << 3;
+    private static final int FIELD_START_TIME = 1 << 4;
+    private static final int FIELD_ESCAPED = 1 << 5;
+    private static final int FIELD_KILLER = 1 << 6;
+    private static final int FIELD_REALM_MAP = 1 << 7;
+
+    private final FileChannel recordsChannel;
+    private final FileChannel stringsChannel;
+    private final NameDictionary names;
+    private final MappedByteBuffer header;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    private volatile long size;
+    private long stringsEnd;
+    private long firstUnforcedChunk = Long.MAX_VALUE;
+
+
+    private MatchArchive(FileChannel recordsChannel, FileChannel stringsChannel, NameDictionary names)
+            throws IOException {
+        this.recordsChannel = recordsChannel;
+        this.stringsChannel = stringsChannel;
+        this.names = names;
+        boolean created = recordsChannel.size() == 0;
+        header = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, RECORD_SIZE);
+            header.putLong(HEADER_COUNT_OFFSET, 0);
+            header.force();
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != RECORD_SIZE) {
+            throw new IOException("Not a match archive, or an unsupported version of it.");
+        }
+        stringsEnd = stringsChannel.size();
+        long count = header.getLong(HEADER_COUNT_OFFSET);
+        mapChunksFor(count);
+        size = dropIncompleteRecords(count);
+        if (size != count) {
+            header.putLong(HEADER_COUNT_OFFSET, size);
+        }
+    }
+
+    /**
+     * Opens the archive in the given directory, creating it if it does not exist.
+     */
+    public static MatchArchive open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        NameDictionary names = NameDictionary.open(dir.resolve(NAMES_FILE));
+        FileChannel recordsChannel = openFile(dir.resolve(RECORDS_FILE));
+        try {
+            FileChannel stringsChannel = openFile(dir.resolve(STRINGS_FILE));
+            try {
+                return new MatchArchive(recordsChannel, stringsChannel, names);
+            } catch (IOException e) {
+                stringsChannel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            recordsChannel.close();
+            throw e;
+        }
+    }
+
+    private static FileChannel openFile(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private long dropIncompleteRecords(long count) {
+        long firstChecked = Math.max(0, count - RECORDS_CHECKED);
+        for (long index = firstChecked; index < count; index++) {
+            if (!isComplete(index)) {
+                log.warn("Dropping {} incomplete records at the end of the match archive.", count - index);
+                return index;
+            }
+        }
+        return count;
+    }
+
+    private boolean isComplete(long index) {
+        ByteBuffer chunk = chunks[chunkIndex(index)];
+        int offset = recordOffset(index);
+        crc.reset();
+        for (int i = 0; i < CRC_OFFSET; i++) {
+            crc.update(chunk.get(offset + i));
+        }
+        return (int) crc.getValue() == chunk.getInt(offset + CRC_OFFSET)
+                && chunk.getLong(offset + 40) <= stringsEnd && chunk.getLong(offset + 48) <= stringsEnd;
+    }
+
+    private void mapChunksFor(long count) throws IOException {
+        int chunksNeeded = count == 0 ? 1 : chunkIndex(count - 1) + 1;
+        if (chunksNeeded <= chunks.length) {
+            return;
+        }
+        MappedByteBuffer[] newChunks = Arrays.copyOf(chunks, chunksNeeded);
+        for (int i = chunks.length; i < chunksNeeded; i++) {
+            newChunks[i] = recordsChannel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + (long) i * CHUNK_SIZE, CHUNK_SIZE);
+        }
+        chunks = newChunks;
+    }
+
+    private static int chunkIndex(long index) {
+        return (int) (index / CHUNK_RECORDS);
+    }
+
+    private static int recordOffset(long index) {
+        return (int) (index % CHUNK_RECORDS) * RECORD_SIZE;
+    }
+
+
+    /**
+     * @return the number of archived matches.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Appends a match. It is not forced to disk until {@link #force()} is called.
+     *
+     * @return the index of the match.
+     */
+    public synchronized long append(Match match) throws IOException {
+        long index = size;
+        mapChunksFor(index + 1);
+
+        int fields = 0;
+        record.clear();
+        record.position(8);
+        fields |= putInt(match.getLobbiesFound(), FIELD_LOBBIES_FOUND);
+        fields |= putInt(match.getSecondsQueued(), FIELD_SECONDS_QUEUED);
+        fields |= putInt(match.getSecondsWaited(), FIELD_SECONDS_WAITED);
+        fields |= putInt(match.getSecondsPlayed(), FIELD_SECONDS_PLAYED);
+        LocalDateTime startTime = match.getMatchStartTime();
+        if (startTime != null) {
+            fields |= FIELD_START_TIME;
+            record.putLong(startTime.toEpochSecond(ZoneOffset.UTC)).putInt(startTime.getNano());
+        } else {
+            record.putLong(0).putInt(0);
+        }
+        record.putInt(0);
+        record.putLong(appendString(match.getKillerPlayerSteamId64()));
+        record.putLong(appendString(match.getKillerPlayerDbdId()));
+        record.putInt(0);
+
+        fields |= match.getEscaped() != null ? FIELD_ESCAPED : 0;
+        fields |= match.getKiller() != null ? FIELD_KILLER : 0;
+        fields |= match.getRealmMap() != null ? FIELD_REALM_MAP : 0;
+        record.put(0, (byte) fields);
+        record.put(1, (byte) (Boolean.TRUE.equals(match.getEscaped()) ? 1 : 0));
+        record.putShort(2, match.getKiller() != null ? names.code(match.getKiller()) : 0);
+        record.putShort(4, match.getRealmMap() != null ? names.code(match.getRealmMap()) : 0);
+        record.putShort(6, (short) 0);
+        crc.reset();
+        crc.update(record.array(), 0, CRC_OFFSET);
+        record.putInt(CRC_OFFSET, (int) crc.getValue());
+
+        ByteBuffer chunk = chunks[chunkIndex(index)].duplicate();
+        chunk.position(recordOffset(index));
+        record.rewind();
+        chunk.put(record);
+        firstUnforcedChunk = Math.min(firstUnforcedChunk, chunkIndex(index));
+
+        header.putLong(HEADER_COUNT_OFFSET, index + 1);
+        size = index + 1;
+
+        return index;
+    }
+
+    private int putInt(Integer value, int field) {
+        record.putInt(value == null ? 0 : value);
+        return value == null ? 0 : field;
+    }
+
+    /**
+     * @return the position of the string in the strings file plus one, or 0 for null.
+     */
+    private long appendString(String value) throws IOException {
+        if (value == null) {
+            return 0;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        buffer.putInt(bytes.length).put(bytes).flip();
+        long position = stringsEnd;
+        while (buffer.hasRemaining()) {
+            stringsChannel.write(buffer, position + buffer.position());
+        }
+        stringsEnd += buffer.limit();
+
+        return position + 1;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if there is no match at the given index.
+     * @throws UncheckedIOException      if the strings of the match cannot be read.
+     */
+    public Match get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        ByteBuffer chunk = chunks[chunkIndex(index)];
+        int offset = recordOffset(index);
+        int fields = chunk.get(offset);
+
+        Match match = new Match();
+        match.setLobbiesFound(getInt(chunk, offset + 8, fields, FIELD_LOBBIES_FOUND));
+        match.setSecondsQueued(getInt(chunk, offset + 12, fields, FIELD_SECONDS_QUEUED));
+        match.setSecondsWaited(getInt(chunk, offset + 16, fields, FIELD_SECONDS_WAITED));
+        match.setSecondsPlayed(getInt(chunk, offset + 20, fields, FIELD_SECONDS_PLAYED));
+        if ((fields & FIELD_START_TIME) != 0) {
+            match.setMatchStartTime(LocalDateTime.ofEpochSecond(chunk.getLong(offset + 24),
+                    chunk.getInt(offset + 32), ZoneOffset.UTC));
+        }
+        if ((fields & FIELD_ESCAPED) != 0) {
+            match.setEscaped(chunk.get(offset + 1) != 0);
+        }
+        if ((fields & FIELD_KILLER) != 0) {
+            match.setKiller(names.constant(Killer.class, chunk.getShort(offset + 2)));
+        }
+        if ((fields & FIELD_REALM_MAP) != 0) {
+            match.setRealmMap(names.constant(RealmMap.class, chunk.getShort(offset + 4)));
+        }
+        match.setKillerPlayerSteamId64(readString(chunk.getLong(offset + 40)));
+        match.setKillerPlayerDbdId(readString(chunk.getLong(offset + 48)));
+
+        return match;
+    }
+
+    private static Integer getInt(ByteBuffer chunk, int position, int fields, int field) {
+        return (fields & field) != 0 ? chunk.getInt(position) : null;
+    }
+
+    private String readString(long reference) {
+        if (reference == 0) {
+            return null;
+        }
+        try {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(length, reference - 1);
+            ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+            readFully(bytes, reference - 1 + Integer.BYTES);
+
+            return new String(bytes.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (stringsChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated strings file in the match archive.");
+            }
+        }
+    }
+
+    /**
+     * @return the last archived matches (up to the given number of them), from oldest to newest.
+     */
+    public List<Match> tail(int count) {
+        long end = size;
+        List<Match> matches = new ArrayList<>();
+        for (long index = Math.max(0, end - count); index < end; index++) {
+            matches.add(get(index));
+        }
+        return matches;
+    }
+
+    /**
+     * Appends the given recent matches which are missing at the end of the archive, so that it catches up with the
+     * match log if some of its matches were not archived (for example, if the app died in between, or when the
+     * archive is created).
+     *
+     * @param recentMatches the latest matches, from oldest to newest.
+     * @return the number of matches appended.
+     */
+    public synchronized int appendMissing(Collection<Match> recentMatches) throws IOException {
+        List<Match> missing = missing(recentMatches);
+        for (Match match : missing) {
+            append(match);
+        }
+
+        return missing.size();
+    }
+
+    /**
+     * @param recentMatches the latest matches, from oldest to newest.
+     * @return the given matches which are missing at the end of the archive, from oldest to newest.
+     */
+    public synchronized List<Match> missing(Collection<Match> recentMatches) {
+        List<Match> recent = new ArrayList<>(recentMatches);
+        int start = 0;
+
+        if (size > 0 && !recent.isEmpty()) {
+            Match lastArchived = get(size - 1);
+            start = -1;
+            for (int i = recent.size() - 1; i >= 0 && start < 0; i--) {
+                if (recent.get(i).equals(lastArchived)) {
+                    start = i + 1;
+                }
+            }
+            if (start < 0) {
+                if (!isOlder(lastArchived, recent.get(0))) {
+                    // the archive is not behind the given matches
+                    return new ArrayList<>();
+                }
+                start = 0;
+            }
+        }
+
+        return recent.subList(start, recent.size());
+    }
+
+    private static boolean isOlder(Match match, Match other) {
+        return match.getMatchStartTime() != null && other.getMatchStartTime() != null
+                && match.getMatchStartTime().isBefore(other.getMatchStartTime());
+    }
+
+    /**
+     * Forces the matches appended so far to disk.
+     */
+    public synchronized void force() throws IOException {
+        if (firstUnforcedChunk == Long.MAX_VALUE) {
+            return;
+        }
+        stringsChannel.force(false);
+        MappedByteBuffer[] mapped = chunks;
+        for (int i = (int) firstUnforcedChunk; i < mapped.length; i++) {
+            mapped[i].force();
+        }
+        header.force();
+        firstUnforcedChunk = Long.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            force();
+        } finally {
+            try {
+                recordsChannel.close();
+            } finally {
+                stringsChannel.close();
+            }
+        }
+    }
+
+}
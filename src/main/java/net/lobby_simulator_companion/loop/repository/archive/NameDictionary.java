@@ -0,0 +1,91 @@
+package net.lobby_simulator_companion.loop.repository.archive;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codes of the enum constants stored in the match archive: the index of the line holding
+ * {@code <enum class>.<constant name>} in the dictionary file. Constants are added as they are first stored, and
+ * constants which no longer exist are read as null.
+ *
+ * @author NickyRamone
+ */
+final class NameDictionary {
+
+    private final Path file;
+    private final List<String> names;
+    private final Map<String, Short> codes = new HashMap<>();
+
+
+    private NameDictionary(Path file, List<String> names) {
+        this.file = file;
+        this.names = names;
+        for (int i = 0; i < names.size(); i++) {
+            codes.put(names.get(i), (short) i);
+        }
+    }
+
+    static NameDictionary open(Path file) throws IOException {
+        List<String> names = Files.exists(file)
+                ? new ArrayList<>(Files.readAllLines(file, StandardCharsets.UTF_8))
+                : new ArrayList<>();
+        names.removeIf(String::isEmpty);
+
+        return new NameDictionary(file, names);
+    }
+
+    /**
+     * @return the code of the given constant, adding it to the dictionary if it is not there yet.
+     */
+    synchronized short code(Enum<?> constant) throws IOException {
+        String name = key(constant.getDeclaringClass(), constant.name());
+        Short code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+        if (names.size() > Short.MAX_VALUE) {
+            throw new IOException("Too many names in the match archive dictionary.");
+        }
+
+        // written before being used, so that no record refers to a missing name
+        Files.write(file, Collections.singletonList(name), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        code = (short) names.size();
+        names.add(name);
+        codes.put(name, code);
+
+        return code;
+    }
+
+    /**
+     * @return the constant with the given code, or null if it is not a constant of the given enum.
+     */
+    synchronized <E extends Enum<E>> E constant(Class<E> enumClass, short code) {
+        if (code < 0 || code >= names.size()) {
+            return null;
+        }
+        String name = names.get(code);
+        String prefix = key(enumClass, "");
+        if (!name.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(enumClass, name.substring(prefix.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String key(Class<?> enumClass, String constantName) {
+        return enumClass.getSimpleName() + "." + constantName;
+    }
+
+}
@@ -0,0 +1,492 @@
+package net.lobby_simulator_companion.loop.repository.backup;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Content-addressed store of backups of a set of files.
+ * <p>
+ * The content of the files is split into content-defined chunks ({@link ChunkingOutputStream}), and each distinct
+ * chunk, identified by its SHA-256, is stored only once: a backup only writes the chunks which no other backup in the
+ * store already holds, so backing up data with small changes writes little more than the changed chunks.
+ * The content given is expected to be the plain data; the chunks are compressed, and then encrypted if enabled.
+ * <p>
+ * The new chunks of a backup are appended to a pack file of its own, {@code packs/<id>.pack}:
+ * {@code [magic: int][flags: byte]([length: int][chunk])*}, where the only flag tells whether the chunks are
+ * encrypted.
+ * The backup itself is a {@link Manifest} in {@code snapshots/<id>.snap} listing where the chunks of each file are.
+ * Both are written to temporary files, forced to disk and then renamed, the pack first, so a backup is either
+ * complete or not there at all.
+ * <p>
+ * Backups are deleted by {@link #prune(RetentionPolicy)}; a pack is deleted once no backup left uses any of its
+ * chunks.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class BackupStore {
+
+    @FunctionalInterface
+    public interface ContentSource {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    @Value
+    public static class Report {
+        String id;
+        int files;
+        long bytesRead;
+        int chunks;
+        int newChunks;
+        long bytesWritten;
+    }
+
+    private static final String PACKS_DIR = "packs";
+    private static final String SNAPSHOTS_DIR = "snapshots";
+    private static final String PACK_EXTENSION = ".pack";
+    private static final String SNAPSHOT_EXTENSION = ".snap";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final DateTimeFormatter ID_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    /**
+     * "LBP1".
+     */
+    private static final int PACK_MAGIC = 0x4C425031;
+    private static final int PACK_HEADER_SIZE = Integer.BYTES + 1;
+    private static final int FLAG_ENCRYPTED = 1;
+
+    private final Path packsDir;
+    private final Path snapshotsDir;
+    private final boolean encrypted;
+    private final Map<String, Manifest> manifests = new HashMap<>();
+    /**
+     * Where each chunk in the store is, by its hash.
+     */
+    private final Map<ByteBuffer, Manifest.ChunkRef> index = new HashMap<>();
+    private final MessageDigest digest;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final Inflater inflater = new Inflater();
+
+
+    private BackupStore(Path dir, boolean encrypted) throws IOException {
+        this.packsDir = dir.resolve(PACKS_DIR);
+        this.snapshotsDir = dir.resolve(SNAPSHOTS_DIR);
+        this.encrypted = encrypted;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available.", e);
+        }
+    }
+
+    /**
+     * Opens the store in the given directory, creating it if it does not exist. What was left by interrupted
+     * backups is deleted.
+     *
+     * @param encrypted whether to encrypt the chunks of new backups.
+     */
+    public static BackupStore open(Path dir, boolean encrypted) throws IOException {
+        BackupStore store = new BackupStore(dir, encrypted);
+        Files.createDirectories(store.packsDir);
+        Files.createDirectories(store.snapshotsDir);
+        store.loadManifests();
+        store.deleteUnusedPacks();
+
+        return store;
+    }
+
+    private void loadManifests() throws IOException {
+        for (Path file : list(snapshotsDir)) {
+            String fileName = file.getFileName().toString();
+            if (fileName.endsWith(TEMP_EXTENSION)) {
+                Files.delete(file);
+                continue;
+            }
+            if (!fileName.endsWith(SNAPSHOT_EXTENSION)) {
+                continue;
+            }
+            String id = fileName.substring(0, fileName.length() - SNAPSHOT_EXTENSION.length());
+            try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+                manifests.put(id, Manifest.read(id, inputStream));
+            } catch (IOException e) {
+                log.error("Failed to read backup {}. Ignoring it.", id, e);
+            }
+        }
+        rebuildIndex();
+    }
+
+    private void rebuildIndex() {
+        index.clear();
+        for (Manifest manifest : manifests.values()) {
+            for (Manifest.FileEntry file : manifest.getFiles()) {
+                for (Manifest.ChunkRef chunk : file.getChunks()) {
+                    index.putIfAbsent(ByteBuffer.wrap(chunk.getHash()), chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes freed.
+     */
+    private long deleteUnusedPacks() throws IOException {
+        Set<String> usedPacks = new HashSet<>();
+        manifests.values().forEach(manifest -> usedPacks.addAll(manifest.packs()));
+        long freed = 0;
+        for (Path file : list(packsDir)) {
+            String fileName = file.getFileName().toString();
+            boolean unused = fileName.endsWith(TEMP_EXTENSION) || fileName.endsWith(PACK_EXTENSION)
+                    && !usedPacks.contains(fileName.substring(0, fileName.length() - PACK_EXTENSION.length()));
+            if (unused) {
+                freed += Files.size(file);
+                Files.delete(file);
+            }
+        }
+
+        return freed;
+    }
+
+
+    /**
+     * @return the times of the backups, oldest first.
+     */
+    public synchronized List<LocalDateTime> list() {
+        return manifests.values().stream()
+                .map(Manifest::getTime)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the names of the files in the backup made at the given time.
+     */
+    public synchronized List<String> files(LocalDateTime time) throws IOException {
+        return manifest(time).getFiles().stream()
+                .map(Manifest.FileEntry::getName)
+                .collect(Collectors.toList());
+    }
+
+    private Manifest manifest(LocalDateTime time) throws FileNotFoundException {
+        Manifest manifest = manifests.get(idOf(time));
+        if (manifest == null) {
+            throw new FileNotFoundException("No backup at " + time);
+        }
+        return manifest;
+    }
+
+    private static String idOf(LocalDateTime time) {
+        return ID_FORMATTER.format(time);
+    }
+
+
+    /**
+     * Backs up the content of the given files, by name.
+     *
+     * @param time time of the backup, kept to the millisecond; it must not be the time of an existing one.
+     */
+    public synchronized Report backup(LocalDateTime time, Map<String, ContentSource> files) throws IOException {
+        time = time.truncatedTo(ChronoUnit.MILLIS);
+        String id = idOf(time);
+        if (manifests.containsKey(id)) {
+            throw new IOException("A backup already exists at " + time);
+        }
+        Path packFile = packsDir.resolve(id + PACK_EXTENSION);
+        Path tempPackFile = packsDir.resolve(id + PACK_EXTENSION + TEMP_EXTENSION);
+        Map<ByteBuffer, Manifest.ChunkRef> newChunks = new HashMap<>();
+        List<Manifest.FileEntry> fileEntries = new ArrayList<>();
+        long[] packSize = new long[1];
+
+        try (FileChannel packChannel = FileChannel.open(tempPackFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream packStream = new BufferedOutputStream(Channels.newOutputStream(packChannel), 64 * 1024);
+            ByteBuffer header = ByteBuffer.allocate(PACK_HEADER_SIZE);
+            header.putInt(PACK_MAGIC).put((byte) (encrypted ? FLAG_ENCRYPTED : 0));
+            packStream.write(header.array());
+            packSize[0] = PACK_HEADER_SIZE;
+
+            for (Map.Entry<String, ContentSource> file : files.entrySet()) {
+                List<Manifest.ChunkRef> chunks = new ArrayList<>();
+                ChunkingOutputStream chunker = new ChunkingOutputStream((chunk, length) -> {
+                    byte[] hash = hash(chunk, length);
+                    ByteBuffer key = ByteBuffer.wrap(hash);
+                    Manifest.ChunkRef ref = index.get(key);
+                    if (ref == null) {
+                        ref = newChunks.get(key);
+                    }
+                    if (ref == null) {
+                        byte[] stored = store(chunk, length);
+                        ref = new Manifest.ChunkRef(hash, id, packSize[0], stored.length, length);
+                        packStream.write(stored);
+                        packSize[0] += stored.length;
+                        newChunks.put(key, ref);
+                    }
+                    chunks.add(ref);
+                });
+                file.getValue().writeTo(chunker);
+                chunker.close();
+                fileEntries.add(new Manifest.FileEntry(file.getKey(), chunker.size(), chunks));
+            }
+            packStream.flush();
+            if (!newChunks.isEmpty()) {
+                packChannel.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPackFile);
+            throw e;
+        }
+
+        if (newChunks.isEmpty()) {
+            Files.delete(tempPackFile);
+            packSize[0] = 0;
+        } else {
+            move(tempPackFile, packFile);
+            syncDirectory(packsDir);
+        }
+
+        Manifest manifest = new Manifest(id, time, fileEntries);
+        try {
+            writeManifest(manifest);
+        } catch (IOException e) {
+            Files.deleteIfExists(packFile);
+            throw e;
+        }
+        manifests.put(id, manifest);
+        index.putAll(newChunks);
+
+        return new Report(id, fileEntries.size(),
+                fileEntries.stream().mapToLong(Manifest.FileEntry::getSize).sum(),
+                fileEntries.stream().mapToInt(file -> file.getChunks().size()).sum(),
+                newChunks.size(), packSize[0]);
+    }
+
+    private byte[] hash(byte[] chunk, int length) {
+        digest.reset();
+        digest.update(chunk, 0, length);
+        return digest.digest();
+    }
+
+    private byte[] store(byte[] chunk, int length) throws IOException {
+        deflater.reset();
+        deflater.setInput(chunk, 0, length);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        byte[] buffer = new byte[8 * 1024];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        byte[] content = compressed.toByteArray();
+        if (encrypted) {
+            content = StorageCipher.encrypt(content);
+        }
+
+        ByteBuffer stored = ByteBuffer.allocate(Integer.BYTES + content.length);
+        stored.putInt(content.length).put(content);
+        return stored.array();
+    }
+
+    private void writeManifest(Manifest manifest) throws IOException {
+        Path file = snapshotsDir.resolve(manifest.getId() + SNAPSHOT_EXTENSION);
+        Path tempFile = snapshotsDir.resolve(manifest.getId() + SNAPSHOT_EXTENSION + TEMP_EXTENSION);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel));
+            manifest.write(outputStream);
+            outputStream.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        move(tempFile, file);
+        syncDirectory(snapshotsDir);
+    }
+
+
+    /**
+     * Writes the content of a file in the backup made at the given time. Every chunk is checked against its hash.
+     */
+    public synchronized void restore(LocalDateTime time, String name, OutputStream outputStream)
+            throws IOException {
+        Manifest manifest = manifest(time);
+        Manifest.FileEntry file = manifest.file(name);
+        if (file == null) {
+            throw new FileNotFoundException("No file " + name + " in the backup at " + time);
+        }
+
+        try (PackReader packs = new PackReader()) {
+            for (Manifest.ChunkRef chunk : file.getChunks()) {
+                byte[] content = packs.read(chunk);
+                if (!Arrays.equals(hash(content, content.length), chunk.getHash())) {
+                    throw new IOException("Corrupt chunk in " + chunk.getPack() + PACK_EXTENSION);
+                }
+                outputStream.write(content);
+            }
+        }
+    }
+
+    /**
+     * Reads chunks, keeping the packs open until closed.
+     */
+    private class PackReader implements Closeable {
+
+        private final Map<String, FileChannel> channels = new HashMap<>();
+        private final Map<String, Boolean> encryptedPacks = new HashMap<>();
+
+        byte[] read(Manifest.ChunkRef chunk) throws IOException {
+            FileChannel channel = channel(chunk.getPack());
+            ByteBuffer stored = ByteBuffer.allocate(chunk.getStoredLength());
+            readFully(channel, stored, chunk.getOffset());
+            int length = stored.getInt();
+            if (length != chunk.getStoredLength() - Integer.BYTES) {
+                throw new IOException("Corrupt chunk in " + chunk.getPack() + PACK_EXTENSION);
+            }
+            byte[] content = Arrays.copyOfRange(stored.array(), Integer.BYTES, stored.capacity());
+            if (encryptedPacks.get(chunk.getPack())) {
+                content = StorageCipher.decrypt(content);
+            }
+
+            inflater.reset();
+            inflater.setInput(content);
+            byte[] plain = new byte[chunk.getLength()];
+            try {
+                int inflated = 0;
+                while (inflated < plain.length && !inflater.finished()) {
+                    int n = inflater.inflate(plain, inflated, plain.length - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != plain.length) {
+                    throw new IOException("Corrupt chunk in " + chunk.getPack() + PACK_EXTENSION);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt chunk in " + chunk.getPack() + PACK_EXTENSION, e);
+            }
+
+            return plain;
+        }
+
+        private FileChannel channel(String pack) throws IOException {
+            FileChannel channel = channels.get(pack);
+            if (channel == null) {
+                channel = FileChannel.open(packsDir.resolve(pack + PACK_EXTENSION), StandardOpenOption.READ);
+                channels.put(pack, channel);
+                ByteBuffer header = ByteBuffer.allocate(PACK_HEADER_SIZE);
+                readFully(channel, header, 0);
+                if (header.getInt() != PACK_MAGIC) {
+                    throw new IOException("Not a backup pack: " + pack);
+                }
+                encryptedPacks.put(pack, (header.get() & FLAG_ENCRYPTED) != 0);
+            }
+            return channel;
+        }
+
+        private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of backup pack.");
+                }
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (FileChannel channel : channels.values()) {
+                channel.close();
+            }
+        }
+    }
+
+
+    /**
+     * Deletes the backups which the policy does not keep, and the packs no longer used by the remaining ones.
+     *
+     * @return the number of backups deleted.
+     */
+    public synchronized int prune(RetentionPolicy policy) throws IOException {
+        Set<LocalDateTime> kept = policy.select(list());
+        List<Manifest> deleted = manifests.values().stream()
+                .filter(manifest -> !kept.contains(manifest.getTime()))
+                .sorted(Comparator.comparing(Manifest::getTime))
+                .collect(Collectors.toList());
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+
+        for (Manifest manifest : deleted) {
+            Files.deleteIfExists(snapshotsDir.resolve(manifest.getId() + SNAPSHOT_EXTENSION));
+            manifests.remove(manifest.getId());
+        }
+        syncDirectory(snapshotsDir);
+        rebuildIndex();
+        long freed = deleteUnusedPacks();
+        log.info("Deleted {} backups, freeing {} KB.", deleted.size(), freed / 1024);
+
+        return deleted.size();
+    }
+
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Makes the renames durable. Not supported on every platform (e.g., Windows), where it is skipped.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.trace("Cannot sync directory.", e);
+        }
+    }
+
+}
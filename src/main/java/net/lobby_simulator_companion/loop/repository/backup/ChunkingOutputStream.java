@@ -0,0 +1,97 @@
+package net.lobby_simulator_companion.loop.repository.backup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Splits the content written to it into content-defined chunks, which are passed to a consumer.
+ * <p>
+ * A chunk ends where a rolling "gear" hash of the last 64 bytes has its top {@link #MASK_BITS} bits unset, so the
+ * boundaries depend on the content around them rather than on their position: inserting or removing bytes only
+ * changes the chunks around the edit, and the boundaries after it fall in the same places again.
+ * Chunks are between {@link #MIN_SIZE} and {@link #MAX_SIZE} bytes, {@code MIN_SIZE + 2^MASK_BITS} on average.
+ *
+ * @author NickyRamone
+ */
+class ChunkingOutputStream extends OutputStream {
+
+    @FunctionalInterface
+    interface ChunkConsumer {
+        void accept(byte[] chunk, int length) throws IOException;
+    }
+
+    static final int MIN_SIZE = 4 * 1024;
+    static final int MAX_SIZE = 64 * 1024;
+    private static final int MASK_BITS = 13;
+    private static final long MASK = -1L << (Long.SIZE - MASK_BITS);
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // fixed seed: the boundaries must be the same on every run for the chunks to be deduplicated
+        Random random = new Random(0x4C4F4F50L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final ChunkConsumer consumer;
+    private final byte[] buffer = new byte[MAX_SIZE];
+    private int length;
+    private long hash;
+    private long size;
+
+
+    ChunkingOutputStream(ChunkConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+
+    /**
+     * @return the number of bytes written.
+     */
+    long size() {
+        return size;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[length++] = (byte) b;
+        hash = (hash << 1) + GEAR[b & 0xFF];
+        size++;
+        if (length >= MIN_SIZE && (hash & MASK) == 0 || length == MAX_SIZE) {
+            emit();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            byte value = b[i];
+            buffer[length++] = value;
+            hash = (hash << 1) + GEAR[value & 0xFF];
+            if (length >= MIN_SIZE && (hash & MASK) == 0 || length == MAX_SIZE) {
+                emit();
+            }
+        }
+        size += len;
+    }
+
+    private void emit() throws IOException {
+        consumer.accept(buffer, length);
+        length = 0;
+        hash = 0;
+    }
+
+    /**
+     * Passes the last chunk to the consumer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (length > 0) {
+            emit();
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package net.lobby_simulator_companion.loop.repository.backup;
+
+import lombok.Value;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The list of files in a backup, and of the chunks each file is made of:
+ * {@code [magic: int][time: long epoch millis, UTC][pack count: int]([pack id: UTF])*
+ * [file count: int]([name: UTF][size: long][chunk count: int]
+ * ([SHA-256: 32 bytes][pack index: int][offset: long][stored length: int][length: int])*)*[crc32: int]}.
+ *
+ * @author NickyRamone
+ */
+@Value
+class Manifest {
+
+    /**
+     * "LBS1".
+     */
+    private static final int MAGIC = 0x4C425331;
+    static final int HASH_SIZE = 32;
+
+    String id;
+    LocalDateTime time;
+    List<FileEntry> files;
+
+
+    @Value
+    static class FileEntry {
+        String name;
+        long size;
+        List<ChunkRef> chunks;
+    }
+
+    /**
+     * Where a chunk is stored: {@code storedLength} bytes at {@code offset} in a pack, which inflate to
+     * {@code length} bytes.
+     */
+    @Value
+    static class ChunkRef {
+        byte[] hash;
+        String pack;
+        long offset;
+        int storedLength;
+        int length;
+    }
+
+
+    FileEntry file(String name) {
+        return files.stream().filter(file -> file.getName().equals(name)).findFirst().orElse(null);
+    }
+
+    Set<String> packs() {
+        Set<String> packs = new LinkedHashSet<>();
+        files.forEach(file -> file.getChunks().forEach(chunk -> packs.add(chunk.getPack())));
+        return packs;
+    }
+
+
+    void write(OutputStream outputStream) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(outputStream, crc));
+        out.writeInt(MAGIC);
+        out.writeLong(time.toInstant(ZoneOffset.UTC).toEpochMilli());
+
+        Map<String, Integer> packIndexes = new HashMap<>();
+        Set<String> packs = packs();
+        out.writeInt(packs.size());
+        for (String pack : packs) {
+            packIndexes.put(pack, packIndexes.size());
+            out.writeUTF(pack);
+        }
+
+        out.writeInt(files.size());
+        for (FileEntry file : files) {
+            out.writeUTF(file.getName());
+            out.writeLong(file.getSize());
+            out.writeInt(file.getChunks().size());
+            for (ChunkRef chunk : file.getChunks()) {
+                out.write(chunk.getHash());
+                out.writeInt(packIndexes.get(chunk.getPack()));
+                out.writeLong(chunk.getOffset());
+                out.writeInt(chunk.getStoredLength());
+                out.writeInt(chunk.getLength());
+            }
+        }
+        out.flush();
+        new DataOutputStream(outputStream).writeInt((int) crc.getValue());
+    }
+
+    static Manifest read(String id, InputStream inputStream) throws IOException {
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(inputStream, crc));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a backup manifest: " + id);
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC);
+
+        String[] packs = new String[in.readInt()];
+        for (int i = 0; i < packs.length; i++) {
+            packs[i] = in.readUTF();
+        }
+
+        int fileCount = in.readInt();
+        List<FileEntry> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            String name = in.readUTF();
+            long size = in.readLong();
+            int chunkCount = in.readInt();
+            List<ChunkRef> chunks = new ArrayList<>(chunkCount);
+            for (int j = 0; j < chunkCount; j++) {
+                byte[] hash = new byte[HASH_SIZE];
+                in.readFully(hash);
+                int packIndex = in.readInt();
+                if (packIndex < 0 || packIndex >= packs.length) {
+                    throw new IOException("Corrupt backup manifest: " + id);
+                }
+                chunks.add(new ChunkRef(hash, packs[packIndex], in.readLong(), in.readInt(), in.readInt()));
+            }
+            files.add(new FileEntry(name, size, chunks));
+        }
+
+        int checksum = (int) crc.getValue();
+        if (new DataInputStream(inputStream).readInt() != checksum) {
+            throw new IOException("Checksum mismatch in backup manifest: " + id);
+        }
+
+        return new Manifest(id, time, files);
+    }
+
+}
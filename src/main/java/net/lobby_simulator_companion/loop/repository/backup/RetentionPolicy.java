@@ -0,0 +1,66 @@
+package net.lobby_simulator_companion.loop.repository.backup;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Which backups to keep: the newest one of each of the last {@code daily} days, {@code weekly} weeks and
+ * {@code monthly} months in which backups were made. The newest backup is always kept.
+ *
+ * @author NickyRamone
+ */
+@Value
+public class RetentionPolicy {
+
+    int daily;
+    int weekly;
+    int monthly;
+
+
+    /**
+     * @return the times, among the given ones, of the backups to keep.
+     */
+    public Set<LocalDateTime> select(Collection<LocalDateTime> times) {
+        List<LocalDateTime> newestFirst = times.stream()
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        Set<LocalDateTime> kept = new HashSet<>();
+        if (!newestFirst.isEmpty()) {
+            kept.add(newestFirst.get(0));
+        }
+        keepNewestPerPeriod(newestFirst, daily, LocalDateTime::toLocalDate, kept);
+        keepNewestPerPeriod(newestFirst, weekly,
+                time -> time.get(IsoFields.WEEK_BASED_YEAR) * 100 + time.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR),
+                kept);
+        keepNewestPerPeriod(newestFirst, monthly, YearMonth::from, kept);
+
+        return kept;
+    }
+
+    private static void keepNewestPerPeriod(List<LocalDateTime> newestFirst, int periods,
+                                            Function<LocalDateTime, Object> periodOf, Set<LocalDateTime> kept) {
+        Set<Object> periodsSeen = new HashSet<>();
+        for (LocalDateTime time : newestFirst) {
+            Object period = periodOf.apply(time);
+            if (periodsSeen.contains(period)) {
+                continue;
+            }
+            if (periodsSeen.size() == periods) {
+                break;
+            }
+            periodsSeen.add(period);
+            kept.add(time);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Constants of the binary storage format.
+ * <p>
+ * Layout:
+ * <pre>
+ * header:       [magic: int][format version: varint][data version: varint]
+ * dictionaries: for Killer, RealmMap and Player.Rating: [count: varint][constant name: string]...
+ * sections:     ([section tag: varint][section body])... [END tag]
+ * </pre>
+ * Enum values are written as an index into the dictionaries of the file (plus one, so that zero means null),
+ * which keeps them to a single byte and lets constants be added, removed or reordered without breaking old files.
+ * <p>
+ * Sections can come in any order, so that a file can be written as the data is streamed from another source.
+ * Sections with lists of entities (matches, players) have no count: every entity is preceded by a
+ * {@link #ENTRY_MARKER} and the list is terminated by a {@link #END_MARKER}.
+ * <p>
+ * The aggregated stats of the rolling groups of the match log are derived from its matches, but they are written
+ * too, along with a hash of the matches they were calculated from, so that they can be restored as they are
+ * (see {@link net.lobby_simulator_companion.loop.domain.MatchLog#restore}).
+ * <p>
+ * Strings which are likely to repeat (player names, killer ids in the match log) go through a string table which is
+ * built as the file is written: the first occurrence is written inline and the next ones as a reference to it.
+ *
+ * @author NickyRamone
+ */
+@UtilityClass
+class BinaryFormat {
+
+    /**
+     * "\u0089LPB". The first byte cannot be the start of a JSON document, so both formats can be told apart.
+     */
+    static final int MAGIC = 0x894C5042;
+    /**
+     * Version 2 added the rolling stats section.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    static final int SECTION_END = 0;
+    static final int SECTION_CHANGE_LOG_SEQUENCE = 1;
+    static final int SECTION_STATS = 2;
+    static final int SECTION_MATCH_LOG = 3;
+    static final int SECTION_PLAYERS = 4;
+    static final int SECTION_ROLLING_STATS = 5;
+
+    static final int END_MARKER = 0;
+    static final int ENTRY_MARKER = 1;
+
+    /**
+     * Maximum number of entries in the string table. Readers and writers stop adding strings when it is reached,
+     * so its memory use is bounded no matter how large the data is.
+     */
+    static final int MAX_STRING_TABLE_SIZE = 1 << 16;
+
+    // player field flags
+    static final int PLAYER_STEAM_ID_NUMERIC = 1;
+    static final int PLAYER_STEAM_ID_TEXT = 1 << 1;
+    static final int PLAYER_DBD_ID = 1 << 2;
+    static final int PLAYER_FIRST_SEEN = 1 << 3;
+    static final int PLAYER_LAST_SEEN = 1 << 4;
+    static final int PLAYER_DESCRIPTION = 1 << 5;
+    static final int PLAYER_NAMES = 1 << 6;
+
+    // match field flags
+    static final int MATCH_LOBBIES_FOUND = 1;
+    static final int MATCH_SECONDS_QUEUED = 1 << 1;
+    static final int MATCH_SECONDS_WAITED = 1 << 2;
+    static final int MATCH_SECONDS_PLAYED = 1 << 3;
+    static final int MATCH_START_TIME = 1 << 4;
+    static final int MATCH_ESCAPED = 1 << 5;
+    static final int MATCH_DIED = 1 << 6;
+    static final int MATCH_KILLER_STEAM_ID = 1 << 7;
+    static final int MATCH_KILLER_DBD_ID = 1 << 8;
+
+    // period stats field flags
+    static final int PERIOD_START = 1;
+    static final int PERIOD_END = 1 << 1;
+
+
+    /**
+     * @return whether the given id can be stored as a long and read back as exactly the same string.
+     */
+    static boolean isNumericId(String id) {
+        int length = id.length();
+        if (length == 0 || length > 18 || (id.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
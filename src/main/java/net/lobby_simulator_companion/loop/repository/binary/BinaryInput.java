@@ -0,0 +1,135 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Buffered reader of the primitive values written by {@link BinaryOutput}.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class BinaryInput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+
+    public BinaryInput(InputStream in) {
+        this.in = in;
+    }
+
+
+    public int readByte() throws IOException {
+        if (position == limit && !fill()) {
+            throw new EOFException();
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    public int readInt() throws IOException {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    public long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() throws IOException {
+        int length = readVarInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        if (length <= limit - position) {
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        byte[] bytes = new byte[length];
+        readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public LocalDateTime readDateTime() throws IOException {
+        return LocalDateTime.ofEpochSecond(readSignedVarLong(), readNano(), ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads a date-time written relative to the given one.
+     */
+    public LocalDateTime readDateTime(LocalDateTime base) throws IOException {
+        long epochSecond = base.toEpochSecond(ZoneOffset.UTC) + readSignedVarLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, readNano(), ZoneOffset.UTC);
+    }
+
+    private int readNano() throws IOException {
+        int nano = readVarInt();
+        if (nano < 0 || nano > 999_999_999) {
+            throw new IOException("Invalid nanoseconds: " + nano);
+        }
+        return nano;
+    }
+
+    public void readFully(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == limit && !fill()) {
+                throw new EOFException();
+            }
+            int n = Math.min(bytes.length - offset, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, n);
+            position += n;
+            offset += n;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+
+        return true;
+    }
+
+}
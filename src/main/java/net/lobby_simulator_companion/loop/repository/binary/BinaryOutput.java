@@ -0,0 +1,128 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Buffered writer of the primitive values used by the binary storage format.
+ * <p>
+ * Integers are written as varints (7 bits per byte, least significant group first), so that the small counters
+ * which make up most of the data take a single byte. Signed values which can be negative are zigzag-encoded first.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class BinaryOutput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+
+    public BinaryOutput(OutputStream out) {
+        this.out = out;
+    }
+
+
+    public void writeByte(int value) throws IOException {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureCapacity(Integer.BYTES);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeLong(long value) throws IOException {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    /**
+     * Writes an int as an unsigned varint. Negative values are valid, but always take 5 bytes.
+     */
+    public void writeVarInt(int value) throws IOException {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Writes a date-time as seconds since the epoch plus nanoseconds. Values with no fraction of a second (the
+     * most common ones) only take one byte for the nanoseconds.
+     */
+    public void writeDateTime(LocalDateTime value) throws IOException {
+        writeSignedVarLong(value.toEpochSecond(ZoneOffset.UTC));
+        writeVarInt(value.getNano());
+    }
+
+    /**
+     * Writes a date-time relative to another one, which takes fewer bytes when both are close.
+     */
+    public void writeDateTime(LocalDateTime value, LocalDateTime base) throws IOException {
+        writeSignedVarLong(value.toEpochSecond(ZoneOffset.UTC) - base.toEpochSecond(ZoneOffset.UTC));
+        writeVarInt(value.getNano());
+    }
+
+    public void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.RequiredArgsConstructor;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Converts data between the JSON and the binary storage formats.
+ * <p>
+ * Both directions are streamed: players and matches are converted one at a time, so the whole data never needs
+ * to be held in memory, and the aggregated stats of the match log are not recalculated.
+ *
+ * @author NickyRamone
+ */
+@RequiredArgsConstructor
+public class LoopDataJsonConverter {
+
+    private static final String FIELD_VERSION = "version";
+    private static final String FIELD_PLAYERS = "players";
+    private static final String FIELD_STATS = "stats";
+    private static final String FIELD_MATCH_LOG = "matchLog";
+    private static final String FIELD_MATCHES = "matches";
+    private static final String FIELD_CHANGE_LOG_SEQUENCE = "changeLogSequence";
+
+    /**
+     * Must be configured like the one used for storing the data (see
+     * {@link net.lobby_simulator_companion.loop.config.LoopGsonFactory}).
+     */
+    private final Gson gson;
+
+
+    public void jsonToBinary(Reader json, OutputStream binary) throws IOException {
+        JsonReader reader = gson.newJsonReader(json);
+        LoopDataWriter writer = null;
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+
+            if (FIELD_VERSION.equals(field) && writer == null) {
+                writer = new LoopDataWriter(binary, reader.nextInt());
+                continue;
+            }
+            if (writer == null) {
+                // the data is always written with its version first, so this is not expected
+                writer = new LoopDataWriter(binary, new LoopData().getVersion());
+            }
+
+            switch (field) {
+                case FIELD_PLAYERS:
+                    writer.beginPlayers();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        writer.writePlayer(gson.fromJson(reader, Player.class));
+                    }
+                    reader.endArray();
+                    writer.endSection();
+                    break;
+                case FIELD_STATS:
+                    writer.writeStats(gson.fromJson(reader, Stats.class));
+                    break;
+                case FIELD_MATCH_LOG:
+                    copyMatchLog(reader, writer);
+                    break;
+                case FIELD_CHANGE_LOG_SEQUENCE:
+                    writer.writeChangeLogSequence(reader.nextLong());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (writer == null) {
+            writer = new LoopDataWriter(binary, new LoopData().getVersion());
+        }
+        writer.finish();
+    }
+
+    private void copyMatchLog(JsonReader reader, LoopDataWriter writer) throws IOException {
+        writer.beginMatches();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (FIELD_MATCHES.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    writer.writeMatch(gson.fromJson(reader, Match.class));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        writer.endSection();
+    }
+
+
+    public void binaryToJson(InputStream binary, Writer json) throws IOException {
+        LoopDataReader reader = new LoopDataReader(binary);
+        JsonWriter writer = gson.newJsonWriter(json);
+        writer.beginObject();
+        writer.name(FIELD_VERSION).value(reader.getDataVersion());
+        LoopDataReader.Section section;
+
+        while ((section = reader.nextSection()) != LoopDataReader.Section.END) {
+            switch (section) {
+                case CHANGE_LOG_SEQUENCE:
+                    writer.name(FIELD_CHANGE_LOG_SEQUENCE).value(reader.readChangeLogSequence());
+                    break;
+                case STATS:
+                    writer.name(FIELD_STATS);
+                    gson.toJson(reader.readStats(), Stats.class, writer);
+                    break;
+                case MATCH_LOG:
+                    writer.name(FIELD_MATCH_LOG).beginObject().name(FIELD_MATCHES).beginArray();
+                    Match match;
+                    while ((match = reader.readMatch()) != null) {
+                        gson.toJson(match, Match.class, writer);
+                    }
+                    writer.endArray().endObject();
+                    break;
+                case ROLLING_STATS:
+                    // derived from the matches: the JSON format does not keep it
+                    reader.readRollingStats();
+                    break;
+                case PLAYERS:
+                    writer.name(FIELD_PLAYERS).beginArray();
+                    Player player;
+                    while ((player = reader.readPlayer()) != null) {
+                        gson.toJson(player, Player.class, writer);
+                    }
+                    writer.endArray();
+                    break;
+            }
+        }
+        writer.endObject();
+        writer.flush();
+    }
+
+}
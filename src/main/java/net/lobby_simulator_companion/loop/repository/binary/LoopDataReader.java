@@ -0,0 +1,432 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import lombok.Getter;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.AggregateStats;
+import net.lobby_simulator_companion.loop.domain.stats.KillerStats;
+import net.lobby_simulator_companion.loop.domain.stats.MapStats;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static net.lobby_simulator_companion.loop.repository.binary.BinaryFormat.*;
+
+/**
+ * Streaming reader of {@link LoopData} in the binary storage format (see {@link BinaryFormat}).
+ * <p>
+ * Either read a whole {@link LoopData} with {@link #read()}, or go through the sections with {@link #nextSection()}
+ * and read each one with the corresponding method. Players can be read one at a time with {@link #readPlayer()},
+ * without holding all of them in memory.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class LoopDataReader {
+
+    public enum Section {
+        CHANGE_LOG_SEQUENCE,
+        STATS,
+        MATCH_LOG,
+        ROLLING_STATS,
+        PLAYERS,
+        END
+    }
+
+    private final BinaryInput in;
+    @Getter
+    private final int dataVersion;
+    private final Killer[] killers;
+    private final RealmMap[] realmMaps;
+    private final Player.Rating[] ratings;
+    private final List<String> stringTable = new ArrayList<>();
+    private boolean playersPending;
+
+
+    public LoopDataReader(InputStream inputStream) throws IOException {
+        in = new BinaryInput(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary data file.");
+        }
+        int formatVersion = in.readVarInt();
+        if (formatVersion > FORMAT_VERSION) {
+            throw new IOException("Unsupported binary format version: " + formatVersion);
+        }
+        dataVersion = in.readVarInt();
+        killers = readDictionary(Killer.class);
+        realmMaps = readDictionary(RealmMap.class);
+        ratings = readDictionary(Player.Rating.class);
+    }
+
+    /**
+     * @return whether data starting with the given byte is in the binary format (as opposed to JSON).
+     */
+    public static boolean isBinaryFormat(int firstByte) {
+        return firstByte == MAGIC >>> 24;
+    }
+
+    /**
+     * Maps the constants of the file to the current constants. Constants which no longer exist are mapped to null.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Enum<T>> T[] readDictionary(Class<T> enumClass) throws IOException {
+        int size = in.readVarInt();
+        T[] dictionary = (T[]) Array.newInstance(enumClass, size + 1);
+        for (int i = 1; i <= size; i++) {
+            String name = in.readString();
+            try {
+                dictionary[i] = Enum.valueOf(enumClass, name);
+            } catch (IllegalArgumentException e) {
+                dictionary[i] = null;
+            }
+        }
+        return dictionary;
+    }
+
+
+    public LoopData read() throws IOException {
+        LoopData loopData = readUpToPlayers();
+        readRemainingPlayers(loopData.getPlayers()::add);
+
+        return loopData;
+    }
+
+    /**
+     * Reads all the data but the players, so that they can be read later with
+     * {@link #readRemainingPlayers(Consumer)}. If the players come before other sections (which is not how
+     * {@link LoopDataWriter#write(LoopData)} writes them), they are read too and included in the result.
+     */
+    public LoopData readUpToPlayers() throws IOException {
+        Long changeLogSequence = null;
+        Stats stats = null;
+        List<Match> matches = null;
+        MatchLog.Snapshot rollingStats = null;
+        List<Player> players = new ArrayList<>();
+        Section section;
+
+        while ((section = nextSection()) != Section.END) {
+            switch (section) {
+                case CHANGE_LOG_SEQUENCE:
+                    changeLogSequence = readChangeLogSequence();
+                    break;
+                case STATS:
+                    stats = readStats();
+                    break;
+                case MATCH_LOG:
+                    matches = readMatches();
+                    break;
+                case ROLLING_STATS:
+                    rollingStats = readRollingStats();
+                    break;
+                case PLAYERS:
+                    if (changeLogSequence != null && stats != null && matches != null) {
+                        playersPending = true;
+                        return newLoopData(changeLogSequence, stats, matches, rollingStats, players);
+                    }
+                    readPlayers(players::add);
+                    break;
+            }
+        }
+
+        return newLoopData(changeLogSequence, stats, matches, rollingStats, players);
+    }
+
+    /**
+     * Reads the players left by {@link #readUpToPlayers()}, if any.
+     *
+     * @return the number of players read.
+     */
+    public int readRemainingPlayers(Consumer<Player> consumer) throws IOException {
+        if (!playersPending) {
+            return 0;
+        }
+        playersPending = false;
+        int count = readPlayers(consumer);
+
+        Section section;
+        while ((section = nextSection()) != Section.END) {
+            if (section != Section.PLAYERS) {
+                throw new IOException("Unexpected section after the players: " + section);
+            }
+            count += readPlayers(consumer);
+        }
+
+        return count;
+    }
+
+    private int readPlayers(Consumer<Player> consumer) throws IOException {
+        int count = 0;
+        Player player;
+        while ((player = readPlayer()) != null) {
+            consumer.accept(player);
+            count++;
+        }
+
+        return count;
+    }
+
+    private static LoopData newLoopData(Long changeLogSequence, Stats stats, List<Match> matches,
+                                        MatchLog.Snapshot rollingStats, List<Player> players) {
+        LoopData loopData = new LoopData(stats != null ? stats : new Stats(),
+                matches != null ? MatchLog.restore(matches, rollingStats) : new MatchLog(), players);
+        loopData.setChangeLogSequence(changeLogSequence != null ? changeLogSequence : 0);
+
+        return loopData;
+    }
+
+    public Section nextSection() throws IOException {
+        int tag = in.readVarInt();
+        switch (tag) {
+            case SECTION_END:
+                return Section.END;
+            case SECTION_CHANGE_LOG_SEQUENCE:
+                return Section.CHANGE_LOG_SEQUENCE;
+            case SECTION_STATS:
+                return Section.STATS;
+            case SECTION_MATCH_LOG:
+                return Section.MATCH_LOG;
+            case SECTION_PLAYERS:
+                return Section.PLAYERS;
+            case SECTION_ROLLING_STATS:
+                return Section.ROLLING_STATS;
+            default:
+                throw new IOException("Unknown section: " + tag);
+        }
+    }
+
+    public long readChangeLogSequence() throws IOException {
+        return in.readVarLong();
+    }
+
+    public Stats readStats() throws IOException {
+        Stats stats = new Stats();
+        int periods = in.readVarInt();
+
+        for (int i = 0; i < periods; i++) {
+            readPeriodStats(stats, in.readString());
+        }
+
+        return stats;
+    }
+
+    private void readPeriodStats(Stats stats, String periodName) throws IOException {
+        Stats.Period period;
+        try {
+            period = Stats.Period.valueOf(periodName);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown stats period: " + periodName);
+        }
+        int flags = in.readVarInt();
+        LocalDateTime periodStart = (flags & PERIOD_START) != 0 ? in.readDateTime() : null;
+        LocalDateTime periodEnd = (flags & PERIOD_END) != 0 ? in.readDateTime() : null;
+        stats.get(period).restore(readAggregateStats(), periodStart, periodEnd);
+    }
+
+    private AggregateStats readAggregateStats() throws IOException {
+        AggregateStats stats = AggregateStats.builder()
+                .lobbiesFound(in.readVarInt())
+                .secondsQueued(in.readVarInt())
+                .secondsWaited(in.readVarInt())
+                .secondsPlayed(in.readVarInt())
+                .matchesPlayed(in.readVarInt())
+                .escapes(in.readVarInt())
+                .escapesInARow(in.readVarInt())
+                .maxEscapesInARow(in.readVarInt())
+                .deaths(in.readVarInt())
+                .deathsInARow(in.readVarInt())
+                .maxDeathsInARow(in.readVarInt())
+                .build();
+
+        int killerCount = in.readVarInt();
+        for (int i = 0; i < killerCount; i++) {
+            Killer killer = readEnum(killers);
+            KillerStats killerStats = KillerStats.builder()
+                    .matches(in.readVarInt())
+                    .escapes(in.readVarInt())
+                    .deaths(in.readVarInt())
+                    .matchTime(in.readVarInt())
+                    .build();
+            stats.getKillersStats().put(killer != null ? killer : Killer.UNIDENTIFIED, killerStats);
+        }
+
+        int mapCount = in.readVarInt();
+        for (int i = 0; i < mapCount; i++) {
+            RealmMap realmMap = readEnum(realmMaps);
+            MapStats mapStats = MapStats.builder()
+                    .matches(in.readVarInt())
+                    .escapes(in.readVarInt())
+                    .deaths(in.readVarInt())
+                    .matchTime(in.readVarInt())
+                    .build();
+            stats.getMapStats().put(realmMap != null ? realmMap : RealmMap.UNIDENTIFIED, mapStats);
+        }
+
+        return stats;
+    }
+
+    /**
+     * Reads the match log. The aggregated stats of the rolling groups are recalculated from the matches, since
+     * they come in a later section (see {@link #readRollingStats()}).
+     */
+    public MatchLog readMatchLog() throws IOException {
+        MatchLog matchLog = new MatchLog();
+        matchLog.addAll(readMatches());
+
+        return matchLog;
+    }
+
+    private List<Match> readMatches() throws IOException {
+        List<Match> matches = new ArrayList<>();
+        Match match;
+        while ((match = readMatch()) != null) {
+            matches.add(match);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Reads the snapshot of the rolling stats of the match log. The stats of groups which no longer exist are
+     * skipped.
+     */
+    public MatchLog.Snapshot readRollingStats() throws IOException {
+        long contentHash = in.readLong();
+        int groupCount = in.readVarInt();
+        Map<MatchLog.RollingGroup, AggregateStats> stats = new EnumMap<>(MatchLog.RollingGroup.class);
+
+        for (int i = 0; i < groupCount; i++) {
+            String groupName = in.readString();
+            AggregateStats groupStats = readAggregateStats();
+            try {
+                stats.put(MatchLog.RollingGroup.valueOf(groupName), groupStats);
+            } catch (IllegalArgumentException e) {
+                // no longer exists
+            }
+        }
+
+        return new MatchLog.Snapshot(contentHash, stats);
+    }
+
+    /**
+     * @return the next match in the current match log section, or null if there are no more.
+     */
+    public Match readMatch() throws IOException {
+        if (in.readVarInt() == END_MARKER) {
+            return null;
+        }
+        int flags = in.readVarInt();
+        Match match = new Match();
+        match.setLobbiesFound(readIfPresent(flags, MATCH_LOBBIES_FOUND));
+        match.setSecondsQueued(readIfPresent(flags, MATCH_SECONDS_QUEUED));
+        match.setSecondsWaited(readIfPresent(flags, MATCH_SECONDS_WAITED));
+        match.setSecondsPlayed(readIfPresent(flags, MATCH_SECONDS_PLAYED));
+        if ((flags & MATCH_START_TIME) != 0) {
+            match.setMatchStartTime(in.readDateTime());
+        }
+        if ((flags & (MATCH_ESCAPED | MATCH_DIED)) != 0) {
+            match.setEscaped((flags & MATCH_ESCAPED) != 0);
+        }
+        match.setKiller(readEnum(killers));
+        match.setRealmMap(readEnum(realmMaps));
+        if ((flags & MATCH_KILLER_STEAM_ID) != 0) {
+            match.setKillerPlayerSteamId64(readTableString());
+        }
+        if ((flags & MATCH_KILLER_DBD_ID) != 0) {
+            match.setKillerPlayerDbdId(readTableString());
+        }
+
+        return match;
+    }
+
+    /**
+     * @return the next player in the current players section, or null if there are no more.
+     */
+    public Player readPlayer() throws IOException {
+        if (in.readVarInt() == END_MARKER) {
+            return null;
+        }
+        int flags = in.readVarInt();
+        Player player = new Player();
+
+        if ((flags & PLAYER_STEAM_ID_NUMERIC) != 0) {
+            player.setSteamId64(String.valueOf(in.readLong()));
+        } else if ((flags & PLAYER_STEAM_ID_TEXT) != 0) {
+            player.setSteamId64(in.readString());
+        }
+        if ((flags & PLAYER_DBD_ID) != 0) {
+            player.setDbdPlayerId(in.readString());
+        }
+        player.setFirstSeen((flags & PLAYER_FIRST_SEEN) != 0 ? in.readDateTime() : null);
+        if ((flags & PLAYER_LAST_SEEN) == 0) {
+            player.setLastSeen(null);
+        } else if (player.getFirstSeen() != null) {
+            player.setLastSeen(in.readDateTime(player.getFirstSeen()));
+        } else {
+            player.setLastSeen(in.readDateTime());
+        }
+        player.setTimesEncountered(in.readVarInt());
+        player.setMatchesPlayed(in.readVarInt());
+        player.setSecondsPlayed(in.readVarInt());
+        player.setEscapes(in.readVarInt());
+        player.setDeaths(in.readVarInt());
+
+        if ((flags & PLAYER_NAMES) != 0) {
+            int nameCount = in.readVarInt();
+            List<String> names = new ArrayList<>(nameCount);
+            for (int i = 0; i < nameCount; i++) {
+                names.add(readTableString());
+            }
+            player.setNames(names);
+        } else {
+            player.setNames(null);
+        }
+        player.setRating(readEnum(ratings));
+        if ((flags & PLAYER_DESCRIPTION) != 0) {
+            player.setDescription(in.readString());
+        }
+
+        return player;
+    }
+
+
+    private Integer readIfPresent(int flags, int flag) throws IOException {
+        return (flags & flag) != 0 ? in.readVarInt() : null;
+    }
+
+    private <T extends Enum<T>> T readEnum(T[] dictionary) throws IOException {
+        int index = in.readVarInt();
+        if (index < 0 || index >= dictionary.length) {
+            throw new IOException("Invalid dictionary index: " + index);
+        }
+        return dictionary[index];
+    }
+
+    private String readTableString() throws IOException {
+        int reference = in.readVarInt();
+        if (reference > 0) {
+            if (reference > stringTable.size()) {
+                throw new IOException("Invalid string table reference: " + reference);
+            }
+            return stringTable.get(reference - 1);
+        }
+        String value = in.readString();
+        if (stringTable.size() < MAX_STRING_TABLE_SIZE) {
+            stringTable.add(value);
+        }
+
+        return value;
+    }
+
+}
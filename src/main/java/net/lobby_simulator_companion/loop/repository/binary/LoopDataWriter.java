@@ -0,0 +1,304 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.AggregateStats;
+import net.lobby_simulator_companion.loop.domain.stats.KillerStats;
+import net.lobby_simulator_companion.loop.domain.stats.MapStats;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.lobby_simulator_companion.loop.repository.binary.BinaryFormat.*;
+
+/**
+ * Streaming writer of {@link LoopData} in the binary storage format (see {@link BinaryFormat}).
+ * <p>
+ * Either write a whole {@link LoopData} with {@link #write(LoopData)}, or write it piece by piece: the sections in
+ * any order, the entities of the list sections between {@link #beginMatches()}/{@link #beginPlayers()} and
+ * {@link #endSection()}, and finally {@link #finish()}.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class LoopDataWriter {
+
+    private final BinaryOutput out;
+    private final Map<String, Integer> stringTable = new HashMap<>();
+    private boolean inListSection;
+
+
+    public LoopDataWriter(OutputStream outputStream, int dataVersion) throws IOException {
+        out = new BinaryOutput(outputStream);
+        out.writeInt(MAGIC);
+        out.writeVarInt(FORMAT_VERSION);
+        out.writeVarInt(dataVersion);
+        writeDictionary(Killer.values());
+        writeDictionary(RealmMap.values());
+        writeDictionary(Player.Rating.values());
+    }
+
+    private void writeDictionary(Enum<?>[] constants) throws IOException {
+        out.writeVarInt(constants.length);
+        for (Enum<?> constant : constants) {
+            out.writeString(constant.name());
+        }
+    }
+
+
+    public void write(LoopData loopData) throws IOException {
+        writeChangeLogSequence(loopData.getChangeLogSequence());
+        writeStats(loopData.getStats());
+        writeMatchLog(loopData.getMatchLog());
+        beginPlayers();
+        for (Player player : loopData.getPlayers()) {
+            writePlayer(player);
+        }
+        endSection();
+        finish();
+    }
+
+    public void writeChangeLogSequence(long changeLogSequence) throws IOException {
+        checkNotInListSection();
+        out.writeVarInt(SECTION_CHANGE_LOG_SEQUENCE);
+        out.writeVarLong(changeLogSequence);
+    }
+
+    public void writeStats(Stats stats) throws IOException {
+        checkNotInListSection();
+        out.writeVarInt(SECTION_STATS);
+        out.writeVarInt(Stats.Period.values().length);
+        for (Stats.Period period : Stats.Period.values()) {
+            out.writeString(period.name());
+            writePeriodStats(stats.get(period));
+        }
+    }
+
+    /**
+     * Writes the matches of the log, followed by a snapshot of its rolling stats.
+     */
+    public void writeMatchLog(MatchLog matchLog) throws IOException {
+        beginMatches();
+        for (Match match : matchLog.getMatches()) {
+            writeMatch(match);
+        }
+        endSection();
+        writeRollingStats(matchLog.snapshot());
+    }
+
+    public void writeRollingStats(MatchLog.Snapshot snapshot) throws IOException {
+        checkNotInListSection();
+        out.writeVarInt(SECTION_ROLLING_STATS);
+        out.writeLong(snapshot.getContentHash());
+        out.writeVarInt(snapshot.getStats().size());
+        for (Map.Entry<MatchLog.RollingGroup, AggregateStats> entry : snapshot.getStats().entrySet()) {
+            out.writeString(entry.getKey().name());
+            writeAggregateStats(entry.getValue());
+        }
+    }
+
+    public void beginMatches() throws IOException {
+        beginListSection(SECTION_MATCH_LOG);
+    }
+
+    public void beginPlayers() throws IOException {
+        beginListSection(SECTION_PLAYERS);
+    }
+
+    private void beginListSection(int section) throws IOException {
+        checkNotInListSection();
+        out.writeVarInt(section);
+        inListSection = true;
+    }
+
+    public void endSection() throws IOException {
+        if (!inListSection) {
+            throw new IllegalStateException("No list section has been started.");
+        }
+        out.writeVarInt(END_MARKER);
+        inListSection = false;
+    }
+
+    /**
+     * Ends the data and flushes it to the underlying stream, which is left open.
+     */
+    public void finish() throws IOException {
+        checkNotInListSection();
+        out.writeVarInt(SECTION_END);
+        out.flush();
+    }
+
+    private void checkNotInListSection() {
+        if (inListSection) {
+            throw new IllegalStateException("The current list section has not been ended.");
+        }
+    }
+
+
+    public void writeMatch(Match match) throws IOException {
+        out.writeVarInt(ENTRY_MARKER);
+        int flags = 0;
+        flags |= match.getLobbiesFound() != null ? MATCH_LOBBIES_FOUND : 0;
+        flags |= match.getSecondsQueued() != null ? MATCH_SECONDS_QUEUED : 0;
+        flags |= match.getSecondsWaited() != null ? MATCH_SECONDS_WAITED : 0;
+        flags |= match.getSecondsPlayed() != null ? MATCH_SECONDS_PLAYED : 0;
+        flags |= match.getMatchStartTime() != null ? MATCH_START_TIME : 0;
+        flags |= match.escaped() ? MATCH_ESCAPED : 0;
+        flags |= match.died() ? MATCH_DIED : 0;
+        flags |= match.getKillerPlayerSteamId64() != null ? MATCH_KILLER_STEAM_ID : 0;
+        flags |= match.getKillerPlayerDbdId() != null ? MATCH_KILLER_DBD_ID : 0;
+        out.writeVarInt(flags);
+
+        writeIfPresent(match.getLobbiesFound());
+        writeIfPresent(match.getSecondsQueued());
+        writeIfPresent(match.getSecondsWaited());
+        writeIfPresent(match.getSecondsPlayed());
+        if (match.getMatchStartTime() != null) {
+            out.writeDateTime(match.getMatchStartTime());
+        }
+        writeEnum(match.getKiller());
+        writeEnum(match.getRealmMap());
+        if (match.getKillerPlayerSteamId64() != null) {
+            writeTableString(match.getKillerPlayerSteamId64());
+        }
+        if (match.getKillerPlayerDbdId() != null) {
+            writeTableString(match.getKillerPlayerDbdId());
+        }
+    }
+
+    public void writePlayer(Player player) throws IOException {
+        out.writeVarInt(ENTRY_MARKER);
+        String steamId = player.getSteamId64();
+        boolean numericSteamId = steamId != null && isNumericId(steamId);
+        int flags = 0;
+        flags |= numericSteamId ? PLAYER_STEAM_ID_NUMERIC : 0;
+        flags |= steamId != null && !numericSteamId ? PLAYER_STEAM_ID_TEXT : 0;
+        flags |= player.getDbdPlayerId() != null ? PLAYER_DBD_ID : 0;
+        flags |= player.getFirstSeen() != null ? PLAYER_FIRST_SEEN : 0;
+        flags |= player.getLastSeen() != null ? PLAYER_LAST_SEEN : 0;
+        flags |= player.getDescription() != null ? PLAYER_DESCRIPTION : 0;
+        flags |= player.getNames() != null ? PLAYER_NAMES : 0;
+        out.writeVarInt(flags);
+
+        if (numericSteamId) {
+            out.writeLong(Long.parseLong(steamId));
+        } else if (steamId != null) {
+            out.writeString(steamId);
+        }
+        if (player.getDbdPlayerId() != null) {
+            out.writeString(player.getDbdPlayerId());
+        }
+        if (player.getFirstSeen() != null) {
+            out.writeDateTime(player.getFirstSeen());
+        }
+        if (player.getLastSeen() != null) {
+            if (player.getFirstSeen() != null) {
+                // usually much closer to the first sighting than to the epoch
+                out.writeDateTime(player.getLastSeen(), player.getFirstSeen());
+            } else {
+                out.writeDateTime(player.getLastSeen());
+            }
+        }
+        out.writeVarInt(player.getTimesEncountered());
+        out.writeVarInt(player.getMatchesPlayed());
+        out.writeVarInt(player.getSecondsPlayed());
+        out.writeVarInt(player.getEscapes());
+        out.writeVarInt(player.getDeaths());
+
+        List<String> names = player.getNames();
+        if (names != null) {
+            out.writeVarInt(names.size());
+            for (String name : names) {
+                writeTableString(name);
+            }
+        }
+        writeEnum(player.getRating());
+        if (player.getDescription() != null) {
+            out.writeString(player.getDescription());
+        }
+    }
+
+
+    private void writePeriodStats(PeriodStats stats) throws IOException {
+        int flags = 0;
+        flags |= stats.getPeriodStart() != null ? PERIOD_START : 0;
+        flags |= stats.getPeriodEnd() != null ? PERIOD_END : 0;
+        out.writeVarInt(flags);
+        if (stats.getPeriodStart() != null) {
+            out.writeDateTime(stats.getPeriodStart());
+        }
+        if (stats.getPeriodEnd() != null) {
+            out.writeDateTime(stats.getPeriodEnd());
+        }
+        writeAggregateStats(stats);
+    }
+
+    private void writeAggregateStats(AggregateStats stats) throws IOException {
+        out.writeVarInt(stats.getLobbiesFound());
+        out.writeVarInt(stats.getSecondsQueued());
+        out.writeVarInt(stats.getSecondsWaited());
+        out.writeVarInt(stats.getSecondsPlayed());
+        out.writeVarInt(stats.getMatchesPlayed());
+        out.writeVarInt(stats.getEscapes());
+        out.writeVarInt(stats.getEscapesInARow());
+        out.writeVarInt(stats.getMaxEscapesInARow());
+        out.writeVarInt(stats.getDeaths());
+        out.writeVarInt(stats.getDeathsInARow());
+        out.writeVarInt(stats.getMaxDeathsInARow());
+
+        out.writeVarInt(stats.getKillersStats().size());
+        for (Map.Entry<Killer, KillerStats> entry : stats.getKillersStats().entrySet()) {
+            KillerStats killerStats = entry.getValue();
+            writeEnum(entry.getKey());
+            writeCounters(killerStats.getMatches(), killerStats.getEscapes(), killerStats.getDeaths(),
+                    killerStats.getMatchTime());
+        }
+
+        out.writeVarInt(stats.getMapStats().size());
+        for (Map.Entry<RealmMap, MapStats> entry : stats.getMapStats().entrySet()) {
+            MapStats mapStats = entry.getValue();
+            writeEnum(entry.getKey());
+            writeCounters(mapStats.getMatches(), mapStats.getEscapes(), mapStats.getDeaths(), mapStats.getMatchTime());
+        }
+    }
+
+    private void writeCounters(int matches, int escapes, int deaths, int matchTime) throws IOException {
+        out.writeVarInt(matches);
+        out.writeVarInt(escapes);
+        out.writeVarInt(deaths);
+        out.writeVarInt(matchTime);
+    }
+
+    private void writeIfPresent(Integer value) throws IOException {
+        if (value != null) {
+            out.writeVarInt(value);
+        }
+    }
+
+    private void writeEnum(Enum<?> value) throws IOException {
+        out.writeVarInt(value == null ? 0 : value.ordinal() + 1);
+    }
+
+    private void writeTableString(String value) throws IOException {
+        Integer index = stringTable.get(value);
+        if (index != null) {
+            out.writeVarInt(index + 1);
+            return;
+        }
+        out.writeVarInt(0);
+        out.writeString(value);
+        if (stringTable.size() < MAX_STRING_TABLE_SIZE) {
+            stringTable.put(value, stringTable.size());
+        }
+    }
+
+}
@@ -0,0 +1,347 @@
+package net.lobby_simulator_companion.loop.repository.changelog;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to the stored data since the last full snapshot.
+ * <p>
+ * Saving only appends the changes made since the previous save, so its cost is proportional to what changed rather
+ * than to the size of the data. From time to time the data is compacted: the log is rolled to a new segment, a full
+ * snapshot is written (tagged with the sequence of the last segment it includes), and the segments covered by the
+ * snapshot are deleted. On load, the segments newer than the snapshot are replayed on top of it.
+ * <p>
+ * Every segment starts with a {@link #SEGMENT_MAGIC} header, followed by a sequence of records:
+ * {@code [payload length: int][crc32 of payload: int][payload]}, where the payload is a {@link DataChange} in JSON,
+ * encrypted with {@link StorageCipher} when encryption is enabled.
+ * Segments written by older versions have no header, and their records are encrypted with the legacy DES cipher.
+ * An incomplete, corrupt or undecodable record ends the segment it is found in: the records after it in that segment are not
+ * replayed, but those of the next segments are. Such a record is left if the app died while writing, or if an append
+ * failed and the segment could not be truncated back; in the latter case the segment is closed, so that the later
+ * changes go to a new one.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class ChangeLog {
+
+    static final String SEGMENT_PREFIX = "changes-";
+    static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    /**
+     * "LCL2". Far larger than any record length, so it cannot be mistaken for the start of a headerless segment.
+     */
+    static final int SEGMENT_MAGIC = 0x4C434C32;
+
+    private final Path logDir;
+    private final Gson gson;
+    private final boolean encrypted;
+    private final long compactionThresholdBytes;
+    private final SegmentOpener segmentOpener;
+    private final CRC32 crc = new CRC32();
+
+    private boolean initialized;
+    private FileChannel segment;
+    private long segmentSequence;
+    private long uncompactedBytes;
+
+
+    /**
+     * @param compactionThresholdBytes size of the log from which a compaction is recommended.
+     */
+    public ChangeLog(Path logDir, Gson gson, boolean encrypted, long compactionThresholdBytes) {
+        this(logDir, gson, encrypted, compactionThresholdBytes,
+                path -> FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
+
+    ChangeLog(Path logDir, Gson gson, boolean encrypted, long compactionThresholdBytes,
+              SegmentOpener segmentOpener) {
+        this.logDir = logDir;
+        this.gson = gson;
+        this.encrypted = encrypted;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+        this.segmentOpener = segmentOpener;
+    }
+
+
+    /**
+     * Feeds the changes recorded after the given segment, in order, to the given consumer.
+     *
+     * @param afterSequence sequence of the last segment included in the snapshot the changes will be applied to.
+     * @return the number of changes read.
+     */
+    public synchronized int replay(long afterSequence, Consumer<DataChange> consumer) throws IOException {
+        init();
+        int count = 0;
+
+        for (Path segmentPath : listSegments()) {
+            if (segmentSequence(segmentPath) > afterSequence) {
+                count += replaySegment(segmentPath, consumer);
+            }
+        }
+        if (count > 0) {
+            log.info("Replayed {} changes from the change log.", count);
+        }
+
+        return count;
+    }
+
+    private int replaySegment(Path segmentPath, Consumer<DataChange> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath));
+        boolean legacySegment = buffer.remaining() < Integer.BYTES || buffer.getInt(0) != SEGMENT_MAGIC;
+        if (!legacySegment) {
+            buffer.position(Integer.BYTES);
+        }
+        int count = 0;
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int payloadLength = buffer.getInt();
+            int checksum = buffer.getInt();
+
+            if (payloadLength <= 0 || payloadLength > buffer.remaining()) {
+                log.warn("Truncated record found in change log segment {} at offset {}.",
+                        segmentPath, buffer.position() - RECORD_HEADER_SIZE);
+                break;
+            }
+            byte[] payload = new byte[payloadLength];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload, 0, payloadLength);
+
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Corrupt record found in change log segment {} at offset {}.",
+                        segmentPath, buffer.position() - payloadLength - RECORD_HEADER_SIZE);
+                break;
+            }
+
+            DataChange change;
+            try {
+                byte[] json = payload;
+                if (encrypted) {
+                    json = legacySegment ? StorageCipher.decryptLegacy(payload) : StorageCipher.decrypt(payload);
+                }
+                change = gson.fromJson(new String(json, StandardCharsets.UTF_8), DataChange.class);
+            } catch (Exception e) {
+                change = null;
+                log.debug("Failed to decode change log record.", e);
+            }
+            if (change == null) {
+                log.warn("Undecodable record found in change log segment {} at offset {}.",
+                        segmentPath, buffer.position() - payloadLength - RECORD_HEADER_SIZE);
+                break;
+            }
+            consumer.accept(change);
+            count++;
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Appends the given changes and forces them to disk.
+     */
+    public void append(List<DataChange> changes) throws IOException {
+        append(changes, true);
+    }
+
+    /**
+     * Appends the given changes. If it fails, none of them is appended: whatever was written of them is truncated
+     * away, or the segment is closed if it cannot be.
+     *
+     * @param force whether to force them to disk. If not, they survive the app dying but may be lost if the system
+     *              does.
+     */
+    public synchronized void append(List<DataChange> changes, boolean force) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (segment == null) {
+            openNextSegment();
+        }
+        long startPosition = segment.position();
+        long startUncompactedBytes = uncompactedBytes;
+
+        try {
+            writeRecords(changes, force);
+        } catch (IOException | RuntimeException e) {
+            discardFrom(startPosition, startUncompactedBytes);
+            throw e;
+        }
+    }
+
+    private void writeRecords(List<DataChange> changes, boolean force) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        for (DataChange change : changes) {
+            byte[] payload = gson.toJson(change).getBytes(StandardCharsets.UTF_8);
+            if (encrypted) {
+                payload = StorageCipher.encrypt(payload);
+            }
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+
+            if (buffer.remaining() < RECORD_HEADER_SIZE + payload.length) {
+                writeFully(buffer);
+                buffer = ByteBuffer.allocate(Math.max(buffer.capacity(), RECORD_HEADER_SIZE + payload.length));
+            }
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(payload);
+        }
+        writeFully(buffer);
+        if (force) {
+            segment.force(false);
+        }
+    }
+
+    /**
+     * Removes the records partially written by a failed append, so that they do not hide the ones appended later.
+     */
+    private void discardFrom(long position, long previousUncompactedBytes) {
+        try {
+            segment.truncate(position);
+            segment.position(position);
+            uncompactedBytes = previousUncompactedBytes;
+        } catch (IOException e) {
+            log.error("Failed to truncate change log segment {}. Closing it.", segmentSequence, e);
+            try {
+                segment.close();
+            } catch (IOException closeError) {
+                log.error("Failed to close change log segment {}.", segmentSequence, closeError);
+            }
+            segment = null;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            uncompactedBytes += segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     * @return whether the log has grown enough to be worth compacting into a new snapshot.
+     */
+    public synchronized boolean needsCompaction() {
+        return uncompactedBytes >= compactionThresholdBytes;
+    }
+
+    /**
+     * Closes the current segment, so that later changes go to a new one.
+     * Must be called when capturing the data for a new snapshot.
+     *
+     * @return the sequence of the last segment whose changes are included in the captured data.
+     */
+    public synchronized long roll() throws IOException {
+        init();
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+        uncompactedBytes = 0;
+
+        return segmentSequence;
+    }
+
+    /**
+     * Deletes the segments which are already included in a snapshot.
+     */
+    public synchronized void deleteUpTo(long sequence) throws IOException {
+        for (Path segmentPath : listSegments()) {
+            if (segmentSequence(segmentPath) <= sequence) {
+                Files.delete(segmentPath);
+            }
+        }
+    }
+
+    /**
+     * Deletes every segment, when the data is restored from a snapshot older than them. An empty segment is left in
+     * their place, so that the sequence goes on from them: a segment numbered again from the start could be taken for
+     * one already included in the snapshot.
+     */
+    public synchronized void discard() throws IOException {
+        roll();
+        deleteUpTo(segmentSequence);
+        openNextSegment();
+        segment.close();
+        segment = null;
+        uncompactedBytes = 0;
+        log.info("Discarded the change log up to segment {}.", segmentSequence - 1);
+    }
+
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+
+
+    private void init() throws IOException {
+        if (!initialized) {
+            Files.createDirectories(logDir);
+            List<Path> segments = listSegments();
+            segmentSequence = segments.stream().mapToLong(ChangeLog::segmentSequence).max().orElse(0);
+            for (Path segmentPath : segments) {
+                uncompactedBytes += Files.size(segmentPath);
+            }
+            initialized = true;
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        init();
+        Path segmentPath = logDir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, ++segmentSequence, SEGMENT_SUFFIX));
+        segment = segmentOpener.open(segmentPath);
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(SEGMENT_MAGIC);
+        writeFully(header);
+        log.debug("Started change log segment: {}", segmentPath);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(logDir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(logDir)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentSequence(Path segmentPath) {
+        String fileName = segmentPath.getFileName().toString();
+
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+
+    /**
+     * Opens the file of a new segment for writing.
+     */
+    interface SegmentOpener {
+        FileChannel open(Path path) throws IOException;
+    }
+
+}
@@ -0,0 +1,59 @@
+package net.lobby_simulator_companion.loop.repository.changelog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single change to the stored data, as recorded in the {@link ChangeLog}.
+ * Only the fields relevant to the change type are set.
+ *
+ * @author NickyRamone
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataChange {
+
+    public enum Type {
+        /**
+         * A player was created or updated. The whole player is recorded.
+         */
+        PLAYER_UPSERT,
+
+        /**
+         * A match was played. Its stats are added to every period and to the match log.
+         */
+        MATCH_ADD,
+
+        /**
+         * The stats of a period were reset.
+         */
+        STATS_RESET
+    }
+
+    private Type type;
+    private Player player;
+    private Match match;
+    private Stats.Period period;
+    private LocalDateTime resetTime;
+
+
+    public static DataChange playerUpsert(Player player) {
+        return new DataChange(Type.PLAYER_UPSERT, player, null, null, null);
+    }
+
+    public static DataChange matchAdd(Match match) {
+        return new DataChange(Type.MATCH_ADD, null, match, null, null);
+    }
+
+    public static DataChange statsReset(Stats.Period period, LocalDateTime resetTime) {
+        return new DataChange(Type.STATS_RESET, null, null, period, resetTime);
+    }
+
+}
@@ -0,0 +1,187 @@
+package net.lobby_simulator_companion.loop.repository.compression;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-compressed gzip container, along the lines of BGZF.
+ * <p>
+ * The data is split into blocks of a fixed size (but the last one), and every block is compressed independently as
+ * a complete gzip member, so that blocks can be compressed and decompressed in parallel. Since concatenated members
+ * are valid gzip data, the container can still be decompressed by standard tools.
+ * <p>
+ * Every block member carries an extra field {@code ['L', 'B', 4, 0][member size: int]} (little-endian, as gzip),
+ * so that the members can be split without decompressing them. The container ends with an empty member whose extra
+ * field holds the index: {@code ['L', 'I', length][block size: int][block count: int][member size: int]...
+ * [index member size: int]}. Its size being the last field before the trailer of the member (an empty deflate block
+ * plus the CRC32 and size, {@link #INDEX_TAIL_SIZE} bytes in total), the index can be found from the end of the file.
+ * The index is left out when there are too many blocks to fit in an extra field.
+ *
+ * @author NickyRamone
+ */
+@UtilityClass
+class BlockGzipFormat {
+
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private static final int ID1 = 0x1F;
+    private static final int ID2 = 0x8B;
+    private static final int CM_DEFLATE = 8;
+    private static final int FLG_FEXTRA = 4;
+    private static final int OS_UNKNOWN = 255;
+
+    static final byte SI1 = 'L';
+    static final byte SI2_BLOCK = 'B';
+    static final byte SI2_INDEX = 'I';
+
+    /**
+     * Fixed part of the gzip header, plus the length of the extra field.
+     */
+    static final int FIXED_HEADER_SIZE = 12;
+    private static final int BLOCK_EXTRA_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = FIXED_HEADER_SIZE + BLOCK_EXTRA_SIZE;
+    private static final int TRAILER_SIZE = 8;
+    private static final byte[] EMPTY_DEFLATE_BLOCK = new byte[]{3, 0};
+    static final int INDEX_TAIL_SIZE = Integer.BYTES + EMPTY_DEFLATE_BLOCK.length + TRAILER_SIZE;
+    private static final int MAX_EXTRA_SIZE = 0xFFFF;
+    static final int MAX_INDEXED_BLOCKS = (MAX_EXTRA_SIZE - 4 - 3 * Integer.BYTES) / Integer.BYTES;
+
+
+    /**
+     * @return the block as a gzip member.
+     */
+    static byte[] compressBlock(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] member = new byte[BLOCK_HEADER_SIZE + length + (length >> 8) + 64];
+            int position = BLOCK_HEADER_SIZE;
+            while (!deflater.finished()) {
+                if (position == member.length - TRAILER_SIZE) {
+                    byte[] newMember = new byte[member.length * 2];
+                    System.arraycopy(member, 0, newMember, 0, position);
+                    member = newMember;
+                }
+                position += deflater.deflate(member, position, member.length - TRAILER_SIZE - position);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            int memberSize = position + TRAILER_SIZE;
+            ByteBuffer buffer = ByteBuffer.wrap(member).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(buffer, BLOCK_EXTRA_SIZE);
+            buffer.put(SI1).put(SI2_BLOCK).putShort((short) Integer.BYTES).putInt(memberSize);
+            buffer.position(position);
+            buffer.putInt((int) crc.getValue()).putInt(length);
+
+            return member.length == memberSize ? member : Arrays.copyOf(member, memberSize);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param compressedData the deflate data of a block member, followed by the member trailer.
+     * @return the data of the block.
+     */
+    static byte[] decompressBlock(byte[] compressedData) throws IOException {
+        if (compressedData.length < TRAILER_SIZE) {
+            throw new IOException("Truncated block.");
+        }
+        ByteBuffer trailer = ByteBuffer.wrap(compressedData, compressedData.length - TRAILER_SIZE, TRAILER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int expectedCrc = trailer.getInt();
+        int length = trailer.getInt();
+        if (length < 0 || length > MAX_BLOCK_SIZE) {
+            throw new IOException("Invalid block size: " + length);
+        }
+
+        byte[] data = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressedData, 0, compressedData.length - TRAILER_SIZE);
+            int position = 0;
+            while (position < length) {
+                int n = inflater.inflate(data, position, length - position);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated block.");
+                }
+                position += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block.", e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Corrupt block: checksum mismatch.");
+        }
+
+        return data;
+    }
+
+    /**
+     * @return the index member, or null if there are too many blocks to be indexed.
+     */
+    static byte[] indexMember(int blockSize, int[] memberSizes, int blockCount) {
+        if (blockCount > MAX_INDEXED_BLOCKS) {
+            return null;
+        }
+        int payloadSize = (3 + blockCount) * Integer.BYTES;
+        int extraSize = 4 + payloadSize;
+        int memberSize = FIXED_HEADER_SIZE + extraSize + EMPTY_DEFLATE_BLOCK.length + TRAILER_SIZE;
+
+        ByteBuffer buffer = ByteBuffer.allocate(memberSize).order(ByteOrder.LITTLE_ENDIAN);
+        putHeader(buffer, extraSize);
+        buffer.put(SI1).put(SI2_INDEX).putShort((short) payloadSize);
+        buffer.putInt(blockSize).putInt(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            buffer.putInt(memberSizes[i]);
+        }
+        buffer.putInt(memberSize);
+        buffer.put(EMPTY_DEFLATE_BLOCK);
+        buffer.putInt(0).putInt(0);
+
+        return buffer.array();
+    }
+
+    private static void putHeader(ByteBuffer buffer, int extraSize) {
+        buffer.put((byte) ID1).put((byte) ID2).put((byte) CM_DEFLATE).put((byte) FLG_FEXTRA);
+        buffer.putInt(0); // modification time: none
+        buffer.put((byte) 0).put((byte) OS_UNKNOWN);
+        buffer.putShort((short) extraSize);
+    }
+
+    /**
+     * @return the length of the extra field, if the given bytes are the fixed header of a member with an extra field.
+     * Otherwise, -1.
+     */
+    static int extraFieldSize(byte[] fixedHeader) {
+        boolean gzipWithExtra = (fixedHeader[0] & 0xFF) == ID1 && (fixedHeader[1] & 0xFF) == ID2
+                && fixedHeader[2] == CM_DEFLATE && fixedHeader[3] == FLG_FEXTRA;
+
+        return gzipWithExtra ? (fixedHeader[10] & 0xFF) | (fixedHeader[11] & 0xFF) << 8 : -1;
+    }
+
+    /**
+     * @return whether the given bytes are the start of a block member.
+     */
+    static boolean isBlockMember(byte[] header) {
+        return header.length >= BLOCK_HEADER_SIZE && extraFieldSize(header) >= BLOCK_EXTRA_SIZE
+                && header[FIXED_HEADER_SIZE] == SI1 && header[FIXED_HEADER_SIZE + 1] == SI2_BLOCK;
+    }
+
+}
@@ -0,0 +1,110 @@
+package net.lobby_simulator_companion.loop.repository.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Optional;
+
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.FIXED_HEADER_SIZE;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.INDEX_TAIL_SIZE;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.SI1;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.SI2_INDEX;
+
+/**
+ * Index of the blocks of a block-compressed gzip container (see {@link BlockGzipFormat}), for reading it from any
+ * block.
+ *
+ * @author NickyRamone
+ */
+public class BlockGzipIndex {
+
+    private final int blockSize;
+    private final long[] blockPositions;
+
+
+    private BlockGzipIndex(int blockSize, long[] blockPositions) {
+        this.blockSize = blockSize;
+        this.blockPositions = blockPositions;
+    }
+
+    /**
+     * Reads the index at the end of the container in the given channel.
+     *
+     * @return the index, or nothing if the container has no index (or the channel does not hold a container).
+     */
+    public static Optional<BlockGzipIndex> read(SeekableByteChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < FIXED_HEADER_SIZE + INDEX_TAIL_SIZE) {
+            return Optional.empty();
+        }
+        ByteBuffer tail = readFully(channel, size - INDEX_TAIL_SIZE, Integer.BYTES);
+        long memberSize = tail.getInt() & 0xFFFFFFFFL;
+        if (memberSize < FIXED_HEADER_SIZE + INDEX_TAIL_SIZE || memberSize > size) {
+            return Optional.empty();
+        }
+
+        ByteBuffer member = readFully(channel, size - memberSize, (int) memberSize);
+        byte[] fixedHeader = new byte[FIXED_HEADER_SIZE];
+        member.get(fixedHeader);
+        int extraSize = BlockGzipFormat.extraFieldSize(fixedHeader);
+        if (extraSize < 4 + 3 * Integer.BYTES || member.get() != SI1 || member.get() != SI2_INDEX) {
+            return Optional.empty();
+        }
+        member.getShort();
+        int blockSize = member.getInt();
+        int blockCount = member.getInt();
+        if (blockSize <= 0 || blockCount < 0 || blockCount > BlockGzipFormat.MAX_INDEXED_BLOCKS) {
+            throw new IOException("Corrupt block index.");
+        }
+
+        long[] blockPositions = new long[blockCount];
+        long position = 0;
+        for (int i = 0; i < blockCount; i++) {
+            blockPositions[i] = position;
+            position += member.getInt() & 0xFFFFFFFFL;
+        }
+        if (position != size - memberSize) {
+            throw new IOException("Corrupt block index: the blocks do not add up to the container size.");
+        }
+
+        return Optional.of(new BlockGzipIndex(blockSize, blockPositions));
+    }
+
+    private static ByteBuffer readFully(SeekableByteChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of the container.");
+            }
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+
+    public int getBlockCount() {
+        return blockPositions.length;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return the position in the container where the given block starts.
+     */
+    public long blockPosition(int block) {
+        return blockPositions[block];
+    }
+
+    /**
+     * @return the block holding the given position of the uncompressed data.
+     */
+    public int blockAt(long dataPosition) {
+        return (int) Math.min(dataPosition / blockSize, blockPositions.length - 1L);
+    }
+
+}
@@ -0,0 +1,198 @@
+package net.lobby_simulator_companion.loop.repository.compression;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.BLOCK_HEADER_SIZE;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.FIXED_HEADER_SIZE;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.SI1;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.SI2_BLOCK;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.SI2_INDEX;
+
+/**
+ * Stream which decompresses a block-compressed gzip container (see {@link BlockGzipFormat}), decompressing several
+ * blocks at a time in parallel while returning the data in order.
+ * <p>
+ * The stream can start at any block, not only at the start of the container (see {@link #openAt}).
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class BlockGzipInputStream extends InputStream {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final DataInputStream in;
+    private final Executor executor;
+    private final int maxPendingBlocks;
+    private final Deque<CompletableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block = NO_DATA;
+    private int position;
+    private boolean endOfMembers;
+
+
+    public BlockGzipInputStream(InputStream inputStream) {
+        this(inputStream, ForkJoinPool.commonPool(), 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param inputStream      a stream positioned at the start of a block.
+     * @param executor         executor where the blocks are decompressed.
+     * @param maxPendingBlocks maximum number of blocks being decompressed at a time.
+     */
+    public BlockGzipInputStream(InputStream inputStream, Executor executor, int maxPendingBlocks) {
+        this.in = new DataInputStream(inputStream);
+        this.executor = executor;
+        this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+    }
+
+    /**
+     * Opens a gzip stream, decompressing it in parallel when it is a block-compressed container.
+     * Other gzip streams (such as the ones written by older versions) are decompressed sequentially.
+     */
+    public static InputStream open(InputStream inputStream) throws IOException {
+        PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, BLOCK_HEADER_SIZE);
+        byte[] header = new byte[BLOCK_HEADER_SIZE];
+        int length = 0;
+        int n;
+        while (length < header.length && (n = pushbackStream.read(header, length, header.length - length)) > 0) {
+            length += n;
+        }
+        pushbackStream.unread(header, 0, length);
+
+        if (length == header.length && BlockGzipFormat.isBlockMember(header)) {
+            return new BlockGzipInputStream(pushbackStream);
+        }
+        return new GZIPInputStream(pushbackStream, GZIP_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the container in the given channel at the start of the given block.
+     * The channel is closed along with the stream.
+     */
+    public static BlockGzipInputStream openAt(SeekableByteChannel channel, BlockGzipIndex index, int block)
+            throws IOException {
+        channel.position(index.blockPosition(block));
+        return new BlockGzipInputStream(Channels.newInputStream(channel));
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int n = Math.min(length, block.length - position);
+        System.arraycopy(block, position, bytes, offset, n);
+        position += n;
+
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return block.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pendingBlocks.forEach(pendingBlock -> pendingBlock.cancel(false));
+        pendingBlocks.clear();
+        in.close();
+    }
+
+
+    /**
+     * @return false if the end of the data has been reached.
+     */
+    private boolean ensureData() throws IOException {
+        while (position == block.length) {
+            while (!endOfMembers && pendingBlocks.size() < maxPendingBlocks) {
+                submitNextBlock();
+            }
+            if (pendingBlocks.isEmpty()) {
+                return false;
+            }
+            try {
+                block = pendingBlocks.pollFirst().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException
+                        ? (IOException) e.getCause()
+                        : new IOException("Failed to decompress block.", e.getCause());
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    private void submitNextBlock() throws IOException {
+        byte[] fixedHeader = new byte[FIXED_HEADER_SIZE];
+        int first = in.read();
+        if (first < 0) {
+            endOfMembers = true;
+            return;
+        }
+        fixedHeader[0] = (byte) first;
+        in.readFully(fixedHeader, 1, FIXED_HEADER_SIZE - 1);
+
+        int extraSize = BlockGzipFormat.extraFieldSize(fixedHeader);
+        if (extraSize < 4) {
+            throw new IOException("Not a block-compressed gzip member.");
+        }
+        byte[] extra = new byte[extraSize];
+        in.readFully(extra);
+        ByteBuffer extraBuffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        byte si1 = extraBuffer.get();
+        byte si2 = extraBuffer.get();
+        int subfieldSize = extraBuffer.getShort() & 0xFFFF;
+
+        if (si1 == SI1 && si2 == SI2_BLOCK && subfieldSize == Integer.BYTES) {
+            int memberSize = extraBuffer.getInt();
+            int compressedSize = memberSize - FIXED_HEADER_SIZE - extraSize;
+            if (compressedSize <= 0) {
+                throw new IOException("Invalid block member size: " + memberSize);
+            }
+            byte[] compressedData = new byte[compressedSize];
+            in.readFully(compressedData);
+            pendingBlocks.addLast(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return BlockGzipFormat.decompressBlock(compressedData);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        } else if (si1 == SI1 && si2 == SI2_INDEX) {
+            // the index is the last member, and holds no data
+            endOfMembers = true;
+        } else {
+            throw new IOException("Not a block-compressed gzip member.");
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package net.lobby_simulator_companion.loop.repository.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.DEFAULT_BLOCK_SIZE;
+import static net.lobby_simulator_companion.loop.repository.compression.BlockGzipFormat.MAX_BLOCK_SIZE;
+
+/**
+ * Stream which compresses the data into a block-compressed gzip container (see {@link BlockGzipFormat}), compressing
+ * several blocks at a time in parallel.
+ * <p>
+ * The blocks are written in order as they are compressed. The number of blocks being compressed is bounded, so the
+ * memory used does not depend on the size of the data.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class BlockGzipOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final Executor executor;
+    private final int maxPendingBlocks;
+    private final int level;
+    private final Deque<CompletableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength;
+    private int[] memberSizes = new int[64];
+    private int blockCount;
+    private boolean closed;
+
+
+    public BlockGzipOutputStream(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool(),
+                2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param executor         executor where the blocks are compressed.
+     * @param maxPendingBlocks maximum number of blocks being compressed at a time.
+     */
+    public BlockGzipOutputStream(OutputStream outputStream, int blockSize, Executor executor, int maxPendingBlocks) {
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.out = outputStream;
+        this.executor = executor;
+        this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+        this.level = Deflater.DEFAULT_COMPRESSION;
+        this.block = new byte[blockSize];
+    }
+
+
+    @Override
+    public void write(int b) throws IOException {
+        if (blockLength == block.length) {
+            submitBlock();
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (blockLength == block.length) {
+                submitBlock();
+            }
+            int n = Math.min(length, block.length - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, n);
+            blockLength += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Writes the blocks which have been compressed so far and flushes the underlying stream.
+     * The current block is not ended, since all the blocks but the last must be full.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peekFirst().isDone()) {
+            writeBlock(pendingBlocks.pollFirst());
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the last block and the index, and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (blockLength > 0) {
+                submitBlock();
+            }
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.pollFirst());
+            }
+            byte[] indexMember = BlockGzipFormat.indexMember(block.length, memberSizes, blockCount);
+            if (indexMember != null) {
+                out.write(indexMember);
+            }
+            out.flush();
+        } finally {
+            pendingBlocks.forEach(pendingBlock -> pendingBlock.cancel(false));
+            out.close();
+        }
+    }
+
+
+    private void submitBlock() throws IOException {
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeBlock(pendingBlocks.pollFirst());
+        }
+        byte[] data = block;
+        int length = blockLength;
+        pendingBlocks.addLast(CompletableFuture.supplyAsync(
+                () -> BlockGzipFormat.compressBlock(data, length, level), executor));
+        // the full block now belongs to the compression task
+        block = new byte[data.length];
+        blockLength = 0;
+    }
+
+    private void writeBlock(CompletableFuture<byte[]> pendingBlock) throws IOException {
+        byte[] member;
+        try {
+            member = pendingBlock.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to compress block.", e.getCause());
+        }
+        out.write(member);
+
+        if (blockCount == memberSizes.length) {
+            memberSizes = Arrays.copyOf(memberSizes, blockCount * 2);
+        }
+        memberSizes[blockCount++] = member.length;
+    }
+
+}
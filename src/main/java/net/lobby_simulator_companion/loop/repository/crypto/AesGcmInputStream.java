@@ -0,0 +1,203 @@
+package net.lobby_simulator_companion.loop.repository.crypto;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static net.lobby_simulator_companion.loop.repository.crypto.AesGcmOutputStream.FORMAT_VERSION;
+import static net.lobby_simulator_companion.loop.repository.crypto.AesGcmOutputStream.LAST_CHUNK_FLAG;
+import static net.lobby_simulator_companion.loop.repository.crypto.AesGcmOutputStream.MAGIC;
+import static net.lobby_simulator_companion.loop.repository.crypto.AesGcmOutputStream.NONCE_PREFIX_SIZE;
+import static net.lobby_simulator_companion.loop.repository.crypto.StorageCipher.NONCE_SIZE;
+import static net.lobby_simulator_companion.loop.repository.crypto.StorageCipher.TAG_SIZE;
+
+/**
+ * Stream which decrypts the data written by {@link AesGcmOutputStream}.
+ * <p>
+ * Every chunk is authenticated before any of its data is returned. When decrypting in parallel, the chunks are read
+ * in batches and decrypted on the common fork-join pool, while the data keeps being returned in order.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class AesGcmInputStream extends InputStream {
+
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_BATCH_SIZE = 16;
+
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(StorageCipher.TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available.", e);
+        }
+    });
+
+    private final DataInputStream in;
+    private final byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+    private final byte[][] encryptedChunks;
+    private final byte[][] chunks;
+    private final int[] chunkLengths;
+    private final int[] chunkIndexes;
+    private final boolean[] lastChunks;
+
+    private int batchCount;
+    private int batchPosition;
+    private int position;
+    private int nextChunkIndex;
+    private boolean lastChunkRead;
+
+
+    public AesGcmInputStream(InputStream inputStream) throws IOException {
+        this(inputStream, Runtime.getRuntime().availableProcessors() > 1);
+    }
+
+    /**
+     * @param parallel whether to decrypt several chunks at a time in parallel.
+     */
+    public AesGcmInputStream(InputStream inputStream, boolean parallel) throws IOException {
+        in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an AES-GCM encrypted stream.");
+        }
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported encryption format version: " + version);
+        }
+        int chunkSize = in.readInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk size: " + chunkSize);
+        }
+        in.readFully(noncePrefix);
+
+        int batchSize = parallel ? Math.min(MAX_BATCH_SIZE, 2 * Runtime.getRuntime().availableProcessors()) : 1;
+        encryptedChunks = new byte[batchSize][chunkSize + TAG_SIZE];
+        chunks = new byte[batchSize][chunkSize];
+        chunkLengths = new int[batchSize];
+        chunkIndexes = new int[batchSize];
+        lastChunks = new boolean[batchSize];
+    }
+
+    static boolean isAesGcmStream(byte[] header) {
+        return header.length >= Integer.BYTES
+                && ((header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8
+                | (header[3] & 0xFF)) == MAGIC;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return chunks[batchPosition][position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int n = Math.min(length, chunkLengths[batchPosition] - position);
+        System.arraycopy(chunks[batchPosition], position, bytes, offset, n);
+        position += n;
+
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return batchPosition < batchCount ? chunkLengths[batchPosition] - position : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    /**
+     * @return false if the end of the data has been reached.
+     */
+    private boolean ensureData() throws IOException {
+        while (batchPosition == batchCount || position == chunkLengths[batchPosition]) {
+            if (batchPosition < batchCount) {
+                batchPosition++;
+                position = 0;
+            }
+            if (batchPosition == batchCount) {
+                if (lastChunkRead) {
+                    return false;
+                }
+                readBatch();
+            }
+        }
+        return true;
+    }
+
+    private void readBatch() throws IOException {
+        batchCount = 0;
+        batchPosition = 0;
+        position = 0;
+        while (batchCount < chunks.length && !lastChunkRead) {
+            int header;
+            try {
+                header = in.readInt();
+            } catch (EOFException e) {
+                throw new EOFException("Encrypted data is truncated.");
+            }
+            int length = header & ~LAST_CHUNK_FLAG;
+            if (length > chunks[batchCount].length) {
+                throw new IOException("Invalid chunk length: " + length);
+            }
+            in.readFully(encryptedChunks[batchCount], 0, length + TAG_SIZE);
+            chunkLengths[batchCount] = length;
+            chunkIndexes[batchCount] = nextChunkIndex++;
+            lastChunks[batchCount] = (header & LAST_CHUNK_FLAG) != 0;
+            lastChunkRead = lastChunks[batchCount];
+            batchCount++;
+        }
+
+        if (batchCount == 1) {
+            decryptChunk(0);
+            return;
+        }
+        try {
+            IntStream.range(0, batchCount).parallel().forEach(i -> {
+                try {
+                    decryptChunk(i);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void decryptChunk(int batchIndex) throws IOException {
+        byte[] nonce = Arrays.copyOf(noncePrefix, NONCE_SIZE);
+        AesGcmOutputStream.chunkNonce(nonce, chunkIndexes[batchIndex], lastChunks[batchIndex]);
+        Cipher cipher = CIPHERS.get();
+        try {
+            StorageCipher.initCipher(cipher, Cipher.DECRYPT_MODE, nonce);
+            cipher.doFinal(encryptedChunks[batchIndex], 0, chunkLengths[batchIndex] + TAG_SIZE,
+                    chunks[batchIndex], 0);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Chunk " + chunkIndexes[batchIndex] + " of the encrypted data is corrupt.", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to decrypt data.", e);
+        }
+    }
+
+}
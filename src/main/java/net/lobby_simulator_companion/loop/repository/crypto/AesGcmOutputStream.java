@@ -0,0 +1,144 @@
+package net.lobby_simulator_companion.loop.repository.crypto;
+
+import javax.crypto.Cipher;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+import static net.lobby_simulator_companion.loop.repository.crypto.StorageCipher.TAG_SIZE;
+
+/**
+ * Stream which encrypts the data in independent chunks with AES-GCM, so that it can be decrypted (and authenticated)
+ * as it is read, and in parallel.
+ * <p>
+ * Layout:
+ * <pre>
+ * header: [magic: int][format version: byte][chunk size: int][nonce prefix: 7 bytes]
+ * chunks: ([plaintext length: int, with the highest bit set on the last chunk][ciphertext][tag: 16 bytes])...
+ * </pre>
+ * The nonce of every chunk is {@code [nonce prefix][chunk index: int][1 if last chunk, 0 otherwise]}, so chunks
+ * cannot be reordered, and the data cannot be truncated at a chunk boundary, without failing authentication.
+ * The nonce prefix is random for every stream.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+public class AesGcmOutputStream extends OutputStream {
+
+    static final int MAGIC = 0x4C47434D; // "LGCM"
+    static final int FORMAT_VERSION = 1;
+    static final int NONCE_PREFIX_SIZE = 7;
+    static final int LAST_CHUNK_FLAG = 0x80000000;
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final Cipher cipher;
+    private final byte[] nonce = new byte[StorageCipher.NONCE_SIZE];
+    private final byte[] chunk;
+    private final byte[] encryptedChunk;
+    private int chunkLength;
+    private int chunkIndex;
+    private boolean closed;
+
+
+    public AesGcmOutputStream(OutputStream outputStream) throws IOException {
+        this(outputStream, DEFAULT_CHUNK_SIZE);
+    }
+
+    public AesGcmOutputStream(OutputStream outputStream, int chunkSize) throws IOException {
+        if (chunkSize <= 0 || (chunkSize & LAST_CHUNK_FLAG) != 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        out = new DataOutputStream(outputStream);
+        chunk = new byte[chunkSize];
+        encryptedChunk = new byte[chunkSize + TAG_SIZE];
+        try {
+            cipher = Cipher.getInstance(StorageCipher.TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to configure encryption.", e);
+        }
+        StorageCipher.nextBytes(nonce);
+
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(chunkSize);
+        out.write(nonce, 0, NONCE_PREFIX_SIZE);
+    }
+
+
+    @Override
+    public void write(int b) throws IOException {
+        if (chunkLength == chunk.length) {
+            writeChunk(false);
+        }
+        chunk[chunkLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (chunkLength == chunk.length) {
+                writeChunk(false);
+            }
+            int n = Math.min(length, chunk.length - chunkLength);
+            System.arraycopy(bytes, offset, chunk, chunkLength, n);
+            chunkLength += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Data in the current chunk is only written once the chunk is full or the stream
+     * is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes the last chunk and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeChunk(true);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeChunk(boolean last) throws IOException {
+        chunkNonce(nonce, chunkIndex++, last);
+        int encryptedLength;
+        try {
+            StorageCipher.initCipher(cipher, Cipher.ENCRYPT_MODE, nonce);
+            encryptedLength = cipher.doFinal(chunk, 0, chunkLength, encryptedChunk, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt data.", e);
+        }
+
+        out.writeInt(last ? chunkLength | LAST_CHUNK_FLAG : chunkLength);
+        out.write(encryptedChunk, 0, encryptedLength);
+        chunkLength = 0;
+    }
+
+    /**
+     * Sets the chunk-specific part of a nonce which already holds the nonce prefix.
+     */
+    static void chunkNonce(byte[] nonce, int chunkIndex, boolean last) {
+        nonce[NONCE_PREFIX_SIZE] = (byte) (chunkIndex >>> 24);
+        nonce[NONCE_PREFIX_SIZE + 1] = (byte) (chunkIndex >>> 16);
+        nonce[NONCE_PREFIX_SIZE + 2] = (byte) (chunkIndex >>> 8);
+        nonce[NONCE_PREFIX_SIZE + 3] = (byte) chunkIndex;
+        nonce[NONCE_PREFIX_SIZE + 4] = (byte) (last ? 1 : 0);
+    }
+
+}
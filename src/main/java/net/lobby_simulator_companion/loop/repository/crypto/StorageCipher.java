@@ -0,0 +1,142 @@
+package net.lobby_simulator_companion.loop.repository.crypto;
+
+import lombok.experimental.UtilityClass;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.DESKeySpec;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Encryption of the stored data.
+ * <p>
+ * Data is encrypted with AES-GCM, which most CPUs accelerate in hardware, and which also authenticates the data.
+ * Streams are encrypted in chunks (see {@link AesGcmOutputStream}); single records carry their own random nonce:
+ * {@code [nonce: 12 bytes][ciphertext][tag: 16 bytes]}.
+ * Data encrypted with DES by older versions can still be read, so that it is migrated when written again.
+ * <p>
+ * As with the DES key before it, the key is embedded in the app: the encryption only keeps the data from being
+ * casually read or edited.
+ *
+ * @author NickyRamone
+ */
+@UtilityClass
+public class StorageCipher {
+
+    private static final byte[] KEY_MATERIAL = new byte[]{
+            91, -12, 7, 66, -101, 38, 4, -77, 120, -3, 55, 19, -88, 42, 63, -29};
+    private static final byte[] LEGACY_KEY_MATERIAL = new byte[]{2, 3, -57, 11, 73, 57, -66, 21};
+
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    static final int NONCE_SIZE = 12;
+    static final int TAG_SIZE = 16;
+
+    private static final SecretKey KEY = new SecretKeySpec(KEY_MATERIAL, "AES");
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+
+    /**
+     * @return a stream which encrypts what is written to it into the given one. Closing it closes the given stream.
+     */
+    public static OutputStream encryptingStream(OutputStream outputStream) throws IOException {
+        return new AesGcmOutputStream(outputStream);
+    }
+
+    /**
+     * @return a stream which decrypts the given one, whether it was encrypted with AES-GCM or with the legacy DES
+     * cipher.
+     */
+    public static InputStream decryptingStream(InputStream inputStream) throws IOException {
+        PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, Integer.BYTES);
+        byte[] magic = new byte[Integer.BYTES];
+        int length = 0;
+        int n;
+        while (length < magic.length && (n = pushbackStream.read(magic, length, magic.length - length)) > 0) {
+            length += n;
+        }
+        pushbackStream.unread(magic, 0, length);
+
+        if (length == magic.length && AesGcmInputStream.isAesGcmStream(magic)) {
+            return new AesGcmInputStream(pushbackStream);
+        }
+        return new CipherInputStream(pushbackStream, legacyCipher(Cipher.DECRYPT_MODE));
+    }
+
+    public static byte[] encrypt(byte[] plaintext) throws IOException {
+        byte[] nonce = new byte[NONCE_SIZE];
+        RANDOM.nextBytes(nonce);
+        byte[] record = Arrays.copyOf(nonce, NONCE_SIZE + plaintext.length + TAG_SIZE);
+        try {
+            Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, nonce);
+            cipher.doFinal(plaintext, 0, plaintext.length, record, NONCE_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt data.", e);
+        }
+
+        return record;
+    }
+
+    public static byte[] decrypt(byte[] record) throws IOException {
+        if (record.length < NONCE_SIZE + TAG_SIZE) {
+            throw new IOException("Encrypted record too short: " + record.length + " bytes.");
+        }
+        try {
+            Cipher cipher = newCipher(Cipher.DECRYPT_MODE, Arrays.copyOf(record, NONCE_SIZE));
+            return cipher.doFinal(record, NONCE_SIZE, record.length - NONCE_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to decrypt data. Corrupt or tampered?", e);
+        }
+    }
+
+    /**
+     * Decrypts a record encrypted with the legacy DES cipher.
+     */
+    public static byte[] decryptLegacy(byte[] record) throws IOException {
+        try {
+            return legacyCipher(Cipher.DECRYPT_MODE).doFinal(record);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to decrypt legacy data.", e);
+        }
+    }
+
+    /**
+     * @return the DES cipher which was used for encrypting the data in older versions.
+     */
+    public static Cipher legacyCipher(int mode) throws IOException {
+        try {
+            SecretKey key = SecretKeyFactory.getInstance("DES").generateSecret(new DESKeySpec(LEGACY_KEY_MATERIAL));
+            Cipher cipher = Cipher.getInstance("DES");
+            cipher.init(mode, key);
+
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to configure legacy encryption.", e);
+        }
+    }
+
+    static Cipher newCipher(int mode, byte[] nonce) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        initCipher(cipher, mode, nonce);
+
+        return cipher;
+    }
+
+    static void initCipher(Cipher cipher, int mode, byte[] nonce) throws GeneralSecurityException {
+        cipher.init(mode, KEY, new GCMParameterSpec(TAG_SIZE * Byte.SIZE, nonce));
+    }
+
+    static void nextBytes(byte[] bytes) {
+        RANDOM.nextBytes(bytes);
+    }
+
+}
@@ -0,0 +1,353 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a table in the Apache Arrow IPC file format (metadata version 5), in record batches of {@link #BATCH_ROWS}
+ * rows, so that only one batch is held in memory.
+ * <p>
+ * The file is {@code "ARROW1"}, padded to 8 bytes, then the schema and the record batches as encapsulated messages
+ * ({@code [0xFFFFFFFF][metadata length: int][Message flatbuffer, padded to 8 bytes][body]}), then the footer
+ * flatbuffer, which locates the batches, its length and {@code "ARROW1"} again. Every buffer in a body is padded to
+ * 8 bytes.
+ * <p>
+ * Columns map to nullable Arrow fields: strings to {@code Utf8}, ints to {@code Int(32, signed)}, booleans to
+ * {@code Bool}, and timestamps to {@code Timestamp(MILLISECOND)} without a time zone, since they are local times.
+ *
+ * @author NickyRamone
+ */
+class ArrowTableWriter<T> implements TableWriter<T> {
+
+    static final int BATCH_ROWS = 64 * 1024;
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final int ALIGNMENT = 8;
+
+    private static final short METADATA_V5 = 4;
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_RECORD_BATCH = 3;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_UTF8 = 5;
+    private static final byte TYPE_BOOL = 6;
+    private static final byte TYPE_TIMESTAMP = 10;
+    private static final short TIME_UNIT_MILLISECOND = 1;
+
+    private final ChannelOutput output;
+    private final List<ExportColumn<T>> columns;
+    private final ColumnBuffer[] buffers;
+    private final List<long[]> blocks = new ArrayList<>();
+    private int batchRows;
+    private long rowCount;
+
+
+    ArrowTableWriter(ChannelOutput output, ExportTable<T> table) throws IOException {
+        this.output = output;
+        this.columns = table.getColumns();
+        buffers = new ColumnBuffer[columns.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new ColumnBuffer(columns.get(i).getType());
+        }
+
+        output.write(MAGIC);
+        output.align(ALIGNMENT);
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        writeMessage(builder, HEADER_SCHEMA, buildSchema(builder), 0);
+    }
+
+
+    @Override
+    public void write(T row) throws IOException {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i].add(columns.get(i).getGetter().apply(row), batchRows);
+        }
+        batchRows++;
+        rowCount++;
+        if (batchRows == BATCH_ROWS) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public long rowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (batchRows > 0) {
+                writeBatch();
+            }
+            writeFooter();
+        } finally {
+            output.close();
+        }
+    }
+
+
+    private int buildSchema(FlatBufferBuilder builder) {
+        int[] fields = new int[columns.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = buildField(builder, columns.get(i));
+        }
+        int fieldVector = builder.createOffsetVector(fields);
+
+        builder.startTable(4);
+        builder.addShort(0, 0); // little endian
+        builder.addOffset(1, fieldVector);
+        return builder.endTable();
+    }
+
+    private int buildField(FlatBufferBuilder builder, ExportColumn<T> column) {
+        int name = builder.createString(column.getName());
+        byte typeId;
+        switch (column.getType()) {
+            case INT:
+                typeId = TYPE_INT;
+                builder.startTable(2);
+                builder.addInt(0, Integer.SIZE);
+                builder.addBoolean(1, true);
+                break;
+            case BOOLEAN:
+                typeId = TYPE_BOOL;
+                builder.startTable(0);
+                break;
+            case TIMESTAMP:
+                typeId = TYPE_TIMESTAMP;
+                builder.startTable(2);
+                builder.addShort(0, TIME_UNIT_MILLISECOND);
+                break;
+            default:
+                typeId = TYPE_UTF8;
+                builder.startTable(0);
+                break;
+        }
+        int type = builder.endTable();
+        int children = builder.createOffsetVector(new int[0]);
+
+        builder.startTable(7);
+        builder.addOffset(0, name);
+        builder.addBoolean(1, true);
+        builder.addByte(2, typeId);
+        builder.addOffset(3, type);
+        builder.addOffset(5, children);
+        return builder.endTable();
+    }
+
+    /**
+     * @return the length of the metadata, including the prefix and the padding.
+     */
+    private int writeMessage(FlatBufferBuilder builder, byte headerType, int header, long bodyLength)
+            throws IOException {
+        builder.startTable(5);
+        builder.addShort(0, METADATA_V5);
+        builder.addByte(1, headerType);
+        builder.addOffset(2, header);
+        builder.addLong(3, bodyLength);
+        byte[] message = builder.finish(builder.endTable());
+
+        int paddedLength = (message.length + ALIGNMENT - 1) & -ALIGNMENT;
+        output.writeInt(CONTINUATION);
+        output.writeInt(paddedLength);
+        output.write(message);
+        output.align(ALIGNMENT);
+
+        return 2 * Integer.BYTES + paddedLength;
+    }
+
+    private void writeBatch() throws IOException {
+        long[] nodes = new long[2 * buffers.length];
+        List<Long> bufferLayout = new ArrayList<>();
+        long bodyLength = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            nodes[2 * i] = batchRows;
+            nodes[2 * i + 1] = buffers[i].nullCount;
+            for (long length : buffers[i].bufferLengths(batchRows)) {
+                bufferLayout.add(bodyLength);
+                bufferLayout.add(length);
+                bodyLength += padded(length);
+            }
+        }
+
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        int nodeVector = builder.createLongStructVector(nodes, 2);
+        int bufferVector = builder.createLongStructVector(
+                bufferLayout.stream().mapToLong(Long::longValue).toArray(), 2);
+        builder.startTable(5);
+        builder.addLong(0, batchRows);
+        builder.addOffset(1, nodeVector);
+        builder.addOffset(2, bufferVector);
+        int recordBatch = builder.endTable();
+
+        long blockOffset = output.position();
+        int metadataLength = writeMessage(builder, HEADER_RECORD_BATCH, recordBatch, bodyLength);
+        for (ColumnBuffer buffer : buffers) {
+            buffer.writeTo(output, batchRows);
+            buffer.clear();
+        }
+        blocks.add(new long[]{blockOffset, metadataLength, bodyLength});
+        batchRows = 0;
+    }
+
+    private void writeFooter() throws IOException {
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        int schema = buildSchema(builder);
+        int dictionaries = builder.createBlockVector(new long[0], new int[0], new long[0]);
+        long[] offsets = new long[blocks.size()];
+        int[] metadataLengths = new int[blocks.size()];
+        long[] bodyLengths = new long[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            offsets[i] = blocks.get(i)[0];
+            metadataLengths[i] = (int) blocks.get(i)[1];
+            bodyLengths[i] = blocks.get(i)[2];
+        }
+        int recordBatches = builder.createBlockVector(offsets, metadataLengths, bodyLengths);
+        builder.startTable(5);
+        builder.addShort(0, METADATA_V5);
+        builder.addOffset(1, schema);
+        builder.addOffset(2, dictionaries);
+        builder.addOffset(3, recordBatches);
+        byte[] footer = builder.finish(builder.endTable());
+
+        output.write(footer);
+        output.writeInt(footer.length);
+        output.write(MAGIC);
+    }
+
+    private static long padded(long length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+
+    /**
+     * The values of a column in the current batch.
+     */
+    private static final class ColumnBuffer {
+
+        private final ExportColumn.Type type;
+        private final byte[] validity = new byte[BATCH_ROWS / 8];
+        private int nullCount;
+        private int[] ints;
+        private long[] longs;
+        private byte[] bits;
+        private int[] offsets;
+        private byte[] data;
+        private int dataLength;
+
+        ColumnBuffer(ExportColumn.Type type) {
+            this.type = type;
+            switch (type) {
+                case INT:
+                    ints = new int[BATCH_ROWS];
+                    break;
+                case TIMESTAMP:
+                    longs = new long[BATCH_ROWS];
+                    break;
+                case BOOLEAN:
+                    bits = new byte[BATCH_ROWS / 8];
+                    break;
+                default:
+                    offsets = new int[BATCH_ROWS + 1];
+                    data = new byte[64 * 1024];
+                    break;
+            }
+        }
+
+        void add(Object value, int row) {
+            if (value == null) {
+                nullCount++;
+            } else {
+                validity[row >> 3] |= 1 << (row & 7);
+            }
+            switch (type) {
+                case INT:
+                    ints[row] = value == null ? 0 : (Integer) value;
+                    break;
+                case TIMESTAMP:
+                    longs[row] = value == null ? 0
+                            : ((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli();
+                    break;
+                case BOOLEAN:
+                    if (Boolean.TRUE.equals(value)) {
+                        bits[row >> 3] |= 1 << (row & 7);
+                    }
+                    break;
+                default:
+                    if (value != null) {
+                        byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                        if (dataLength + bytes.length > data.length) {
+                            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + bytes.length));
+                        }
+                        System.arraycopy(bytes, 0, data, dataLength, bytes.length);
+                        dataLength += bytes.length;
+                    }
+                    offsets[row + 1] = dataLength;
+                    break;
+            }
+        }
+
+        /**
+         * @return the lengths of the buffers of the column: the validity bitmap (empty when there are no nulls),
+         * then the values, preceded by the offsets for strings.
+         */
+        long[] bufferLengths(int rows) {
+            long validityLength = nullCount == 0 ? 0 : (rows + 7) / 8;
+            switch (type) {
+                case INT:
+                    return new long[]{validityLength, (long) rows * Integer.BYTES};
+                case TIMESTAMP:
+                    return new long[]{validityLength, (long) rows * Long.BYTES};
+                case BOOLEAN:
+                    return new long[]{validityLength, (rows + 7) / 8};
+                default:
+                    return new long[]{validityLength, (long) (rows + 1) * Integer.BYTES, dataLength};
+            }
+        }
+
+        void writeTo(ChannelOutput output, int rows) throws IOException {
+            if (nullCount > 0) {
+                output.write(validity, 0, (rows + 7) / 8);
+                output.align(ALIGNMENT);
+            }
+            switch (type) {
+                case INT:
+                    output.writeInts(ints, rows);
+                    break;
+                case TIMESTAMP:
+                    output.writeLongs(longs, rows);
+                    break;
+                case BOOLEAN:
+                    output.write(bits, 0, (rows + 7) / 8);
+                    break;
+                default:
+                    output.writeInts(offsets, rows + 1);
+                    output.align(ALIGNMENT);
+                    output.write(data, 0, dataLength);
+                    break;
+            }
+            output.align(ALIGNMENT);
+        }
+
+        void clear() {
+            Arrays.fill(validity, (byte) 0);
+            nullCount = 0;
+            if (bits != null) {
+                Arrays.fill(bits, (byte) 0);
+            }
+            if (data != null) {
+                dataLength = 0;
+                if (data.length > 1024 * 1024) {
+                    // a batch with long strings does not keep the memory for the next ones
+                    data = new byte[64 * 1024];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Little-endian writes to a file channel through a buffer, keeping track of the position in the file.
+ *
+ * @author NickyRamone
+ */
+final class ChannelOutput implements Closeable {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+
+    private ChannelOutput(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static ChannelOutput create(Path file) throws IOException {
+        return new ChannelOutput(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+
+    long position() {
+        return position;
+    }
+
+    void write(byte[] bytes) throws IOException {
+        write(bytes, 0, bytes.length);
+    }
+
+    void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+            position += n;
+        }
+    }
+
+    void writeInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    void writeLong(long value) throws IOException {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    void writeInts(int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writeInt(values[i]);
+        }
+    }
+
+    void writeLongs(long[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writeLong(values[i]);
+        }
+    }
+
+    /**
+     * Writes zeros up to the next multiple of the given alignment.
+     */
+    void align(int alignment) throws IOException {
+        int padding = (int) (-position & (alignment - 1));
+        for (int i = 0; i < padding; i++) {
+            ensureRemaining(1);
+            buffer.put((byte) 0);
+            position++;
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
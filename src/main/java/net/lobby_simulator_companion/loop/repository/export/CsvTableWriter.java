@@ -0,0 +1,86 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes a table as CSV (RFC 4180): a header with the column names, then one line per row. Empty fields are null
+ * values, and timestamps are written as {@code yyyy-MM-dd HH:mm:ss}, which spreadsheets recognize.
+ *
+ * @author NickyRamone
+ */
+class CsvTableWriter<T> implements TableWriter<T> {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private final ChannelOutput output;
+    private final List<ExportColumn<T>> columns;
+    private final StringBuilder line = new StringBuilder(256);
+    private long rowCount;
+
+
+    CsvTableWriter(ChannelOutput output, ExportTable<T> table) throws IOException {
+        this.output = output;
+        this.columns = table.getColumns();
+        for (ExportColumn<T> column : columns) {
+            appendField(column.getName());
+        }
+        writeLine();
+    }
+
+
+    @Override
+    public void write(T row) throws IOException {
+        for (ExportColumn<T> column : columns) {
+            Object value = column.getGetter().apply(row);
+            if (value == null) {
+                line.append(',');
+            } else if (value instanceof LocalDateTime) {
+                line.append(TIMESTAMP_FORMATTER.format((LocalDateTime) value)).append(',');
+            } else if (value instanceof String) {
+                appendField((String) value);
+            } else {
+                line.append(value).append(',');
+            }
+        }
+        writeLine();
+        rowCount++;
+    }
+
+    private void appendField(String value) {
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (quoted) {
+            line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(value);
+        }
+        line.append(',');
+    }
+
+    private void writeLine() throws IOException {
+        // replaces the trailing comma
+        line.setLength(line.length() - 1);
+        line.append(LINE_SEPARATOR);
+        output.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        line.setLength(0);
+    }
+
+    @Override
+    public long rowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+}
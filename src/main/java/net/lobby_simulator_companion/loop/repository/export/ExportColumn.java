@@ -0,0 +1,41 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import lombok.Value;
+
+import java.util.function.Function;
+
+/**
+ * A column of an exported table, with the getter of its value from a row.
+ *
+ * @author NickyRamone
+ */
+@Value
+public class ExportColumn<T> {
+
+    public enum Type {
+        /**
+         * Values are {@link String}s.
+         */
+        STRING,
+        /**
+         * Values are {@link Integer}s.
+         */
+        INT,
+        /**
+         * Values are {@link Boolean}s.
+         */
+        BOOLEAN,
+        /**
+         * Values are {@link java.time.LocalDateTime}s.
+         */
+        TIMESTAMP
+    }
+
+    String name;
+    Type type;
+    /**
+     * Returns the value of the column for a row, or null.
+     */
+    Function<T, ?> getter;
+
+}
@@ -0,0 +1,44 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * @author NickyRamone
+ */
+public enum ExportFormat {
+
+    CSV("csv") {
+        @Override
+        public <T> TableWriter<T> open(Path file, ExportTable<T> table) throws IOException {
+            return new CsvTableWriter<>(ChannelOutput.create(file), table);
+        }
+    },
+
+    /**
+     * The Apache Arrow IPC file format, readable by most data analysis tools (pandas, R, DuckDB, Spark...).
+     */
+    ARROW("arrow") {
+        @Override
+        public <T> TableWriter<T> open(Path file, ExportTable<T> table) throws IOException {
+            return new ArrowTableWriter<>(ChannelOutput.create(file), table);
+        }
+    };
+
+    private final String extension;
+
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * Creates the file, replacing it if it exists.
+     */
+    public abstract <T> TableWriter<T> open(Path file, ExportTable<T> table) throws IOException;
+
+}
@@ -0,0 +1,54 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import lombok.Value;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The columns of an exported table.
+ *
+ * @author NickyRamone
+ */
+@Value
+public class ExportTable<T> {
+
+    public static final ExportTable<Match> MATCHES = new ExportTable<>("matches", Arrays.asList(
+            new ExportColumn<>("start_time", ExportColumn.Type.TIMESTAMP, Match::getMatchStartTime),
+            new ExportColumn<>("killer", ExportColumn.Type.STRING,
+                    match -> Optional.ofNullable(match.getKiller()).map(Killer::name).orElse(null)),
+            new ExportColumn<>("realm_map", ExportColumn.Type.STRING,
+                    match -> Optional.ofNullable(match.getRealmMap()).map(RealmMap::name).orElse(null)),
+            new ExportColumn<>("escaped", ExportColumn.Type.BOOLEAN, Match::getEscaped),
+            new ExportColumn<>("lobbies_found", ExportColumn.Type.INT, Match::getLobbiesFound),
+            new ExportColumn<>("seconds_queued", ExportColumn.Type.INT, Match::getSecondsQueued),
+            new ExportColumn<>("seconds_waited", ExportColumn.Type.INT, Match::getSecondsWaited),
+            new ExportColumn<>("seconds_played", ExportColumn.Type.INT, Match::getSecondsPlayed),
+            new ExportColumn<>("killer_player_steam_id", ExportColumn.Type.STRING, Match::getKillerPlayerSteamId64),
+            new ExportColumn<>("killer_player_dbd_id", ExportColumn.Type.STRING, Match::getKillerPlayerDbdId)));
+
+    public static final ExportTable<Player> PLAYERS = new ExportTable<>("players", Arrays.asList(
+            new ExportColumn<>("steam_id", ExportColumn.Type.STRING, Player::getSteamId64),
+            new ExportColumn<>("dbd_id", ExportColumn.Type.STRING, Player::getDbdPlayerId),
+            new ExportColumn<>("name", ExportColumn.Type.STRING, player -> player.getMostRecentName().orElse(null)),
+            new ExportColumn<>("all_names", ExportColumn.Type.STRING, player -> String.join("; ", player.getNames())),
+            new ExportColumn<>("first_seen", ExportColumn.Type.TIMESTAMP, Player::getFirstSeen),
+            new ExportColumn<>("last_seen", ExportColumn.Type.TIMESTAMP, Player::getLastSeen),
+            new ExportColumn<>("times_encountered", ExportColumn.Type.INT, Player::getTimesEncountered),
+            new ExportColumn<>("matches_played", ExportColumn.Type.INT, Player::getMatchesPlayed),
+            new ExportColumn<>("seconds_played", ExportColumn.Type.INT, Player::getSecondsPlayed),
+            new ExportColumn<>("escapes", ExportColumn.Type.INT, Player::getEscapes),
+            new ExportColumn<>("deaths", ExportColumn.Type.INT, Player::getDeaths),
+            new ExportColumn<>("rating", ExportColumn.Type.STRING,
+                    player -> Optional.ofNullable(player.getRating()).map(Player.Rating::name).orElse(null)),
+            new ExportColumn<>("description", ExportColumn.Type.STRING, Player::getDescription)));
+
+    String name;
+    List<ExportColumn<T>> columns;
+
+}
@@ -0,0 +1,195 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal builder of FlatBuffers, the serialization format of the Arrow metadata: tables of scalars, strings, and
+ * vectors of tables or of structs.
+ * <p>
+ * As the reference builder, it fills the buffer from the end, so that the objects are written before the ones which
+ * refer to them, and offsets always point forward. Offsets to objects are given as their distance from the end of
+ * the buffer, which does not change as the buffer grows.
+ *
+ * @author NickyRamone
+ */
+final class FlatBufferBuilder {
+
+    private byte[] buffer = new byte[1024];
+    private int space = buffer.length;
+    private int minAlign = 1;
+    private int[] vtable;
+    private int objectStart;
+
+
+    private int offset() {
+        return buffer.length - space;
+    }
+
+    /**
+     * Pads so that, once {@code additionalBytes} are written, the next {@code size} bytes are aligned to
+     * {@code size}, and makes room for all of them.
+     */
+    private void prep(int size, int additionalBytes) {
+        minAlign = Math.max(minAlign, size);
+        int alignSize = -(offset() + additionalBytes) & (size - 1);
+        while (space < alignSize + size + additionalBytes) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, buffer.length, buffer.length);
+            space += buffer.length;
+            buffer = grown;
+        }
+        for (int i = 0; i < alignSize; i++) {
+            buffer[--space] = 0;
+        }
+    }
+
+    private void put(long value, int size) {
+        space -= size;
+        for (int i = 0; i < size; i++) {
+            buffer[space + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void add(long value, int size) {
+        prep(size, 0);
+        put(value, size);
+    }
+
+    private void addOffset(int offset) {
+        prep(Integer.BYTES, 0);
+        put(offset() + Integer.BYTES - offset, Integer.BYTES);
+    }
+
+
+    void startTable(int fieldCount) {
+        vtable = new int[fieldCount];
+        objectStart = offset();
+    }
+
+    void addByte(int field, int value) {
+        add(value, 1);
+        vtable[field] = offset();
+    }
+
+    void addBoolean(int field, boolean value) {
+        addByte(field, value ? 1 : 0);
+    }
+
+    void addShort(int field, int value) {
+        add(value, Short.BYTES);
+        vtable[field] = offset();
+    }
+
+    void addInt(int field, int value) {
+        add(value, Integer.BYTES);
+        vtable[field] = offset();
+    }
+
+    void addLong(int field, long value) {
+        add(value, Long.BYTES);
+        vtable[field] = offset();
+    }
+
+    void addOffset(int field, int offset) {
+        addOffset(offset);
+        vtable[field] = offset();
+    }
+
+    /**
+     * Writes the table, preceded by its vtable: {@code [vtable size: short][table size: short]
+     * ([field offset: short])*}, where the table starts with the signed distance to its vtable.
+     *
+     * @return the offset of the table.
+     */
+    int endTable() {
+        add(0, Integer.BYTES);
+        int objectOffset = offset();
+        int fieldCount = vtable.length;
+        while (fieldCount > 0 && vtable[fieldCount - 1] == 0) {
+            fieldCount--;
+        }
+        for (int field = fieldCount - 1; field >= 0; field--) {
+            add(vtable[field] != 0 ? objectOffset - vtable[field] : 0, Short.BYTES);
+        }
+        add(objectOffset - objectStart, Short.BYTES);
+        add((fieldCount + 2) * Short.BYTES, Short.BYTES);
+
+        int tablePosition = buffer.length - objectOffset;
+        int distance = offset() - objectOffset;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            buffer[tablePosition + i] = (byte) (distance >>> (8 * i));
+        }
+        vtable = null;
+
+        return objectOffset;
+    }
+
+    int createString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        prep(Integer.BYTES, bytes.length + 1);
+        buffer[--space] = 0;
+        space -= bytes.length;
+        System.arraycopy(bytes, 0, buffer, space, bytes.length);
+        put(bytes.length, Integer.BYTES);
+
+        return offset();
+    }
+
+    int createOffsetVector(int[] offsets) {
+        startVector(Integer.BYTES, offsets.length, Integer.BYTES);
+        for (int i = offsets.length - 1; i >= 0; i--) {
+            addOffset(offsets[i]);
+        }
+        return endVector(offsets.length);
+    }
+
+    /**
+     * Creates a vector of structs made of longs, given as consecutive values.
+     */
+    int createLongStructVector(long[] values, int structLongs) {
+        int count = values.length / structLongs;
+        startVector(structLongs * Long.BYTES, count, Long.BYTES);
+        for (int i = values.length - 1; i >= 0; i--) {
+            put(values[i], Long.BYTES);
+        }
+        return endVector(count);
+    }
+
+    /**
+     * Creates a vector of Arrow {@code Block} structs:
+     * {@code [offset: long][metadata length: int][padding: int][body length: long]}.
+     */
+    int createBlockVector(long[] offsets, int[] metadataLengths, long[] bodyLengths) {
+        int count = offsets.length;
+        startVector(3 * Long.BYTES, count, Long.BYTES);
+        for (int i = count - 1; i >= 0; i--) {
+            put(bodyLengths[i], Long.BYTES);
+            put(0, Integer.BYTES);
+            put(metadataLengths[i], Integer.BYTES);
+            put(offsets[i], Long.BYTES);
+        }
+        return endVector(count);
+    }
+
+    private void startVector(int elementSize, int count, int alignment) {
+        prep(Integer.BYTES, elementSize * count);
+        prep(alignment, elementSize * count);
+    }
+
+    private int endVector(int count) {
+        put(count, Integer.BYTES);
+        return offset();
+    }
+
+    /**
+     * @return the buffer, starting with the offset of the given root table.
+     */
+    byte[] finish(int rootTable) {
+        prep(minAlign, Integer.BYTES);
+        addOffset(rootTable);
+
+        return Arrays.copyOfRange(buffer, space, buffer.length);
+    }
+
+}
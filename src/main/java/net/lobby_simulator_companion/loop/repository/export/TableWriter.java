@@ -0,0 +1,21 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes the rows of an exported table to a file as they come, holding at most a bounded number of them.
+ * Closing the writer completes the file.
+ *
+ * @author NickyRamone
+ */
+public interface TableWriter<T> extends Closeable {
+
+    void write(T row) throws IOException;
+
+    /**
+     * @return the number of rows written.
+     */
+    long rowCount();
+
+}
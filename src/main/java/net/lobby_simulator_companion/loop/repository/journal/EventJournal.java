@@ -0,0 +1,210 @@
+package net.lobby_simulator_companion.loop.repository.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.service.log_processing.DbdLogEvent;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import net.lobby_simulator_companion.loop.util.event.Event;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of the game events emitted by the log processors.
+ * <p>
+ * The journal is a sequence of segment files. Every segment starts with a small header and is followed by
+ * length-prefixed records: {@code [body length: int][crc32 of body: int][body]} (see {@link JournalCodec}).
+ * A new segment is started on every session and whenever the current one exceeds the configured size, so a torn
+ * write can only ever affect the tail of the last segment.
+ * <p>
+ * Events too large for a record ({@link #MAX_RECORD_SIZE}) are skipped, since the journal is only a record of what
+ * was seen and must not get in the way of processing the log.
+ * <p>
+ * Records are buffered and the segment is fsync'ed in batches: when enough records have accumulated, or at most
+ * {@link #SYNC_PERIOD_MS} after the first unsynced record. The periodic syncs run on their own executor, since the
+ * timer must not be held up by the disk.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class EventJournal {
+
+    static final int SEGMENT_MAGIC = 0x4C4A524E; // "LJRN"
+    static final short SEGMENT_VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    static final String SEGMENT_PREFIX = "events-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int MAX_RECORD_SIZE = 8 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int SYNC_BATCH_RECORDS = 64;
+    private static final long SYNC_PERIOD_MS = 1000;
+
+    private final Path journalDir;
+    private final long maxSegmentBytes;
+    private final HashedWheelTimer timer;
+    private final Executor syncExecutor;
+    private final AtomicBoolean periodicSyncPending = new AtomicBoolean();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel segment;
+    private long segmentSequence;
+    private long segmentSize;
+    private int unsyncedRecords;
+    private HashedWheelTimer.Timeout syncTimeout;
+
+
+    public EventJournal(Path journalDir, long maxSegmentBytes, HashedWheelTimer timer) {
+        this(journalDir, maxSegmentBytes, timer, Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "event-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @param syncExecutor executor where the periodic syncs run.
+     */
+    public EventJournal(Path journalDir, long maxSegmentBytes, HashedWheelTimer timer, Executor syncExecutor) {
+        this.journalDir = journalDir;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.timer = timer;
+        this.syncExecutor = syncExecutor;
+    }
+
+
+    public synchronized void open() throws IOException {
+        Files.createDirectories(journalDir);
+        segmentSequence = EventJournalReader.listSegments(journalDir).stream()
+                .mapToLong(EventJournalReader::segmentSequence)
+                .max()
+                .orElse(0);
+        rollSegment();
+
+        syncTimeout = timer.scheduleAtFixedRate(() -> {
+            // a sync which is still pending covers this period too
+            if (periodicSyncPending.compareAndSet(false, true)) {
+                syncExecutor.execute(this::periodicSync);
+            }
+        }, SYNC_PERIOD_MS, SYNC_PERIOD_MS);
+    }
+
+    private void periodicSync() {
+        periodicSyncPending.set(false);
+        try {
+            sync();
+        } catch (IOException e) {
+            log.error("Failed to sync event journal.", e);
+        }
+    }
+
+
+    /**
+     * Convenience method so that the journal can be registered directly as a listener of the DBD log events.
+     */
+    public void append(Event event) {
+        try {
+            append(System.currentTimeMillis(), DbdLogEvent.valueOf(event.getType().toString()), event.getValue());
+        } catch (IOException e) {
+            log.error("Failed to append event to the journal.", e);
+        }
+    }
+
+    public synchronized void append(long timestamp, DbdLogEvent event, Object value) throws IOException {
+        if (segment == null) {
+            throw new IOException("Journal is not open.");
+        }
+
+        recordBuffer.clear();
+        try {
+            JournalCodec.encode(recordBuffer, timestamp, event, value);
+        } catch (BufferOverflowException e) {
+            log.warn("Skipped {} event: it exceeds the maximum record size of {} bytes.", event, MAX_RECORD_SIZE);
+            return;
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipped {} event: {}", event, e.getMessage());
+            return;
+        }
+        recordBuffer.flip();
+        crc.reset();
+        crc.update(recordBuffer.array(), 0, recordBuffer.limit());
+        int recordSize = RECORD_HEADER_SIZE + recordBuffer.limit();
+
+        if (segmentSize + writeBuffer.position() + recordSize > maxSegmentBytes) {
+            rollSegment();
+        }
+        if (writeBuffer.remaining() < recordSize) {
+            flushBuffer();
+        }
+
+        writeBuffer.putInt(recordBuffer.limit());
+        writeBuffer.putInt((int) crc.getValue());
+        writeBuffer.put(recordBuffer);
+
+        if (++unsyncedRecords >= SYNC_BATCH_RECORDS) {
+            sync();
+        }
+    }
+
+
+    /**
+     * Writes any buffered records and forces them to disk.
+     */
+    public synchronized void sync() throws IOException {
+        if (segment == null || unsyncedRecords == 0) {
+            return;
+        }
+        flushBuffer();
+        segment.force(false);
+        unsyncedRecords = 0;
+    }
+
+    public synchronized void close() throws IOException {
+        if (syncTimeout != null) {
+            syncTimeout.cancel();
+            syncTimeout = null;
+        }
+        if (segment != null) {
+            sync();
+            segment.close();
+            segment = null;
+        }
+    }
+
+
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            segmentSize += segment.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void rollSegment() throws IOException {
+        if (segment != null) {
+            sync();
+            segment.close();
+        }
+
+        Path segmentPath = EventJournalReader.segmentPath(journalDir, ++segmentSequence);
+        segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentSize = 0;
+
+        writeBuffer.putInt(SEGMENT_MAGIC);
+        writeBuffer.putShort(SEGMENT_VERSION);
+        flushBuffer();
+        log.debug("Started event journal segment: {}", segmentPath);
+    }
+
+}
@@ -0,0 +1,134 @@
+package net.lobby_simulator_companion.loop.repository.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static net.lobby_simulator_companion.loop.repository.journal.EventJournal.RECORD_HEADER_SIZE;
+import static net.lobby_simulator_companion.loop.repository.journal.EventJournal.SEGMENT_HEADER_SIZE;
+import static net.lobby_simulator_companion.loop.repository.journal.EventJournal.SEGMENT_MAGIC;
+import static net.lobby_simulator_companion.loop.repository.journal.EventJournal.SEGMENT_PREFIX;
+import static net.lobby_simulator_companion.loop.repository.journal.EventJournal.SEGMENT_SUFFIX;
+
+/**
+ * Sequential reader for the event journal.
+ * Segments are memory-mapped and scanned in order. A segment is read up to its first incomplete or corrupt record,
+ * which can only legitimately happen at the tail of a segment that was being written when the app died.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class EventJournalReader {
+
+    private final Path journalDir;
+
+
+    public EventJournalReader(Path journalDir) {
+        this.journalDir = journalDir;
+    }
+
+
+    /**
+     * Feeds every valid entry in the journal, in order, to the given consumer.
+     *
+     * @return the number of entries read.
+     */
+    public long scan(Consumer<JournalEntry> consumer) throws IOException {
+        long count = 0;
+
+        for (Path segmentPath : listSegments(journalDir)) {
+            count += scanSegment(segmentPath, consumer);
+        }
+
+        return count;
+    }
+
+
+    private long scanSegment(Path segmentPath, Consumer<JournalEntry> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.limit() < SEGMENT_HEADER_SIZE || buffer.getInt() != SEGMENT_MAGIC) {
+            log.warn("Skipping unrecognized journal segment: {}", segmentPath);
+            return 0;
+        }
+        buffer.getShort(); // version
+
+        CRC32 crc = new CRC32();
+        long count = 0;
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int bodyLength = buffer.getInt();
+            int checksum = buffer.getInt();
+
+            if (bodyLength <= 0 || bodyLength > buffer.remaining()) {
+                log.warn("Truncated record found in journal segment {} at offset {}.",
+                        segmentPath, buffer.position() - RECORD_HEADER_SIZE);
+                break;
+            }
+
+            ByteBuffer body = buffer.slice();
+            body.limit(bodyLength);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Corrupt record found in journal segment {} at offset {}.",
+                        segmentPath, buffer.position() - RECORD_HEADER_SIZE);
+                break;
+            }
+
+            try {
+                consumer.accept(JournalCodec.decode(body));
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                log.warn("Undecodable record found in journal segment {}.", segmentPath, e);
+                break;
+            }
+            buffer.position(buffer.position() + bodyLength);
+            count++;
+        }
+
+        return count;
+    }
+
+
+    static List<Path> listSegments(Path journalDir) throws IOException {
+        if (!Files.isDirectory(journalDir)) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted((p1, p2) -> Long.compare(segmentSequence(p1), segmentSequence(p2)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static long segmentSequence(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    static Path segmentPath(Path journalDir, long sequence) {
+        return journalDir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+}
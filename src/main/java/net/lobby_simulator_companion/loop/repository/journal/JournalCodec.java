@@ -0,0 +1,204 @@
+package net.lobby_simulator_companion.loop.repository.journal;
+
+import lombok.experimental.UtilityClass;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.Survivor;
+import net.lobby_simulator_companion.loop.service.PlayerDto;
+import net.lobby_simulator_companion.loop.service.log_processing.DbdLogEvent;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.dto.ChaseEvent;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.dto.HitEvent;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Binary encoding of journal record bodies.
+ * <p>
+ * Body layout: {@code [event code: byte][timestamp: long][payload]}.
+ * Enum values are stored by name so that adding constants to {@link Killer}, {@link RealmMap} or {@link Survivor}
+ * does not invalidate existing journals. Strings are prefixed with their length in a short, where -1 stands for null,
+ * so they can take at most {@link #MAX_STRING_BYTES}.
+ *
+ * @author NickyRamone
+ */
+@UtilityClass
+class JournalCodec {
+
+    /**
+     * Stable event codes. The position in this array is what gets stored, so new events must always be appended
+     * at the end, regardless of their position in {@link DbdLogEvent}.
+     */
+    private final DbdLogEvent[] EVENT_CODES = {
+            DbdLogEvent.MATCH_WAIT,
+            DbdLogEvent.MATCH_WAIT_CANCEL,
+            DbdLogEvent.SERVER_CONNECT,
+            DbdLogEvent.KILLER_PLAYER,
+            DbdLogEvent.KILLER_CHARACTER,
+            DbdLogEvent.MAP_GENERATE,
+            DbdLogEvent.REALM_ENTER,
+            DbdLogEvent.MATCH_START,
+            DbdLogEvent.CHASE_START,
+            DbdLogEvent.KILLER_HIT,
+            DbdLogEvent.CHASE_END,
+            DbdLogEvent.USER_LEFT_REALM,
+            DbdLogEvent.SURVIVED,
+            DbdLogEvent.MATCH_END,
+            DbdLogEvent.SERVER_DISCONNECT
+    };
+
+    final int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+    private final Map<DbdLogEvent, Byte> CODE_BY_EVENT = new EnumMap<>(DbdLogEvent.class);
+
+    static {
+        for (byte i = 0; i < EVENT_CODES.length; i++) {
+            CODE_BY_EVENT.put(EVENT_CODES[i], i);
+        }
+    }
+
+
+    /**
+     * @throws java.nio.BufferOverflowException if the body does not fit in the buffer.
+     * @throws IllegalArgumentException         if a string of the value exceeds {@link #MAX_STRING_BYTES}.
+     */
+    void encode(ByteBuffer out, long timestamp, DbdLogEvent event, Object value) {
+        out.put(CODE_BY_EVENT.get(event));
+        out.putLong(timestamp);
+
+        switch (event) {
+            case SERVER_CONNECT:
+                InetSocketAddress address = (InetSocketAddress) value;
+                putString(out, address.getHostString());
+                out.putInt(address.getPort());
+                break;
+            case KILLER_PLAYER:
+                PlayerDto player = (PlayerDto) value;
+                putString(out, player.getSteamId());
+                putString(out, player.getDbdId());
+                break;
+            case KILLER_CHARACTER:
+                putEnum(out, (Killer) value);
+                break;
+            case MAP_GENERATE:
+                putEnum(out, (RealmMap) value);
+                break;
+            case CHASE_START:
+            case CHASE_END:
+                ChaseEvent chaseEvent = (ChaseEvent) value;
+                putDateTime(out, chaseEvent.getTimestamp());
+                putEnum(out, chaseEvent.getSurvivor());
+                out.putInt(chaseEvent.getIndex());
+                break;
+            case KILLER_HIT:
+                HitEvent hitEvent = (HitEvent) value;
+                putEnum(out, hitEvent.getSurvivor());
+                out.putInt(hitEvent.getIndex());
+                putString(out, hitEvent.getSurvivorPlayerName());
+                break;
+            case MATCH_END:
+                out.put((byte) (value == null ? -1 : (Boolean) value ? 1 : 0));
+                break;
+            default:
+                // no payload
+        }
+    }
+
+
+    JournalEntry decode(ByteBuffer in) {
+        DbdLogEvent event = EVENT_CODES[in.get()];
+        long timestamp = in.getLong();
+        Object value;
+
+        switch (event) {
+            case SERVER_CONNECT:
+                value = InetSocketAddress.createUnresolved(getString(in), in.getInt());
+                break;
+            case KILLER_PLAYER:
+                value = new PlayerDto(getString(in), getString(in));
+                break;
+            case KILLER_CHARACTER:
+                value = getEnum(in, Killer.class);
+                break;
+            case MAP_GENERATE:
+                value = getEnum(in, RealmMap.class);
+                break;
+            case CHASE_START:
+            case CHASE_END:
+                value = new ChaseEvent(getDateTime(in), getEnum(in, Survivor.class), in.getInt());
+                break;
+            case KILLER_HIT:
+                value = new HitEvent(getEnum(in, Survivor.class), in.getInt(), getString(in));
+                break;
+            case MATCH_END:
+                byte flag = in.get();
+                value = flag < 0 ? null : flag == 1;
+                break;
+            default:
+                value = null;
+        }
+
+        return new JournalEntry(timestamp, event, value);
+    }
+
+
+    private void putString(ByteBuffer out, String s) {
+        if (s == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException(String.format("String of %d bytes exceeds the maximum of %d.",
+                    bytes.length, MAX_STRING_BYTES));
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private String getString(ByteBuffer in) {
+        short length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putEnum(ByteBuffer out, Enum<?> value) {
+        putString(out, value == null ? null : value.name());
+    }
+
+    private <E extends Enum<E>> E getEnum(ByteBuffer in, Class<E> enumClass) {
+        String name = getString(in);
+        return name == null ? null : Enum.valueOf(enumClass, name);
+    }
+
+    /**
+     * Log timestamps are zone-less (UTC), so they are stored as-is, with no zone conversion.
+     */
+    private void putDateTime(ByteBuffer out, LocalDateTime dateTime) {
+        out.put((byte) (dateTime == null ? 0 : 1));
+        if (dateTime != null) {
+            out.putLong(dateTime.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    private LocalDateTime getDateTime(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        long epochMillis = in.getLong();
+
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                (int) Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,23 @@
+package net.lobby_simulator_companion.loop.repository.journal;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import net.lobby_simulator_companion.loop.service.log_processing.DbdLogEvent;
+
+/**
+ * A single game event as recorded in the event journal.
+ *
+ * @author NickyRamone
+ */
+@RequiredArgsConstructor
+@Data
+public class JournalEntry {
+
+    /**
+     * Wall-clock time (epoch millis) at which the event was emitted.
+     */
+    private final long timestamp;
+    private final DbdLogEvent event;
+    private final Object value;
+
+}
@@ -0,0 +1,83 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * @author NickyRamone
+ */
+class DataChangeTypeAdapter extends TypeAdapter<DataChange> {
+
+    private final TypeAdapter<DataChange.Type> typeAdapter;
+    private final TypeAdapter<Player> playerAdapter;
+    private final TypeAdapter<Match> matchAdapter;
+    private final TypeAdapter<Stats.Period> periodAdapter;
+    private final TypeAdapter<LocalDateTime> dateAdapter;
+
+
+    DataChangeTypeAdapter(Gson gson) {
+        typeAdapter = gson.getAdapter(DataChange.Type.class);
+        playerAdapter = gson.getAdapter(Player.class);
+        matchAdapter = gson.getAdapter(Match.class);
+        periodAdapter = gson.getAdapter(Stats.Period.class);
+        dateAdapter = gson.getAdapter(LocalDateTime.class);
+    }
+
+
+    @Override
+    public void write(JsonWriter out, DataChange change) throws IOException {
+        out.beginObject();
+        out.name("type");
+        typeAdapter.write(out, change.getType());
+        out.name("player");
+        playerAdapter.write(out, change.getPlayer());
+        out.name("match");
+        matchAdapter.write(out, change.getMatch());
+        out.name("period");
+        periodAdapter.write(out, change.getPeriod());
+        out.name("resetTime");
+        dateAdapter.write(out, change.getResetTime());
+        out.endObject();
+    }
+
+    @Override
+    public DataChange read(JsonReader in) throws IOException {
+        DataChange change = new DataChange();
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type":
+                    change.setType(typeAdapter.read(in));
+                    break;
+                case "player":
+                    change.setPlayer(playerAdapter.read(in));
+                    break;
+                case "match":
+                    change.setMatch(matchAdapter.read(in));
+                    break;
+                case "period":
+                    change.setPeriod(periodAdapter.read(in));
+                    break;
+                case "resetTime":
+                    change.setResetTime(dateAdapter.read(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return change;
+    }
+
+}
@@ -0,0 +1,61 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Reading of single values, treating nulls like the reflective binding of Gson does: a null leaves a primitive field
+ * with its default value, and sets any other field to null.
+ *
+ * @author NickyRamone
+ */
+final class JsonValues {
+
+    private JsonValues() {
+    }
+
+
+    static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    static String nextString(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextString();
+    }
+
+    static int nextInt(JsonReader in, int defaultValue) throws IOException {
+        return skipNull(in) ? defaultValue : in.nextInt();
+    }
+
+    static long nextLong(JsonReader in, long defaultValue) throws IOException {
+        return skipNull(in) ? defaultValue : in.nextLong();
+    }
+
+    static Integer nextInteger(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextInt();
+    }
+
+    static Boolean nextBoolean(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextBoolean();
+    }
+
+    /**
+     * @return the name under which an enum constant is stored when it is used as a map key.
+     */
+    static <E extends Enum<E>> String keyName(TypeAdapter<E> adapter, E constant) {
+        return adapter.toJsonTree(constant).getAsString();
+    }
+
+    static <E extends Enum<E>> E keyConstant(TypeAdapter<E> adapter, String name) {
+        return adapter.fromJsonTree(new JsonPrimitive(name));
+    }
+
+}
@@ -0,0 +1,106 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.nextLong;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.skipNull;
+
+/**
+ * The version is always written first, so that it is known before the rest of the data when streaming it
+ * (see {@link net.lobby_simulator_companion.loop.repository.binary.LoopDataJsonConverter}).
+ *
+ * @author NickyRamone
+ */
+class LoopDataTypeAdapter extends TypeAdapter<LoopData> {
+
+    private final TypeAdapter<Player> playerAdapter;
+    private final TypeAdapter<Stats> statsAdapter;
+    private final TypeAdapter<MatchLog> matchLogAdapter;
+
+
+    LoopDataTypeAdapter(Gson gson) {
+        playerAdapter = gson.getAdapter(Player.class);
+        statsAdapter = gson.getAdapter(Stats.class);
+        matchLogAdapter = gson.getAdapter(MatchLog.class);
+    }
+
+
+    @Override
+    public void write(JsonWriter out, LoopData loopData) throws IOException {
+        out.beginObject();
+        out.name("version").value(loopData.getVersion());
+        out.name("players").beginArray();
+        for (Player player : loopData.getPlayers()) {
+            playerAdapter.write(out, player);
+        }
+        out.endArray();
+        out.name("stats");
+        statsAdapter.write(out, loopData.getStats());
+        out.name("matchLog");
+        matchLogAdapter.write(out, loopData.getMatchLog());
+        out.name("changeLogSequence").value(loopData.getChangeLogSequence());
+        out.endObject();
+    }
+
+    @Override
+    public LoopData read(JsonReader in) throws IOException {
+        List<Player> players = new ArrayList<>();
+        Stats stats = null;
+        MatchLog matchLog = null;
+        long changeLogSequence = 0;
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "players":
+                    readPlayers(in, players);
+                    break;
+                case "stats":
+                    stats = statsAdapter.read(in);
+                    break;
+                case "matchLog":
+                    matchLog = matchLogAdapter.read(in);
+                    break;
+                case "changeLogSequence":
+                    changeLogSequence = nextLong(in, 0);
+                    break;
+                default:
+                    // including the version, which is fixed for every class version
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        LoopData loopData = new LoopData(stats == null ? new Stats() : stats,
+                matchLog == null ? new MatchLog() : matchLog, players);
+        loopData.setChangeLogSequence(changeLogSequence);
+
+        return loopData;
+    }
+
+    private void readPlayers(JsonReader in, List<Player> players) throws IOException {
+        if (skipNull(in)) {
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            Player player = playerAdapter.read(in);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+        in.endArray();
+    }
+
+}
@@ -0,0 +1,50 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+
+/**
+ * Creates the streaming adapters of the stored classes, so that Gson does not bind them through reflection.
+ * <p>
+ * The adapters write the same JSON as the reflective binding did (the same field names, with null fields left out),
+ * so data stored by older versions can be read, and the other way around. Unknown fields are ignored.
+ * Enums and times are written with the adapters registered in the Gson instance.
+ *
+ * @author NickyRamone
+ */
+public class LoopTypeAdapterFactory implements TypeAdapterFactory {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        Class<? super T> rawType = typeToken.getRawType();
+        TypeAdapter<?> adapter;
+
+        if (rawType == LoopData.class) {
+            adapter = new LoopDataTypeAdapter(gson);
+        } else if (rawType == Player.class) {
+            adapter = new PlayerTypeAdapter(gson);
+        } else if (rawType == Match.class) {
+            adapter = new MatchTypeAdapter(gson);
+        } else if (rawType == Stats.class) {
+            adapter = new StatsTypeAdapter(gson);
+        } else if (rawType == MatchLog.class) {
+            adapter = new MatchLogTypeAdapter(gson);
+        } else if (rawType == DataChange.class) {
+            adapter = new DataChangeTypeAdapter(gson);
+        } else {
+            return null;
+        }
+
+        return (TypeAdapter<T>) adapter.nullSafe();
+    }
+
+}
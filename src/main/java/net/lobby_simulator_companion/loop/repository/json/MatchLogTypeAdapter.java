@@ -0,0 +1,68 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.skipNull;
+
+/**
+ * Only the matches are stored. The aggregated stats are calculated again once they have all been read.
+ *
+ * @author NickyRamone
+ */
+class MatchLogTypeAdapter extends TypeAdapter<MatchLog> {
+
+    private final TypeAdapter<Match> matchAdapter;
+
+
+    MatchLogTypeAdapter(Gson gson) {
+        matchAdapter = gson.getAdapter(Match.class);
+    }
+
+
+    @Override
+    public void write(JsonWriter out, MatchLog matchLog) throws IOException {
+        out.beginObject();
+        out.name("matches").beginArray();
+        for (Match match : matchLog.getMatches()) {
+            matchAdapter.write(out, match);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public MatchLog read(JsonReader in) throws IOException {
+        List<Match> matches = new ArrayList<>();
+        in.beginObject();
+
+        while (in.hasNext()) {
+            if (!"matches".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            if (skipNull(in)) {
+                continue;
+            }
+            in.beginArray();
+            while (in.hasNext()) {
+                matches.add(matchAdapter.read(in));
+            }
+            in.endArray();
+        }
+        in.endObject();
+        MatchLog matchLog = new MatchLog();
+        matchLog.addAll(matches);
+
+        return matchLog;
+    }
+
+}
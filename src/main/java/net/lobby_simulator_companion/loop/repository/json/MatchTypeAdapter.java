@@ -0,0 +1,102 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.nextBoolean;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.nextInteger;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.nextString;
+
+/**
+ * The cancelled flag is not stored, since cancelled matches never are.
+ *
+ * @author NickyRamone
+ */
+class MatchTypeAdapter extends TypeAdapter<Match> {
+
+    private final TypeAdapter<LocalDateTime> dateAdapter;
+    private final TypeAdapter<Killer> killerAdapter;
+    private final TypeAdapter<RealmMap> realmMapAdapter;
+
+
+    MatchTypeAdapter(Gson gson) {
+        dateAdapter = gson.getAdapter(LocalDateTime.class);
+        killerAdapter = gson.getAdapter(Killer.class);
+        realmMapAdapter = gson.getAdapter(RealmMap.class);
+    }
+
+
+    @Override
+    public void write(JsonWriter out, Match match) throws IOException {
+        out.beginObject();
+        out.name("lobbiesFound").value(match.getLobbiesFound());
+        out.name("secondsQueued").value(match.getSecondsQueued());
+        out.name("secondsWaited").value(match.getSecondsWaited());
+        out.name("secondsPlayed").value(match.getSecondsPlayed());
+        out.name("matchStartTime");
+        dateAdapter.write(out, match.getMatchStartTime());
+        out.name("escaped").value(match.getEscaped());
+        out.name("killer");
+        killerAdapter.write(out, match.getKiller());
+        out.name("realmMap");
+        realmMapAdapter.write(out, match.getRealmMap());
+        out.name("killerPlayerSteamId64").value(match.getKillerPlayerSteamId64());
+        out.name("killerPlayerDbdId").value(match.getKillerPlayerDbdId());
+        out.endObject();
+    }
+
+    @Override
+    public Match read(JsonReader in) throws IOException {
+        Match match = new Match();
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "lobbiesFound":
+                    match.setLobbiesFound(nextInteger(in));
+                    break;
+                case "secondsQueued":
+                    match.setSecondsQueued(nextInteger(in));
+                    break;
+                case "secondsWaited":
+                    match.setSecondsWaited(nextInteger(in));
+                    break;
+                case "secondsPlayed":
+                    match.setSecondsPlayed(nextInteger(in));
+                    break;
+                case "matchStartTime":
+                    match.setMatchStartTime(dateAdapter.read(in));
+                    break;
+                case "escaped":
+                    match.setEscaped(nextBoolean(in));
+                    break;
+                case "killer":
+                    match.setKiller(killerAdapter.read(in));
+                    break;
+                case "realmMap":
+                    match.setRealmMap(realmMapAdapter.read(in));
+                    break;
+                case "killerPlayerSteamId64":
+                    match.setKillerPlayerSteamId64(nextString(in));
+                    break;
+                case "killerPlayerDbdId":
+                    match.setKillerPlayerDbdId(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return match;
+    }
+
+}
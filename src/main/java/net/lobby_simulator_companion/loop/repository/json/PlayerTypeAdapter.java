@@ -0,0 +1,133 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.domain.Player;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.nextInt;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.nextString;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.skipNull;
+
+/**
+ * @author NickyRamone
+ */
+class PlayerTypeAdapter extends TypeAdapter<Player> {
+
+    private final TypeAdapter<LocalDateTime> dateAdapter;
+    private final TypeAdapter<Player.Rating> ratingAdapter;
+
+
+    PlayerTypeAdapter(Gson gson) {
+        dateAdapter = gson.getAdapter(LocalDateTime.class);
+        ratingAdapter = gson.getAdapter(Player.Rating.class);
+    }
+
+
+    @Override
+    public void write(JsonWriter out, Player player) throws IOException {
+        out.beginObject();
+        out.name("steamId64").value(player.getSteamId64());
+        out.name("dbdPlayerId").value(player.getDbdPlayerId());
+        out.name("firstSeen");
+        dateAdapter.write(out, player.getFirstSeen());
+        out.name("lastSeen");
+        dateAdapter.write(out, player.getLastSeen());
+        out.name("timesEncountered").value(player.getTimesEncountered());
+        out.name("matchesPlayed").value(player.getMatchesPlayed());
+        out.name("secondsPlayed").value(player.getSecondsPlayed());
+        out.name("escapes").value(player.getEscapes());
+        out.name("deaths").value(player.getDeaths());
+        out.name("names");
+        writeNames(out, player.getNames());
+        out.name("rating");
+        ratingAdapter.write(out, player.getRating());
+        out.name("description").value(player.getDescription());
+        out.endObject();
+    }
+
+    private void writeNames(JsonWriter out, List<String> names) throws IOException {
+        if (names == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (String name : names) {
+            out.value(name);
+        }
+        out.endArray();
+    }
+
+    @Override
+    public Player read(JsonReader in) throws IOException {
+        Player player = new Player();
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "steamId64":
+                    player.setSteamId64(nextString(in));
+                    break;
+                case "dbdPlayerId":
+                    player.setDbdPlayerId(nextString(in));
+                    break;
+                case "firstSeen":
+                    player.setFirstSeen(dateAdapter.read(in));
+                    break;
+                case "lastSeen":
+                    player.setLastSeen(dateAdapter.read(in));
+                    break;
+                case "timesEncountered":
+                    player.setTimesEncountered(nextInt(in, 0));
+                    break;
+                case "matchesPlayed":
+                    player.setMatchesPlayed(nextInt(in, 0));
+                    break;
+                case "secondsPlayed":
+                    player.setSecondsPlayed(nextInt(in, 0));
+                    break;
+                case "escapes":
+                    player.setEscapes(nextInt(in, 0));
+                    break;
+                case "deaths":
+                    player.setDeaths(nextInt(in, 0));
+                    break;
+                case "names":
+                    player.setNames(readNames(in));
+                    break;
+                case "rating":
+                    player.setRating(ratingAdapter.read(in));
+                    break;
+                case "description":
+                    player.setDescription(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return player;
+    }
+
+    private List<String> readNames(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            names.add(nextString(in));
+        }
+        in.endArray();
+
+        return names;
+    }
+
+}
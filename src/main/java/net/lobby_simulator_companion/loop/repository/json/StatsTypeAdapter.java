@@ -0,0 +1,262 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.AggregateStats;
+import net.lobby_simulator_companion.loop.domain.stats.KillerStats;
+import net.lobby_simulator_companion.loop.domain.stats.MapStats;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.keyConstant;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.keyName;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.nextInt;
+import static net.lobby_simulator_companion.loop.repository.json.JsonValues.skipNull;
+
+/**
+ * Stores the stats of every period under the lowercase name of the period.
+ * Periods missing from the stored data start empty, and unknown periods, killers and maps are ignored.
+ *
+ * @author NickyRamone
+ */
+class StatsTypeAdapter extends TypeAdapter<Stats> {
+
+    private final TypeAdapter<LocalDateTime> dateAdapter;
+    private final TypeAdapter<Killer> killerAdapter;
+    private final TypeAdapter<RealmMap> realmMapAdapter;
+
+
+    StatsTypeAdapter(Gson gson) {
+        dateAdapter = gson.getAdapter(LocalDateTime.class);
+        killerAdapter = gson.getAdapter(Killer.class);
+        realmMapAdapter = gson.getAdapter(RealmMap.class);
+    }
+
+
+    @Override
+    public void write(JsonWriter out, Stats stats) throws IOException {
+        out.beginObject();
+        for (Stats.Period period : Stats.Period.values()) {
+            out.name(period.name().toLowerCase());
+            writePeriodStats(out, stats.get(period));
+        }
+        out.endObject();
+    }
+
+    private void writePeriodStats(JsonWriter out, PeriodStats stats) throws IOException {
+        out.beginObject();
+        out.name("periodStart");
+        dateAdapter.write(out, stats.getPeriodStart());
+        out.name("periodEnd");
+        dateAdapter.write(out, stats.getPeriodEnd());
+        out.name("lobbiesFound").value(stats.getLobbiesFound());
+        out.name("secondsQueued").value(stats.getSecondsQueued());
+        out.name("secondsWaited").value(stats.getSecondsWaited());
+        out.name("secondsPlayed").value(stats.getSecondsPlayed());
+        out.name("matchesPlayed").value(stats.getMatchesPlayed());
+        out.name("escapes").value(stats.getEscapes());
+        out.name("escapesInARow").value(stats.getEscapesInARow());
+        out.name("maxEscapesInARow").value(stats.getMaxEscapesInARow());
+        out.name("deaths").value(stats.getDeaths());
+        out.name("deathsInARow").value(stats.getDeathsInARow());
+        out.name("maxDeathsInARow").value(stats.getMaxDeathsInARow());
+
+        out.name("killersStats").beginObject();
+        for (Map.Entry<Killer, KillerStats> entry : stats.getKillersStats().entrySet()) {
+            KillerStats killerStats = entry.getValue();
+            out.name(keyName(killerAdapter, entry.getKey()));
+            writeMatchCounts(out, killerStats.getMatches(), killerStats.getEscapes(), killerStats.getDeaths(),
+                    killerStats.getMatchTime());
+        }
+        out.endObject();
+
+        out.name("mapStats").beginObject();
+        for (Map.Entry<RealmMap, MapStats> entry : stats.getMapStats().entrySet()) {
+            MapStats mapStats = entry.getValue();
+            out.name(keyName(realmMapAdapter, entry.getKey()));
+            writeMatchCounts(out, mapStats.getMatches(), mapStats.getEscapes(), mapStats.getDeaths(),
+                    mapStats.getMatchTime());
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    private void writeMatchCounts(JsonWriter out, int matches, int escapes, int deaths, int matchTime)
+            throws IOException {
+        out.beginObject();
+        out.name("matches").value(matches);
+        out.name("escapes").value(escapes);
+        out.name("deaths").value(deaths);
+        out.name("matchTime").value(matchTime);
+        out.endObject();
+    }
+
+
+    @Override
+    public Stats read(JsonReader in) throws IOException {
+        Stats stats = new Stats();
+        in.beginObject();
+
+        while (in.hasNext()) {
+            Stats.Period period = toPeriod(in.nextName());
+            if (period == null) {
+                in.skipValue();
+            } else if (!skipNull(in)) {
+                readPeriodStats(in, stats.get(period));
+            }
+        }
+        in.endObject();
+
+        return stats;
+    }
+
+    private static Stats.Period toPeriod(String name) {
+        for (Stats.Period period : Stats.Period.values()) {
+            if (period.name().equalsIgnoreCase(name)) {
+                return period;
+            }
+        }
+        return null;
+    }
+
+    private void readPeriodStats(JsonReader in, PeriodStats target) throws IOException {
+        LocalDateTime periodStart = target.getPeriodStart();
+        LocalDateTime periodEnd = target.getPeriodEnd();
+        AggregateStats.AggregateStatsBuilder builder = AggregateStats.builder();
+        Map<Killer, KillerStats> killersStats = new TreeMap<>();
+        Map<RealmMap, MapStats> mapStats = new TreeMap<>();
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "periodStart":
+                    periodStart = dateAdapter.read(in);
+                    break;
+                case "periodEnd":
+                    periodEnd = dateAdapter.read(in);
+                    break;
+                case "lobbiesFound":
+                    builder.lobbiesFound(nextInt(in, 0));
+                    break;
+                case "secondsQueued":
+                    builder.secondsQueued(nextInt(in, 0));
+                    break;
+                case "secondsWaited":
+                    builder.secondsWaited(nextInt(in, 0));
+                    break;
+                case "secondsPlayed":
+                    builder.secondsPlayed(nextInt(in, 0));
+                    break;
+                case "matchesPlayed":
+                    builder.matchesPlayed(nextInt(in, 0));
+                    break;
+                case "escapes":
+                    builder.escapes(nextInt(in, 0));
+                    break;
+                case "escapesInARow":
+                    builder.escapesInARow(nextInt(in, 0));
+                    break;
+                case "maxEscapesInARow":
+                    builder.maxEscapesInARow(nextInt(in, 0));
+                    break;
+                case "deaths":
+                    builder.deaths(nextInt(in, 0));
+                    break;
+                case "deathsInARow":
+                    builder.deathsInARow(nextInt(in, 0));
+                    break;
+                case "maxDeathsInARow":
+                    builder.maxDeathsInARow(nextInt(in, 0));
+                    break;
+                case "killersStats":
+                    readKillersStats(in, killersStats);
+                    break;
+                case "mapStats":
+                    readMapStats(in, mapStats);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        // the maps are not set by the builder
+        AggregateStats stats = builder.build();
+        stats.getKillersStats().putAll(killersStats);
+        stats.getMapStats().putAll(mapStats);
+        target.restore(stats, periodStart, periodEnd);
+    }
+
+    private void readKillersStats(JsonReader in, Map<Killer, KillerStats> killersStats) throws IOException {
+        if (skipNull(in)) {
+            return;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            Killer killer = keyConstant(killerAdapter, in.nextName());
+            int[] counts = readMatchCounts(in);
+            if (killer != null) {
+                killersStats.put(killer, KillerStats.builder()
+                        .matches(counts[0]).escapes(counts[1]).deaths(counts[2]).matchTime(counts[3])
+                        .build());
+            }
+        }
+        in.endObject();
+    }
+
+    private void readMapStats(JsonReader in, Map<RealmMap, MapStats> mapStats) throws IOException {
+        if (skipNull(in)) {
+            return;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            RealmMap realmMap = keyConstant(realmMapAdapter, in.nextName());
+            int[] counts = readMatchCounts(in);
+            if (realmMap != null) {
+                mapStats.put(realmMap, MapStats.builder()
+                        .matches(counts[0]).escapes(counts[1]).deaths(counts[2]).matchTime(counts[3])
+                        .build());
+            }
+        }
+        in.endObject();
+    }
+
+    /**
+     * @return the matches, escapes, deaths and match time.
+     */
+    private int[] readMatchCounts(JsonReader in) throws IOException {
+        int[] counts = new int[4];
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "matches":
+                    counts[0] = nextInt(in, 0);
+                    break;
+                case "escapes":
+                    counts[1] = nextInt(in, 0);
+                    break;
+                case "deaths":
+                    counts[2] = nextInt(in, 0);
+                    break;
+                case "matchTime":
+                    counts[3] = nextInt(in, 0);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return counts;
+    }
+
+}
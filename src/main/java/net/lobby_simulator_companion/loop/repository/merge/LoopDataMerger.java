@@ -0,0 +1,524 @@
+package net.lobby_simulator_companion.loop.repository.merge;
+
+import com.google.gson.Gson;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.config.AppProperties;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+import net.lobby_simulator_companion.loop.repository.LoopRepository;
+import net.lobby_simulator_companion.loop.repository.TieredLoad;
+import net.lobby_simulator_companion.loop.repository.archive.MatchArchive;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataReader;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataWriter;
+import net.lobby_simulator_companion.loop.repository.changelog.ChangeLog;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * Merges the data of several installations (for example, of different accounts or machines) into a new one.
+ * <p>
+ * The players with the same Steam id are merged with {@link Player#merge(Player)}. To do it in bounded memory, the
+ * players of every installation are first spilled to partition files by the hash of their Steam id, reading the
+ * installations in parallel. The partitions are then merged in parallel, each of them held in memory on its own, and
+ * finally written as the players of the new installation.
+ * <p>
+ * The matches of every installation (its match archive, if it has one, plus the latest matches not archived yet) are
+ * merged by start time, one match of each installation at a time, dropping the ones found in more than one
+ * installation. They are written to the match archive of the new installation, and the stats are recalculated from
+ * them: the stats of the installations cannot be merged, since they are only aggregates.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class LoopDataMerger {
+
+    private static final String PROPERTY__WRITE_ENCRYPTED = "storage.write.encrypted";
+    private static final String PROPERTY__CHANGELOG_DIR = "storage.changelog.dir";
+    private static final String PROPERTY__MATCH_ARCHIVE_DIR = "storage.match_archive.dir";
+    private static final String MATCH_ARCHIVE_FILE = "matches.arc";
+
+    private static final Comparator<Match> MATCH_TIME_ORDER =
+            Comparator.comparing(Match::getMatchStartTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final AppProperties properties;
+    private final Gson gson;
+    private final int partitionCount;
+    private final ForkJoinPool pool;
+
+
+    @Value
+    public static class MergeReport {
+        int inputs;
+        long playersRead;
+        int players;
+        long matches;
+        Duration elapsed;
+    }
+
+
+    /**
+     * @param partitionCount number of partitions the players are split into, so that only one partition per thread
+     *                       is held in memory.
+     * @param parallelism    number of installations read, or partitions merged, at the same time.
+     */
+    public LoopDataMerger(AppProperties properties, Gson gson, int partitionCount, int parallelism) {
+        this.properties = properties;
+        this.gson = gson;
+        this.partitionCount = partitionCount;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+
+    /**
+     * Merges the data of the installations in the given directories into a new installation in the output directory,
+     * which must not have any data yet.
+     */
+    public MergeReport merge(List<Path> inputHomes, Path outputHome) throws IOException {
+        long startTime = System.nanoTime();
+        LoopRepository outputRepository = new LoopRepository(properties, gson, outputHome);
+        if (outputRepository.exists()) {
+            throw new IOException("There is already data in " + outputHome);
+        }
+        Files.createDirectories(outputHome);
+        Path spillDir = Files.createTempDirectory(outputHome, "merge-");
+        List<Input> inputs = new ArrayList<>();
+
+        try {
+            List<ForkJoinTask<Input>> readTasks = new ArrayList<>();
+            for (int i = 0; i < inputHomes.size(); i++) {
+                Path inputHome = inputHomes.get(i);
+                Path inputSpillDir = Files.createDirectory(spillDir.resolve("input-" + i));
+                readTasks.add(pool.submit(() -> readInput(inputHome, inputSpillDir)));
+            }
+            IOException readError = null;
+            for (ForkJoinTask<Input> task : readTasks) {
+                // every input is awaited, so that the archives opened are closed when another input fails
+                try {
+                    inputs.add(await(task));
+                } catch (IOException e) {
+                    readError = readError != null ? readError : e;
+                }
+            }
+            if (readError != null) {
+                throw readError;
+            }
+
+            Path mergedDir = Files.createDirectory(spillDir.resolve("merged"));
+            List<ForkJoinTask<Integer>> mergeTasks = new ArrayList<>();
+            for (int partition = 0; partition < partitionCount; partition++) {
+                int partitionIndex = partition;
+                mergeTasks.add(pool.submit(() -> mergePartition(partitionIndex, spillDir, inputs.size(), mergedDir)));
+            }
+            int playerCount = 0;
+            for (ForkJoinTask<Integer> task : mergeTasks) {
+                playerCount += await(task);
+            }
+
+            LoopData mergedData = new LoopData(new Stats(), new MatchLog(), Collections.emptyList());
+            long matchCount;
+            try (MatchArchive outputArchive = MatchArchive.open(
+                    outputHome.resolve(properties.get(PROPERTY__MATCH_ARCHIVE_DIR)))) {
+                matchCount = mergeMatches(inputs, mergedData, outputArchive);
+                outputArchive.force();
+            }
+            try {
+                outputRepository.save(mergedData, () -> new PartitionIterator(mergedDir, partitionCount));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                outputRepository.close();
+            }
+
+            long playersRead = inputs.stream().mapToLong(input -> input.playersRead).sum();
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - startTime);
+            log.info("Merged {} installations ({} players read; {} players; {} matches) in {} ms.",
+                    inputs.size(), playersRead, playerCount, matchCount, elapsed.toMillis());
+
+            return new MergeReport(inputs.size(), playersRead, playerCount, matchCount, elapsed);
+        } finally {
+            for (Input input : inputs) {
+                input.close();
+            }
+            deleteRecursively(spillDir);
+        }
+    }
+
+
+    /**
+     * Spills the players of an installation to the partitions, in the order in which they replace each other: the
+     * ones in the snapshot, then the ones in the change log.
+     */
+    private Input readInput(Path home, Path spillDir) throws IOException {
+        Input input = new Input();
+        LoopRepository repository = new LoopRepository(properties, gson, home);
+        Spill spill = new Spill(spillDir, partitionCount);
+
+        try {
+            LoopData data;
+            try (TieredLoad load = repository.loadTiered()) {
+                data = load.getData();
+                data.getPlayers().forEach(spill::write);
+                input.playersRead += data.getPlayers().size() + load.readPlayers(spill::write);
+            }
+
+            input.recentMatches.addAll(data.getMatchLog().getMatches());
+            input.globalStatsStart = data.getStats().get(Stats.Period.GLOBAL).getPeriodStart();
+            Path changeLogDir = home.resolve(properties.get(PROPERTY__CHANGELOG_DIR));
+            if (Files.isDirectory(changeLogDir)) {
+                ChangeLog changeLog = new ChangeLog(changeLogDir, LoopGsonFactory.gson(false),
+                        properties.getBoolean(PROPERTY__WRITE_ENCRYPTED), 0);
+                changeLog.replay(data.getChangeLogSequence(), change -> {
+                    if (change.getType() == DataChange.Type.PLAYER_UPSERT) {
+                        spill.write(change.getPlayer());
+                        input.playersRead++;
+                    } else if (change.getType() == DataChange.Type.MATCH_ADD) {
+                        input.recentMatches.add(change.getMatch());
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            spill.close();
+        }
+
+        Path archiveDir = home.resolve(properties.get(PROPERTY__MATCH_ARCHIVE_DIR));
+        if (Files.exists(archiveDir.resolve(MATCH_ARCHIVE_FILE))) {
+            input.archive = MatchArchive.open(archiveDir);
+            input.recentMatches = input.archive.missing(input.recentMatches);
+        }
+        log.info("Read {} players from {}.", input.playersRead, home);
+
+        return input;
+    }
+
+    /**
+     * Merges the players of a partition, the last version of a player in each installation replacing the previous
+     * ones.
+     *
+     * @return the number of players merged.
+     */
+    private int mergePartition(int partition, Path spillDir, int inputCount, Path mergedDir) throws IOException {
+        Map<String, Player> mergedPlayers = new HashMap<>();
+        for (int input = 0; input < inputCount; input++) {
+            Map<String, Player> inputPlayers = new LinkedHashMap<>();
+            for (Player player : readPartition(spillDir.resolve("input-" + input), partition)) {
+                inputPlayers.put(player.getSteamId64(), player);
+            }
+            inputPlayers.forEach((steamId, player) -> mergedPlayers.merge(steamId, player, (merged, other) -> {
+                merged.merge(other);
+                return merged;
+            }));
+        }
+
+        try (Spill merged = new Spill(mergedDir, partition, partition + 1)) {
+            mergedPlayers.values().forEach(merged::write);
+        }
+
+        return mergedPlayers.size();
+    }
+
+    /**
+     * Merges the matches of the installations by start time, adding them to the given data and to the archive.
+     *
+     * @return the number of matches merged.
+     */
+    private static long mergeMatches(List<Input> inputs, LoopData mergedData, MatchArchive archive)
+            throws IOException {
+        Stats stats = mergedData.getStats();
+        PriorityQueue<MatchSource> sources = new PriorityQueue<>(
+                Comparator.comparing(MatchSource::peek, MATCH_TIME_ORDER).thenComparingInt(source -> source.order));
+        for (int i = 0; i < inputs.size(); i++) {
+            MatchSource source = new MatchSource(inputs.get(i), i);
+            if (source.hasNext()) {
+                sources.add(source);
+            }
+        }
+
+        // the same match found in several installations comes from each of them with the same start time
+        List<Match> matchesAtLastTime = new ArrayList<>();
+        long count = 0;
+        while (!sources.isEmpty()) {
+            MatchSource source = sources.poll();
+            Match match = source.next();
+            if (source.hasNext()) {
+                sources.add(source);
+            }
+            if (!matchesAtLastTime.isEmpty()
+                    && MATCH_TIME_ORDER.compare(matchesAtLastTime.get(0), match) != 0) {
+                matchesAtLastTime.clear();
+            }
+            if (matchesAtLastTime.contains(match)) {
+                continue;
+            }
+            matchesAtLastTime.add(match);
+
+            archive.append(match);
+            mergedData.getMatchLog().add(match);
+            addMatchStats(stats, match);
+            count++;
+        }
+
+        LocalDateTime globalStatsStart = inputs.stream()
+                .map(input -> input.globalStatsStart)
+                .filter(time -> time != null)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+        if (globalStatsStart != null) {
+            PeriodStats globalStats = stats.get(Stats.Period.GLOBAL);
+            globalStats.restore(globalStats.copy(), globalStatsStart, null);
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds the match to the stats of every period it belongs to.
+     */
+    private static void addMatchStats(Stats stats, Match match) {
+        LocalDateTime time = match.getMatchStartTime();
+        for (Stats.Period period : Stats.Period.values()) {
+            PeriodStats periodStats = stats.get(period);
+            boolean inPeriod = period == Stats.Period.GLOBAL
+                    || time != null && !time.isBefore(periodStats.getPeriodStart())
+                    && time.isBefore(periodStats.getPeriodEnd());
+            if (inPeriod) {
+                periodStats.addMatchStats(match);
+            }
+        }
+    }
+
+
+    private static List<Player> readPartition(Path dir, int partition) throws IOException {
+        Path file = Spill.partitionFile(dir, partition);
+        if (!Files.exists(file)) {
+            return Collections.emptyList();
+        }
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+            return new LoopDataReader(inputStream).read().getPlayers();
+        }
+    }
+
+    private static <T> T await(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging data.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("Failed to merge data.", cause);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Failed to delete the temporary files in {}.", dir, e);
+        }
+    }
+
+
+    /**
+     * What is kept of an installation after its players are spilled.
+     */
+    private static final class Input implements Closeable {
+
+        private long playersRead;
+        private LocalDateTime globalStatsStart;
+        private MatchArchive archive;
+        /**
+         * The latest matches, which are not in the archive.
+         */
+        private List<Match> recentMatches = new ArrayList<>();
+
+        @Override
+        public void close() throws IOException {
+            if (archive != null) {
+                archive.close();
+            }
+        }
+    }
+
+    /**
+     * The matches of an installation, from oldest to newest.
+     */
+    private static final class MatchSource {
+
+        private final Input input;
+        private final int order;
+        private final long archiveSize;
+        private long position;
+
+        MatchSource(Input input, int order) {
+            this.input = input;
+            this.order = order;
+            archiveSize = input.archive != null ? input.archive.size() : 0;
+        }
+
+        boolean hasNext() {
+            return position < archiveSize + input.recentMatches.size();
+        }
+
+        Match peek() {
+            return position < archiveSize ? input.archive.get(position)
+                    : input.recentMatches.get((int) (position - archiveSize));
+        }
+
+        Match next() {
+            Match match = peek();
+            position++;
+            return match;
+        }
+    }
+
+    /**
+     * Writers of players to partition files in the binary format.
+     */
+    private static final class Spill implements Closeable {
+
+        private final int firstPartition;
+        private final OutputStream[] outputStreams;
+        private final LoopDataWriter[] writers;
+
+        Spill(Path dir, int partitionCount) throws IOException {
+            this(dir, 0, partitionCount);
+        }
+
+        Spill(Path dir, int firstPartition, int endPartition) throws IOException {
+            this.firstPartition = firstPartition;
+            outputStreams = new OutputStream[endPartition - firstPartition];
+            writers = new LoopDataWriter[outputStreams.length];
+            try {
+                for (int i = 0; i < writers.length; i++) {
+                    outputStreams[i] = new BufferedOutputStream(
+                            Files.newOutputStream(partitionFile(dir, firstPartition + i)));
+                    writers[i] = new LoopDataWriter(outputStreams[i], LoopData.CURRENT_VERSION);
+                    writers[i].beginPlayers();
+                }
+            } catch (IOException e) {
+                closeStreams();
+                throw e;
+            }
+        }
+
+        static Path partitionFile(Path dir, int partition) {
+            return dir.resolve(String.format("players-%d.dat", partition));
+        }
+
+        static int partitionOf(String steamId, int partitionCount) {
+            int hash = steamId.hashCode();
+
+            return Math.floorMod(hash ^ (hash >>> 16), partitionCount);
+        }
+
+        /**
+         * @throws UncheckedIOException if the player cannot be written.
+         */
+        void write(Player player) {
+            int partition = writers.length == 1 ? 0 : partitionOf(player.getSteamId64(), writers.length);
+            try {
+                writers[partition].writePlayer(player);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (LoopDataWriter writer : writers) {
+                    if (writer != null) {
+                        writer.endSection();
+                        writer.finish();
+                    }
+                }
+            } finally {
+                closeStreams();
+            }
+        }
+
+        private void closeStreams() throws IOException {
+            for (OutputStream outputStream : outputStreams) {
+                if (outputStream != null) {
+                    outputStream.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterates the merged players, reading one partition at a time.
+     */
+    private static final class PartitionIterator implements Iterator<Player> {
+
+        private final Path dir;
+        private final int partitionCount;
+        private int nextPartition;
+        private Iterator<Player> players = Collections.emptyIterator();
+
+        PartitionIterator(Path dir, int partitionCount) {
+            this.dir = dir;
+            this.partitionCount = partitionCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!players.hasNext() && nextPartition < partitionCount) {
+                try {
+                    players = readPartition(dir, nextPartition++).iterator();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return players.hasNext();
+        }
+
+        @Override
+        public Player next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return players.next();
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package net.lobby_simulator_companion.loop.repository.migration;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@link JsonReader} of a stream of JSON events, so that Gson can bind migrated data while it is being migrated.
+ * <p>
+ * Reading map keys as values, as the Gson map adapters do for complex keys, is not supported; the stored classes
+ * have their own adapters.
+ *
+ * @author NickyRamone
+ */
+class EventSourceJsonReader extends JsonReader {
+
+    private static final Reader UNREADABLE_READER = new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private final JsonEventSource source;
+    private JsonEvent peeked;
+
+
+    EventSourceJsonReader(JsonEventSource source) {
+        super(UNREADABLE_READER);
+        this.source = source;
+    }
+
+
+    @Override
+    public JsonToken peek() throws IOException {
+        return peekEvent().getToken();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        take(JsonToken.BEGIN_ARRAY);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        take(JsonToken.END_ARRAY);
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        take(JsonToken.BEGIN_OBJECT);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        take(JsonToken.END_OBJECT);
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        return take(JsonToken.NAME).getValue();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        return takeLiteral(JsonToken.STRING);
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        return Boolean.parseBoolean(take(JsonToken.BOOLEAN).getValue());
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        take(JsonToken.NULL);
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        double result = Double.parseDouble(takeLiteral(JsonToken.NUMBER));
+        if (!isLenient() && (Double.isNaN(result) || Double.isInfinite(result))) {
+            throw new NumberFormatException("JSON forbids NaN and infinities: " + result);
+        }
+        return result;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        String literal = takeLiteral(JsonToken.NUMBER);
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            double asDouble = Double.parseDouble(literal);
+            long result = (long) asDouble;
+            if (result != asDouble) {
+                throw new NumberFormatException("Expected a long but was " + literal);
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long result = nextLong();
+        if (result != (int) result) {
+            throw new NumberFormatException("Expected an int but was " + result);
+        }
+        return (int) result;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            JsonToken token = peek();
+            if (token == JsonToken.END_DOCUMENT) {
+                return;
+            }
+            peeked = null;
+            if (token == JsonToken.BEGIN_ARRAY || token == JsonToken.BEGIN_OBJECT) {
+                depth++;
+            } else if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT) {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = JsonEvent.END_DOCUMENT;
+        source.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    private JsonEvent peekEvent() throws IOException {
+        if (peeked == null) {
+            peeked = source.next();
+        }
+        return peeked;
+    }
+
+    private JsonEvent take(JsonToken expected) throws IOException {
+        JsonEvent event = peekEvent();
+        if (event.getToken() != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + event.getToken());
+        }
+        peeked = null;
+        return event;
+    }
+
+    /**
+     * Strings and numbers can be read as each other, as with {@link JsonReader}.
+     */
+    private String takeLiteral(JsonToken expected) throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token);
+        }
+        String literal = peeked.getValue();
+        peeked = null;
+        return literal;
+    }
+
+}
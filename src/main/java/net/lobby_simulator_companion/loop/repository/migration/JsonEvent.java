@@ -0,0 +1,49 @@
+package net.lobby_simulator_companion.loop.repository.migration;
+
+import com.google.gson.stream.JsonToken;
+import lombok.Value;
+
+/**
+ * A single token of a JSON document, as it flows through the migrations.
+ * Names, strings, numbers and booleans carry their value as text (numbers as their literal).
+ *
+ * @author NickyRamone
+ */
+@Value
+public class JsonEvent {
+
+    public static final JsonEvent BEGIN_OBJECT = new JsonEvent(JsonToken.BEGIN_OBJECT, null);
+    public static final JsonEvent END_OBJECT = new JsonEvent(JsonToken.END_OBJECT, null);
+    public static final JsonEvent BEGIN_ARRAY = new JsonEvent(JsonToken.BEGIN_ARRAY, null);
+    public static final JsonEvent END_ARRAY = new JsonEvent(JsonToken.END_ARRAY, null);
+    public static final JsonEvent NULL = new JsonEvent(JsonToken.NULL, null);
+    public static final JsonEvent TRUE = new JsonEvent(JsonToken.BOOLEAN, "true");
+    public static final JsonEvent FALSE = new JsonEvent(JsonToken.BOOLEAN, "false");
+    public static final JsonEvent END_DOCUMENT = new JsonEvent(JsonToken.END_DOCUMENT, null);
+
+    JsonToken token;
+    String value;
+
+
+    public static JsonEvent name(String name) {
+        return new JsonEvent(JsonToken.NAME, name);
+    }
+
+    public static JsonEvent string(String value) {
+        return value == null ? NULL : new JsonEvent(JsonToken.STRING, value);
+    }
+
+    public static JsonEvent number(Number value) {
+        return value == null ? NULL : new JsonEvent(JsonToken.NUMBER, value.toString());
+    }
+
+    public static JsonEvent bool(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    public boolean isStructural() {
+        return token == JsonToken.BEGIN_OBJECT || token == JsonToken.END_OBJECT
+                || token == JsonToken.BEGIN_ARRAY || token == JsonToken.END_ARRAY;
+    }
+
+}
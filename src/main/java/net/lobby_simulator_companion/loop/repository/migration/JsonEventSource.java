@@ -0,0 +1,19 @@
+package net.lobby_simulator_companion.loop.repository.migration;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A pull-based stream of JSON events. Only the next event is ever held, so documents of any size flow through in
+ * constant memory.
+ *
+ * @author NickyRamone
+ */
+public interface JsonEventSource extends Closeable {
+
+    /**
+     * @return the next event, or {@link JsonEvent#END_DOCUMENT} once the document has been read.
+     */
+    JsonEvent next() throws IOException;
+
+}
@@ -0,0 +1,57 @@
+package net.lobby_simulator_companion.loop.repository.migration;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+
+/**
+ * Events of the document read by a {@link JsonReader}.
+ *
+ * @author NickyRamone
+ */
+@RequiredArgsConstructor
+class JsonReaderEventSource implements JsonEventSource {
+
+    private final JsonReader in;
+
+
+    @Override
+    public JsonEvent next() throws IOException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                in.beginObject();
+                return JsonEvent.BEGIN_OBJECT;
+            case END_OBJECT:
+                in.endObject();
+                return JsonEvent.END_OBJECT;
+            case BEGIN_ARRAY:
+                in.beginArray();
+                return JsonEvent.BEGIN_ARRAY;
+            case END_ARRAY:
+                in.endArray();
+                return JsonEvent.END_ARRAY;
+            case NAME:
+                return JsonEvent.name(in.nextName());
+            case STRING:
+                return JsonEvent.string(in.nextString());
+            case NUMBER:
+                // the literal, so that no precision is lost
+                return new JsonEvent(JsonToken.NUMBER, in.nextString());
+            case BOOLEAN:
+                return JsonEvent.bool(in.nextBoolean());
+            case NULL:
+                in.nextNull();
+                return JsonEvent.NULL;
+            default:
+                return JsonEvent.END_DOCUMENT;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
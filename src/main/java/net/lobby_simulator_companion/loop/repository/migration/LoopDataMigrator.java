@@ -0,0 +1,126 @@
+package net.lobby_simulator_companion.loop.repository.migration;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Migrates data stored in the JSON format by older versions to the current version, while it is being read.
+ * <p>
+ * The migrations from each version to the next are chained, so that the data goes through all of them in a single
+ * pass. Adding a version only needs a migration from the previous one:
+ * <ol>
+ *     <li>Increase {@link LoopData#CURRENT_VERSION}.</li>
+ *     <li>Implement a {@link SchemaMigration} from the previous version, and register it below.</li>
+ *     <li>Add a data file of the previous version to the test fixtures.</li>
+ * </ol>
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class LoopDataMigrator {
+
+    /**
+     * Maximum number of bytes read to find the version. It is the first property written, but the reader can read
+     * ahead several kilobytes.
+     */
+    private static final int VERSION_PEEK_LIMIT = 16 * 1024;
+
+    private final Map<Integer, Supplier<SchemaMigration>> migrations = new HashMap<>();
+
+
+    public LoopDataMigrator() {
+        // the data of versions 1 and 2 has always been read as it is, with missing properties left with their defaults
+        this(Arrays.asList(
+                () -> SchemaMigration.compatible(1),
+                () -> SchemaMigration.compatible(2)));
+    }
+
+    LoopDataMigrator(List<Supplier<SchemaMigration>> migrations) {
+        for (Supplier<SchemaMigration> migration : migrations) {
+            this.migrations.put(migration.get().fromVersion(), migration);
+        }
+    }
+
+
+    /**
+     * Reads the version of the data at the start of the stream, and resets the stream to its start.
+     *
+     * @return the version of the data, or the current version if the data does not start with it, so that it is read
+     * as it is.
+     */
+    public static int peekVersion(InputStream inputStream) throws IOException {
+        inputStream.mark(VERSION_PEEK_LIMIT);
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            reader.setLenient(true);
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                if (reader.hasNext() && "version".equals(reader.nextName()) && reader.peek() == JsonToken.NUMBER) {
+                    return reader.nextInt();
+                }
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // not valid data; the error is reported when the data is read
+        } finally {
+            inputStream.reset();
+        }
+
+        return LoopData.CURRENT_VERSION;
+    }
+
+    /**
+     * @return a reader of the data migrated to the current version, or the same reader if it already is.
+     * @throws IOException if the data was written by a newer version, or there is no migration from its version.
+     */
+    public JsonReader migrate(JsonReader in, int version) throws IOException {
+        if (version > LoopData.CURRENT_VERSION) {
+            throw new IOException("Unsupported data version: " + version
+                    + ". The data was written by a newer version of the application.");
+        }
+        if (version == LoopData.CURRENT_VERSION) {
+            return in;
+        }
+
+        JsonEventSource source = new JsonReaderEventSource(in);
+        for (int fromVersion = version; fromVersion < LoopData.CURRENT_VERSION; fromVersion++) {
+            Supplier<SchemaMigration> migration = migrations.get(fromVersion);
+            if (migration == null) {
+                throw new IOException("Unsupported data version: " + version
+                        + ". There is no migration from version " + fromVersion + ".");
+            }
+            source = migration.get().readFrom(source);
+        }
+        log.info("Migrating data from version {} to version {}.", version, LoopData.CURRENT_VERSION);
+
+        JsonReader reader = new EventSourceJsonReader(source);
+        reader.setLenient(in.isLenient());
+
+        return reader;
+    }
+
+    /**
+     * Checks the version of data in the binary format, which was introduced in the current version. The format is
+     * versioned on its own.
+     *
+     * @throws IOException if the data was written by a newer version.
+     */
+    public void checkBinaryVersion(int version) throws IOException {
+        if (version > LoopData.CURRENT_VERSION) {
+            throw new IOException("Unsupported data version: " + version
+                    + ". The data was written by a newer version of the application.");
+        }
+    }
+
+}
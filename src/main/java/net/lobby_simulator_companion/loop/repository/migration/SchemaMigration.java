@@ -0,0 +1,179 @@
+package net.lobby_simulator_companion.loop.repository.migration;
+
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A step which migrates the stored data from one version to the next, as a transform of the stream of JSON events.
+ * <p>
+ * Every event of the input is passed to {@link #transform(JsonEvent)}, which emits the events replacing it: the same
+ * event to keep it, none to drop it, or others to rename, rewrite or add values. The position of each event is
+ * tracked, so that a transform can tell where it is with {@link #isAt(String...)}. Only the events emitted for the
+ * current input event are buffered, so the memory used does not depend on the size of the data.
+ * <p>
+ * The version of the data is rewritten by the step itself.
+ *
+ * @author NickyRamone
+ */
+public abstract class SchemaMigration implements JsonEventSource {
+
+    /**
+     * Path segment which stands for any element of an array.
+     */
+    protected static final String ANY_ELEMENT = "[]";
+
+    private static final String VERSION_PROPERTY = "version";
+
+    private final List<Container> containers = new ArrayList<>();
+    private final Deque<JsonEvent> output = new ArrayDeque<>();
+    private JsonEventSource upstream;
+
+
+    /**
+     * @return the version of the data read by this migration, which writes the next one.
+     */
+    public abstract int fromVersion();
+
+    /**
+     * Called for every event of the input, in order, to emit the events replacing it.
+     */
+    protected abstract void transform(JsonEvent event) throws IOException;
+
+
+    /**
+     * @return a migration which leaves the data as it is, for versions whose changes the newer versions still read.
+     */
+    public static SchemaMigration compatible(int fromVersion) {
+        return new SchemaMigration() {
+            @Override
+            public int fromVersion() {
+                return fromVersion;
+            }
+
+            @Override
+            protected void transform(JsonEvent event) {
+                emit(event);
+            }
+        };
+    }
+
+    SchemaMigration readFrom(JsonEventSource upstream) {
+        this.upstream = upstream;
+        return this;
+    }
+
+    @Override
+    public JsonEvent next() throws IOException {
+        while (output.isEmpty()) {
+            JsonEvent event = upstream.next();
+            if (event.getToken() == JsonToken.END_DOCUMENT) {
+                return event;
+            }
+            handle(event);
+        }
+
+        return output.poll();
+    }
+
+    private void handle(JsonEvent event) throws IOException {
+        switch (event.getToken()) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                transform(event);
+                containers.add(new Container(event.getToken() == JsonToken.BEGIN_ARRAY));
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                containers.remove(containers.size() - 1);
+                transform(event);
+                break;
+            case NAME:
+                containers.get(containers.size() - 1).name = event.getValue();
+                transform(event);
+                break;
+            default:
+                if (isAt(VERSION_PROPERTY)) {
+                    event = JsonEvent.number(fromVersion() + 1);
+                }
+                transform(event);
+        }
+    }
+
+    /**
+     * Tells whether the current event is at the given path, made of the names of the properties from the root, and
+     * {@link #ANY_ELEMENT} for array elements. The path of a name is the one of its value, and the path of the
+     * beginning and end of an object or array is the one of the object or array itself.
+     * <p>
+     * For example, the names and values of the properties of the players are at {@code ("players", "[]", <name>)}.
+     */
+    protected boolean isAt(String... path) {
+        if (path.length != containers.size()) {
+            return false;
+        }
+        for (int i = 0; i < path.length; i++) {
+            Container container = containers.get(i);
+            String segment = container.array ? ANY_ELEMENT : container.name;
+            if (!path[i].equals(segment)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    protected void emit(JsonEvent event) {
+        output.add(event);
+    }
+
+    protected void emitProperty(String name, JsonEvent value) {
+        output.add(JsonEvent.name(name));
+        output.add(value);
+    }
+
+    /**
+     * Drops the next value of the input, without emitting it. Called on a name, it drops the value of the property
+     * (the name itself is dropped by not emitting it).
+     */
+    protected void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            JsonEvent event = upstream.next();
+            switch (event.getToken()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw new EOFException("End of data while skipping a value");
+                default:
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        upstream.close();
+    }
+
+
+    private static final class Container {
+        private final boolean array;
+        private String name;
+
+        private Container(boolean array) {
+            this.array = array;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package net.lobby_simulator_companion.loop.repository.playerstore;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Player store which keeps all the players in memory.
+ *
+ * @author NickyRamone
+ */
+public class HeapPlayerStore implements PlayerStore {
+
+    private final Map<String, Player> players = new ConcurrentHashMap<>();
+
+
+    @Override
+    public Player get(String steamId) {
+        return players.get(steamId);
+    }
+
+    @Override
+    public void put(Player player) {
+        players.put(player.getSteamId64(), player);
+    }
+
+    @Override
+    public boolean putIfAbsent(Player player) {
+        return players.putIfAbsent(player.getSteamId64(), player) == null;
+    }
+
+    @Override
+    public int size() {
+        return players.size();
+    }
+
+    @Override
+    public Iterable<Player> players() {
+        return players.values();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+}
@@ -0,0 +1,369 @@
+package net.lobby_simulator_companion.loop.repository.playerstore;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.Player;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Player store backed by memory-mapped files, so that the heap footprint does not grow with the number of players.
+ * <p>
+ * The players are encoded as records (see {@link PlayerRecordCodec}) appended to a record file:
+ * {@code [payload length: int][state: byte][payload]}. Replacing a player appends a new record and marks the old one
+ * as dead. The index file holds an open-addressing hash table (linear probing) of
+ * {@code [key: long][record position + 1: long]} slots, where the key is the Steam id itself when it is numeric
+ * (as all the SteamID64 are), or a hash of it otherwise. Keys can therefore collide, so the Steam id of the record is
+ * always checked. When the table gets too full, a table twice as large is built after it in the same file, since
+ * a mapped region cannot be reliably released.
+ * <p>
+ * The most recently used players are kept decoded in an LRU cache.
+ * <p>
+ * The files are a working copy which is rebuilt every time the store is opened; they are not meant to survive a
+ * restart. All the operations are serialized, each one taking a few microseconds.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class MappedPlayerStore implements PlayerStore {
+
+    private static final String INDEX_FILE = "players.idx";
+    private static final String RECORDS_FILE = "players.dat";
+
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_SLOTS = 1 << 16;
+    /**
+     * Tables of up to 1 GB, so that slot offsets fit in an int.
+     */
+    private static final int MAX_SLOTS = 1 << 26;
+    private static final int INITIAL_RECORDS_SIZE = 4 * 1024 * 1024;
+
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final byte RECORD_LIVE = 1;
+    private static final byte RECORD_DEAD = 2;
+
+    private final FileChannel indexChannel;
+    private final FileChannel recordsChannel;
+    private final PlayerRecordCodec codec = new PlayerRecordCodec();
+    private final Map<String, Player> cache;
+
+    private MappedByteBuffer table;
+    private long tablePosition;
+    private int slotCount;
+    private int size;
+
+    private MappedByteBuffer records;
+    private int recordsEnd;
+
+
+    private MappedPlayerStore(FileChannel indexChannel, FileChannel recordsChannel, int cacheSize) throws IOException {
+        this.indexChannel = indexChannel;
+        this.recordsChannel = recordsChannel;
+        this.cache = new LinkedHashMap<String, Player>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Player> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        slotCount = INITIAL_SLOTS;
+        table = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotCount * SLOT_SIZE);
+        records = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_RECORDS_SIZE);
+    }
+
+    /**
+     * Opens an empty store in the given directory, discarding whatever the directory held from a previous run.
+     *
+     * @param cacheSize maximum number of players kept decoded in memory.
+     */
+    public static MappedPlayerStore open(Path dir, int cacheSize) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel indexChannel = openFile(dir.resolve(INDEX_FILE));
+        try {
+            FileChannel recordsChannel = openFile(dir.resolve(RECORDS_FILE));
+            try {
+                return new MappedPlayerStore(indexChannel, recordsChannel, cacheSize);
+            } catch (IOException e) {
+                recordsChannel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            indexChannel.close();
+            throw e;
+        }
+    }
+
+    private static FileChannel openFile(Path path) throws IOException {
+        // truncated, so that the mapped regions start zeroed (empty slots)
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+
+    @Override
+    public synchronized Player get(String steamId) {
+        Player player = cache.get(steamId);
+        if (player != null) {
+            return player;
+        }
+
+        int slot = findSlot(steamId, key(steamId));
+        if (slot < 0) {
+            return null;
+        }
+        player = PlayerRecordCodec.decode(recordPayload(recordPosition(slot)));
+        cache.put(steamId, player);
+
+        return player;
+    }
+
+    @Override
+    public synchronized void put(Player player) {
+        store(player, true);
+    }
+
+    @Override
+    public synchronized boolean putIfAbsent(Player player) {
+        return store(player, false);
+    }
+
+    private boolean store(Player player, boolean replace) {
+        String steamId = player.getSteamId64();
+        long key = key(steamId);
+        int slot = findSlot(steamId, key);
+        if (slot >= 0 && !replace) {
+            return false;
+        }
+
+        int position = appendRecord(codec.encode(player));
+        if (slot >= 0) {
+            records.put(recordPosition(slot) + 4, RECORD_DEAD);
+            table.putLong(slot * SLOT_SIZE + 8, position + 1L);
+        } else {
+            slot = ~slot;
+            table.putLong(slot * SLOT_SIZE, key);
+            table.putLong(slot * SLOT_SIZE + 8, position + 1L);
+            if (++size > slotCount / 4 * 3) {
+                growTable();
+            }
+        }
+        if (replace) {
+            // also replaces a stale copy
+            cache.put(steamId, player);
+        }
+
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The players are decoded as they are iterated, and are not added to the cache.
+     */
+    @Override
+    public Iterable<Player> players() {
+        int end;
+        synchronized (this) {
+            end = recordsEnd;
+        }
+
+        return () -> new Iterator<Player>() {
+            private int position;
+            private Player next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = readNextLive();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Player next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Player player = next;
+                next = null;
+                return player;
+            }
+
+            private Player readNextLive() {
+                synchronized (MappedPlayerStore.this) {
+                    while (position < end) {
+                        int recordPosition = position;
+                        position += RECORD_HEADER_SIZE + records.getInt(recordPosition);
+                        if (records.get(recordPosition + 4) == RECORD_LIVE) {
+                            return PlayerRecordCodec.decode(recordPayload(recordPosition));
+                        }
+                    }
+                    return null;
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        cache.clear();
+        try {
+            indexChannel.close();
+        } finally {
+            recordsChannel.close();
+        }
+    }
+
+
+    /**
+     * @return the slot of the player with the given Steam id, or the complement of the empty slot where it should be
+     * stored.
+     */
+    private int findSlot(String steamId, long key) {
+        int mask = slotCount - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long storedPosition = table.getLong(slot * SLOT_SIZE + 8);
+            if (storedPosition == 0) {
+                return ~slot;
+            }
+            if (table.getLong(slot * SLOT_SIZE) == key
+                    && steamId.equals(PlayerRecordCodec.decodeSteamId(recordPayload((int) storedPosition - 1)))) {
+                return slot;
+            }
+        }
+    }
+
+    private int recordPosition(int slot) {
+        return (int) table.getLong(slot * SLOT_SIZE + 8) - 1;
+    }
+
+    private ByteBuffer recordPayload(int position) {
+        ByteBuffer payload = records.duplicate();
+        payload.position(position + RECORD_HEADER_SIZE);
+        payload.limit(position + RECORD_HEADER_SIZE + records.getInt(position));
+
+        return payload;
+    }
+
+    private int appendRecord(ByteBuffer payload) {
+        int recordSize = RECORD_HEADER_SIZE + payload.remaining();
+        ensureRecordsCapacity(recordSize);
+        int position = recordsEnd;
+        records.putInt(position, payload.remaining());
+        records.put(position + 4, RECORD_LIVE);
+        ByteBuffer target = records.duplicate();
+        target.position(position + RECORD_HEADER_SIZE);
+        target.put(payload);
+        recordsEnd += recordSize;
+
+        return position;
+    }
+
+    private void ensureRecordsCapacity(int recordSize) {
+        long required = (long) recordsEnd + recordSize;
+        if (required <= records.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new UncheckedIOException(new IOException("The player store is full."));
+        }
+
+        long newCapacity = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * records.capacity()));
+        try {
+            records = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void growTable() {
+        if (slotCount >= MAX_SLOTS) {
+            throw new UncheckedIOException(new IOException("The player index is full."));
+        }
+
+        MappedByteBuffer oldTable = table;
+        int oldSlotCount = slotCount;
+        long newTablePosition = tablePosition + (long) oldSlotCount * SLOT_SIZE;
+        int newSlotCount = oldSlotCount * 2;
+        try {
+            table = indexChannel.map(FileChannel.MapMode.READ_WRITE, newTablePosition,
+                    (long) newSlotCount * SLOT_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        tablePosition = newTablePosition;
+        slotCount = newSlotCount;
+
+        int mask = newSlotCount - 1;
+        for (int oldSlot = 0; oldSlot < oldSlotCount; oldSlot++) {
+            long storedPosition = oldTable.getLong(oldSlot * SLOT_SIZE + 8);
+            if (storedPosition == 0) {
+                continue;
+            }
+            long key = oldTable.getLong(oldSlot * SLOT_SIZE);
+            int slot = hash(key) & mask;
+            while (table.getLong(slot * SLOT_SIZE + 8) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table.putLong(slot * SLOT_SIZE, key);
+            table.putLong(slot * SLOT_SIZE + 8, storedPosition);
+        }
+        log.debug("Grew the player index to {} slots ({} players).", newSlotCount, size);
+    }
+
+
+    private static long key(String steamId) {
+        if (isNumeric(steamId)) {
+            return Long.parseLong(steamId);
+        }
+        // FNV-1a
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < steamId.length(); i++) {
+            hash = (hash ^ steamId.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static boolean isNumeric(String value) {
+        int length = value.length();
+        // up to 18 digits always fit in a long
+        if (length == 0 || length > 18) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the bits of the key (SteamID64 values only differ in their lower bits), as in MurmurHash3's finalizer.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+
+}
@@ -0,0 +1,190 @@
+package net.lobby_simulator_companion.loop.repository.playerstore;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding of a player as a self-contained record of {@link MappedPlayerStore}.
+ * <p>
+ * Layout: {@code [steam id: string][flags: byte][optional fields...]}, where strings are
+ * {@code [length: varint][UTF-8 bytes]}, counters are varints and date-times are
+ * {@code [zigzag epoch second: varlong][nano: varint]}. The Steam id comes first, so that it can be read without
+ * decoding the rest of the record.
+ * Not thread-safe.
+ *
+ * @author NickyRamone
+ */
+class PlayerRecordCodec {
+
+    private static final int DBD_ID = 1;
+    private static final int FIRST_SEEN = 1 << 1;
+    private static final int LAST_SEEN = 1 << 2;
+    private static final int NAMES = 1 << 3;
+    private static final int RATING = 1 << 4;
+    private static final int DESCRIPTION = 1 << 5;
+
+    private static final Player.Rating[] RATINGS = Player.Rating.values();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+
+    /**
+     * @return a buffer with the record, ready to be read. It is only valid until the next call.
+     */
+    ByteBuffer encode(Player player) {
+        buffer.clear();
+        int flags = 0;
+        flags |= player.getDbdPlayerId() != null ? DBD_ID : 0;
+        flags |= player.getFirstSeen() != null ? FIRST_SEEN : 0;
+        flags |= player.getLastSeen() != null ? LAST_SEEN : 0;
+        flags |= player.getNames() != null ? NAMES : 0;
+        flags |= player.getRating() != null ? RATING : 0;
+        flags |= player.getDescription() != null ? DESCRIPTION : 0;
+
+        putString(player.getSteamId64());
+        ensureRemaining(1);
+        buffer.put((byte) flags);
+        if (player.getDbdPlayerId() != null) {
+            putString(player.getDbdPlayerId());
+        }
+        if (player.getFirstSeen() != null) {
+            putDateTime(player.getFirstSeen());
+        }
+        if (player.getLastSeen() != null) {
+            putDateTime(player.getLastSeen());
+        }
+        putVarLong(player.getTimesEncountered());
+        putVarLong(player.getMatchesPlayed());
+        putVarLong(player.getSecondsPlayed());
+        putVarLong(player.getEscapes());
+        putVarLong(player.getDeaths());
+        if (player.getNames() != null) {
+            putVarLong(player.getNames().size());
+            for (String name : player.getNames()) {
+                putString(name);
+            }
+        }
+        if (player.getRating() != null) {
+            putVarLong(player.getRating().ordinal());
+        }
+        if (player.getDescription() != null) {
+            putString(player.getDescription());
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(bytes.length);
+        ensureRemaining(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void putDateTime(LocalDateTime value) {
+        long epochSecond = value.toEpochSecond(ZoneOffset.UTC);
+        putVarLong((epochSecond << 1) ^ (epochSecond >> 63));
+        putVarLong(value.getNano());
+    }
+
+    private void putVarLong(long value) {
+        ensureRemaining(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        }
+    }
+
+
+    /**
+     * Reads only the Steam id of the record at the position of the given buffer.
+     */
+    static String decodeSteamId(ByteBuffer record) {
+        return getString(record);
+    }
+
+    /**
+     * Reads the record at the position of the given buffer.
+     *
+     * @throws IllegalStateException if the record is malformed.
+     */
+    static Player decode(ByteBuffer record) {
+        try {
+            Player player = new Player();
+            player.setSteamId64(getString(record));
+            int flags = record.get();
+            player.setDbdPlayerId((flags & DBD_ID) != 0 ? getString(record) : null);
+            player.setFirstSeen((flags & FIRST_SEEN) != 0 ? getDateTime(record) : null);
+            player.setLastSeen((flags & LAST_SEEN) != 0 ? getDateTime(record) : null);
+            player.setTimesEncountered((int) getVarLong(record));
+            player.setMatchesPlayed((int) getVarLong(record));
+            player.setSecondsPlayed((int) getVarLong(record));
+            player.setEscapes((int) getVarLong(record));
+            player.setDeaths((int) getVarLong(record));
+
+            List<String> names = null;
+            if ((flags & NAMES) != 0) {
+                int count = (int) getVarLong(record);
+                names = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    names.add(getString(record));
+                }
+            }
+            player.setNames(names);
+            player.setRating((flags & RATING) != 0 ? RATINGS[(int) getVarLong(record)] : null);
+            if ((flags & DESCRIPTION) != 0) {
+                player.setDescription(getString(record));
+            }
+
+            return player;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Malformed player record.", e);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = (int) getVarLong(record);
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime getDateTime(ByteBuffer record) {
+        long value = getVarLong(record);
+        long epochSecond = (value >>> 1) ^ -(value & 1);
+
+        return LocalDateTime.ofEpochSecond(epochSecond, (int) getVarLong(record), ZoneOffset.UTC);
+    }
+
+    private static long getVarLong(ByteBuffer record) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = record.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint.");
+    }
+
+}
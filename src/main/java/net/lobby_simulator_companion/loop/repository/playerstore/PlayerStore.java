@@ -0,0 +1,44 @@
+package net.lobby_simulator_companion.loop.repository.playerstore;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+
+import java.io.Closeable;
+
+/**
+ * Working set of the players known to the app, keyed by Steam id.
+ * <p>
+ * Stored players are never modified by the store, and callers must not modify them either: updating a player means
+ * storing a modified copy of it. Implementations are thread-safe.
+ *
+ * @author NickyRamone
+ */
+public interface PlayerStore extends Closeable {
+
+    /**
+     * @return the player with the given Steam id, or null if there is none.
+     */
+    Player get(String steamId);
+
+    /**
+     * Stores a player, replacing the one with the same Steam id, if any.
+     */
+    void put(Player player);
+
+    /**
+     * Stores a player unless there is already one with the same Steam id.
+     *
+     * @return true if the player was stored.
+     */
+    boolean putIfAbsent(Player player);
+
+    int size();
+
+    /**
+     * A view of the stored players, for writing them in bulk.
+     * <p>
+     * Every player stored before this call is seen once, unless it is replaced afterwards, in which case
+     * either version of it may be seen, or none. Players stored after this call may or may not be seen.
+     */
+    Iterable<Player> players();
+
+}
@@ -0,0 +1,614 @@
+package net.lobby_simulator_companion.loop.repository.sql;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
+import net.lobby_simulator_companion.loop.repository.TieredLoad;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Stores the data in an embedded H2 database, with indexed tables for the players, the matches and the stats of
+ * every period. Unlike the file store, it keeps the whole history: every match ever played, and the stats of the
+ * periods which have ended.
+ * <p>
+ * Every row holds the record in JSON, as written by the streaming adapters, plus the columns it is looked up by.
+ * Changes are written in JDBC batches, in a single transaction per write, so there is nothing to compact: the tables
+ * always hold the current data.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class SqlLoopStore implements LoopStore {
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS loop_meta ("
+                    + "name VARCHAR(64) PRIMARY KEY, "
+                    + "val VARCHAR(256))",
+            "CREATE TABLE IF NOT EXISTS player ("
+                    + "steam_id VARCHAR(64) PRIMARY KEY, "
+                    + "dbd_player_id VARCHAR(64), "
+                    + "last_seen TIMESTAMP, "
+                    + "data VARCHAR NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS player_dbd_player_id ON player (dbd_player_id)",
+            "CREATE INDEX IF NOT EXISTS player_last_seen ON player (last_seen)",
+            "CREATE TABLE IF NOT EXISTS match_record ("
+                    + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "start_time TIMESTAMP, "
+                    + "killer_player_steam_id VARCHAR(64), "
+                    + "killer VARCHAR(64), "
+                    + "realm_map VARCHAR(64), "
+                    + "data VARCHAR NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS match_killer_player ON match_record (killer_player_steam_id)",
+            "CREATE INDEX IF NOT EXISTS match_start_time ON match_record (start_time)",
+            "CREATE TABLE IF NOT EXISTS period_stats ("
+                    + "period VARCHAR(16) NOT NULL, "
+                    + "period_start TIMESTAMP NOT NULL, "
+                    + "period_end TIMESTAMP, "
+                    + "data VARCHAR NOT NULL, "
+                    + "PRIMARY KEY (period, period_start))"
+    };
+
+    private static final String SQL__UPSERT_PLAYER =
+            "MERGE INTO player (steam_id, dbd_player_id, last_seen, data) KEY (steam_id) VALUES (?, ?, ?, ?)";
+    private static final String SQL__INSERT_MATCH =
+            "INSERT INTO match_record (start_time, killer_player_steam_id, killer, realm_map, data) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL__UPSERT_PERIOD_STATS =
+            "MERGE INTO period_stats (period, period_start, period_end, data) KEY (period, period_start) "
+                    + "VALUES (?, ?, ?, ?)";
+
+    private static final String META__DATA_VERSION = "data_version";
+    private static final int BATCH_SIZE = 500;
+    private static final int PLAYER_FETCH_SIZE = 1000;
+    /**
+     * Stored as the start of the periods which have none, since it is part of the key.
+     */
+    private static final LocalDateTime UNKNOWN_PERIOD_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    /**
+     * Precision of the start of the periods in the key. The stats are stored in JSON with times in whole seconds, so
+     * the start of a period read back from a row would not match a more precise key.
+     */
+    private static final ChronoUnit PERIOD_START_PRECISION = ChronoUnit.SECONDS;
+
+    private final String url;
+    private final Gson gson;
+    private final Connection connection;
+    /**
+     * The stats as stored, to which the written matches and resets are applied to know the rows to update.
+     */
+    private Stats stats;
+
+
+    private SqlLoopStore(String url, Gson gson, Connection connection) {
+        this.url = url;
+        this.gson = gson;
+        this.connection = connection;
+    }
+
+    /**
+     * Opens the database in the given file (without the extension added by H2), creating it if it does not exist.
+     */
+    public static SqlLoopStore open(Path databaseFile, Gson gson) throws IOException {
+        return open("jdbc:h2:file:" + databaseFile.toAbsolutePath(), gson);
+    }
+
+    static SqlLoopStore open(String url, Gson gson) throws IOException {
+        Connection connection = null;
+        try {
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            SqlLoopStore store = new SqlLoopStore(url, gson, connection);
+            store.checkDataVersion();
+            store.normalizePeriodStarts();
+            connection.setAutoCommit(false);
+
+            return store;
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new IOException("Failed to open the database.", e);
+        }
+    }
+
+    private void checkDataVersion() throws SQLException, IOException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT val FROM loop_meta WHERE name = ?")) {
+            select.setString(1, META__DATA_VERSION);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next() && Integer.parseInt(rs.getString(1)) > LoopData.CURRENT_VERSION) {
+                    throw new IOException("Unsupported data version: " + rs.getString(1)
+                            + ". The data was written by a newer version of the application.");
+                }
+            }
+        }
+        try (PreparedStatement upsert = connection.prepareStatement(
+                "MERGE INTO loop_meta (name, val) KEY (name) VALUES (?, ?)")) {
+            upsert.setString(1, META__DATA_VERSION);
+            upsert.setString(2, String.valueOf(LoopData.CURRENT_VERSION));
+            upsert.executeUpdate();
+        }
+    }
+
+    /**
+     * Earlier versions keyed the period rows by the start of the period with sub-second precision. Since the start
+     * read back from the JSON has none, the writes after a restart went to a row with the start in whole seconds,
+     * which is then the latest one. The more precise rows are folded into it, or re-keyed if there is none.
+     */
+    private void normalizePeriodStarts() throws SQLException {
+        List<Object[]> preciseKeys = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT period, period_start FROM period_stats")) {
+            while (rs.next()) {
+                LocalDateTime periodStart = rs.getObject(2, LocalDateTime.class);
+                if (!periodStart.equals(periodStart.truncatedTo(PERIOD_START_PRECISION))) {
+                    preciseKeys.add(new Object[]{rs.getString(1), periodStart});
+                }
+            }
+        }
+        if (preciseKeys.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement exists = connection.prepareStatement(
+                "SELECT COUNT(*) FROM period_stats WHERE period = ? AND period_start = ?");
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM period_stats WHERE period = ? AND period_start = ?");
+             PreparedStatement rekey = connection.prepareStatement(
+                     "UPDATE period_stats SET period_start = ? WHERE period = ? AND period_start = ?")) {
+            for (Object[] key : preciseKeys) {
+                String period = (String) key[0];
+                LocalDateTime periodStart = (LocalDateTime) key[1];
+                LocalDateTime normalizedStart = periodStart.truncatedTo(PERIOD_START_PRECISION);
+                exists.setString(1, period);
+                setTime(exists, 2, normalizedStart);
+                boolean normalizedRowExists;
+                try (ResultSet rs = exists.executeQuery()) {
+                    rs.next();
+                    normalizedRowExists = rs.getLong(1) > 0;
+                }
+                if (normalizedRowExists) {
+                    delete.setString(1, period);
+                    setTime(delete, 2, periodStart);
+                    delete.executeUpdate();
+                } else {
+                    setTime(rekey, 1, normalizedStart);
+                    rekey.setString(2, period);
+                    setTime(rekey, 3, periodStart);
+                    rekey.executeUpdate();
+                }
+            }
+        }
+        log.info("Normalized the start of {} stored periods.", preciseKeys.size());
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close the database connection.", e);
+            }
+        }
+    }
+
+
+    /**
+     * @return true if no data has been stored yet.
+     */
+    public synchronized boolean isEmpty() throws IOException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT (SELECT COUNT(*) FROM period_stats) "
+                     + "+ (SELECT COUNT(*) FROM player) + (SELECT COUNT(*) FROM match_record)")) {
+            rs.next();
+            return rs.getLong(1) == 0;
+        } catch (SQLException e) {
+            throw new IOException("Failed to query the database.", e);
+        }
+    }
+
+    /**
+     * Imports the data of another store, along with the changes written after it. Meant for an empty database.
+     */
+    public synchronized void importFrom(LoopStore source) throws IOException {
+        List<DataChange> laterChanges = new ArrayList<>();
+        List<Player> players = new ArrayList<>();
+        LoopData data;
+        try (TieredLoad load = source.load()) {
+            data = load.getData();
+            source.replay(data, laterChanges::add);
+            load.readPlayers(players::add);
+        }
+
+        try (PreparedStatement upsertPlayer = connection.prepareStatement(SQL__UPSERT_PLAYER);
+             PreparedStatement insertMatch = connection.prepareStatement(SQL__INSERT_MATCH);
+             PreparedStatement upsertStats = connection.prepareStatement(SQL__UPSERT_PERIOD_STATS)) {
+            Batch playerBatch = new Batch(upsertPlayer);
+            for (Player player : players) {
+                bindPlayer(upsertPlayer, player);
+                playerBatch.add();
+            }
+            playerBatch.execute();
+
+            Batch matchBatch = new Batch(insertMatch);
+            for (Match match : data.getMatchLog().getMatches()) {
+                bindMatch(insertMatch, match);
+                matchBatch.add();
+            }
+            matchBatch.execute();
+
+            bindAllPeriodStats(upsertStats, data.getStats(), EnumSet.allOf(Stats.Period.class));
+            upsertStats.executeBatch();
+
+            Stats importedStats = applyChanges(laterChanges, data.getStats());
+            connection.commit();
+            stats = importedStats;
+            log.info("Imported {} players, {} matches and {} later changes into the database.",
+                    players.size(), data.getMatchLog().matchCount(), laterChanges.size());
+        } catch (SQLException | RuntimeException e) {
+            rollback();
+            throw new IOException("Failed to import data.", e);
+        }
+    }
+
+
+    @Override
+    public synchronized TieredLoad load() throws IOException {
+        try {
+            Stats storedStats = readCurrentStats();
+            if (storedStats == null) {
+                storedStats = new Stats();
+                try (PreparedStatement upsertStats = connection.prepareStatement(SQL__UPSERT_PERIOD_STATS)) {
+                    bindAllPeriodStats(upsertStats, storedStats, EnumSet.allOf(Stats.Period.class));
+                    upsertStats.executeBatch();
+                }
+                connection.commit();
+            }
+            stats = storedStats;
+            LoopData data = new LoopData(stats.copy(), readMatchLog(), Collections.emptyList());
+
+            return new TieredLoad(data, this::readPlayers, () -> {
+            });
+        } catch (SQLException | RuntimeException e) {
+            rollback();
+            throw new IOException("Failed to load data.", e);
+        }
+    }
+
+    /**
+     * @return the stats of the current periods, or null if none have been stored.
+     */
+    private Stats readCurrentStats() throws SQLException {
+        JsonObject statsJson = new JsonObject();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT p.data FROM period_stats p "
+                     + "WHERE p.period_start = (SELECT MAX(q.period_start) FROM period_stats q "
+                     + "WHERE q.period = p.period)")) {
+            JsonParser parser = new JsonParser();
+            while (rs.next()) {
+                parser.parse(rs.getString(1)).getAsJsonObject().entrySet()
+                        .forEach(e -> statsJson.add(e.getKey(), e.getValue()));
+            }
+        }
+
+        return statsJson.size() == 0 ? null : gson.fromJson(statsJson, Stats.class);
+    }
+
+    private MatchLog readMatchLog() throws SQLException {
+        List<Match> matches = new ArrayList<>();
+        int capacity = Arrays.stream(MatchLog.RollingGroup.values()).mapToInt(g -> g.aggregateSize).max().orElse(0);
+
+        try (PreparedStatement select = connection.prepareStatement("SELECT data FROM "
+                + "(SELECT id, data FROM match_record ORDER BY id DESC LIMIT ?) ORDER BY id")) {
+            select.setInt(1, capacity);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    matches.add(gson.fromJson(rs.getString(1), Match.class));
+                }
+            }
+        }
+        MatchLog matchLog = new MatchLog();
+        matchLog.addAll(matches);
+
+        return matchLog;
+    }
+
+    /**
+     * Reads the players through a connection of its own, so that writes are not blocked meanwhile.
+     */
+    private int readPlayers(Consumer<Player> consumer) throws IOException {
+        int count = 0;
+        try (Connection readConnection = DriverManager.getConnection(url);
+             Statement statement = readConnection.createStatement()) {
+            statement.setFetchSize(PLAYER_FETCH_SIZE);
+            try (ResultSet rs = statement.executeQuery("SELECT data FROM player")) {
+                while (rs.next()) {
+                    consumer.accept(gson.fromJson(rs.getString(1), Player.class));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to read players.", e);
+        }
+
+        return count;
+    }
+
+    @Override
+    public int replay(LoopData loadedData, Consumer<DataChange> consumer) {
+        // the changes are written to the tables themselves
+        return 0;
+    }
+
+    @Override
+    public synchronized void write(List<DataChange> changes, boolean force) throws IOException {
+        try {
+            Stats updatedStats = applyChanges(changes, stats == null ? new Stats() : stats.copy());
+            connection.commit();
+            stats = updatedStats;
+        } catch (SQLException | RuntimeException e) {
+            // a change which cannot be applied must not be committed along with the next write
+            rollback();
+            throw new IOException("Failed to write changes.", e);
+        }
+        if (force) {
+            sync();
+        }
+    }
+
+    /**
+     * H2 writes committed transactions to disk in the background, within a second. This writes them right away.
+     */
+    private void sync() throws IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CHECKPOINT SYNC");
+        } catch (SQLException e) {
+            throw new IOException("Failed to force changes to disk.", e);
+        }
+    }
+
+    /**
+     * Writes the given changes without committing them.
+     *
+     * @param targetStats stats to apply the changes to, which can be discarded if the transaction fails.
+     * @return the given stats, with the changes applied.
+     */
+    private Stats applyChanges(List<DataChange> changes, Stats targetStats) throws SQLException {
+        try (PreparedStatement upsertPlayer = connection.prepareStatement(SQL__UPSERT_PLAYER);
+             PreparedStatement insertMatch = connection.prepareStatement(SQL__INSERT_MATCH);
+             PreparedStatement upsertStats = connection.prepareStatement(SQL__UPSERT_PERIOD_STATS)) {
+            Batch playerBatch = new Batch(upsertPlayer);
+            Batch matchBatch = new Batch(insertMatch);
+            Set<Stats.Period> modifiedPeriods = EnumSet.noneOf(Stats.Period.class);
+
+            for (DataChange change : changes) {
+                switch (change.getType()) {
+                    case PLAYER_UPSERT:
+                        bindPlayer(upsertPlayer, change.getPlayer());
+                        playerBatch.add();
+                        break;
+                    case MATCH_ADD:
+                        bindMatch(insertMatch, change.getMatch());
+                        matchBatch.add();
+                        targetStats.addMatchStats(change.getMatch());
+                        modifiedPeriods.addAll(EnumSet.allOf(Stats.Period.class));
+                        break;
+                    case STATS_RESET:
+                        // the row of the period which ends is kept, so it is written before resetting
+                        if (modifiedPeriods.remove(change.getPeriod())) {
+                            bindAllPeriodStats(upsertStats, targetStats, EnumSet.of(change.getPeriod()));
+                        }
+                        targetStats.get(change.getPeriod()).reset(change.getResetTime());
+                        modifiedPeriods.add(change.getPeriod());
+                        break;
+                }
+            }
+            playerBatch.execute();
+            matchBatch.execute();
+            bindAllPeriodStats(upsertStats, targetStats, modifiedPeriods);
+            upsertStats.executeBatch();
+        }
+
+        return targetStats;
+    }
+
+    private void bindPlayer(PreparedStatement statement, Player player) throws SQLException {
+        statement.setString(1, player.getSteamId64());
+        statement.setString(2, player.getDbdPlayerId());
+        setTime(statement, 3, player.getLastSeen());
+        statement.setString(4, gson.toJson(player, Player.class));
+    }
+
+    private void bindMatch(PreparedStatement statement, Match match) throws SQLException {
+        setTime(statement, 1, match.getMatchStartTime());
+        statement.setString(2, match.getKillerPlayerSteamId64());
+        statement.setString(3, match.getKiller() == null ? null : match.getKiller().name());
+        statement.setString(4, match.getRealmMap() == null ? null : match.getRealmMap().name());
+        statement.setString(5, gson.toJson(match, Match.class));
+    }
+
+    /**
+     * Adds a row to the batch for every given period. Each row holds the stats of its period in the same JSON as
+     * the whole stats, with only that period.
+     */
+    private void bindAllPeriodStats(PreparedStatement statement, Stats stats, Set<Stats.Period> periods)
+            throws SQLException {
+        if (periods.isEmpty()) {
+            return;
+        }
+        JsonObject statsJson = gson.toJsonTree(stats, Stats.class).getAsJsonObject();
+
+        for (Stats.Period period : periods) {
+            PeriodStats periodStats = stats.get(period);
+            String periodName = period.name().toLowerCase();
+            JsonObject periodJson = new JsonObject();
+            periodJson.add(periodName, statsJson.get(periodName));
+
+            statement.setString(1, period.name());
+            setTime(statement, 2, Optional.ofNullable(periodStats.getPeriodStart()).orElse(UNKNOWN_PERIOD_START)
+                    .truncatedTo(PERIOD_START_PRECISION));
+            setTime(statement, 3, periodStats.getPeriodEnd());
+            statement.setString(4, periodJson.toString());
+            statement.addBatch();
+        }
+    }
+
+    private static void setTime(PreparedStatement statement, int index, LocalDateTime time) throws SQLException {
+        if (time == null) {
+            statement.setNull(index, Types.TIMESTAMP);
+        } else {
+            statement.setObject(index, time);
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            log.warn("Failed to roll back the transaction.", e);
+        }
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return false;
+    }
+
+    @Override
+    public CompactionWriter startCompaction() {
+        return (data, players) -> {
+        };
+    }
+
+    @Override
+    public boolean keepsMatchHistory() {
+        return true;
+    }
+
+    @Override
+    public boolean keepsPeriodHistory() {
+        return true;
+    }
+
+    @Override
+    public synchronized List<Match> findMatchesAgainst(String killerSteamId) throws IOException {
+        List<Match> matches = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT data FROM match_record WHERE killer_player_steam_id = ? ORDER BY id")) {
+            select.setString(1, killerSteamId);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    matches.add(gson.fromJson(rs.getString(1), Match.class));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to query matches.", e);
+        }
+
+        return matches;
+    }
+
+    @Override
+    public synchronized long forEachMatch(Consumer<Match> consumer) throws IOException {
+        long count = 0;
+        try (Statement select = connection.createStatement()) {
+            select.setFetchSize(1000);
+            try (ResultSet rs = select.executeQuery("SELECT data FROM match_record ORDER BY id")) {
+                while (rs.next()) {
+                    consumer.accept(gson.fromJson(rs.getString(1), Match.class));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to query matches.", e);
+        }
+
+        return count;
+    }
+
+    @Override
+    public synchronized Optional<PeriodStats> findPeriodStats(Stats.Period period, LocalDateTime time)
+            throws IOException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT period_end, data FROM period_stats "
+                + "WHERE period = ? AND period_start <= ? ORDER BY period_start DESC LIMIT 1")) {
+            select.setString(1, period.name());
+            setTime(select, 2, time);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    return Optional.empty();
+                }
+                LocalDateTime periodEnd = rs.getObject(1, LocalDateTime.class);
+                if (periodEnd != null && time.isAfter(periodEnd)) {
+                    // the app was not used during that period
+                    return Optional.empty();
+                }
+                return Optional.of(gson.fromJson(rs.getString(2), Stats.class).get(period));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to query stats.", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Failed to close the database.", e);
+        }
+    }
+
+
+    /**
+     * Executes the statements added to a batch every {@link #BATCH_SIZE} of them.
+     */
+    private static final class Batch {
+        private final PreparedStatement statement;
+        private int size;
+
+        private Batch(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        void add() throws SQLException {
+            statement.addBatch();
+            if (++size % BATCH_SIZE == 0) {
+                statement.executeBatch();
+            }
+        }
+
+        void execute() throws SQLException {
+            statement.executeBatch();
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+package net.lobby_simulator_companion.loop.repository.sync;
+
+import lombok.Getter;
+import lombok.Value;
+import net.lobby_simulator_companion.loop.domain.Player;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * What is shared of a player between nodes (installations syncing through a shared folder), as a CRDT: a state which
+ * can be merged with the states of other nodes in any order, any number of times, always converging to the same
+ * state.
+ * <ul>
+ * <li>The counters are G-counters: every node only increments its own entry, the value is the sum of the entries,
+ * and merging keeps the highest value of each entry.</li>
+ * <li>The rating and the description are last-writer-wins registers, ordered by time, then by node.</li>
+ * <li>The names are an observed-remove set: a name gets a new tag every time it is added, and removing it removes the
+ * tags the removing node has seen, so that a name added meanwhile on another node is kept.</li>
+ * <li>The first and last times seen keep the lowest and the highest time.</li>
+ * </ul>
+ * Deltas are instances of this class too, holding only what a node changed, and they are merged like full states.
+ *
+ * @author NickyRamone
+ */
+public class PlayerReplica {
+
+    public enum Counter {
+        TIMES_ENCOUNTERED,
+        MATCHES_PLAYED,
+        SECONDS_PLAYED,
+        ESCAPES,
+        DEATHS
+    }
+
+    private static final int COUNTER_COUNT = Counter.values().length;
+
+    @Getter
+    private final String steamId;
+    /**
+     * Entries of the counters of each node, indexed by {@link Counter}.
+     */
+    private final Map<String, long[]> counters = new HashMap<>();
+    /**
+     * Epoch milliseconds of the local times.
+     */
+    private Long firstSeen;
+    private Long lastSeen;
+    private Register rating;
+    private Register description;
+    /**
+     * The live tags of each name, with the time they were added.
+     */
+    private final Map<String, Map<String, Long>> names = new HashMap<>();
+    private final Set<String> removedTags = new HashSet<>();
+
+
+    @Value
+    static class Register {
+        String value;
+        long time;
+        String node;
+
+        boolean isAfter(Register other) {
+            return other == null || time > other.time || time == other.time && node.compareTo(other.node) > 0;
+        }
+    }
+
+
+    public PlayerReplica(String steamId) {
+        this.steamId = steamId;
+    }
+
+    /**
+     * For JSON deserialization, so that the collections missing in the JSON are empty rather than null.
+     */
+    private PlayerReplica() {
+        this(null);
+    }
+
+
+    public long get(Counter counter) {
+        return counters.values().stream().mapToLong(entries -> entries[counter.ordinal()]).sum();
+    }
+
+    /**
+     * @return the names in the set, from the least to the most recently added.
+     */
+    public List<String> getNames() {
+        List<Map.Entry<String, Long>> namesByTime = new ArrayList<>();
+        names.forEach((name, tags) -> namesByTime.add(
+                new HashMap.SimpleEntry<>(name, Collections.max(tags.values()))));
+        namesByTime.sort(Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        List<String> result = new ArrayList<>(namesByTime.size());
+        namesByTime.forEach(entry -> result.add(entry.getKey()));
+
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty() && firstSeen == null && lastSeen == null && rating == null && description == null
+                && names.isEmpty() && removedTags.isEmpty();
+    }
+
+
+    /**
+     * Merges the given state or delta into this one.
+     */
+    public void merge(PlayerReplica other) {
+        other.counters.forEach((node, otherEntries) -> {
+            long[] entries = counters.computeIfAbsent(node, n -> new long[COUNTER_COUNT]);
+            for (int i = 0; i < Math.min(COUNTER_COUNT, otherEntries.length); i++) {
+                entries[i] = Math.max(entries[i], otherEntries[i]);
+            }
+        });
+        if (other.firstSeen != null && (firstSeen == null || other.firstSeen < firstSeen)) {
+            firstSeen = other.firstSeen;
+        }
+        if (other.lastSeen != null && (lastSeen == null || other.lastSeen > lastSeen)) {
+            lastSeen = other.lastSeen;
+        }
+        if (other.rating != null && other.rating.isAfter(rating)) {
+            rating = other.rating;
+        }
+        if (other.description != null && other.description.isAfter(description)) {
+            description = other.description;
+        }
+
+        removedTags.addAll(other.removedTags);
+        other.names.forEach((name, tags) -> names.computeIfAbsent(name, n -> new HashMap<>()).putAll(tags));
+        if (!removedTags.isEmpty()) {
+            names.values().forEach(tags -> tags.keySet().removeAll(removedTags));
+            names.values().removeIf(Map::isEmpty);
+        }
+    }
+
+    /**
+     * Records the changes made to the player on the given node since it was observed, as operations of the node.
+     *
+     * @param observed the player as it was when its changes were last recorded, or when this state was last applied
+     *                 to it. Null if it has never been observed.
+     * @param time     epoch milliseconds of the changes.
+     * @return the delta with the changes, empty if there were none.
+     */
+    public PlayerReplica recordChanges(Player observed, Player player, String node, long time) {
+        PlayerReplica delta = new PlayerReplica(steamId);
+
+        long[] observedValues = counterValues(observed);
+        long[] values = counterValues(player);
+        long[] entries = counters.computeIfAbsent(node, n -> new long[COUNTER_COUNT]);
+        boolean incremented = false;
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            // counters never decrease: a lower value is not an operation which can be replicated
+            if (values[i] > observedValues[i]) {
+                entries[i] += values[i] - observedValues[i];
+                incremented = true;
+            }
+        }
+        if (incremented) {
+            delta.counters.put(node, entries.clone());
+        }
+
+        Long playerFirstSeen = toMillis(player.getFirstSeen());
+        if (playerFirstSeen != null && !playerFirstSeen.equals(toMillis(observed, Player::getFirstSeen))) {
+            delta.firstSeen = playerFirstSeen;
+        }
+        Long playerLastSeen = toMillis(player.getLastSeen());
+        if (playerLastSeen != null && !playerLastSeen.equals(toMillis(observed, Player::getLastSeen))) {
+            delta.lastSeen = playerLastSeen;
+        }
+
+        String ratingValue = ratingName(player);
+        if (!ratingValue.equals(observed == null ? Player.Rating.UNRATED.name() : ratingName(observed))) {
+            delta.rating = new Register(ratingValue, writeTime(rating, time), node);
+        }
+        String observedDescription = observed == null ? null : observed.getDescription();
+        if (!Objects.equals(player.getDescription(), observedDescription)) {
+            delta.description = new Register(player.getDescription(), writeTime(description, time), node);
+        }
+
+        List<String> observedNames = observed == null || observed.getNames() == null
+                ? Collections.emptyList() : observed.getNames();
+        List<String> playerNames = player.getNames() == null ? Collections.emptyList() : player.getNames();
+        for (String name : observedNames) {
+            if (!playerNames.contains(name) && names.containsKey(name)) {
+                delta.removedTags.addAll(names.get(name).keySet());
+            }
+        }
+        for (int i = 0; i < playerNames.size(); i++) {
+            String name = playerNames.get(i);
+            if (!observedNames.contains(name)) {
+                // names added at once keep their order, the last one being the most recent
+                delta.names.put(name, Collections.singletonMap(newTag(node), time - (playerNames.size() - 1 - i)));
+            }
+        }
+        String mostRecentName = player.getMostRecentName().orElse(null);
+        boolean mostRecentNameChanged = mostRecentName != null && observedNames.contains(mostRecentName)
+                && !mostRecentName.equals(observedNames.get(observedNames.size() - 1));
+        if (mostRecentNameChanged) {
+            // a name used again becomes the most recent one
+            delta.names.put(mostRecentName, Collections.singletonMap(newTag(node), time));
+        }
+
+        // the counters are already in this state
+        PlayerReplica otherChanges = new PlayerReplica(steamId);
+        otherChanges.firstSeen = delta.firstSeen;
+        otherChanges.lastSeen = delta.lastSeen;
+        otherChanges.rating = delta.rating;
+        otherChanges.description = delta.description;
+        otherChanges.names.putAll(delta.names);
+        otherChanges.removedTags.addAll(delta.removedTags);
+        merge(otherChanges);
+
+        return delta;
+    }
+
+    /**
+     * Sets the shared values of the player to the ones of this state.
+     */
+    public void applyTo(Player player) {
+        player.setTimesEncountered((int) get(Counter.TIMES_ENCOUNTERED));
+        player.setMatchesPlayed((int) get(Counter.MATCHES_PLAYED));
+        player.setSecondsPlayed((int) get(Counter.SECONDS_PLAYED));
+        player.setEscapes((int) get(Counter.ESCAPES));
+        player.setDeaths((int) get(Counter.DEATHS));
+        if (firstSeen != null) {
+            player.setFirstSeen(toLocalDateTime(firstSeen));
+        }
+        if (lastSeen != null) {
+            player.setLastSeen(toLocalDateTime(lastSeen));
+        }
+        if (rating != null) {
+            player.setRating(Player.Rating.valueOf(rating.getValue()));
+        }
+        if (description != null) {
+            player.setDescription(description.getValue());
+        }
+        player.setNames(new ArrayList<>());
+        getNames().forEach(player::addName);
+    }
+
+
+    private static long[] counterValues(Player player) {
+        long[] values = new long[COUNTER_COUNT];
+        if (player != null) {
+            values[Counter.TIMES_ENCOUNTERED.ordinal()] = player.getTimesEncountered();
+            values[Counter.MATCHES_PLAYED.ordinal()] = player.getMatchesPlayed();
+            values[Counter.SECONDS_PLAYED.ordinal()] = player.getSecondsPlayed();
+            values[Counter.ESCAPES.ordinal()] = player.getEscapes();
+            values[Counter.DEATHS.ordinal()] = player.getDeaths();
+        }
+        return values;
+    }
+
+    private static String ratingName(Player player) {
+        return (player.getRating() == null ? Player.Rating.UNRATED : player.getRating()).name();
+    }
+
+    /**
+     * A write wins over the value it replaces, even if the clock of the node which wrote that value was ahead.
+     */
+    private static long writeTime(Register current, long time) {
+        return current == null ? time : Math.max(time, current.getTime() + 1);
+    }
+
+    private static String newTag(String node) {
+        return node + ":" + UUID.randomUUID();
+    }
+
+    private static Long toMillis(Player player, Function<Player, LocalDateTime> getter) {
+        return player == null ? null : toMillis(getter.apply(player));
+    }
+
+    private static Long toMillis(LocalDateTime time) {
+        return time == null ? null : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,87 @@
+package net.lobby_simulator_companion.loop.repository.sync;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import lombok.Getter;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.GenerationalFile;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The local sync state of a node: its id, the replicated state of every player, the players as they were last
+ * observed (see {@link PlayerReplica#recordChanges}), and where the reading of the deltas of each node resumes.
+ * <p>
+ * It is written now and then, so that only the deltas written since then are read again on start. It is kept in the
+ * app home, not in the shared folder, as a compressed JSON {@link GenerationalFile}.
+ *
+ * @author NickyRamone
+ */
+@Getter
+public class SyncCheckpoint {
+
+    private static final int BACKUP_GENERATIONS = 1;
+
+    private final String nodeId;
+    private final Map<String, PlayerReplica> replicas = new HashMap<>();
+    private final Map<String, Player> observed = new HashMap<>();
+    private final Map<String, SyncFolder.Cursor> cursors = new HashMap<>();
+
+
+    /**
+     * A checkpoint for a new node.
+     */
+    public SyncCheckpoint() {
+        this(UUID.randomUUID().toString());
+    }
+
+    private SyncCheckpoint(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+
+    /**
+     * @return the checkpoint in the given file, or null if there is none.
+     */
+    public static SyncCheckpoint read(Path file, Gson gson) throws IOException {
+        GenerationalFile checkpointFile = new GenerationalFile(file, BACKUP_GENERATIONS);
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+        return checkpointFile.read(fileStream -> {
+            try (InputStream inputStream = new GZIPInputStream(StorageCipher.decryptingStream(fileStream))) {
+                SyncCheckpoint checkpoint = gson.fromJson(
+                        new InputStreamReader(inputStream, StandardCharsets.UTF_8), SyncCheckpoint.class);
+                if (checkpoint == null || checkpoint.nodeId == null) {
+                    throw new IOException("Failed to read the sync checkpoint. File corrupt?");
+                }
+                return checkpoint;
+            } catch (JsonParseException e) {
+                throw new IOException("Failed to read the sync checkpoint. File corrupt?", e);
+            }
+        });
+    }
+
+    public void write(Path file, Gson gson) throws IOException {
+        new GenerationalFile(file, BACKUP_GENERATIONS).write(fileStream -> {
+            try (OutputStream outputStream = new GZIPOutputStream(StorageCipher.encryptingStream(fileStream));
+                 Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+                gson.toJson(this, writer);
+            }
+        });
+    }
+
+}
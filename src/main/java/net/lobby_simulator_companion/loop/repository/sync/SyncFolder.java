@@ -0,0 +1,247 @@
+package net.lobby_simulator_companion.loop.repository.sync;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A folder shared between nodes (for example, through a file syncing service), where every node writes the deltas of
+ * its players and reads the ones of the others.
+ * <p>
+ * Every node writes to its own subdirectory only, so there are never conflicting writes: files are only appended to,
+ * in segments of about {@code segmentBytes}, named {@code deltas-<sequence>.jsonl}. Every delta is a line with a
+ * {@link PlayerReplica} in JSON, or, when encrypted, with the JSON encrypted by {@link StorageCipher} in Base64.
+ * <p>
+ * Reading resumes from a cursor per node, so the cost of a read depends on the deltas written since the last one.
+ * A line not ending with a line feed has not been completely written or synced yet, so the reading of the node stops
+ * before it, to be resumed from there.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class SyncFolder {
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("deltas-(\\d+)\\.jsonl");
+
+    /**
+     * Where the reading of the deltas of a node resumes.
+     */
+    @Value
+    public static class Cursor {
+        long segment;
+        long offset;
+    }
+
+    private final Path dir;
+    private final String nodeId;
+    private final Gson gson;
+    private final boolean encrypted;
+    private final long segmentBytes;
+    private final Map<String, Cursor> cursors = new HashMap<>();
+    private FileChannel segment;
+    private long segmentSequence;
+
+
+    /**
+     * @param cursors where the reading of each node resumes, as returned by {@link #getCursors()}.
+     */
+    public SyncFolder(Path dir, String nodeId, Gson gson, boolean encrypted, long segmentBytes,
+                      Map<String, Cursor> cursors) {
+        this.dir = dir;
+        this.nodeId = nodeId;
+        this.gson = gson;
+        this.encrypted = encrypted;
+        this.segmentBytes = segmentBytes;
+        this.cursors.putAll(cursors);
+    }
+
+
+    /**
+     * @return a copy of the cursors, including the one of this node, which is past the deltas it has written.
+     */
+    public synchronized Map<String, Cursor> getCursors() {
+        return new HashMap<>(cursors);
+    }
+
+    /**
+     * Appends the deltas of this node and forces them to disk. The cursor of this node is moved past them, since
+     * they are already merged.
+     */
+    public synchronized void append(List<PlayerReplica> deltas) throws IOException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        if (segment == null || segment.size() >= segmentBytes) {
+            openNextSegment();
+        }
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (PlayerReplica delta : deltas) {
+            byte[] json = gson.toJson(delta).getBytes(StandardCharsets.UTF_8);
+            lines.write(encrypted ? Base64.getEncoder().encode(StorageCipher.encrypt(json)) : json);
+            lines.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+        cursors.put(nodeId, new Cursor(segmentSequence, segment.size()));
+    }
+
+    private void openNextSegment() throws IOException {
+        Path nodeDir = dir.resolve(nodeId);
+        Files.createDirectories(nodeDir);
+        if (segment == null) {
+            List<Long> sequences = listSegments(nodeDir);
+            segmentSequence = sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1);
+        } else {
+            segment.close();
+        }
+        segmentSequence++;
+        segment = FileChannel.open(segmentPath(nodeDir, segmentSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Feeds the deltas written since the last read, by every node, to the given consumer. This node's own deltas
+     * are only read when it wrote some which were not merged, for example because it stopped in between.
+     *
+     * @return the number of deltas read.
+     */
+    public synchronized int read(Consumer<PlayerReplica> consumer) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        List<Path> nodeDirs;
+        try (Stream<Path> files = Files.list(dir)) {
+            nodeDirs = files.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+
+        int count = 0;
+        for (Path nodeDir : nodeDirs) {
+            count += readNode(nodeDir.getFileName().toString(), nodeDir, consumer);
+        }
+        return count;
+    }
+
+    private int readNode(String node, Path nodeDir, Consumer<PlayerReplica> consumer) throws IOException {
+        Cursor cursor = cursors.getOrDefault(node, new Cursor(0, 0));
+        int count = 0;
+
+        for (long sequence : listSegments(nodeDir)) {
+            if (sequence < cursor.getSegment()) {
+                continue;
+            }
+            long offset = sequence == cursor.getSegment() ? cursor.getOffset() : 0;
+            byte[] content = readFrom(segmentPath(nodeDir, sequence), offset);
+            int end = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] == '\n') {
+                    PlayerReplica delta = i > end ? parseLine(node, content, end, i) : null;
+                    if (delta != null) {
+                        consumer.accept(delta);
+                        count++;
+                    }
+                    end = i + 1;
+                }
+            }
+            cursor = new Cursor(sequence, offset + end);
+            if (end < content.length) {
+                // the rest of the segment has not been synced yet
+                break;
+            }
+        }
+        cursors.put(node, cursor);
+
+        return count;
+    }
+
+    /**
+     * @return the delta in the line, or null if it cannot be read.
+     */
+    private PlayerReplica parseLine(String node, byte[] content, int start, int end) {
+        try {
+            byte[] json;
+            if (content[start] == '{') {
+                json = Arrays.copyOfRange(content, start, end);
+            } else {
+                json = StorageCipher.decrypt(Base64.getDecoder().decode(Arrays.copyOfRange(content, start, end)));
+            }
+            PlayerReplica delta = gson.fromJson(new String(json, StandardCharsets.UTF_8), PlayerReplica.class);
+            if (delta == null || delta.getSteamId() == null) {
+                throw new JsonParseException("No player.");
+            }
+            return delta;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Skipped an unreadable delta of node {}.", node, e);
+            return null;
+        }
+    }
+
+    private static byte[] readFrom(Path file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size() - offset;
+            if (length <= 0) {
+                return new byte[0];
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // reads until the end of the file
+            }
+            return buffer.array();
+        }
+    }
+
+    private static List<Long> listSegments(Path nodeDir) throws IOException {
+        if (!Files.isDirectory(nodeDir)) {
+            return Collections.emptyList();
+        }
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(nodeDir)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    sequences.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        Collections.sort(sequences);
+
+        return sequences;
+    }
+
+    private static Path segmentPath(Path nodeDir, long sequence) {
+        return nodeDir.resolve(String.format("deltas-%08d.jsonl", sequence));
+    }
+
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+
+}
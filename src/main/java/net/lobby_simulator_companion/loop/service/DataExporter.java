@@ -0,0 +1,101 @@
+package net.lobby_simulator_companion.loop.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.repository.export.ExportFormat;
+import net.lobby_simulator_companion.loop.repository.export.ExportTable;
+import net.lobby_simulator_companion.loop.repository.export.TableWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Exports the match history and the players to files, for use in spreadsheets and data analysis tools.
+ * The rows are written as they are read, so the export takes little memory however much data there is.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DataExporter {
+
+    @Value
+    public static class ExportReport {
+        Path matchesFile;
+        long matches;
+        Path playersFile;
+        long players;
+        Duration elapsed;
+    }
+
+    private final LoopDataService dataService;
+
+
+    /**
+     * Writes the matches and the players to {@code matches.<extension>} and {@code players.<extension>} in the given
+     * directory, replacing them if they exist. Waits for the players to be loaded first, and fails if they could not
+     * be, rather than exporting only some of them.
+     */
+    public ExportReport export(Path dir, ExportFormat format) throws IOException {
+        Instant startTime = Instant.now();
+        dataService.whenPlayersLoaded().join();
+        if (dataService.hasPlayersLoadFailed()) {
+            throw new IOException("The players could not be loaded. The export would be incomplete.");
+        }
+        Files.createDirectories(dir);
+
+        Path matchesFile = dir.resolve(ExportTable.MATCHES.getName() + "." + format.extension());
+        long matches;
+        try (TableWriter<Match> writer = format.open(matchesFile, ExportTable.MATCHES)) {
+            matches = dataService.forEachMatch(writing(writer)).join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+
+        Path playersFile = dir.resolve(ExportTable.PLAYERS.getName() + "." + format.extension());
+        long players;
+        try (TableWriter<Player> writer = format.open(playersFile, ExportTable.PLAYERS)) {
+            players = dataService.forEachPlayer(writing(writer));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        ExportReport report = new ExportReport(matchesFile, matches, playersFile, players,
+                Duration.between(startTime, Instant.now()));
+        log.info("Exported {} matches and {} players as {} to {} in {} ms.",
+                matches, players, format, dir, report.getElapsed().toMillis());
+
+        return report;
+    }
+
+    private static <T> Consumer<T> writing(TableWriter<T> writer) {
+        return row -> {
+            try {
+                writer.write(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static IOException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException("Failed to export matches.", cause);
+    }
+
+}
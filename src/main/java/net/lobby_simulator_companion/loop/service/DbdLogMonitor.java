@@ -28,9 +28,7 @@ public class DbdLogMonitor implements Runnable {
 
     private static final int LOG_POLLING_PERIOD_MS = 1000;
 
-    private static final Path USER_APPDATA_PATH = Paths.get(System.getenv("APPDATA")).getParent();
     private static final String DEFAULT_LOG_PATH = "Local/DeadByDaylight/Saved/Logs/DeadByDaylight.log";
-    private static final File DEFAULT_LOG_FILE = USER_APPDATA_PATH.resolve(DEFAULT_LOG_PATH).toFile();
 
     public enum State {
         IDLE,
@@ -60,10 +58,12 @@ public class DbdLogMonitor implements Runnable {
 
     private BufferedReader reader;
     private long logSize;
+    private Thread thread;
+    private volatile boolean running;
 
 
     public DbdLogMonitor(EventSupport eventSupport) {
-        this(eventSupport, DEFAULT_LOG_FILE);
+        this(eventSupport, getDefaultLogFile());
     }
 
     public DbdLogMonitor(EventSupport eventSupport, File logFile) {
@@ -75,11 +75,23 @@ public class DbdLogMonitor implements Runnable {
     public void start() throws IOException {
         initReader();
 
-        Thread thread = new Thread(this);
+        running = true;
+        thread = new Thread(this);
         thread.setDaemon(true);
         thread.start();
     }
 
+    /**
+     * Stops reading the log, waiting until the line being processed (if any) has been processed.
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
 
     private void initReader() throws IOException {
         if (reader != null) {
@@ -101,7 +113,7 @@ public class DbdLogMonitor implements Runnable {
     public void run() {
         String line;
 
-        while (true) {
+        while (running) {
             try {
                 long currentLogSize = logFile.length();
 
@@ -128,7 +140,21 @@ public class DbdLogMonitor implements Runnable {
         }
     }
 
-    private void processLine(String line) {
+    /**
+     * The default log location depends on the Windows user profile, so it is only resolved when actually needed
+     * (this allows using the monitor with an explicit log file on any platform).
+     */
+    private static File getDefaultLogFile() {
+        Path userAppDataPath = Paths.get(System.getenv("APPDATA")).getParent();
+
+        return userAppDataPath.resolve(DEFAULT_LOG_PATH).toFile();
+    }
+
+    /**
+     * Runs a single log line through the registered processors.
+     * Exposed so that recorded logs can be fed without going through the log file.
+     */
+    public void processLine(String line) {
         for (DbdLogProcessor processor : processors) {
 
             try {
@@ -155,6 +181,10 @@ public class DbdLogMonitor implements Runnable {
     }
 
 
+    public void registerListener(EventListener eventListener) {
+        eventSupport.registerListener(eventListener);
+    }
+
     public void registerListener(Object eventType, EventListener eventListener) {
         eventSupport.registerListener(eventType, eventListener);
     }
@@ -12,14 +12,19 @@ import net.lobby_simulator_companion.loop.repository.SteamProfileDao;
 import net.lobby_simulator_companion.loop.service.log_event_orchestrators.ChaseEventManager;
 import net.lobby_simulator_companion.loop.service.log_processing.DbdLogEvent;
 import net.lobby_simulator_companion.loop.util.Stopwatch;
+import net.lobby_simulator_companion.loop.util.concurrent.ManagedIoExecutor;
 import net.lobby_simulator_companion.loop.util.event.EventListener;
 import net.lobby_simulator_companion.loop.util.event.EventSupport;
 import net.lobby_simulator_companion.loop.util.event.SwingEventSupport;
 
-import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 import static javax.swing.SwingUtilities.invokeLater;
 import static net.lobby_simulator_companion.loop.service.DbdLogMonitor.State;
@@ -45,10 +50,12 @@ public class GameStateManager {
     private final LoopDataService dataService;
     private final SteamProfileDao steamProfileDao;
     private final ChaseEventManager chaseEventManager;
+    private final Clock clock;
+    private final ManagedIoExecutor ioExecutor;
     private final EventSupport eventSupport = new SwingEventSupport();
-    private final Stopwatch queueStopwatch = new Stopwatch();
-    private final Stopwatch matchWaitStopwatch = new Stopwatch();
-    private final Stopwatch matchStopwatch = new Stopwatch();
+    private final Stopwatch queueStopwatch;
+    private final Stopwatch matchWaitStopwatch;
+    private final Stopwatch matchStopwatch;
 
     @Setter
     private int minMatchSeconds;
@@ -57,13 +64,24 @@ public class GameStateManager {
     private boolean resetMatchWait;
 
 
+    /**
+     * @param clock      source of time for all the measured times and timestamps.
+     * @param ioExecutor executor for the blocking tasks triggered by game events (e.g., retrieving Steam profiles).
+     *                   Its tasks are cancelled when disconnecting from a server.
+     */
     public GameStateManager(AppProperties appProperties, DbdLogMonitor dbdLogMonitor, LoopDataService dataService,
-                            SteamProfileDao steamProfileDao, ChaseEventManager chaseEventManager) {
+                            SteamProfileDao steamProfileDao, ChaseEventManager chaseEventManager,
+                            Clock clock, ManagedIoExecutor ioExecutor) {
         this.appProperties = appProperties;
         this.dbdLogMonitor = dbdLogMonitor;
         this.dataService = dataService;
         this.steamProfileDao = steamProfileDao;
         this.chaseEventManager = chaseEventManager;
+        this.clock = clock;
+        this.ioExecutor = ioExecutor;
+        this.queueStopwatch = new Stopwatch(clock);
+        this.matchWaitStopwatch = new Stopwatch(clock);
+        this.matchStopwatch = new Stopwatch(clock);
         this.minMatchSeconds = DEFAULT_MIN_MATCH_SECONDS;
 
         init();
@@ -132,7 +150,7 @@ public class GameStateManager {
         resetMatchWait = true;
         matchStopwatch.reset();
         matchStopwatch.start();
-        currentMatch.setMatchStartTime(LocalDateTime.now());
+        currentMatch.setMatchStartTime(LocalDateTime.now(clock));
         currentMatch.incrementSecondsWaited(getMatchWaitTimeInSeconds());
         fireEvent(GameEvent.MATCH_STARTED);
     }
@@ -164,6 +182,7 @@ public class GameStateManager {
 
     private void handleServerDisconnect() {
         log.debug("Game event: server disconnect");
+        ioExecutor.cancelAll();
         turnToIdle();
     }
 
@@ -174,40 +193,50 @@ public class GameStateManager {
     }
 
     private void handleNewKillerPlayer(PlayerDto playerDto) {
-        new Thread(() -> {
-            String playerName;
-            try {
-                playerName = steamProfileDao.getPlayerName(playerDto.getSteamId());
-            } catch (IOException e) {
-                log.error("Failed to retrieve player's name for steam id#{}.", playerDto.getSteamId());
-                playerName = "";
-            }
-            String steamId = playerDto.getSteamId();
-            Optional<Player> storedPlayer = dataService.getPlayerBySteamId(steamId);
-            final Player player;
-
-            if (!storedPlayer.isPresent()) {
-                log.debug("User #{} not found in the storage. Creating new entry...", steamId);
-                player = new Player();
-                player.setSteamId64(steamId);
-                player.setDbdPlayerId(playerDto.getDbdId());
-                player.addName(playerName);
-                player.incrementTimesEncountered();
-                dataService.addPlayer(player);
-            } else {
-                log.debug("User '{}' (#{}) found in the storage. Updating entry...", playerName, steamId);
-                player = storedPlayer.get();
-                player.updateLastSeen();
-                player.addName(playerName);
-                player.incrementTimesEncountered();
-                dataService.notifyChange();
-            }
-
-            currentMatch.setKillerPlayerSteamId64(player.getSteamId64());
-            currentMatch.setKillerPlayerDbdId(player.getDbdPlayerId());
-            invokeLater(() -> fireEvent(GameEvent.NEW_KILLER_PLAYER, player));
-
-        }).start();
+        String steamId = playerDto.getSteamId();
+
+        ioExecutor.submit("steam-profile", () -> steamProfileDao.getPlayerName(steamId))
+                .handle((playerName, e) -> {
+                    if (e == null) {
+                        return Optional.of(playerName);
+                    }
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof CancellationException || cause instanceof TimeoutException) {
+                        // the lobby was left, or the lookup took too long: the killer is not stored
+                        log.debug("Gave up retrieval of player's name for steam id#{}: {}", steamId, cause.toString());
+                        return Optional.<String>empty();
+                    }
+                    log.error("Failed to retrieve player's name for steam id#{}.", steamId, cause);
+                    return Optional.of("");
+                })
+                .thenCompose(playerName -> playerName
+                        .map(name -> storeKillerPlayer(playerDto, name))
+                        .orElseGet(() -> CompletableFuture.completedFuture(null)))
+                .whenComplete((player, e) -> {
+                    if (e != null) {
+                        log.error("Failed to store the killer player with steam id#{}.", steamId,
+                                e instanceof CompletionException ? e.getCause() : e);
+                    } else if (player != null) {
+                        currentMatch.setKillerPlayerSteamId64(player.getSteamId64());
+                        currentMatch.setKillerPlayerDbdId(player.getDbdPlayerId());
+                        invokeLater(() -> fireEvent(GameEvent.NEW_KILLER_PLAYER, player));
+                    }
+                });
+    }
+
+    private CompletableFuture<Player> storeKillerPlayer(PlayerDto playerDto, String playerName) {
+        return dataService.updatePlayer(playerDto.getSteamId(),
+                () -> {
+                    Player player = new Player();
+                    player.setSteamId64(playerDto.getSteamId());
+                    player.setDbdPlayerId(playerDto.getDbdId());
+                    return player;
+                },
+                player -> {
+                    player.updateLastSeen();
+                    player.addName(playerName);
+                    player.incrementTimesEncountered();
+                });
     }
 
     private void handleNewKillerCharacter(Killer killerCharacter) {
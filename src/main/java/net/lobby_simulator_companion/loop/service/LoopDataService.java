@@ -7,27 +7,64 @@ import net.lobby_simulator_companion.loop.domain.Player;
 import net.lobby_simulator_companion.loop.domain.stats.Match;
 import net.lobby_simulator_companion.loop.domain.stats.Stats;
 import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
-import net.lobby_simulator_companion.loop.repository.LoopRepository;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
+import net.lobby_simulator_companion.loop.repository.TieredLoad;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+import net.lobby_simulator_companion.loop.repository.playerstore.PlayerStore;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
 import net.lobby_simulator_companion.loop.util.event.EventListener;
 import net.lobby_simulator_companion.loop.util.event.EventSupport;
+import net.lobby_simulator_companion.loop.util.event.SwingEventSupport;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import static java.util.function.Function.identity;
-import static java.util.stream.Collectors.toConcurrentMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing data related to players and servers.
+ * <p>
+ * All the mutations (new matches, player updates, stat resets and saves) are serialized through a single writer,
+ * so the domain objects never need to be locked. Readers get immutable data instead:
+ * <ul>
+ *     <li>Players are copied on write: a {@link Player} returned by this service is never modified afterwards.</li>
+ *     <li>Stats and the match log are published as a versioned {@link LoopDataSnapshot} after every change.</li>
+ * </ul>
+ * The players are held in a {@link PlayerStore}, which does not necessarily keep them in memory.
+ * <p>
+ * Every mutation is also recorded as a {@link DataChange}. Saving takes the pending changes on the writer, which
+ * is cheap since they only reference immutable data, and writes them to the {@link LoopStore} from a separate
+ * saver thread, so mutations never wait for the disk. Once the store needs it (for example, when the change log of
+ * the file store grows large enough), the data is compacted in the background.
+ * <p>
+ * How soon saved changes reach the disk depends on the {@link Durability} level.
+ * <p>
+ * Queries beyond the data in memory are answered by the store, when it keeps the history of the data. They are run
+ * on the saver after saving, so they see every change made before them.
+ * <p>
+ * On start, only the stats and the match log are loaded before returning, so the UI can be shown right away.
+ * The players are loaded afterwards in the background. Looking up a player which has not been loaded yet waits
+ * until the background load reaches it (or finishes, if there is no such player). Mutations of such a player are
+ * deferred until then, instead of holding up the writer.
  *
  * @author NickyRamone
  */
@@ -35,134 +72,640 @@ import static java.util.stream.Collectors.toConcurrentMap;
 public class LoopDataService {
 
     public enum DataServiceEvent {
+        /**
+         * A new snapshot with the stats of a new match has been published.
+         */
+        MATCH_ADDED,
         STATS_RESET
     }
 
+    /**
+     * When changes are written, and whether they are forced to disk. The stronger levels lose less data when the
+     * system crashes, at the cost of more disk writes.
+     */
+    public enum Durability {
+        /**
+         * Changes are written on the periodic saves, without forcing them to disk.
+         */
+        ASYNC,
+        /**
+         * Like {@link #ASYNC}, but a new match is written and forced to disk right away.
+         */
+        MATCH_END,
+        /**
+         * Every change is written and forced to disk right away. Changes made while a write is in progress are
+         * written together afterwards.
+         */
+        SYNC
+    }
+
     private static final long SAVE_PERIOD_MS = 5000;
 
-    private final LoopRepository repository;
-    private Map<String, Player> players = new HashMap<>();
+    private final LoopStore store;
+    private final Executor writer;
+    private final Executor saver;
+    private final Executor background;
+    private final HashedWheelTimer timer;
+    private final Durability durability;
+    private final PlayerStore players;
+    private final EventSupport eventSupport = new SwingEventSupport(true);
+    /*
+     * Changes not saved yet. Players are replaced (never modified) on every update, so only the latest version of
+     * each modified player is kept; stats and match log changes are kept as the events which produced them.
+     */
+    private final Map<String, Player> modifiedPlayers = new LinkedHashMap<>();
+    private final List<DataChange> pendingChanges = new ArrayList<>();
+    private final Map<String, CompletableFuture<Player>> awaitedPlayers = new ConcurrentHashMap<>();
+    /*
+     * The last mutation waiting for each player which has not been loaded yet. Only accessed from the writer.
+     */
+    private final Map<String, CompletableFuture<?>> deferredMutations = new HashMap<>();
+    private final List<Consumer<Player>> playerListeners = new CopyOnWriteArrayList<>();
+    private volatile CompletableFuture<Void> playersLoaded = CompletableFuture.completedFuture(null);
+    private volatile boolean playersLoadFailed;
     private LoopData loopData = new LoopData();
-    private boolean dirty;
-    private EventSupport eventSupport = new EventSupport();
+    private volatile LoopDataSnapshot snapshot;
+    private boolean fullSaveRequested;
+    private boolean saveRequested;
+    private HashedWheelTimer.Timeout periodicSave;
+    private volatile boolean compactionWanted;
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+
+
+    public LoopDataService(LoopStore store, PlayerStore playerStore, HashedWheelTimer timer) {
+        this(store, playerStore, Durability.MATCH_END, timer);
+    }
+
+    public LoopDataService(LoopStore store, PlayerStore playerStore, Durability durability,
+                           HashedWheelTimer timer) {
+        this(store, playerStore, newDaemonExecutor("loop-data-writer"), newDaemonExecutor("loop-data-saver"),
+                newDaemonExecutor("loop-data-background"), durability, timer);
+    }
+
+    public LoopDataService(LoopStore store, PlayerStore playerStore, Executor writer, Executor saver,
+                           Executor background, HashedWheelTimer timer) {
+        this(store, playerStore, writer, saver, background, Durability.MATCH_END, timer);
+    }
 
+    /**
+     * @param writer     executor where all the mutations are applied. It must run tasks one at a time and in order.
+     * @param saver      executor where the changes are written to the store. It must run tasks one at a time
+     *                   and in order.
+     * @param background executor where the players are loaded and the compacted data is written.
+     *                   Running both on the same executor guarantees that no compacted data is written before all
+     *                   the players have been loaded.
+     * @param timer      timer for the periodic saves and the stat resets.
+     */
+    public LoopDataService(LoopStore store, PlayerStore playerStore, Executor writer, Executor saver,
+                           Executor background, Durability durability, HashedWheelTimer timer) {
+        this.store = store;
+        this.players = playerStore;
+        this.writer = writer;
+        this.saver = saver;
+        this.background = background;
+        this.timer = timer;
+        this.durability = durability;
+        publishSnapshot();
+    }
 
-    public LoopDataService(LoopRepository loopRepository) {
-        repository = loopRepository;
+    private static Executor newDaemonExecutor(String threadName) {
+        return Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
 
     public void start() throws IOException {
-        loopData = loadData();
-        players = loopData.getPlayers().stream()
-                .collect(toConcurrentMap(Player::getSteamId64, identity()));
-
-        // schedule thread for saving dirty data
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                save();
-            }
-        }, SAVE_PERIOD_MS, SAVE_PERIOD_MS);
+        TieredLoad load = store.load();
+        loopData = load.getData();
+        // changes to players are newer than the stored players, so they will not be overwritten when loading them
+        store.replay(loopData, this::applyChange);
+        publishSnapshot();
+        playersLoaded = new CompletableFuture<>();
+        background.execute(() -> loadPlayers(load));
+
+        // periodically save dirty data
+        periodicSave = timer.scheduleAtFixedRate(() -> writer.execute(() -> doSave(durability == Durability.SYNC)),
+                SAVE_PERIOD_MS, SAVE_PERIOD_MS);
 
         initStatResetTimers();
     }
 
 
-    private LoopData loadData() throws IOException {
-        LoopData data;
-
+    private void loadPlayers(TieredLoad load) {
+        long startTime = System.nanoTime();
         try {
-            data = repository.load();
-        } catch (FileNotFoundException e) {
-            data = new LoopData();
-            repository.save(data);
+            int count = load.readPlayers(player -> {
+                String steamId = player.getSteamId64();
+                players.putIfAbsent(player);
+                CompletableFuture<Player> awaitedPlayer = awaitedPlayers.remove(steamId);
+                if (awaitedPlayer != null) {
+                    awaitedPlayer.complete(players.get(steamId));
+                }
+            });
+            log.info("Loaded {} players in {} ms.", count, (System.nanoTime() - startTime) / 1_000_000);
+        } catch (IOException e) {
+            // a snapshot now would lose the players which could not be loaded
+            log.error("Failed to load players. No full snapshot will be written until restart.", e);
+            playersLoadFailed = true;
+        } finally {
+            playersLoaded.complete(null);
+            awaitedPlayers.forEach((steamId, awaitedPlayer) -> awaitedPlayer.complete(players.get(steamId)));
+            awaitedPlayers.clear();
         }
+    }
+
+    /**
+     * Finds a player, waiting until it is loaded if necessary. Must not be called from the writer.
+     */
+    private Player findPlayer(String steamId) {
+        return awaitPlayer(steamId).join();
+    }
+
+    /**
+     * @return a future completed with the player (or with null, if there is no such player) once it has been loaded.
+     */
+    private CompletableFuture<Player> awaitPlayer(String steamId) {
+        Player player = players.get(steamId);
+        if (player != null || playersLoaded.isDone()) {
+            return CompletableFuture.completedFuture(player);
+        }
+
+        CompletableFuture<Player> awaitedPlayer = awaitedPlayers.computeIfAbsent(steamId,
+                id -> new CompletableFuture<>());
+        // the player may have been loaded in the meantime
+        player = players.get(steamId);
+        if (player != null || playersLoaded.isDone()) {
+            awaitedPlayers.remove(steamId, awaitedPlayer);
+            awaitedPlayer.complete(player);
+        }
+
+        return awaitedPlayer;
+    }
+
+    /**
+     * Applies a mutation to a player (or to null, if there is no such player) on the writer. If the player has not
+     * been loaded yet, the mutation is applied once it is, so that the writer keeps applying other mutations
+     * meanwhile. The mutations of a player are applied in the order they were submitted.
+     * Must only be called from the writer.
+     *
+     * @return a future completed with the result of the mutation.
+     */
+    private <T> CompletableFuture<T> mutatePlayer(String steamId, Function<Player, T> mutation) {
+        CompletableFuture<?> previousMutation = deferredMutations.get(steamId);
+        if (previousMutation == null) {
+            CompletableFuture<Player> awaitedPlayer = awaitPlayer(steamId);
+            if (awaitedPlayer.isDone()) {
+                return CompletableFuture.completedFuture(mutation.apply(awaitedPlayer.join()));
+            }
+            previousMutation = awaitedPlayer;
+        }
+
+        // applied whether or not the previous mutation failed
+        CompletableFuture<T> deferredMutation = previousMutation.handleAsync(
+                (result, e) -> mutation.apply(players.get(steamId)), writer);
+        deferredMutations.put(steamId, deferredMutation);
+        deferredMutation.whenCompleteAsync((result, e) -> deferredMutations.remove(steamId, deferredMutation), writer);
 
-        return data;
+        return deferredMutation;
+    }
+
+    private void applyChange(DataChange change) {
+        switch (change.getType()) {
+            case PLAYER_UPSERT:
+                players.put(change.getPlayer());
+                break;
+            case MATCH_ADD:
+                loopData.getStats().addMatchStats(change.getMatch());
+                loopData.getMatchLog().add(change.getMatch());
+                break;
+            case STATS_RESET:
+                loopData.getStats().get(change.getPeriod()).reset(change.getResetTime());
+                break;
+        }
     }
 
     private void initStatResetTimers() {
-        getStats().asStream().forEach(this::initStatResetTimer);
+        for (Stats.Period period : Stats.Period.values()) {
+            initStatResetTimer(period);
+        }
     }
 
-    private void initStatResetTimer(PeriodStats periodStats) {
-        if (periodStats.getPeriodEnd() == null) {
+    private void initStatResetTimer(Stats.Period period) {
+        LocalDateTime periodEnd = loopData.getStats().get(period).getPeriodEnd();
+        if (periodEnd == null) {
             return;
         }
-        Date statsResetDate = Date.from(periodStats.getPeriodEnd().atZone(ZoneId.systemDefault()).toInstant()
-                .plusSeconds(5L));
-
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                log.debug("Resetting stats timer for {}", periodStats.getClass());
-                periodStats.reset();
-                notifyChange();
-                timer.cancel();
-                initStatResetTimer(periodStats);
-                eventSupport.fireEvent(DataServiceEvent.STATS_RESET);
-            }
-        }, statsResetDate);
+        // if the computer is suspended when the period ends, the reset will happen as soon as it wakes up
+        Instant statsResetTime = periodEnd.atZone(ZoneId.systemDefault()).toInstant().plusSeconds(5L);
+
+        timer.scheduleAt(statsResetTime, () -> writer.execute(() -> {
+            log.debug("Resetting {} stats", period);
+            LocalDateTime now = LocalDateTime.now();
+            loopData.getStats().get(period).reset(now);
+            pendingChanges.add(DataChange.statsReset(period, now));
+            requestSave(false);
+            publishSnapshot();
+            initStatResetTimer(period);
+            eventSupport.fireEvent(DataServiceEvent.STATS_RESET);
+        }));
+    }
+
+    /**
+     * Must only be called from the writer (or before the writer starts being used).
+     */
+    private void publishSnapshot() {
+        long version = snapshot == null ? 0 : snapshot.getVersion() + 1;
+        snapshot = new LoopDataSnapshot(version, loopData.getStats().copy(), loopData.getMatchLog().copy());
     }
 
 
+    public LoopDataSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     public Stats getStats() {
-        return loopData.getStats();
+        return snapshot.getStats();
     }
 
     public MatchLog getMatchLog() {
-        return loopData.getMatchLog();
+        return snapshot.getMatchLog();
     }
 
-    public void addMatch(Match match) {
-        Player player = players.get(match.getKillerPlayerSteamId64());
+    public void addMatch(Match newMatch) {
+        // the caller may keep modifying its match, while the stored one is written from the saver
+        Match match = newMatch.copy();
+        writer.execute(() -> {
+            Optional.ofNullable(match.getKillerPlayerSteamId64())
+                    .ifPresent(steamId -> mutatePlayer(steamId, player -> Optional.ofNullable(player)
+                            .map(p -> applyPlayerUpdate(p, updatedPlayer -> countMatch(updatedPlayer, match)))
+                            .orElse(null)));
+
+            loopData.getStats().addMatchStats(match);
+            loopData.getMatchLog().add(match);
+            pendingChanges.add(DataChange.matchAdd(match));
+            requestSave(true);
+            publishSnapshot();
+            eventSupport.fireEvent(DataServiceEvent.MATCH_ADDED);
+        });
+    }
 
-        if (player != null) {
-            player.incrementMatchesPlayed();
-            player.incrementSecondsPlayed(match.getSecondsPlayed());
+    private static void countMatch(Player player, Match match) {
+        player.incrementMatchesPlayed();
+        player.incrementSecondsPlayed(match.getSecondsPlayed());
 
-            if (match.escaped()) {
-                player.incrementEscapes();
-            } else if (match.died()) {
-                player.incrementDeaths();
-            }
+        if (match.escaped()) {
+            player.incrementEscapes();
+        } else if (match.died()) {
+            player.incrementDeaths();
         }
-
-        loopData.getStats().addMatchStats(match);
-        loopData.getMatchLog().add(match);
-        dirty = true;
     }
 
 
     public Optional<Player> getPlayerBySteamId(String steamId) {
-        return Optional.ofNullable(steamId).filter(StringUtils::isNotBlank).map(players::get);
+        return Optional.ofNullable(steamId).filter(StringUtils::isNotBlank).map(this::findPlayer);
     }
 
     public void addPlayer(Player player) {
-        players.put(player.getSteamId64(), player);
-        dirty = true;
+        Player copy = player.copy();
+        writer.execute(() -> storePlayer(copy));
     }
 
-    public void notifyChange() {
-        dirty = true;
+    /**
+     * Updates a stored player.
+     *
+     * @return a future completed with the updated player, or with null if there is no player with the given id.
+     */
+    public CompletableFuture<Player> updatePlayer(String steamId, Consumer<Player> updater) {
+        return updatePlayer(steamId, null, updater);
     }
 
-    public synchronized void save() {
-        if (!dirty) {
-            return;
+    /**
+     * Updates a stored player, creating it first if it does not exist yet.
+     *
+     * @param playerFactory supplies the player to store when there is none with the given id.
+     *                      If null, no player will be created.
+     * @return a future completed with the updated player, or with null if there was no player to update.
+     */
+    public CompletableFuture<Player> updatePlayer(String steamId, Supplier<Player> playerFactory,
+                                                  Consumer<Player> updater) {
+        return CompletableFuture.supplyAsync(() -> mutatePlayer(steamId, player -> {
+            if (player == null) {
+                if (playerFactory == null) {
+                    return null;
+                }
+                log.debug("User #{} not found in the storage. Creating new entry...", steamId);
+                Player newPlayer = playerFactory.get().copy();
+                updater.accept(newPlayer);
+                storePlayer(newPlayer);
+
+                return newPlayer;
+            }
+
+            return applyPlayerUpdate(player, updater);
+        }), writer).thenCompose(Function.identity());
+    }
+
+    private Player applyPlayerUpdate(Player player, Consumer<Player> updater) {
+        Player updatedPlayer = player.copy();
+        updater.accept(updatedPlayer);
+        storePlayer(updatedPlayer);
+
+        return updatedPlayer;
+    }
+
+    private void storePlayer(Player player) {
+        players.put(player);
+        modifiedPlayers.put(player.getSteamId64(), player);
+        requestSave(false);
+        playerListeners.forEach(listener -> listener.accept(player));
+    }
+
+    /**
+     * Saves the changes right away, if the durability level requires it. The save runs after the mutations already
+     * submitted to the writer, so the changes of all of them are written together.
+     * Must only be called from the writer.
+     */
+    private void requestSave(boolean matchAdded) {
+        boolean saveNow = durability == Durability.SYNC || (matchAdded && durability == Durability.MATCH_END);
+        if (saveNow && !saveRequested) {
+            saveRequested = true;
+            writer.execute(() -> {
+                saveRequested = false;
+                doSave(true);
+            });
+        }
+    }
+
+    /**
+     * Saves the pending changes and forces them to disk, waiting until the writer has applied all the mutations
+     * submitted before, until they have been written, and until any snapshot being written has been completed.
+     * If the change log has grown large enough, a new snapshot is written too.
+     *
+     * @return what was written.
+     */
+    public SaveReport save() {
+        SaveReport report = saveFromWriter();
+        if (compactionWanted && !report.isSnapshotStarted()) {
+            // the changes just written made the change log large enough
+            report = report.plus(saveFromWriter());
+        }
+        return report;
+    }
+
+    private SaveReport saveFromWriter() {
+        return CompletableFuture.supplyAsync(() -> doSave(true), writer)
+                .thenCompose(Function.identity())
+                .join();
+    }
+
+    /**
+     * Takes the pending changes and hands them to the saver, so that the writer never waits for the disk.
+     * Must only be called from the writer.
+     *
+     * @param force whether to force the changes to disk.
+     * @return a future completed once the changes have been written and any snapshot being written has been completed.
+     */
+    private CompletableFuture<SaveReport> doSave(boolean force) {
+        List<DataChange> changes = takePendingChanges();
+
+        CompletableFuture<SaveReport> written;
+        if ((fullSaveRequested || compactionWanted) && compaction.isDone()
+                && playersLoaded.isDone() && !playersLoadFailed) {
+            written = compact(changes, force);
+        } else {
+            written = CompletableFuture.supplyAsync(() -> Optional.ofNullable(writeChanges(changes, force))
+                    .orElse(SaveReport.EMPTY), saver);
+        }
+
+        return written.thenCombine(compaction, (report, v) -> report);
+    }
+
+    /**
+     * Must only be called from the writer.
+     */
+    private List<DataChange> takePendingChanges() {
+        List<DataChange> changes = new ArrayList<>(modifiedPlayers.size() + pendingChanges.size());
+        modifiedPlayers.values().forEach(player -> changes.add(DataChange.playerUpsert(player)));
+        changes.addAll(pendingChanges);
+        modifiedPlayers.clear();
+        pendingChanges.clear();
+
+        return changes;
+    }
+
+    /**
+     * Must only be called from the writer.
+     */
+    private void restorePendingChanges(List<DataChange> changes) {
+        List<DataChange> events = new ArrayList<>();
+        for (DataChange change : changes) {
+            if (change.getType() == DataChange.Type.PLAYER_UPSERT) {
+                // a newer version may have been stored in the meantime
+                modifiedPlayers.putIfAbsent(change.getPlayer().getSteamId64(), change.getPlayer());
+            } else {
+                events.add(change);
+            }
         }
+        pendingChanges.addAll(0, events);
+    }
 
-        loopData.getPlayers().clear();
-        loopData.addPlayers(new ArrayList<>(players.values()));
+    /**
+     * Writes changes to the store. If they cannot be written, they are given back to the writer to be saved
+     * again later. Must only be called from the saver.
+     *
+     * @return what was written, or null if the changes could not be written.
+     */
+    private SaveReport writeChanges(List<DataChange> changes, boolean force) {
+        if (changes.isEmpty()) {
+            return SaveReport.EMPTY;
+        }
         try {
-            repository.save(loopData);
-            dirty = false;
+            store.write(changes, force);
         } catch (IOException e) {
             log.error("Failed to save data.", e);
+            writer.execute(() -> restorePendingChanges(changes));
+            return null;
+        }
+        compactionWanted = store.needsCompaction();
+        SaveReport report = SaveReport.of(changes);
+        log.debug("Saved {}.", report);
+
+        return report;
+    }
+
+    /**
+     * Captures the current data, which includes the given changes, and writes it as a new snapshot in the background
+     * once the changes have been written and the compaction has been started. Must only be called from the writer.
+     */
+    private CompletableFuture<SaveReport> compact(List<DataChange> changes, boolean force) {
+        LoopData data = new LoopData(loopData.getStats().copy(), loopData.getMatchLog().copy(),
+                Collections.emptyList());
+        /*
+         * Players are never modified once stored, so they are read while the snapshot is written. A player replaced
+         * from now on may be missing from the snapshot, but not from the change log segments which follow it.
+         */
+        Iterable<Player> snapshotPlayers = players.players();
+        fullSaveRequested = false;
+        CompletableFuture<Void> snapshotWritten = new CompletableFuture<>();
+        compaction = snapshotWritten;
+
+        // writing and starting the compaction in the same task, so that no other changes are written in between
+        return CompletableFuture.supplyAsync(() -> {
+            SaveReport report = writeChanges(changes, force);
+            if (report == null) {
+                // the changes will be written again after the snapshot, so it must not be taken now
+                writer.execute(() -> fullSaveRequested = true);
+                snapshotWritten.complete(null);
+                return SaveReport.EMPTY;
+            }
+            LoopStore.CompactionWriter compactionWriter;
+            try {
+                compactionWriter = store.startCompaction();
+            } catch (IOException e) {
+                log.error("Failed to start the compaction.", e);
+                snapshotWritten.complete(null);
+                return report;
+            }
+            compactionWanted = false;
+            background.execute(() -> writeSnapshot(compactionWriter, data, snapshotPlayers, snapshotWritten));
+
+            return report.withSnapshotStarted(true);
+        }, saver);
+    }
+
+    private void writeSnapshot(LoopStore.CompactionWriter compactionWriter, LoopData data,
+                               Iterable<Player> snapshotPlayers, CompletableFuture<Void> snapshotWritten) {
+        try {
+            compactionWriter.write(data, snapshotPlayers);
+        } catch (IOException e) {
+            log.error("Failed to compact data.", e);
+            writer.execute(() -> fullSaveRequested = true);
+        } finally {
+            snapshotWritten.complete(null);
+        }
+    }
+
+    /**
+     * Finds the matches played against a killer player: all of them if the store keeps the match history, otherwise
+     * the ones in the match log.
+     *
+     * @return a future completed with the matches, from oldest to newest.
+     */
+    public CompletableFuture<List<Match>> getMatchesAgainst(String killerSteamId) {
+        if (!store.keepsMatchHistory()) {
+            return CompletableFuture.completedFuture(getMatchLog().getMatches().stream()
+                    .filter(match -> killerSteamId.equals(match.getKillerPlayerSteamId64()))
+                    .collect(Collectors.toList()));
         }
+
+        return queryAfterSave(() -> store.findMatchesAgainst(killerSteamId));
+    }
+
+    /**
+     * Feeds every match played to the given consumer, from oldest to newest: all of them, on a background thread, if
+     * the store keeps the match history, otherwise the ones in the current match log, from the calling thread.
+     *
+     * @return a future completed with the number of matches.
+     */
+    public CompletableFuture<Long> forEachMatch(Consumer<Match> consumer) {
+        if (!store.keepsMatchHistory()) {
+            // the match log of a snapshot is never modified, so the saver is not needed to go through it
+            Collection<Match> matches = getMatchLog().getMatches();
+            matches.forEach(consumer);
+            return CompletableFuture.completedFuture((long) matches.size());
+        }
+
+        return queryAfterSave(() -> store.forEachMatch(consumer));
+    }
+
+    /**
+     * Feeds the players to the given consumer, from the calling thread. A player updated meanwhile may be seen in
+     * either version.
+     *
+     * @return the number of players.
+     */
+    public long forEachPlayer(Consumer<Player> consumer) {
+        long count = 0;
+        for (Player player : players.players()) {
+            consumer.accept(player);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the stats of a past or current period: for example, the monthly stats of last March. Only the current
+     * periods are found unless the store keeps the period history.
+     *
+     * @return a future completed with the stats of the period which included the given time, if they were kept.
+     */
+    public CompletableFuture<Optional<PeriodStats>> getPeriodStats(Stats.Period period, LocalDateTime time) {
+        PeriodStats current = getStats().get(period);
+        boolean inCurrentPeriod = current.getPeriodStart() != null && !time.isBefore(current.getPeriodStart())
+                && (current.getPeriodEnd() == null || !time.isAfter(current.getPeriodEnd()));
+
+        if (inCurrentPeriod || !store.keepsPeriodHistory()) {
+            return CompletableFuture.completedFuture(Optional.of(current).filter(stats -> inCurrentPeriod));
+        }
+
+        return queryAfterSave(() -> store.findPeriodStats(period, time));
+    }
+
+    private <T> CompletableFuture<T> queryAfterSave(StoreQuery<T> query) {
+        return CompletableFuture.supplyAsync(() -> doSave(durability == Durability.SYNC), writer)
+                .thenCompose(Function.identity())
+                .thenApplyAsync(report -> {
+                    try {
+                        return query.run();
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, saver);
+    }
+
+    @FunctionalInterface
+    private interface StoreQuery<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Stops the periodic saves, saves the pending changes and closes the store. Mutations submitted afterwards are
+     * not saved.
+     */
+    public void close() throws IOException {
+        if (periodicSave != null) {
+            periodicSave.cancel();
+        }
+        SaveReport report = save();
+        log.info("Saved {} on close.", report);
+        store.close();
+    }
+
+    /**
+     * @return a future completed once the background load of the players has finished, whether or not it failed.
+     */
+    public CompletableFuture<Void> whenPlayersLoaded() {
+        return playersLoaded;
+    }
+
+    /**
+     * @return whether the background load of the players failed, in which case only the players loaded before the
+     * failure (and the ones added since) are known.
+     */
+    public boolean hasPlayersLoadFailed() {
+        return playersLoadFailed;
+    }
+
+    /**
+     * Registers a listener notified of every player added or updated, from the thread where the mutations are
+     * applied. The players must not be modified, and the listener must return quickly.
+     */
+    public void addPlayerListener(Consumer<Player> listener) {
+        playerListeners.add(listener);
     }
 
     public void registerListener(EventListener eventListener) {
@@ -0,0 +1,22 @@
+package net.lobby_simulator_companion.loop.service;
+
+import lombok.Value;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+
+/**
+ * Read-only view of the aggregated data, published by the {@link LoopDataService} every time the stats change.
+ * <p>
+ * A snapshot is never modified once published, so it can be read from any thread without locking.
+ * Each new snapshot has a higher version than the previous one.
+ *
+ * @author NickyRamone
+ */
+@Value
+public class LoopDataSnapshot {
+
+    long version;
+    Stats stats;
+    MatchLog matchLog;
+
+}
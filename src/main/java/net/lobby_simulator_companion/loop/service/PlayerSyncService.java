@@ -0,0 +1,249 @@
+package net.lobby_simulator_companion.loop.service;
+
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.sync.PlayerReplica;
+import net.lobby_simulator_companion.loop.repository.sync.SyncCheckpoint;
+import net.lobby_simulator_companion.loop.repository.sync.SyncFolder;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Shares the players (their counters, rating, description and names) with other installations through a shared
+ * folder, with no server: every installation is a node which writes the deltas of its players to the folder, and
+ * merges the deltas written by the others (see {@link PlayerReplica} and {@link SyncFolder}).
+ * <p>
+ * The players updated locally are collected as they are stored, and their changes are written as deltas on every
+ * sync. The deltas of the other nodes are then merged into the replicated state of their players, which is applied to
+ * the stored players as updates. Since the counters of a player are the sum of the increments of every node, the
+ * increments of a node are the differences with the player as it was last observed, not the stored values.
+ * <p>
+ * The first time, every stored player is written, so that the other nodes get the players known before syncing.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class PlayerSyncService {
+
+    private static final long SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    private final LoopDataService dataService;
+    private final Path syncDir;
+    private final Path checkpointFile;
+    private final Gson gson;
+    private final boolean encrypted;
+    private final long syncPeriodMs;
+    private final int checkpointDeltas;
+    private final HashedWheelTimer timer;
+    private final Executor executor;
+    /**
+     * Players stored since the last sync, latest version only.
+     */
+    private final Map<String, Player> updatedPlayers = new ConcurrentHashMap<>();
+    /*
+     * The checkpoint state and the deltas not written yet are accessed from the sync and from the updates applied on
+     * the data service, under this lock.
+     */
+    private final Object lock = new Object();
+    private final List<PlayerReplica> unwrittenDeltas = new ArrayList<>();
+    private SyncCheckpoint checkpoint;
+    private SyncFolder folder;
+    private int deltasSinceCheckpoint;
+    private HashedWheelTimer.Timeout periodicSync;
+
+
+    public PlayerSyncService(LoopDataService dataService, Path syncDir, Path checkpointFile, Gson gson,
+                             boolean encrypted, long syncPeriodMs, int checkpointDeltas, HashedWheelTimer timer) {
+        this(dataService, syncDir, checkpointFile, gson, encrypted, syncPeriodMs, checkpointDeltas, timer,
+                Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "player-sync");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    /**
+     * @param checkpointDeltas number of deltas read or written from which the checkpoint is written again.
+     * @param executor         executor where the syncs run. It must run tasks one at a time.
+     */
+    public PlayerSyncService(LoopDataService dataService, Path syncDir, Path checkpointFile, Gson gson,
+                             boolean encrypted, long syncPeriodMs, int checkpointDeltas, HashedWheelTimer timer,
+                             Executor executor) {
+        this.dataService = dataService;
+        this.syncDir = syncDir;
+        this.checkpointFile = checkpointFile;
+        this.gson = gson;
+        this.encrypted = encrypted;
+        this.syncPeriodMs = syncPeriodMs;
+        this.checkpointDeltas = checkpointDeltas;
+        this.timer = timer;
+        this.executor = executor;
+    }
+
+
+    /**
+     * Loads the checkpoint and starts syncing, once the players have been loaded by the data service.
+     */
+    public void start() throws IOException {
+        SyncCheckpoint loadedCheckpoint = null;
+        try {
+            loadedCheckpoint = SyncCheckpoint.read(checkpointFile, gson);
+        } catch (IOException e) {
+            log.error("Failed to read the sync checkpoint. Syncing as a new node.", e);
+        }
+        boolean newNode = loadedCheckpoint == null;
+        checkpoint = newNode ? new SyncCheckpoint() : loadedCheckpoint;
+        folder = new SyncFolder(syncDir, checkpoint.getNodeId(), gson, encrypted, SEGMENT_BYTES,
+                checkpoint.getCursors());
+        log.info("Syncing players through {} as node {}.", syncDir, checkpoint.getNodeId());
+
+        dataService.addPlayerListener(player -> updatedPlayers.put(player.getSteamId64(), player));
+        dataService.whenPlayersLoaded().thenRunAsync(() -> {
+            if (newNode) {
+                dataService.forEachPlayer(player -> updatedPlayers.putIfAbsent(player.getSteamId64(), player));
+            }
+            sync();
+        }, executor);
+        periodicSync = timer.scheduleAtFixedRate(() -> executor.execute(this::sync), syncPeriodMs, syncPeriodMs);
+    }
+
+    /**
+     * @return a future completed once a sync submitted now has run.
+     */
+    public CompletableFuture<Void> syncNow() {
+        return CompletableFuture.runAsync(this::sync, executor);
+    }
+
+    /**
+     * Merges the deltas of the other nodes, applying them to the players, then writes the deltas of the local changes.
+     */
+    private void sync() {
+        try {
+            Set<String> mergedPlayers = new HashSet<>();
+            int deltasRead;
+            synchronized (lock) {
+                deltasRead = folder.read(delta -> {
+                    checkpoint.getReplicas().computeIfAbsent(delta.getSteamId(), PlayerReplica::new).merge(delta);
+                    mergedPlayers.add(delta.getSteamId());
+                });
+            }
+            applyMergedPlayers(mergedPlayers);
+
+            List<PlayerReplica> deltas;
+            synchronized (lock) {
+                deltas = new ArrayList<>(unwrittenDeltas);
+                unwrittenDeltas.clear();
+                Iterator<Map.Entry<String, Player>> updates = updatedPlayers.entrySet().iterator();
+                while (updates.hasNext()) {
+                    Player player = updates.next().getValue();
+                    updates.remove();
+                    PlayerReplica delta = recordChanges(player);
+                    if (!delta.isEmpty()) {
+                        deltas.add(delta);
+                    }
+                }
+                folder.append(deltas);
+                deltasSinceCheckpoint += deltasRead + deltas.size();
+                if (deltasSinceCheckpoint >= checkpointDeltas) {
+                    writeCheckpoint();
+                }
+            }
+            if (deltasRead > 0 || !deltas.isEmpty()) {
+                log.debug("Synced players: {} deltas read; {} deltas written.", deltasRead, deltas.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to sync players.", e);
+        }
+    }
+
+    private void applyMergedPlayers(Set<String> steamIds) {
+        List<CompletableFuture<Player>> updates = new ArrayList<>();
+        for (String steamId : steamIds) {
+            updates.add(dataService.updatePlayer(steamId, () -> newPlayer(steamId), player -> {
+                synchronized (lock) {
+                    // changes made since the last sync would be overwritten otherwise
+                    PlayerReplica delta = recordChanges(player);
+                    if (!delta.isEmpty()) {
+                        unwrittenDeltas.add(delta);
+                    }
+                    checkpoint.getReplicas().get(steamId).applyTo(player);
+                    checkpoint.getObserved().put(steamId, player.copy());
+                }
+            }));
+        }
+        try {
+            CompletableFuture.allOf(updates.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            log.error("Failed to apply the synced players.", e.getCause());
+        }
+    }
+
+    /**
+     * Must be called under the lock.
+     */
+    private PlayerReplica recordChanges(Player player) {
+        String steamId = player.getSteamId64();
+        PlayerReplica delta = checkpoint.getReplicas().computeIfAbsent(steamId, PlayerReplica::new)
+                .recordChanges(checkpoint.getObserved().get(steamId), player, checkpoint.getNodeId(),
+                        System.currentTimeMillis());
+        checkpoint.getObserved().put(steamId, player.copy());
+
+        return delta;
+    }
+
+    private static Player newPlayer(String steamId) {
+        Player player = new Player();
+        player.setSteamId64(steamId);
+
+        return player;
+    }
+
+    /**
+     * Must be called under the lock.
+     */
+    private void writeCheckpoint() throws IOException {
+        checkpoint.getCursors().clear();
+        checkpoint.getCursors().putAll(folder.getCursors());
+        checkpoint.write(checkpointFile, gson);
+        deltasSinceCheckpoint = 0;
+    }
+
+    /**
+     * Stops the periodic syncs, then syncs a last time and writes the checkpoint.
+     */
+    public void close() throws IOException {
+        if (periodicSync != null) {
+            periodicSync.cancel();
+        }
+        if (checkpoint == null) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            sync();
+            synchronized (lock) {
+                try {
+                    writeCheckpoint();
+                    folder.close();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, executor).join();
+        log.info("Closed the player sync.");
+    }
+
+}
@@ -0,0 +1,65 @@
+package net.lobby_simulator_companion.loop.service;
+
+import lombok.Value;
+import lombok.With;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+
+import java.util.Collection;
+
+/**
+ * Summary of what a save wrote: the number of records of each kind appended to the change log, and whether a new
+ * snapshot of all the data was started.
+ *
+ * @author NickyRamone
+ */
+@Value
+public class SaveReport {
+
+    public static final SaveReport EMPTY = new SaveReport(0, 0, 0, false);
+
+    int playersWritten;
+    int matchesWritten;
+    int statResetsWritten;
+    @With
+    boolean snapshotStarted;
+
+
+    static SaveReport of(Collection<DataChange> changes) {
+        int players = 0;
+        int matches = 0;
+        int statResets = 0;
+        for (DataChange change : changes) {
+            switch (change.getType()) {
+                case PLAYER_UPSERT:
+                    players++;
+                    break;
+                case MATCH_ADD:
+                    matches++;
+                    break;
+                case STATS_RESET:
+                    statResets++;
+                    break;
+            }
+        }
+        return new SaveReport(players, matches, statResets, false);
+    }
+
+    /**
+     * @return the totals of this report and another one.
+     */
+    public SaveReport plus(SaveReport other) {
+        return new SaveReport(playersWritten + other.playersWritten, matchesWritten + other.matchesWritten,
+                statResetsWritten + other.statResetsWritten, snapshotStarted || other.snapshotStarted);
+    }
+
+    public int getEntitiesWritten() {
+        return playersWritten + matchesWritten + statResetsWritten;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d players, %d matches and %d stat resets%s", playersWritten, matchesWritten,
+                statResetsWritten, snapshotStarted ? " (snapshot started)" : "");
+    }
+
+}
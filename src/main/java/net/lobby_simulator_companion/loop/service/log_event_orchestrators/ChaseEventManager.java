@@ -14,17 +14,17 @@ import net.lobby_simulator_companion.loop.service.log_processing.impl.dto.HitEve
 import net.lobby_simulator_companion.loop.util.event.EventListener;
 import net.lobby_simulator_companion.loop.util.event.SwingEventSupport;
 
+import javax.swing.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import static javax.swing.SwingUtilities.invokeLater;
-
 /**
  * @author NickyRamone
  */
@@ -69,6 +69,7 @@ public class ChaseEventManager {
     }
 
     private final DbdLogMonitor dbdLogMonitor;
+    private final Executor eventExecutor;
     private final SwingEventSupport eventSupport = new SwingEventSupport();
 
     private Map<ChaseKey, Chase> chases = new HashMap<>();
@@ -76,7 +77,15 @@ public class ChaseEventManager {
 
 
     public ChaseEventManager(DbdLogMonitor dbdLogMonitor) {
+        this(dbdLogMonitor, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * @param eventExecutor executor on which chase events are handled (by default, the Swing event dispatch thread).
+     */
+    public ChaseEventManager(DbdLogMonitor dbdLogMonitor, Executor eventExecutor) {
         this.dbdLogMonitor = dbdLogMonitor;
+        this.eventExecutor = eventExecutor;
 
         initListeners();
     }
@@ -86,9 +95,9 @@ public class ChaseEventManager {
         dbdLogMonitor.registerListener(DbdLogEvent.SERVER_CONNECT,
                 evt -> handleLobbyConnect());
         dbdLogMonitor.registerListener(DbdLogEvent.CHASE_START,
-                evt -> invokeLater(() -> handleChaseStart((ChaseEvent) evt.getValue())));
+                evt -> eventExecutor.execute(() -> handleChaseStart((ChaseEvent) evt.getValue())));
         dbdLogMonitor.registerListener(DbdLogEvent.CHASE_END,
-                evt -> invokeLater(() -> handleChaseEnd((ChaseEvent) evt.getValue())));
+                evt -> eventExecutor.execute(() -> handleChaseEnd((ChaseEvent) evt.getValue())));
         dbdLogMonitor.registerListener(DbdLogEvent.KILLER_HIT,
                 evt -> handleKillerHit((HitEvent) evt.getValue()));
     }
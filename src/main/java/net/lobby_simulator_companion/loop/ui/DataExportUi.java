@@ -0,0 +1,94 @@
+package net.lobby_simulator_companion.loop.ui;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lobby_simulator_companion.loop.config.AppProperties;
+import net.lobby_simulator_companion.loop.repository.export.ExportFormat;
+import net.lobby_simulator_companion.loop.service.DataExporter;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import net.lobby_simulator_companion.loop.util.concurrent.ManagedIoExecutor;
+
+import javax.swing.*;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Asks for a directory and a format, and exports the data there in the background.
+ * <p>
+ * Exports run one at a time on their own executor, not on the shared I/O one: the tasks of the shared executor are
+ * cancelled when leaving a lobby, which must not interrupt an export, and an export would hold one of its few threads
+ * for long.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class DataExportUi {
+
+    private final AppProperties appProperties;
+    private final DataExporter dataExporter;
+    private final ManagedIoExecutor exportExecutor;
+
+
+    /**
+     * @param timer timer for enforcing the deadline of the exports.
+     */
+    public DataExportUi(AppProperties appProperties, DataExporter dataExporter, HashedWheelTimer timer) {
+        this.appProperties = appProperties;
+        this.dataExporter = dataExporter;
+        this.exportExecutor = ManagedIoExecutor.create("data-export", 1,
+                appProperties.getInt("export.task_deadline_ms"), timer);
+    }
+
+    public void show() {
+        String title = appProperties.get("app.name.short") + " - Export data";
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle(title);
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fileChooser.showDialog(null, "Export here") != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path dir = fileChooser.getSelectedFile().toPath();
+
+        ExportFormat[] formats = ExportFormat.values();
+        ExportFormat format = (ExportFormat) JOptionPane.showInputDialog(null,
+                "The matches and the players will be written to separate files.\n\nFormat:", title,
+                JOptionPane.QUESTION_MESSAGE, null, formats, formats[0]);
+        if (format == null) {
+            return;
+        }
+
+        export(dir, format).whenComplete((report, e) -> {
+                    if (e == null) {
+                        String message = String.format("Exported %d matches and %d players to:%n%s",
+                                report.getMatches(), report.getPlayers(), dir);
+                        SwingUtilities.invokeLater(() ->
+                                JOptionPane.showMessageDialog(null, message, title, JOptionPane.INFORMATION_MESSAGE));
+                        return;
+                    }
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof CancellationException) {
+                        log.info("Cancelled the data export.");
+                        return;
+                    }
+                    log.error("Failed to export data.", cause);
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                            "Failed to export data: " + cause.getMessage(), title, JOptionPane.ERROR_MESSAGE));
+                });
+    }
+
+    /**
+     * Exports the data in the background.
+     */
+    public CompletableFuture<DataExporter.ExportReport> export(Path dir, ExportFormat format) {
+        return exportExecutor.submit("data-export", () -> dataExporter.export(dir, format));
+    }
+
+    /**
+     * Cancels the export in progress, if any.
+     */
+    public void cancel() {
+        exportExecutor.cancelAll();
+    }
+
+}
@@ -15,6 +15,7 @@ import net.lobby_simulator_companion.loop.ui.common.ResourceFactory;
 import net.lobby_simulator_companion.loop.ui.common.UiConstants;
 import net.lobby_simulator_companion.loop.ui.common.UiEventOrchestrator;
 import net.lobby_simulator_companion.loop.util.TimeUtil;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
 
 import javax.swing.*;
 import javax.swing.border.Border;
@@ -33,8 +34,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import static javax.swing.SwingUtilities.invokeLater;
 import static net.lobby_simulator_companion.loop.ui.common.ResourceFactory.Icon;
@@ -88,14 +87,16 @@ public class KillerPanel extends JPanel {
     private JLabel userNotesEditButton;
     private JTextArea userNotesArea;
 
-    private Timer userNotesUpdateTimer;
+    private final HashedWheelTimer timer;
+    private HashedWheelTimer.Timeout userNotesUpdateTimeout;
 
 
     public KillerPanel(Settings settings, LoopDataService dataService, GameStateManager gameStateManager,
-                       UiEventOrchestrator uiEventOrchestrator) {
+                       UiEventOrchestrator uiEventOrchestrator, HashedWheelTimer timer) {
         this.dataService = dataService;
         this.gameStateManager = gameStateManager;
         this.uiEventOrchestrator = uiEventOrchestrator;
+        this.timer = timer;
 
         draw(settings);
         initEventListeners();
@@ -229,14 +230,9 @@ public class KillerPanel extends JPanel {
 
 
     private void deferDescriptionUpdate() {
-        if (userNotesUpdateTimer == null) {
-            userNotesUpdateTimer = new Timer();
-            userNotesUpdateTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    invokeLater(() -> updatePlayerDescription());
-                }
-            }, DESCRIPTION_UPDATE_DELAY_MS);
+        if (userNotesUpdateTimeout == null) {
+            userNotesUpdateTimeout = timer.schedule(() -> invokeLater(this::updatePlayerDescription),
+                    DESCRIPTION_UPDATE_DELAY_MS);
         }
     }
 
@@ -244,11 +240,11 @@ public class KillerPanel extends JPanel {
         gameStateManager.getKillerPlayer().ifPresent(killerPlayer -> {
             String newNotes = userNotesArea.getText().trim();
             newNotes = newNotes.isEmpty() ? null : newNotes;
-            userNotesUpdateTimer = null;
+            userNotesUpdateTimeout = null;
 
             if (!Objects.equals(newNotes, killerPlayer.getDescription())) {
-                killerPlayer.setDescription(newNotes);
-                dataService.notifyChange();
+                String description = newNotes;
+                dataService.updatePlayer(killerPlayer.getSteamId64(), player -> player.setDescription(description));
             }
         });
     }
@@ -411,9 +407,8 @@ public class KillerPanel extends JPanel {
         } else {
             newRating = Player.Rating.UNRATED;
         }
-        player.setRating(newRating);
-        dataService.notifyChange();
-        refreshKillerPlayerRatingOnScreen();
+        dataService.updatePlayer(player.getSteamId64(), p -> p.setRating(newRating))
+                .thenRun(() -> invokeLater(this::refreshKillerPlayerRatingOnScreen));
         uiEventOrchestrator.fireEvent(UiEvent.UPDATE_KILLER_PLAYER_RATING, newRating);
     }
 
@@ -7,7 +7,6 @@ import net.lobby_simulator_companion.loop.domain.Player;
 import net.lobby_simulator_companion.loop.domain.stats.Match;
 import net.lobby_simulator_companion.loop.service.GameEvent;
 import net.lobby_simulator_companion.loop.service.GameStateManager;
-import net.lobby_simulator_companion.loop.service.LoopDataService;
 import net.lobby_simulator_companion.loop.ui.common.ComponentUtils;
 import net.lobby_simulator_companion.loop.ui.common.FontUtil;
 import net.lobby_simulator_companion.loop.ui.common.MouseDragListener;
@@ -71,7 +70,6 @@ public class MainWindow extends JFrame {
 
     private final Settings settings;
     private final AppProperties appProperties;
-    private final LoopDataService dataService;
     private final GameStateManager gameStateManager;
     private final UiEventOrchestrator uiEventOrchestrator;
     private final ServerPanel serverPanel;
@@ -101,13 +99,12 @@ public class MainWindow extends JFrame {
     private boolean detailPanelSavedVisibilityState;
 
 
-    public MainWindow(Settings settings, AppProperties appProperties, LoopDataService loopDataService,
+    public MainWindow(Settings settings, AppProperties appProperties,
                       GameStateManager gameStateManager, UiEventOrchestrator uiEventOrchestrator,
                       ServerPanel serverPanel, MatchPanel matchPanel, KillerPanel killerPanel, StatsPanel statsPanel,
                       SurvivalInputPanel survivalInputPanel) {
         this.settings = settings;
         this.appProperties = appProperties;
-        this.dataService = loopDataService;
         this.gameStateManager = gameStateManager;
         this.uiEventOrchestrator = uiEventOrchestrator;
         this.serverPanel = serverPanel;
@@ -544,9 +541,10 @@ public class MainWindow extends JFrame {
         connTimerLabel.setText(MSG__TITLE_BAR__MATCH_TIME + TimeUtil.formatTimeUpToHours(seconds));
     }
 
+    /**
+     * The data and settings are saved afterwards, on shutdown.
+     */
     public void close() {
-        settings.forceSave();
-        dataService.save();
         dispose();
     }
 
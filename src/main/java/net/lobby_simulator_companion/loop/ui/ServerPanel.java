@@ -14,6 +14,7 @@ import net.lobby_simulator_companion.loop.ui.common.NameValueInfoPanel;
 import net.lobby_simulator_companion.loop.ui.common.ResourceFactory;
 import net.lobby_simulator_companion.loop.ui.common.UiConstants;
 import net.lobby_simulator_companion.loop.ui.common.UiEventOrchestrator;
+import net.lobby_simulator_companion.loop.util.concurrent.ManagedIoExecutor;
 
 import javax.swing.*;
 import java.awt.*;
@@ -24,6 +25,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
 import static net.lobby_simulator_companion.loop.ui.common.ResourceFactory.Icon;
 import static net.lobby_simulator_companion.loop.ui.common.UiConstants.COLOR__INFO_PANEL__BG;
@@ -60,6 +62,7 @@ public class ServerPanel extends JPanel {
     private final GameStateManager gameStateManager;
     private final UiEventOrchestrator uiEventOrchestrator;
     private final ServerDao serverDao;
+    private final ManagedIoExecutor ioExecutor;
 
     private JLabel summaryLabel;
     private JLabel geoLocationLabel;
@@ -68,12 +71,13 @@ public class ServerPanel extends JPanel {
 
 
     public ServerPanel(Settings settings, AppProperties appProperties, GameStateManager gameStateManager,
-                       UiEventOrchestrator uiEventOrchestrator, ServerDao serverDao) {
+                       UiEventOrchestrator uiEventOrchestrator, ServerDao serverDao, ManagedIoExecutor ioExecutor) {
         this.settings = settings;
         this.appProperties = appProperties;
         this.gameStateManager = gameStateManager;
         this.uiEventOrchestrator = uiEventOrchestrator;
         this.serverDao = serverDao;
+        this.ioExecutor = ioExecutor;
 
         initEventListeners();
         draw();
@@ -161,15 +165,16 @@ public class ServerPanel extends JPanel {
     }
 
     private void updateServerIpAddress(String ipAddress) {
-        new Thread(() -> {
-            try {
-                server = serverDao.getByIpAddress(ipAddress);
-                SwingUtilities.invokeLater(() -> refreshServerOnScreen(this.server));
-
-            } catch (IOException e) {
-                log.error("Failed to retrieve server information.", e);
-            }
-        }).start();
+        ioExecutor.submit("server-lookup", () -> serverDao.getByIpAddress(ipAddress))
+                .whenComplete((server, e) -> {
+                    if (e == null) {
+                        SwingUtilities.invokeLater(() -> refreshServerOnScreen(server));
+                    } else if (e instanceof CancellationException) {
+                        log.debug("Cancelled retrieval of server information.");
+                    } else {
+                        log.error("Failed to retrieve server information.", e);
+                    }
+                });
     }
 
     private void refreshServerOnScreen(Server server) {
@@ -1,41 +1,55 @@
 package net.lobby_simulator_companion.loop.util;
 
-import org.apache.commons.lang3.time.StopWatch;
-
-import java.util.concurrent.TimeUnit;
+import java.time.Clock;
 
 /**
- * Simplified @{@link StopWatch}. Just a wrapper around it to avoid having to deal with states.
+ * Simplified stopwatch that avoids having to deal with states.
  * Guaranteed to avoid exceptions related to the state of the stopwatch.
+ * <p>
+ * Time is read from a {@link Clock} so that it can be driven by a simulated clock (for example, when replaying
+ * recorded game sessions).
  *
  * @author NickyRamone
  */
 public class Stopwatch {
 
-    private final StopWatch delegate = new StopWatch();
+    private final Clock clock;
+    private long accumulatedMillis;
+    private long startMillis;
+    private boolean running;
 
 
-    public void start() {
+    public Stopwatch() {
+        this(Clock.systemUTC());
+    }
+
+    public Stopwatch(Clock clock) {
+        this.clock = clock;
+    }
+
 
-        if (delegate.isSuspended()) {
-            delegate.resume();
-        } else if (delegate.isStopped()) {
-            delegate.start();
+    public void start() {
+        if (!running) {
+            startMillis = clock.millis();
+            running = true;
         }
     }
 
     public void stop() {
-        if (delegate.isStopped() || delegate.isSuspended()) {
-            return;
+        if (running) {
+            accumulatedMillis += clock.millis() - startMillis;
+            running = false;
         }
-        delegate.suspend();
     }
 
     public void reset() {
-        delegate.reset();
+        accumulatedMillis = 0;
+        running = false;
     }
 
     public int getSeconds() {
-        return (int) delegate.getTime(TimeUnit.SECONDS);
+        long elapsedMillis = accumulatedMillis + (running ? clock.millis() - startMillis : 0);
+
+        return (int) (elapsedMillis / 1000);
     }
 }
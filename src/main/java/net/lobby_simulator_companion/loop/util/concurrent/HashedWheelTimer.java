@@ -0,0 +1,223 @@
+package net.lobby_simulator_companion.loop.util.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single-threaded scheduler for all the timed tasks of the application (periodic saves, stat resets, deferred UI
+ * updates, etc.), so that each of them does not need its own timer thread.
+ * <p>
+ * Timeouts are stored in a hashed wheel of buckets, one per tick. Deadlines are rounded up to the next tick, so
+ * timeouts that expire within the same tick are coalesced and run together.
+ * Deadlines are absolute wall-clock times: if the system is suspended, every timeout that expired in the meantime
+ * runs as soon as it wakes up, and periodic tasks run once instead of catching up on each missed period.
+ * <p>
+ * Tasks run on the timer thread and must be short; anything slow should be handed off to another executor.
+ * The wheel can also be driven manually with {@link #advance()} and a controllable {@link Clock}, without starting
+ * the timer thread.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+    private static final long DEFAULT_TICK_MS = 100;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Handle for a scheduled task.
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+        private final long periodMs;
+        private long deadlineTick;
+        private volatile boolean cancelled;
+
+
+        private Timeout(Runnable task, long periodMs) {
+            this.task = task;
+            this.periodMs = periodMs;
+        }
+
+        /**
+         * Prevents the task from running again. Has no effect on a run already in progress.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final String name;
+    private final Clock clock;
+    private final long tickMs;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private long lastTick;
+    private int pendingTimeouts;
+    private Thread workerThread;
+
+
+    public HashedWheelTimer(String name) {
+        this(name, Clock.systemUTC(), DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tickMs    duration of a tick, which is the resolution of the timer.
+     * @param wheelSize number of buckets; rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, Clock clock, long tickMs, int wheelSize) {
+        this.name = name;
+        this.clock = clock;
+        this.tickMs = tickMs;
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+        this.lastTick = clock.millis() / tickMs;
+    }
+
+
+    /**
+     * Starts the timer thread.
+     */
+    public synchronized void start() {
+        if (workerThread != null) {
+            return;
+        }
+        workerThread = new Thread(this::runWorker, name);
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    public synchronized void stop() {
+        if (workerThread != null) {
+            workerThread.interrupt();
+            workerThread = null;
+        }
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(tickMs - clock.millis() % tickMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            advance();
+        }
+    }
+
+
+    public Timeout schedule(Runnable task, long delayMs) {
+        return scheduleAt(clock.millis() + delayMs, task, 0);
+    }
+
+    public Timeout scheduleAt(Instant deadline, Runnable task) {
+        return scheduleAt(deadline.toEpochMilli(), task, 0);
+    }
+
+    /**
+     * Runs a task periodically. If one or more periods are missed (for example, because the system was suspended),
+     * the task runs only once for all of them.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("The period must be positive.");
+        }
+        return scheduleAt(clock.millis() + initialDelayMs, task, periodMs);
+    }
+
+    private Timeout scheduleAt(long deadlineMillis, Runnable task, long periodMs) {
+        Timeout timeout = new Timeout(task, periodMs);
+        synchronized (this) {
+            timeout.deadlineTick = (deadlineMillis + tickMs - 1) / tickMs;
+            addToWheel(timeout);
+        }
+
+        return timeout;
+    }
+
+    private void addToWheel(Timeout timeout) {
+        // timeouts which are already due go to the next tick to be processed
+        long tick = Math.max(timeout.deadlineTick, lastTick + 1);
+        wheel[(int) (tick & mask)].add(timeout);
+        pendingTimeouts++;
+    }
+
+    public synchronized int getPendingTimeouts() {
+        return pendingTimeouts;
+    }
+
+
+    /**
+     * Runs all the tasks whose deadline has been reached according to the clock.
+     */
+    public void advance() {
+        List<Timeout> expired = new ArrayList<>();
+        long currentTick = clock.millis() / tickMs;
+
+        synchronized (this) {
+            if (currentTick < lastTick) {
+                // the clock went backwards; wait for it to catch up with the pending deadlines
+                lastTick = currentTick;
+                return;
+            }
+
+            // after a long jump (e.g., wake up from sleep), visiting each bucket once is enough
+            long ticksToProcess = Math.min(currentTick - lastTick, wheel.length);
+            for (long i = 1; i <= ticksToProcess; i++) {
+                List<Timeout> bucket = wheel[(int) ((lastTick + i) & mask)];
+                bucket.removeIf(timeout -> {
+                    if (timeout.cancelled) {
+                        pendingTimeouts--;
+                        return true;
+                    }
+                    if (timeout.deadlineTick <= currentTick) {
+                        expired.add(timeout);
+                        pendingTimeouts--;
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            lastTick = currentTick;
+        }
+
+        for (Timeout timeout : expired) {
+            run(timeout, currentTick);
+        }
+    }
+
+    private void run(Timeout timeout, long currentTick) {
+        if (timeout.cancelled) {
+            return;
+        }
+        try {
+            timeout.task.run();
+        } catch (Exception e) {
+            log.error("Failed to run scheduled task.", e);
+        }
+
+        if (timeout.periodMs > 0 && !timeout.cancelled) {
+            long periodTicks = Math.max(1, timeout.periodMs / tickMs);
+            long missedPeriods = (currentTick - timeout.deadlineTick) / periodTicks;
+            synchronized (this) {
+                timeout.deadlineTick += (missedPeriods + 1) * periodTicks;
+                addToWheel(timeout);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+package net.lobby_simulator_companion.loop.util.concurrent;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared executor for short blocking I/O tasks (e.g., Steam profile or IP address lookups).
+ * <p>
+ * Every task gets a deadline, after which its future completes with a {@link TimeoutException} and its thread is
+ * interrupted. All the tasks in progress can be cancelled at once (for example, when the user leaves the lobby they
+ * were related to). Queue depth and task latency are tracked and can be read with {@link #getMetrics()}, or logged
+ * periodically with {@link #logMetricsPeriodically(HashedWheelTimer, long)}.
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class ManagedIoExecutor implements Executor {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Snapshot of the executor metrics.
+     */
+    @Value
+    public static class Metrics {
+        int queueDepth;
+        int activeTasks;
+        long completedTasks;
+        long failedTasks;
+        long cancelledTasks;
+        long timedOutTasks;
+        long averageLatencyMs;
+        long maxLatencyMs;
+    }
+
+    private final Executor workers;
+    private final HashedWheelTimer deadlineTimer;
+    private final long defaultDeadlineMs;
+    private final Set<ManagedTask<?>> tasks = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+    private final LongAdder cancelledTasks = new LongAdder();
+    private final LongAdder timedOutTasks = new LongAdder();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+
+    /**
+     * @param workers           executor where tasks will be run.
+     * @param deadlineTimer     timer for enforcing deadlines; if null, deadlines are not enforced.
+     * @param defaultDeadlineMs deadline for the tasks that do not specify one.
+     */
+    public ManagedIoExecutor(Executor workers, HashedWheelTimer deadlineTimer, long defaultDeadlineMs) {
+        this.workers = workers;
+        this.deadlineTimer = deadlineTimer;
+        this.defaultDeadlineMs = defaultDeadlineMs;
+    }
+
+    /**
+     * Creates an executor that runs at most {@code maxConcurrency} tasks at a time.
+     * Uses virtual threads when the JVM supports them and platform daemon threads otherwise.
+     * Idle threads are released after a while.
+     */
+    public static ManagedIoExecutor create(String name, int maxConcurrency, long defaultDeadlineMs,
+                                           HashedWheelTimer deadlineTimer) {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), createThreadFactory(name));
+        workers.allowCoreThreadTimeOut(true);
+
+        return new ManagedIoExecutor(workers, deadlineTimer, defaultDeadlineMs);
+    }
+
+    private static ThreadFactory createThreadFactory(String name) {
+        try {
+            // Thread.ofVirtual().name(name + "-", 0).factory() -- only available since Java 21
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtual.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            log.debug("Using virtual threads for the '{}' executor.", name);
+
+            return threadFactory;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+
+            return task -> {
+                Thread thread = new Thread(task, name + "-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+
+    @Override
+    public void execute(Runnable task) {
+        submit("task", () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(String taskName, Callable<T> task) {
+        return submit(taskName, task, defaultDeadlineMs);
+    }
+
+    /**
+     * @return a future for the task result. Cancelling it interrupts the task if it is running.
+     */
+    public <T> CompletableFuture<T> submit(String taskName, Callable<T> task, long deadlineMs) {
+        ManagedTask<T> managedTask = new ManagedTask<>(taskName, task);
+        tasks.add(managedTask);
+        queueDepth.incrementAndGet();
+
+        if (deadlineTimer != null) {
+            managedTask.deadline = deadlineTimer.schedule(() -> managedTask.result.completeExceptionally(
+                    new TimeoutException(String.format("Task '%s' exceeded its deadline of %d ms.", taskName, deadlineMs))),
+                    deadlineMs);
+        }
+        // the returned future is completed once the metrics have been updated
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return managedTask.result.cancel(mayInterruptIfRunning);
+            }
+        };
+        managedTask.result.whenComplete((value, e) -> {
+            managedTask.finish(e);
+            if (e == null) {
+                future.complete(value);
+            } else {
+                future.completeExceptionally(e);
+            }
+        });
+        workers.execute(managedTask);
+
+        return future;
+    }
+
+    /**
+     * Cancels all the queued and running tasks.
+     */
+    public void cancelAll() {
+        tasks.forEach(task -> task.result.cancel(true));
+    }
+
+    /**
+     * Logs the metrics every given period, as long as they have changed since they were last logged.
+     *
+     * @return the timeout of the periodic task, to stop it.
+     */
+    public HashedWheelTimer.Timeout logMetricsPeriodically(HashedWheelTimer timer, long periodMs) {
+        AtomicReference<Metrics> lastLogged = new AtomicReference<>();
+
+        return timer.scheduleAtFixedRate(() -> {
+            Metrics metrics = getMetrics();
+            if (metrics.equals(lastLogged.getAndSet(metrics))) {
+                return;
+            }
+            log.info("I/O tasks: {} queued; {} active; {} completed; {} failed; {} cancelled; {} timed out. "
+                            + "Latency: {} ms average; {} ms max.",
+                    metrics.getQueueDepth(), metrics.getActiveTasks(), metrics.getCompletedTasks(),
+                    metrics.getFailedTasks(), metrics.getCancelledTasks(), metrics.getTimedOutTasks(),
+                    metrics.getAverageLatencyMs(), metrics.getMaxLatencyMs());
+        }, periodMs, periodMs);
+    }
+
+    public Metrics getMetrics() {
+        long completed = completedTasks.sum() + failedTasks.sum() + cancelledTasks.sum() + timedOutTasks.sum();
+
+        return new Metrics(queueDepth.get(), activeTasks.get(),
+                completedTasks.sum(), failedTasks.sum(), cancelledTasks.sum(), timedOutTasks.sum(),
+                completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / completed),
+                TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+    }
+
+
+    private final class ManagedTask<T> implements Runnable {
+
+        private final String name;
+        private final Callable<T> callable;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long submitNanos = System.nanoTime();
+        private volatile HashedWheelTimer.Timeout deadline;
+        private boolean started;
+        private boolean finished;
+        private Thread runner;
+
+
+        private ManagedTask(String name, Callable<T> callable) {
+            this.name = name;
+            this.callable = callable;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (result.isDone()) {
+                    // cancelled or timed out while queued
+                    return;
+                }
+                started = true;
+                runner = Thread.currentThread();
+            }
+            queueDepth.decrementAndGet();
+            activeTasks.incrementAndGet();
+
+            try {
+                result.complete(callable.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // clear an interruption that may have arrived after the task was done
+                Thread.interrupted();
+                activeTasks.decrementAndGet();
+            }
+        }
+
+        private void finish(Throwable failure) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+
+                if (!started) {
+                    queueDepth.decrementAndGet();
+                }
+                if (runner != null && runner != Thread.currentThread()) {
+                    runner.interrupt();
+                }
+            }
+
+            tasks.remove(this);
+            if (deadline != null) {
+                deadline.cancel();
+            }
+
+            long latencyNanos = System.nanoTime() - submitNanos;
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulate(latencyNanos);
+
+            if (failure == null) {
+                completedTasks.increment();
+            } else if (failure instanceof CancellationException) {
+                cancelledTasks.increment();
+            } else if (failure instanceof TimeoutException) {
+                timedOutTasks.increment();
+            } else {
+                failedTasks.increment();
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("I/O task '{}' finished in {} ms ({}). Queue depth: {}", name,
+                        TimeUnit.NANOSECONDS.toMillis(latencyNanos),
+                        failure == null ? "ok" : failure.getClass().getSimpleName(), queueDepth.get());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package net.lobby_simulator_companion.loop.util.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the steps needed to shut the app down without losing data (for example: stop reading game events, then save
+ * the data they produced, then close the files), in the order they were added.
+ * <p>
+ * The whole shutdown has a deadline, so that a stuck step cannot prevent the app from exiting: once it is reached,
+ * {@link #shutdown()} returns and the remaining steps are abandoned. A step which fails does not stop the ones after
+ * it. The steps are run only once, no matter how many times the shutdown is requested (for example, by the user and
+ * then by the JVM shutdown hook).
+ *
+ * @author NickyRamone
+ */
+@Slf4j
+public class ShutdownCoordinator {
+
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private static final class NamedStep {
+        private final String name;
+        private final Step step;
+
+        private NamedStep(String name, Step step) {
+            this.name = name;
+            this.step = step;
+        }
+    }
+
+    private final long deadlineMs;
+    private final List<NamedStep> steps = new ArrayList<>();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private boolean started;
+    private long deadlineNanos;
+    private volatile String currentStep;
+
+
+    /**
+     * @param deadlineMs maximum time for all the steps to run.
+     */
+    public ShutdownCoordinator(long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+
+
+    /**
+     * Adds a step, to be run after the ones added before. Steps added once the shutdown has started are ignored.
+     */
+    public synchronized ShutdownCoordinator addStep(String name, Step step) {
+        if (started) {
+            log.warn("Shutdown step '{}' added after the shutdown started. Ignoring it.", name);
+        } else {
+            steps.add(new NamedStep(name, step));
+        }
+        return this;
+    }
+
+    /**
+     * Runs the shutdown when the JVM exits, if it has not been run before.
+     */
+    public void installHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "shutdown-hook"));
+    }
+
+    /**
+     * Runs the steps, or waits for them if they are already running, until they are done or the deadline is reached.
+     *
+     * @return true if all the steps were run before the deadline, even if some of them failed.
+     */
+    public boolean shutdown() {
+        long remainingNanos;
+        synchronized (this) {
+            if (!started) {
+                started = true;
+                deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+                Thread thread = new Thread(this::runSteps, "shutdown");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            remainingNanos = deadlineNanos - System.nanoTime();
+        }
+
+        try {
+            done.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.error("Shutdown deadline of {} ms reached while running step '{}'. Abandoning the remaining steps.",
+                    deadlineMs, currentStep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // runSteps never fails
+        }
+        return false;
+    }
+
+    private void runSteps() {
+        for (NamedStep namedStep : steps) {
+            currentStep = namedStep.name;
+            long startTime = System.nanoTime();
+            try {
+                namedStep.step.run();
+                log.debug("Shutdown step '{}' done in {} ms.", namedStep.name,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            } catch (Exception e) {
+                log.error("Shutdown step '{}' failed.", namedStep.name, e);
+            }
+        }
+        currentStep = null;
+        done.complete(null);
+    }
+
+}
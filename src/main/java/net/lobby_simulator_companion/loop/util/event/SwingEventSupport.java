@@ -11,4 +11,12 @@ public class SwingEventSupport extends EventSupport {
         super(new SwingPropertyChangeSupport(NULL_OBJECT));
     }
 
+    /**
+     * @param notifyOnEdt whether listeners must always be notified on the event dispatch thread,
+     *                    regardless of the thread that fired the event.
+     */
+    public SwingEventSupport(boolean notifyOnEdt) {
+        super(new SwingPropertyChangeSupport(NULL_OBJECT, notifyOnEdt));
+    }
+
 }
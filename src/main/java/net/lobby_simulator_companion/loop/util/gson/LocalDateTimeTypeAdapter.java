@@ -1,31 +1,78 @@
 package net.lobby_simulator_companion.loop.util.gson;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-
-import java.lang.reflect.Type;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 
 /**
+ * Stores times as seconds since the epoch, using the offset of the system time zone in effect when they are read or
+ * written.
+ * <p>
+ * Resolving the offset (looking up the system time zone) is slow compared to converting a time, so the offset is
+ * cached until it next changes (see {@link ZoneRules#nextTransition}), and at most for {@link #ZONE_CHECK_MILLIS}, so
+ * that changes to the system time zone are still noticed.
+ *
  * @author NickyRamone
  */
-public class LocalDateTimeTypeAdapter implements JsonSerializer<LocalDateTime>, JsonDeserializer<LocalDateTime> {
+public class LocalDateTimeTypeAdapter extends TypeAdapter<LocalDateTime> {
 
-    @Override
-    public JsonElement serialize(LocalDateTime src, Type typeOfSrc, JsonSerializationContext context) {
-        return new JsonPrimitive(src.toEpochSecond(OffsetDateTime.now().getOffset()));
+    private static final long ZONE_CHECK_MILLIS = 60_000;
+
+    @RequiredArgsConstructor
+    private static final class CachedOffset {
+        private final ZoneOffset offset;
+        private final long validUntilMillis;
     }
 
+    private volatile CachedOffset cachedOffset;
+
+
+    @Override
+    public void write(JsonWriter out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(value.toEpochSecond(currentOffset()));
+    }
 
     @Override
-    public LocalDateTime deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        return LocalDateTime.ofEpochSecond(json.getAsLong(), 0, OffsetDateTime.now().getOffset());
+    public LocalDateTime read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(in.nextLong(), 0, currentOffset());
+    }
+
+
+    private ZoneOffset currentOffset() {
+        long now = System.currentTimeMillis();
+        CachedOffset cached = cachedOffset;
+
+        if (cached == null || now >= cached.validUntilMillis) {
+            Instant instant = Instant.ofEpochMilli(now);
+            ZoneRules rules = ZoneId.systemDefault().getRules();
+            ZoneOffsetTransition nextTransition = rules.nextTransition(instant);
+            long validUntilMillis = now + ZONE_CHECK_MILLIS;
+            if (nextTransition != null) {
+                validUntilMillis = Math.min(validUntilMillis, nextTransition.toEpochSecond() * 1000);
+            }
+            cached = new CachedOffset(rules.getOffset(instant), validUntilMillis);
+            cachedOffset = cached;
+        }
+
+        return cached.offset;
     }
 
 }
@@ -6,6 +6,9 @@ import net.lobby_simulator_companion.loop.domain.stats.MapStats;
 import net.lobby_simulator_companion.loop.domain.stats.Match;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static net.lobby_simulator_companion.loop.domain.MatchLog.RollingGroup;
 import static net.lobby_simulator_companion.loop.domain.MatchLog.RollingGroup.LAST_100_MATCHES;
 import static net.lobby_simulator_companion.loop.domain.MatchLog.RollingGroup.LAST_50_MATCHES;
@@ -34,6 +37,61 @@ public class MatchLogUTest {
         verifyRollingAggregation(LAST_100_MATCHES, n);
     }
 
+    @Test
+    public void addAll_calculatesTheSameStatsAsAddingTheMatchesOneByOne() {
+        // arrange
+        List<Match> matches = new ArrayList<>();
+        for (int i = 1; i <= 1200; i++) {
+            matches.add(generateMatchStats(i));
+        }
+        matches.forEach(matchLog::add);
+        MatchLog bulkMatchLog = new MatchLog();
+
+        // act
+        bulkMatchLog.addAll(matches);
+
+        // assert
+        for (RollingGroup group : RollingGroup.values()) {
+            assertThat(bulkMatchLog.getStats(group), equalTo(matchLog.getStats(group)));
+        }
+    }
+
+    @Test
+    public void restore_takesTheStatsFromASnapshotOfTheSameMatches() {
+        // arrange
+        for (int i = 1; i <= 200; i++) {
+            matchLog.add(generateMatchStats(i));
+        }
+        MatchLog.Snapshot snapshot = matchLog.snapshot();
+        // so that the stats can only come from the snapshot
+        snapshot.getStats().get(LAST_50_MATCHES).addMatchStats(generateMatchStats(201));
+
+        // act
+        MatchLog restoredMatchLog = MatchLog.restore(matchLog.getMatches(), snapshot);
+
+        // assert
+        assertThat(restoredMatchLog.getStats(LAST_50_MATCHES), equalTo(snapshot.getStats().get(LAST_50_MATCHES)));
+        assertThat(restoredMatchLog.getStats(LAST_100_MATCHES), equalTo(matchLog.getStats(LAST_100_MATCHES)));
+    }
+
+    @Test
+    public void restore_recalculatesTheStatsWhenTheSnapshotIsStale() {
+        // arrange
+        for (int i = 1; i <= 200; i++) {
+            matchLog.add(generateMatchStats(i));
+        }
+        MatchLog.Snapshot snapshot = matchLog.snapshot();
+        matchLog.add(generateMatchStats(201));
+
+        // act
+        MatchLog restoredMatchLog = MatchLog.restore(matchLog.getMatches(), snapshot);
+
+        // assert
+        for (RollingGroup group : RollingGroup.values()) {
+            assertThat(restoredMatchLog.getStats(group), equalTo(matchLog.getStats(group)));
+        }
+    }
+
 
     /**
      * Generate deterministic match data dependent of the match number.
@@ -2,6 +2,7 @@ package net.lobby_simulator_companion.loop.domain;
 
 import org.junit.Test;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
@@ -96,4 +97,39 @@ public class PlayerUTest {
         assertThat(player.getMostRecentName().get(), equalTo("dummy name 2"));
     }
 
+    @Test
+    public void merge__shouldSumCounters_andKeepTheNamesOfThePlayerSeenMostRecentlyLast() {
+        // arrange
+        LocalDateTime time = LocalDateTime.of(2020, 3, 10, 18, 0);
+        Player player = new Player();
+        player.setFirstSeen(time);
+        player.setLastSeen(time.plusDays(2));
+        player.setTimesEncountered(3);
+        player.setEscapes(1);
+        player.addName("dummy name 1");
+        player.addName("dummy name 2");
+        Player other = new Player();
+        other.setFirstSeen(time.minusDays(1));
+        other.setLastSeen(time.plusDays(1));
+        other.setTimesEncountered(2);
+        other.setDeaths(1);
+        other.setRating(Player.Rating.THUMBS_UP);
+        other.setDescription("dummy description");
+        other.addName("dummy name 2");
+        other.addName("dummy name 3");
+
+        // act
+        player.merge(other);
+
+        // assert
+        assertThat(player.getNames(), equalTo(Arrays.asList("dummy name 3", "dummy name 1", "dummy name 2")));
+        assertThat(player.getFirstSeen(), equalTo(time.minusDays(1)));
+        assertThat(player.getLastSeen(), equalTo(time.plusDays(2)));
+        assertThat(player.getTimesEncountered(), equalTo(5));
+        assertThat(player.getEscapes(), equalTo(1));
+        assertThat(player.getDeaths(), equalTo(1));
+        assertThat(player.getRating(), equalTo(Player.Rating.THUMBS_UP));
+        assertThat(player.getDescription(), equalTo("dummy description"));
+    }
+
 }
@@ -0,0 +1,98 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.backup.BackupStore;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Size and time of successive backups of the players, as the app makes them, when a few of them change between
+ * backups.
+ * <p>
+ * Usage: {@code BackupStoreBenchmark [player count] [players changed per backup]} (default: 1000000 100).
+ *
+ * @author NickyRamone
+ */
+public class BackupStoreBenchmark {
+
+    private static final int BACKUPS = 5;
+    private static final long BASE_STEAM_ID = 76561197960265728L;
+
+
+    public static void main(String[] args) throws Exception {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int changedPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        List<Player> players = newPlayers(playerCount);
+        Random random = new Random(7);
+        Path dir = Files.createTempDirectory("backup-benchmark");
+        try {
+            BackupStore store = BackupStore.open(dir, true);
+            LocalDateTime time = LocalDateTime.now();
+            System.out.printf("%8s %14s %10s %12s %16s %10s%n",
+                    "backup", "content (KB)", "chunks", "new chunks", "written (KB)", "time (ms)");
+            for (int backup = 0; backup < BACKUPS; backup++) {
+                byte[] content = encode(players);
+                long start = System.nanoTime();
+                BackupStore.Report report = store.backup(time.plusHours(backup),
+                        Collections.singletonMap("loop.dat", out -> out.write(content)));
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("%8d %14d %10d %12d %16d %10d%n", backup, report.getBytesRead() / 1024,
+                        report.getChunks(), report.getNewChunks(), report.getBytesWritten() / 1024, elapsedMs);
+
+                for (int i = 0; i < changedPlayers; i++) {
+                    Player player = players.get(random.nextInt(players.size()));
+                    player.incrementTimesEncountered();
+                    player.setLastSeen(LocalDateTime.now());
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static byte[] encode(List<Player> players) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        LoopDataWriter writer = new LoopDataWriter(content, LoopData.CURRENT_VERSION);
+        writer.beginPlayers();
+        for (Player player : players) {
+            writer.writePlayer(player);
+        }
+        writer.endSection();
+        writer.finish();
+        return content.toByteArray();
+    }
+
+    private static List<Player> newPlayers(int playerCount) {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        List<Player> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            Player player = new Player();
+            player.setSteamId64(String.valueOf(BASE_STEAM_ID + i));
+            player.setDbdPlayerId(Long.toHexString(random.nextLong()));
+            player.setFirstSeen(now.minusDays(random.nextInt(1000)));
+            player.setLastSeen(now.minusDays(random.nextInt(100)));
+            player.setTimesEncountered(random.nextInt(50));
+            player.setMatchesPlayed(random.nextInt(20));
+            player.addName("player-" + Integer.toHexString(random.nextInt()));
+            players.add(player);
+        }
+        return players;
+    }
+
+}
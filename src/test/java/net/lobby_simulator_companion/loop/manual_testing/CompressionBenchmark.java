@@ -0,0 +1,97 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataWriter;
+import net.lobby_simulator_companion.loop.repository.compression.BlockGzipInputStream;
+import net.lobby_simulator_companion.loop.repository.compression.BlockGzipOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Save/load benchmark of the compression: a single gzip stream against the block-compressed container, with
+ * different numbers of threads. The data is in the binary format.
+ * <p>
+ * Usage: {@code CompressionBenchmark [player counts...]} (default: 10000 100000 1000000).
+ *
+ * @author NickyRamone
+ */
+public class CompressionBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    @FunctionalInterface
+    private interface StreamFunction<T> {
+        T apply(T stream) throws IOException;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        int[] playerCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 100_000, 1_000_000};
+        int processors = Runtime.getRuntime().availableProcessors();
+        StorageFormatBenchmark dataGenerator = new StorageFormatBenchmark();
+
+        System.out.printf("%d processors%n", processors);
+        System.out.printf("%10s %14s %12s %10s %10s%n", "players", "compression", "size (KB)", "save (ms)",
+                "load (ms)");
+        for (int playerCount : playerCounts) {
+            LoopData loopData = dataGenerator.generateData(playerCount);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new LoopDataWriter(out, loopData.getVersion()).write(loopData);
+            byte[] data = out.toByteArray();
+
+            run(playerCount, data, "gzip", o -> new GZIPOutputStream(o, BUFFER_SIZE),
+                    i -> new GZIPInputStream(i, BUFFER_SIZE));
+            for (int threads = 1; threads <= processors; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                int pendingBlocks = 2 * threads;
+                run(playerCount, data, "block x" + threads,
+                        o -> new BlockGzipOutputStream(o, BLOCK_SIZE, pool, pendingBlocks),
+                        i -> new BlockGzipInputStream(i, pool, pendingBlocks));
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void run(int playerCount, byte[] data, String name,
+                            StreamFunction<OutputStream> compressor, StreamFunction<InputStream> decompressor)
+            throws IOException {
+        byte[] compressed = null;
+        long save = Long.MAX_VALUE;
+        long load = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (OutputStream compressingStream = compressor.apply(out)) {
+                compressingStream.write(data);
+            }
+            compressed = out.toByteArray();
+            save = Math.min(save, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            try (InputStream in = decompressor.apply(new ByteArrayInputStream(compressed))) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (in.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+            load = Math.min(load, System.nanoTime() - start);
+        }
+
+        System.out.printf("%10d %14s %12d %10d %10d%n", playerCount, name, compressed.length / 1024,
+                save / 1_000_000, load / 1_000_000);
+    }
+
+}
@@ -0,0 +1,116 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.repository.FileLoopStore;
+import net.lobby_simulator_companion.loop.repository.changelog.ChangeLog;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+import net.lobby_simulator_companion.loop.repository.playerstore.HeapPlayerStore;
+import net.lobby_simulator_companion.loop.service.LoopDataService;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Cost of each durability level of the data service, writing to the change log on the local disk.
+ * <p>
+ * The writes are run on the calling thread, so the time per match is the disk time each level takes per match
+ * (the app does it on the saver thread instead, so it does not delay the game events). Every match comes with an
+ * update of the killer player, as in a real game. With {@code ASYNC}, nothing is written until the periodic save
+ * (every 5 seconds in the app), so the matches played since then are at risk; here, until the service is closed.
+ * <p>
+ * Usage: {@code DurabilityBenchmark [matches]}
+ *
+ * @author NickyRamone
+ */
+public class DurabilityBenchmark {
+
+    private static final String STEAM_ID = "76561198000000001";
+
+
+    public static void main(String[] args) throws Exception {
+        int matchCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        HashedWheelTimer timer = new HashedWheelTimer("benchmark-timer");
+
+        System.out.printf("%10s %8s %10s %14s %10s %16s%n",
+                "level", "matches", "writes", "forced writes", "ms/match", "close (ms)");
+        for (LoopDataService.Durability durability : LoopDataService.Durability.values()) {
+            run(durability, matchCount, timer);
+        }
+    }
+
+
+    private static void run(LoopDataService.Durability durability, int matchCount, HashedWheelTimer timer)
+            throws IOException {
+        Path dir = Files.createTempDirectory("durability-benchmark");
+        try {
+            CountingStore store = new CountingStore(new ChangeLog(dir, LoopGsonFactory.gson(false), true,
+                    Long.MAX_VALUE));
+            LoopDataService dataService = new LoopDataService(store, new HeapPlayerStore(),
+                    Runnable::run, Runnable::run, Runnable::run, durability, timer);
+            Player player = new Player();
+            player.setSteamId64(STEAM_ID);
+            dataService.addPlayer(player);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < matchCount; i++) {
+                dataService.addMatch(newMatch());
+                dataService.updatePlayer(STEAM_ID, Player::incrementTimesEncountered).join();
+            }
+            double msPerMatch = (System.nanoTime() - start) / 1e6 / matchCount;
+            int writes = store.writes;
+            int forcedWrites = store.forcedWrites;
+
+            start = System.nanoTime();
+            dataService.close();
+            long closeMs = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("%10s %8d %10d %14d %10.3f %16d%n",
+                    durability, matchCount, writes, forcedWrites, msPerMatch, closeMs);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static Match newMatch() {
+        return Match.builder()
+                .lobbiesFound(1)
+                .secondsQueued(10)
+                .secondsWaited(20)
+                .secondsPlayed(300)
+                .killer(Killer.TRAPPER)
+                .realmMap(RealmMap.COAL_TOWER)
+                .escaped(true)
+                .killerPlayerSteamId64(STEAM_ID)
+                .build();
+    }
+
+
+    private static class CountingStore extends FileLoopStore {
+
+        private int writes;
+        private int forcedWrites;
+
+        CountingStore(ChangeLog changeLog) {
+            super(null, changeLog);
+        }
+
+        @Override
+        public void write(List<DataChange> changes, boolean force) throws IOException {
+            super.write(changes, force);
+            writes++;
+            forcedWrites += force ? 1 : 0;
+        }
+    }
+
+}
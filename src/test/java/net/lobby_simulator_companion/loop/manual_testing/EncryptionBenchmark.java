@@ -0,0 +1,134 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataWriter;
+import net.lobby_simulator_companion.loop.repository.crypto.AesGcmInputStream;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Save/load benchmark of the storage encryption: the legacy DES cipher against AES-GCM, decrypting either
+ * sequentially or in parallel. The data is in the binary format, and compressed before being encrypted, as the
+ * repository does.
+ * <p>
+ * Usage: {@code EncryptionBenchmark [player counts...]} (default: 10000 100000 1000000).
+ *
+ * @author NickyRamone
+ */
+public class EncryptionBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private enum Mode {
+        DES, AES_GCM, AES_GCM_PARALLEL
+    }
+
+    @FunctionalInterface
+    private interface StreamFunction<T> {
+        T apply(T stream) throws IOException;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        int[] playerCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 100_000, 1_000_000};
+        StorageFormatBenchmark dataGenerator = new StorageFormatBenchmark();
+
+        System.out.printf("%10s %17s %12s %10s %10s %14s %14s%n", "players", "cipher", "size (KB)",
+                "save (ms)", "load (ms)", "encrypt (ms)", "decrypt (ms)");
+        for (int playerCount : playerCounts) {
+            LoopData loopData = dataGenerator.generateData(playerCount);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new LoopDataWriter(out, loopData.getVersion()).write(loopData);
+            byte[] data = out.toByteArray();
+
+            for (Mode mode : Mode.values()) {
+                run(playerCount, data, mode);
+            }
+        }
+    }
+
+    private static void run(int playerCount, byte[] data, Mode mode) throws IOException {
+        byte[] compressed = transform(data, out -> new GZIPOutputStream(out, GZIP_BUFFER_SIZE));
+        byte[] stored = null;
+        byte[] encrypted = null;
+        long save = Long.MAX_VALUE;
+        long load = Long.MAX_VALUE;
+        long encrypt = Long.MAX_VALUE;
+        long decrypt = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            stored = transform(data, out -> new GZIPOutputStream(encryptingStream(out, mode), GZIP_BUFFER_SIZE));
+            save = Math.min(save, System.nanoTime() - start);
+
+            byte[] storedData = stored;
+            start = System.nanoTime();
+            readAll(new GZIPInputStream(decryptingStream(new ByteArrayInputStream(storedData), mode),
+                    GZIP_BUFFER_SIZE));
+            load = Math.min(load, System.nanoTime() - start);
+
+            // the cipher alone, on already compressed data
+            start = System.nanoTime();
+            encrypted = transform(compressed, out -> encryptingStream(out, mode));
+            encrypt = Math.min(encrypt, System.nanoTime() - start);
+
+            byte[] encryptedData = encrypted;
+            start = System.nanoTime();
+            readAll(decryptingStream(new ByteArrayInputStream(encryptedData), mode));
+            decrypt = Math.min(decrypt, System.nanoTime() - start);
+        }
+
+        System.out.printf("%10d %17s %12d %10d %10d %14.1f %14.1f%n", playerCount, mode, stored.length / 1024,
+                save / 1_000_000, load / 1_000_000, encrypt / 1e6, decrypt / 1e6);
+    }
+
+    private static OutputStream encryptingStream(OutputStream out, Mode mode) throws IOException {
+        if (mode == Mode.DES) {
+            return new CipherOutputStream(out, StorageCipher.legacyCipher(Cipher.ENCRYPT_MODE));
+        }
+        return StorageCipher.encryptingStream(out);
+    }
+
+    private static InputStream decryptingStream(InputStream in, Mode mode) throws IOException {
+        switch (mode) {
+            case DES:
+                return new CipherInputStream(in, StorageCipher.legacyCipher(Cipher.DECRYPT_MODE));
+            case AES_GCM:
+                return new AesGcmInputStream(in, false);
+            default:
+                return new AesGcmInputStream(in, true);
+        }
+    }
+
+    private static byte[] transform(byte[] data, StreamFunction<OutputStream> streamFunction) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream transformingStream = streamFunction.apply(out)) {
+            transformingStream.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static void readAll(InputStream inputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+        }
+    }
+
+}
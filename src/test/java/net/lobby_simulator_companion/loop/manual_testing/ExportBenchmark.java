@@ -0,0 +1,61 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.repository.export.ExportFormat;
+import net.lobby_simulator_companion.loop.repository.export.ExportTable;
+import net.lobby_simulator_companion.loop.repository.export.TableWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Time and size of exporting matches in each format. The matches are generated as they are written, as they are read
+ * from the match archive in the app.
+ * <p>
+ * Usage: {@code ExportBenchmark [match count]} (default: 1000000).
+ *
+ * @author NickyRamone
+ */
+public class ExportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int matchCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Killer[] killers = Killer.values();
+        RealmMap[] realmMaps = RealmMap.values();
+        LocalDateTime startTime = LocalDateTime.now().minusYears(1);
+
+        System.out.printf("%8s %10s %12s %10s%n", "format", "rows", "size (KB)", "time (ms)");
+        for (ExportFormat format : ExportFormat.values()) {
+            Path file = Files.createTempFile("export-benchmark", "." + format.extension());
+            Random random = new Random(42);
+            try {
+                long start = System.nanoTime();
+                try (TableWriter<Match> writer = format.open(file, ExportTable.MATCHES)) {
+                    for (int i = 0; i < matchCount; i++) {
+                        writer.write(Match.builder()
+                                .matchStartTime(startTime.plusSeconds(30L * i))
+                                .killer(killers[random.nextInt(killers.length)])
+                                .realmMap(realmMaps[random.nextInt(realmMaps.length)])
+                                .escaped(random.nextBoolean())
+                                .lobbiesFound(1 + random.nextInt(3))
+                                .secondsQueued(random.nextInt(300))
+                                .secondsWaited(random.nextInt(300))
+                                .secondsPlayed(random.nextInt(1200))
+                                .killerPlayerSteamId64(String.valueOf(76561197960265728L + random.nextInt(100_000)))
+                                .killerPlayerDbdId(Long.toHexString(random.nextLong()))
+                                .build());
+                    }
+                }
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("%8s %10d %12d %10d%n", format, matchCount, Files.size(file) / 1024, elapsedMs);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.repository.json.ReflectiveLoopGson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Load/save benchmark of the JSON format: the reflective binding against the streaming adapters of the stored classes.
+ * No compression or encryption.
+ * <p>
+ * Usage: {@code JsonBindingBenchmark [player counts...]} (default: 2000 20000, the size of the data created by the
+ * {@link DataGenerator} and ten times that).
+ *
+ * @author NickyRamone
+ */
+public class JsonBindingBenchmark {
+
+    private static final int ROUNDS = 20;
+
+
+    public static void main(String[] args) throws Exception {
+        int[] playerCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{2000, 20_000};
+        StorageFormatBenchmark dataGenerator = new StorageFormatBenchmark();
+        Gson reflectiveGson = ReflectiveLoopGson.gson();
+        Gson streamingGson = LoopGsonFactory.gson(false);
+
+        System.out.printf("%10s %12s %12s %10s %10s%n", "players", "binding", "size (KB)", "save (ms)", "load (ms)");
+        for (int playerCount : playerCounts) {
+            LoopData loopData = dataGenerator.generateData(playerCount);
+            run(playerCount, loopData, "reflective", reflectiveGson);
+            run(playerCount, loopData, "streaming", streamingGson);
+        }
+    }
+
+    private static void run(int playerCount, LoopData loopData, String name, Gson gson) throws IOException {
+        byte[] json = null;
+        long save = Long.MAX_VALUE;
+        long load = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                gson.toJson(loopData, LoopData.class, writer);
+            }
+            json = out.toByteArray();
+            save = Math.min(save, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            try (JsonReader reader = gson.newJsonReader(
+                    new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8))) {
+                gson.fromJson(reader, LoopData.class);
+            }
+            load = Math.min(load, System.nanoTime() - start);
+        }
+
+        System.out.printf("%10d %12s %12d %10.1f %10.1f%n", playerCount, name, json.length / 1024, save / 1e6,
+                load / 1e6);
+    }
+
+}
@@ -0,0 +1,96 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.PlayerShards;
+import net.lobby_simulator_companion.loop.repository.compression.BlockGzipInputStream;
+import net.lobby_simulator_companion.loop.repository.compression.BlockGzipOutputStream;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Save and load times of the players split into shards, compressed and encrypted as in the app, by the number of
+ * shards read or written at the same time.
+ * <p>
+ * Usage: {@code PlayerShardsBenchmark [player count] [shard count]} (default: 100000 16).
+ *
+ * @author NickyRamone
+ */
+public class PlayerShardsBenchmark {
+
+    private static final int ROUNDS = 3;
+    private static final long BASE_STEAM_ID = 76561197960265728L;
+
+
+    public static void main(String[] args) throws Exception {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int shardCount = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        List<Player> players = newPlayers(playerCount);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%8s %12s %10s %10s %10s%n", "shards", "parallelism", "players", "save (ms)", "load (ms)");
+        run(players, 1, 1);
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+            run(players, shardCount, parallelism);
+        }
+    }
+
+    private static void run(List<Player> players, int shardCount, int parallelism) throws IOException {
+        Path dir = Files.createTempDirectory("player-shards");
+        long save = Long.MAX_VALUE;
+        long load = Long.MAX_VALUE;
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                // a new instance every round, so that every shard is written
+                PlayerShards shards = newShards(dir, shardCount, parallelism);
+                long start = System.nanoTime();
+                shards.write(players);
+                save = Math.min(save, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                int[] count = new int[1];
+                newShards(dir, shardCount, parallelism).read(player -> count[0]++);
+                load = Math.min(load, System.nanoTime() - start);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        System.out.printf("%8d %12d %10d %10d %10d%n", shardCount, parallelism, players.size(),
+                save / 1_000_000, load / 1_000_000);
+    }
+
+    private static PlayerShards newShards(Path dir, int shardCount, int parallelism) {
+        return new PlayerShards(dir, shardCount, parallelism, 0,
+                in -> BlockGzipInputStream.open(StorageCipher.decryptingStream(in)),
+                out -> new BlockGzipOutputStream(StorageCipher.encryptingStream(out)));
+    }
+
+    private static List<Player> newPlayers(int playerCount) {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        List<Player> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            Player player = new Player();
+            player.setSteamId64(String.valueOf(BASE_STEAM_ID + i));
+            player.setDbdPlayerId(Long.toHexString(random.nextLong()));
+            player.setFirstSeen(now.minusDays(random.nextInt(1000)));
+            player.setLastSeen(now.minusDays(random.nextInt(100)));
+            player.setTimesEncountered(random.nextInt(50));
+            player.setMatchesPlayed(random.nextInt(20));
+            player.addName("player-" + Integer.toHexString(random.nextInt()));
+            players.add(player);
+        }
+        return players;
+    }
+
+}
@@ -0,0 +1,83 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.playerstore.HeapPlayerStore;
+import net.lobby_simulator_companion.loop.repository.playerstore.MappedPlayerStore;
+import net.lobby_simulator_companion.loop.repository.playerstore.PlayerStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Lookup latency and heap footprint of the player stores.
+ * <p>
+ * Usage: {@code PlayerStoreBenchmark [player count]} (default: 1000000).
+ *
+ * @author NickyRamone
+ */
+public class PlayerStoreBenchmark {
+
+    private static final int LOOKUPS = 1_000_000;
+    private static final long BASE_STEAM_ID = 76561197960265728L;
+
+    /**
+     * Keeps the lookups from being optimized away.
+     */
+    private static long sink;
+
+
+    public static void main(String[] args) throws Exception {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("player-store");
+
+        System.out.printf("%8s %10s %14s %16s%n", "store", "players", "heap used (MB)", "lookup (us)");
+        run("heap", new HeapPlayerStore(), playerCount);
+        run("mapped", MappedPlayerStore.open(dir, 10_000), playerCount);
+    }
+
+    private static void run(String name, PlayerStore store, int playerCount) throws IOException {
+        long heapBefore = usedHeap();
+        for (int i = 0; i < playerCount; i++) {
+            store.putIfAbsent(newPlayer(i));
+        }
+        long heapAfter = usedHeap();
+
+        // random hosts: mostly cache misses for the mapped store
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            sink += store.get(String.valueOf(BASE_STEAM_ID + random.nextInt(playerCount))).getMatchesPlayed();
+        }
+        double lookupMicros = (System.nanoTime() - start) / 1000.0 / LOOKUPS;
+
+        System.out.printf("%8s %10d %14d %16.2f%n", name, playerCount, (heapAfter - heapBefore) / (1024 * 1024),
+                lookupMicros);
+        store.close();
+    }
+
+    private static Player newPlayer(int i) {
+        LocalDateTime firstSeen = LocalDateTime.of(2018, 1, 1, 0, 0).plusSeconds(i * 60L);
+        return Player.builder()
+                .steamId64(String.valueOf(BASE_STEAM_ID + i))
+                .firstSeen(firstSeen)
+                .lastSeen(firstSeen.plusDays(3))
+                .timesEncountered(3)
+                .matchesPlayed(i % 5)
+                .names(new ArrayList<>(Arrays.asList("player name " + i)))
+                .build();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
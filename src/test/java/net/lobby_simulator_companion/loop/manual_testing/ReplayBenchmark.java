@@ -0,0 +1,90 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import net.lobby_simulator_companion.loop.service.replay.ReplayHarness;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput benchmark for the replay harness: how many matches per second can be pushed through the log processors,
+ * game state manager, chase manager and data service on a single core.
+ * <p>
+ * Usage: {@code ReplayBenchmark [matches] [rounds]}
+ *
+ * @author NickyRamone
+ */
+public class ReplayBenchmark {
+
+    private static final DateTimeFormatter LOG_DATE_FORMATTER = DateTimeFormatter.ofPattern("u.MM.dd-HH.mm.ss:SSS");
+    private static final String[] KILLER_OUTFITS = {"HB", "TN", "TR", "SwedenKiller", "QK", "FK", "K20"};
+    private static final String[] MAP_IDS = {"Ind_CoalTower", "Frm_Farmhouse", "Jnk_Lodge", "Hti_Shrine", "Qat_Lab"};
+    private static final String[] SURVIVOR_BLUEPRINTS = {"CamperFemale01", "CamperMale01", "CamperFemale08"};
+
+    private final Random random = new Random(42);
+    private LocalDateTime now = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+
+    public static void main(String[] args) throws Exception {
+        int matchCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<String> lines = new ReplayBenchmark().generateSession(matchCount);
+
+        System.out.printf("Replaying %d matches (%d log lines), %d rounds%n", matchCount, lines.size(), rounds);
+
+        for (int round = 1; round <= rounds; round++) {
+            ReplayHarness harness = new ReplayHarness();
+            long start = System.nanoTime();
+            harness.replayLog(lines.stream());
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("round %d: %d matches in %.3f s -> %.0f matches/s%n",
+                    round, harness.getMatches().size(), seconds, harness.getMatches().size() / seconds);
+        }
+    }
+
+
+    private List<String> generateSession(int matchCount) {
+        List<String> lines = new ArrayList<>(matchCount * 20);
+
+        for (int i = 0; i < matchCount; i++) {
+            String steamId = String.valueOf(76561198000000000L + random.nextInt(5000));
+            String outfit = KILLER_OUTFITS[random.nextInt(KILLER_OUTFITS.length)];
+            String map = MAP_IDS[random.nextInt(MAP_IDS.length)];
+
+            add(lines, 30, "LogHttp: Log: [Request - POST https://latest.live.dbd.bhvronline.com/api/v1/queue]");
+            add(lines, 60 + random.nextInt(120), "LogNet: UPendingNetGame::SendInitialJoin: Sending hello. "
+                    + "[UNetConnection] RemoteAddr: 10.0.0." + random.nextInt(255) + ":7777, Name: IpConnection_0");
+            add(lines, 1, "LogOnline: Verbose: Mirrors: [FOnlineSessionMirrors::AddSessionPlayer] "
+                    + "Session:GameSession PlayerId:ab12cd34-0000-0000-0000-000000000001|" + steamId);
+            add(lines, 0, "LogCustomization: --> " + outfit + "_Head01");
+            add(lines, 60, "ProceduralLevelGeneration: InitLevel: Theme: X Map: " + map);
+            add(lines, 20, "GameFlow: ACollectable::BeginPlay");
+            add(lines, 10, "LogOnline: ^^^ OnEnteringOnlineMultiplayer ^^^");
+
+            for (int chase = 0; chase < 3; chase++) {
+                String survivor = "BP_" + SURVIVOR_BLUEPRINTS[chase] + "_Character_C_0";
+                add(lines, 60 + random.nextInt(60), "Interaction: Player [" + survivor + "] is in chase.");
+                add(lines, 5, "HitSprint: On Hit Sprint Effect [" + survivor + " - Survivor " + chase + "]: On");
+                add(lines, 10 + random.nextInt(40), "Interaction: Player [" + survivor + "] is not in chase anymore.");
+            }
+            if (random.nextBoolean()) {
+                add(lines, 120, "LogGameStats: player escaped = true");
+            }
+            add(lines, 120 + random.nextInt(400),
+                    "LogHttp: Log: [Request - PUT https://latest.live.dbd.bhvronline.com/api/v1/softWallet/put/analytics]");
+            add(lines, 1, "GameFlow: ADBDGameState::SetGameLevelEnded - Game marked as ended with reason 'Normal'");
+            add(lines, 30, "LogOnline: Display: FOnlineAsyncTaskMirrorsDestroyMatch");
+        }
+
+        return lines;
+    }
+
+    private void add(List<String> lines, int secondsElapsed, String message) {
+        now = now.plusSeconds(secondsElapsed);
+        lines.add("[" + now.format(LOG_DATE_FORMATTER) + "][  0]" + message);
+    }
+
+}
@@ -0,0 +1,173 @@
+package net.lobby_simulator_companion.loop.manual_testing;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataReader;
+import net.lobby_simulator_companion.loop.repository.binary.LoopDataWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Load/save benchmark of the JSON and binary storage formats, without compression or encryption.
+ * <p>
+ * Usage: {@code StorageFormatBenchmark [player counts...]} (default: 10000 100000 1000000).
+ * The largest sizes need a big heap (e.g., {@code -Xmx4g}).
+ *
+ * @author NickyRamone
+ */
+public class StorageFormatBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int MATCHES = 1000;
+
+    private final Random random = new Random(42);
+    private final Gson gson = LoopGsonFactory.gson(false);
+
+
+    public static void main(String[] args) throws Exception {
+        int[] playerCounts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 100_000, 1_000_000};
+        StorageFormatBenchmark benchmark = new StorageFormatBenchmark();
+
+        System.out.printf("%10s %8s %12s %10s %10s %16s%n",
+                "players", "format", "size (KB)", "save (ms)", "load (ms)", "load stats (ms)");
+        for (int playerCount : playerCounts) {
+            benchmark.run(playerCount);
+        }
+    }
+
+
+    private void run(int playerCount) throws IOException {
+        LoopData loopData = generateData(playerCount);
+
+        byte[] json = null;
+        byte[] binary = null;
+        long jsonSave = Long.MAX_VALUE;
+        long jsonLoad = Long.MAX_VALUE;
+        long binarySave = Long.MAX_VALUE;
+        long binaryLoad = Long.MAX_VALUE;
+        long binaryLoadStats = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            json = saveJson(loopData);
+            jsonSave = Math.min(jsonSave, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            loadJson(json);
+            jsonLoad = Math.min(jsonLoad, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            binary = saveBinary(loopData);
+            binarySave = Math.min(binarySave, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            new LoopDataReader(new ByteArrayInputStream(binary)).read();
+            binaryLoad = Math.min(binaryLoad, System.nanoTime() - start);
+
+            // what the tiered load of the data service waits for before the UI is shown
+            start = System.nanoTime();
+            new LoopDataReader(new ByteArrayInputStream(binary)).readUpToPlayers();
+            binaryLoadStats = Math.min(binaryLoadStats, System.nanoTime() - start);
+        }
+
+        print(playerCount, "json", json.length, jsonSave, jsonLoad, jsonLoad);
+        print(playerCount, "binary", binary.length, binarySave, binaryLoad, binaryLoadStats);
+    }
+
+    private byte[] saveJson(LoopData loopData) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            gson.toJson(loopData, LoopData.class, writer);
+        }
+        return out.toByteArray();
+    }
+
+    private LoopData loadJson(byte[] json) throws IOException {
+        try (JsonReader reader = gson.newJsonReader(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8))) {
+            return gson.fromJson(reader, LoopData.class);
+        }
+    }
+
+    private byte[] saveBinary(LoopData loopData) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LoopDataWriter(out, loopData.getVersion()).write(loopData);
+        return out.toByteArray();
+    }
+
+    private static void print(int players, String format, int bytes, long saveNanos, long loadNanos,
+                              long loadStatsNanos) {
+        System.out.printf("%10d %8s %12d %10d %10d %16.1f%n", players, format, bytes / 1024,
+                saveNanos / 1_000_000, loadNanos / 1_000_000, loadStatsNanos / 1e6);
+    }
+
+
+    LoopData generateData(int playerCount) {
+        List<Player> players = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            LocalDateTime firstSeen = LocalDateTime.of(2018, 1, 1, 0, 0).plusSeconds(random.nextInt(80_000_000));
+            int matches = random.nextInt(20);
+            List<String> names = new ArrayList<>();
+            for (int n = 0, nameCount = 1 + random.nextInt(3); n < nameCount; n++) {
+                names.add("player name " + random.nextInt(playerCount * 2));
+            }
+
+            players.add(Player.builder()
+                    .steamId64(String.valueOf(76561197960265728L + random.nextInt(Integer.MAX_VALUE)))
+                    .dbdPlayerId(random.nextBoolean() ? null : Long.toHexString(random.nextLong()))
+                    .firstSeen(firstSeen)
+                    .lastSeen(firstSeen.plusSeconds(random.nextInt(10_000_000)))
+                    .timesEncountered(matches + random.nextInt(5))
+                    .matchesPlayed(matches)
+                    .secondsPlayed(matches * (180 + random.nextInt(1000)))
+                    .escapes(random.nextInt(matches + 1))
+                    .deaths(random.nextInt(matches + 1))
+                    .names(names)
+                    .rating(Player.Rating.values()[random.nextInt(Player.Rating.values().length)])
+                    .description(random.nextInt(20) == 0 ? "some notes about this player" : null)
+                    .build());
+        }
+
+        LoopData loopData = new LoopData();
+        loopData.addPlayers(players);
+        for (int i = 0; i < MATCHES; i++) {
+            Player killer = players.get(random.nextInt(players.size()));
+            Match match = Match.builder()
+                    .lobbiesFound(1 + random.nextInt(3))
+                    .secondsQueued(random.nextInt(180))
+                    .secondsWaited(60 + random.nextInt(120))
+                    .secondsPlayed(180 + random.nextInt(1000))
+                    .matchStartTime(LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(30L * i))
+                    .escaped(random.nextBoolean())
+                    .killer(Killer.values()[1 + random.nextInt(Killer.values().length - 1)])
+                    .realmMap(RealmMap.values()[1 + random.nextInt(RealmMap.values().length - 1)])
+                    .killerPlayerSteamId64(killer.getSteamId64())
+                    .killerPlayerDbdId(killer.getDbdPlayerId())
+                    .build();
+            loopData.getStats().addMatchStats(match);
+            loopData.getMatchLog().add(match);
+        }
+
+        return loopData;
+    }
+
+}
@@ -0,0 +1,193 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import com.google.gson.Gson;
+import net.lobby_simulator_companion.loop.config.AppProperties;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.repository.changelog.ChangeLog;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author NickyRamone
+ */
+public class FileLoopStoreUTest {
+
+    private static final String STEAM_ID = "76561198000000001";
+    private static final int SHARD_COUNT = 2;
+    private static final LocalDateTime TIME = LocalDateTime.of(2020, 3, 10, 18, 0);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Gson gson = LoopGsonFactory.gson(false);
+    private AppProperties properties;
+
+
+    @Before
+    public void setUp() {
+        properties = mock(AppProperties.class);
+        when(properties.get("storage.file")).thenReturn("loop.dat");
+        when(properties.get("storage.write.format")).thenReturn("binary");
+        when(properties.getInt("storage.backup.generations")).thenReturn(2);
+        when(properties.get("storage.player_shards.dir")).thenReturn("player-shards");
+        when(properties.getInt("storage.player_shards.count")).thenReturn(SHARD_COUNT);
+        when(properties.get("storage.backup.dir")).thenReturn("backups");
+        when(properties.getInt("storage.backup.interval_minutes")).thenReturn(60);
+        when(properties.getInt("storage.backup.keep_daily")).thenReturn(7);
+        when(properties.getInt("storage.backup.keep_weekly")).thenReturn(4);
+        when(properties.getInt("storage.backup.keep_monthly")).thenReturn(12);
+    }
+
+
+    @Test
+    public void compaction_backsUpTheSnapshotInTheBackground() throws Exception {
+        // arrange
+        Queue<Runnable> backupTasks = new ArrayDeque<>();
+        FileLoopStore store = newStore(backupTasks::add);
+        LoopData data = new LoopData();
+        data.getPlayers().add(newPlayer("name"));
+
+        // act
+        store.startCompaction().write(data, data.getPlayers());
+        List<LocalDateTime> backupsBeforeRunning = store.listBackups();
+        backupTasks.forEach(Runnable::run);
+
+        // assert
+        assertThat(backupsBeforeRunning.isEmpty(), equalTo(true));
+        assertThat(store.listBackups().size(), equalTo(1));
+        assertThat(tempFolder.getRoot().list((dir, name) -> name.startsWith("backup-")).length, equalTo(0));
+    }
+
+    @Test
+    public void compaction_onlyRewritesTheShardsOfThePlayersWrittenSinceTheLastOne() throws Exception {
+        // arrange
+        Player player = newPlayer("name");
+        Player otherPlayer = newPlayer("other name");
+        otherPlayer.setSteamId64(steamIdOfAnotherShard(STEAM_ID));
+        FileLoopStore store = newStore();
+        store.startCompaction().write(new LoopData(), Arrays.asList(player, otherPlayer));
+        store.close();
+        FileLoopStore loadedStore = newStore();
+        LoopData data;
+        try (TieredLoad load = loadedStore.load()) {
+            data = load.getData();
+            load.readPlayers(data.getPlayers()::add);
+        }
+        loadedStore.replay(data, change -> {
+        });
+        player.addName("new name");
+        loadedStore.write(Collections.singletonList(DataChange.playerUpsert(player)), true);
+
+        // act
+        loadedStore.startCompaction().write(data, Arrays.asList(player, otherPlayer));
+
+        // assert
+        Path shardsDir = tempFolder.getRoot().toPath().resolve("player-shards");
+        assertThat(Files.exists(shardsDir.resolve(String.format("players-%d.dat.1.bak",
+                PlayerShards.shardOf(player.getSteamId64(), SHARD_COUNT)))), equalTo(true));
+        assertThat(Files.exists(shardsDir.resolve(String.format("players-%d.dat.1.bak",
+                PlayerShards.shardOf(otherPlayer.getSteamId64(), SHARD_COUNT)))), equalTo(false));
+    }
+
+    @Test
+    public void restoreBackup_bringsBackTheDataOfTheBackup() throws Exception {
+        // arrange
+        FileLoopStore store = newStore();
+        LoopData data = new LoopData();
+        data.getMatchLog().add(newMatch(1));
+        data.getPlayers().add(newPlayer("name at backup"));
+        store.startCompaction().write(data, data.getPlayers());
+        data.getMatchLog().add(newMatch(2));
+        store.startCompaction().write(data, Collections.singletonList(newPlayer("name after backup")));
+        store.write(Collections.singletonList(DataChange.matchAdd(newMatch(3))), true);
+        List<LocalDateTime> backups = store.listBackups();
+
+        // act
+        store.restoreBackup(backups.get(0));
+        store.close();
+        FileLoopStore restoredStore = newStore();
+        LoopData restoredData;
+        List<DataChange> replayed = new ArrayList<>();
+        try (TieredLoad load = restoredStore.load()) {
+            restoredData = load.getData();
+            load.readPlayers(restoredData.getPlayers()::add);
+        }
+        restoredStore.replay(restoredData, replayed::add);
+        restoredStore.write(Collections.singletonList(DataChange.matchAdd(newMatch(4))), true);
+        restoredStore.close();
+        List<DataChange> replayedAfterRestore = new ArrayList<>();
+        newStore().replay(restoredData, replayedAfterRestore::add);
+
+        // assert
+        assertThat(backups.size(), equalTo(1));
+        assertThat(new ArrayList<>(restoredData.getMatchLog().getMatches()),
+                equalTo(Collections.singletonList(newMatch(1))));
+        assertThat(restoredData.getPlayers().get(0).getNames(), equalTo(Collections.singletonList("name at backup")));
+        assertThat(replayed.isEmpty(), equalTo(true));
+        assertThat(replayedAfterRestore, equalTo(Collections.singletonList(DataChange.matchAdd(newMatch(4)))));
+    }
+
+
+    private FileLoopStore newStore() {
+        return newStore(Runnable::run);
+    }
+
+    private FileLoopStore newStore(Executor backupExecutor) {
+        Path home = tempFolder.getRoot().toPath();
+        return new FileLoopStore(new LoopRepository(properties, gson, home, backupExecutor),
+                new ChangeLog(home.resolve("changes"), gson, false, 1024 * 1024));
+    }
+
+    private static String steamIdOfAnotherShard(String steamId) {
+        long id = Long.parseLong(steamId);
+        while (PlayerShards.shardOf(String.valueOf(id), SHARD_COUNT) == PlayerShards.shardOf(steamId, SHARD_COUNT)) {
+            id++;
+        }
+        return String.valueOf(id);
+    }
+
+    private static Player newPlayer(String name) {
+        Player player = new Player();
+        player.setSteamId64(STEAM_ID);
+        player.addName(name);
+        return player;
+    }
+
+    private static Match newMatch(int index) {
+        return Match.builder()
+                .lobbiesFound(1)
+                .secondsQueued(10)
+                .secondsWaited(20)
+                .secondsPlayed(600 + index)
+                .matchStartTime(TIME.plusHours(index))
+                .killer(Killer.NURSE)
+                .realmMap(RealmMap.COAL_TOWER)
+                .escaped(true)
+                .build();
+    }
+
+}
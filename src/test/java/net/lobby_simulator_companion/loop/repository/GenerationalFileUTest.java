@@ -0,0 +1,138 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class GenerationalFileUTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path path;
+    private GenerationalFile file;
+
+
+    @Before
+    public void setUp() {
+        path = tempFolder.getRoot().toPath().resolve("loop.dat");
+        file = new GenerationalFile(path, 2);
+    }
+
+
+    @Test
+    public void write_keepsPreviousContentsAsGenerations() throws Exception {
+        // act
+        write("one");
+        write("two");
+        write("three");
+        write("four");
+
+        // assert
+        assertThat(read(), equalTo("four"));
+        assertThat(readGeneration(1), equalTo("three"));
+        assertThat(readGeneration(2), equalTo("two"));
+        assertThat(Files.exists(file.generationPath(3)), equalTo(false));
+        assertThat(Files.exists(path.resolveSibling("loop.dat.tmp")), equalTo(false));
+    }
+
+    @Test
+    public void snapshotTo_isNotAffectedByLaterWrites() throws Exception {
+        // arrange
+        write("one");
+        write("two");
+
+        // act
+        GenerationalFile snapshot = file.snapshotTo(tempFolder.getRoot().toPath().resolve("snapshot/loop.dat"));
+        write("three");
+        write("four");
+
+        // assert
+        assertThat(snapshot.read(GenerationalFileUTest::toString), equalTo("two"));
+        assertThat(new GenerationalFile(snapshot.generationPath(1), 0).read(GenerationalFileUTest::toString),
+                equalTo("one"));
+        assertThat(read(), equalTo("four"));
+    }
+
+    @Test
+    public void read_fallsBackToNewestValidGeneration() throws Exception {
+        // arrange
+        write("one");
+        write("two");
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.seek(1);
+            raf.write('X');
+        }
+
+        // act
+        String content = read();
+
+        // assert
+        assertThat(content, equalTo("one"));
+    }
+
+    @Test
+    public void read_acceptsFileWithoutFooter() throws Exception {
+        // arrange
+        Files.write(path, "legacy".getBytes(StandardCharsets.UTF_8));
+
+        // act
+        String content = read();
+
+        // assert
+        assertThat(content, equalTo("legacy"));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_failsWhenNoGenerationIsValid() throws Exception {
+        // arrange
+        write("one");
+        Files.write(path, new byte[]{1, 2, 3});
+        Files.write(file.generationPath(1), new byte[]{4, 5, 6});
+
+        // act
+        file.read(in -> {
+            throw new IOException("unparseable");
+        });
+    }
+
+
+    private void write(String content) throws IOException {
+        file.write(out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String read() throws IOException {
+        return file.read(GenerationalFileUTest::toString);
+    }
+
+    private String readGeneration(int generation) throws IOException {
+        return new GenerationalFile(file.generationPath(generation), 0)
+                .read(GenerationalFileUTest::toString);
+    }
+
+    private static String toString(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,219 @@
+package net.lobby_simulator_companion.loop.repository;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class PlayerShardsUTest {
+
+    private static final int PLAYER_COUNT = 1000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    @Test
+    public void read_returnsThePlayersWrittenToAllTheShards() throws Exception {
+        // arrange
+        List<Player> players = newPlayers();
+        newShards(4).write(players);
+
+        // act
+        List<Player> readPlayers = new ArrayList<>();
+        int count = newShards(4).read(readPlayers::add);
+
+        // assert
+        assertThat(count, equalTo(PLAYER_COUNT));
+        assertThat(sorted(readPlayers), equalTo(players));
+        assertThat(listFiles(), equalTo(shardFileNames(4)));
+    }
+
+    @Test
+    public void read_stopsReadingTheShardsWhenTheConsumerFails() throws Exception {
+        // arrange
+        List<Player> players = newPlayers();
+        PlayerShards shards = newShards(8);
+        shards.write(players);
+        int[] consumed = new int[1];
+
+        // act
+        IllegalStateException error = null;
+        try {
+            shards.read(player -> {
+                if (++consumed[0] == 10) {
+                    throw new IllegalStateException("Consumer failure.");
+                }
+            });
+        } catch (IllegalStateException e) {
+            error = e;
+        }
+
+        // assert
+        assertThat(error != null, equalTo(true));
+        // the readings of the first attempt do not hold the threads of the pool
+        assertThat(shards.read(player -> {
+        }), equalTo(PLAYER_COUNT));
+    }
+
+    @Test
+    public void write_onlyRewritesTheShardsOfTheModifiedPlayers() throws Exception {
+        // arrange
+        List<Player> players = newPlayers();
+        newShards(4).write(players);
+        PlayerShards shards = newShards(4);
+        shards.read(player -> {
+        });
+        players.get(0).incrementMatchesPlayed();
+
+        // act
+        int count = shards.write(players, Collections.singleton(players.get(0).getSteamId64()));
+
+        // assert
+        int changedShard = PlayerShards.shardOf(players.get(0).getSteamId64(), 4);
+        List<String> expectedFiles = shardFileNames(4);
+        expectedFiles.add(String.format("players-%d.dat.1.bak", changedShard));
+        assertThat(count, equalTo(PLAYER_COUNT));
+        assertThat(listFiles(), equalTo(sortedNames(expectedFiles)));
+    }
+
+    @Test
+    public void write_goesThroughThePlayersOnce() throws Exception {
+        // arrange
+        List<Player> players = newPlayers();
+        int[] iterations = new int[1];
+        Iterable<Player> countedPlayers = () -> {
+            iterations[0]++;
+            return players.iterator();
+        };
+
+        // act
+        int count = newShards(8).write(countedPlayers);
+
+        // assert
+        assertThat(count, equalTo(PLAYER_COUNT));
+        assertThat(iterations[0], equalTo(1));
+    }
+
+    @Test
+    public void write_rewritesEveryShardAfterAFailedWrite() throws Exception {
+        // arrange
+        List<Player> players = newPlayers();
+        AtomicInteger wrappedStreams = new AtomicInteger();
+        PlayerShards shards = new PlayerShards(tempFolder.getRoot().toPath(), 4, 2, 1, in -> in, out -> {
+            if (wrappedStreams.incrementAndGet() == 2) {
+                throw new IOException("Disk full.");
+            }
+            return out;
+        });
+        IOException error = null;
+        try {
+            shards.write(players);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        // act
+        int count = shards.write(players, Collections.emptySet());
+
+        // assert
+        assertThat(error != null, equalTo(true));
+        assertThat(count, equalTo(PLAYER_COUNT));
+        List<Player> readPlayers = new ArrayList<>();
+        newShards(4).read(readPlayers::add);
+        assertThat(sorted(readPlayers), equalTo(players));
+    }
+
+    @Test
+    public void write_splitsThePlayersAgainWhenTheNumberOfShardsChanges() throws Exception {
+        // arrange
+        List<Player> players = newPlayers();
+        newShards(4).write(players);
+
+        // act
+        newShards(2).write(players);
+
+        // assert
+        List<Player> readPlayers = new ArrayList<>();
+        newShards(2).read(readPlayers::add);
+        assertThat(sorted(readPlayers), equalTo(players));
+        assertThat(listFiles().stream().filter(name -> !name.endsWith(".bak")).collect(Collectors.toList()),
+                equalTo(shardFileNames(2)));
+    }
+
+    @Test
+    public void deleteShardsFrom_deletesTheShardsAndTheirBackups() throws Exception {
+        // arrange
+        List<Player> players = newPlayers();
+        PlayerShards shards = newShards(4);
+        shards.write(players);
+        players.forEach(Player::incrementMatchesPlayed);
+        shards.write(players);
+
+        // act
+        shards.deleteShardsFrom(0);
+
+        // assert
+        assertThat(listFiles().isEmpty(), equalTo(true));
+        assertThat(shards.read(player -> {
+        }), equalTo(0));
+    }
+
+
+    private PlayerShards newShards(int shardCount) {
+        return new PlayerShards(tempFolder.getRoot().toPath(), shardCount, 2, 1, in -> in, out -> out);
+    }
+
+    private List<Player> newPlayers() {
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < PLAYER_COUNT; i++) {
+            Player player = new Player();
+            player.setSteamId64(String.valueOf(76561198000000000L + i));
+            player.setDbdPlayerId("dbd-" + i);
+            player.addName("name-" + i);
+            players.add(player);
+        }
+        return sorted(players);
+    }
+
+    private static List<Player> sorted(List<Player> players) {
+        players.sort(Comparator.comparing(Player::getSteamId64));
+        return players;
+    }
+
+    private static List<String> sortedNames(List<String> names) {
+        return names.stream().sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> shardFileNames(int shardCount) {
+        List<String> names = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            names.add(String.format("players-%d.dat", shard));
+        }
+        return names;
+    }
+
+    private List<String> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempFolder.getRoot().toPath())) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+}
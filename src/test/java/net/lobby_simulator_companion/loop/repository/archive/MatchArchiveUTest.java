@@ -0,0 +1,210 @@
+package net.lobby_simulator_companion.loop.repository.archive;
+
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * @author NickyRamone
+ */
+public class MatchArchiveUTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2020, 3, 10, 18, 0, 5, 123_000_000);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path dir;
+    private MatchArchive archive;
+
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tempFolder.getRoot().toPath().resolve("matches");
+        archive = MatchArchive.open(dir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        archive.close();
+    }
+
+
+    @Test
+    public void get_returnsTheAppendedMatches() throws Exception {
+        // arrange
+        Match match = newMatch(0);
+        match.setKillerPlayerDbdId("dbd-ü");
+        Match emptyMatch = new Match();
+
+        // act
+        archive.append(match);
+        archive.append(emptyMatch);
+
+        // assert
+        assertThat(archive.size(), equalTo(2L));
+        assertThat(archive.get(0), equalTo(match));
+        assertThat(archive.get(1), equalTo(emptyMatch));
+    }
+
+    @Test
+    public void open_keepsTheMatchesOfTheArchive() throws Exception {
+        // arrange
+        archive.append(newMatch(0));
+        archive.append(newMatch(1));
+        archive.close();
+
+        // act
+        archive = MatchArchive.open(dir);
+
+        // assert
+        assertThat(archive.size(), equalTo(2L));
+        assertThat(archive.get(1), equalTo(newMatch(1)));
+    }
+
+    @Test
+    public void append_growsTheArchiveBeyondOneChunk() throws Exception {
+        // arrange
+        int count = MatchArchive.CHUNK_RECORDS + 10;
+
+        // act
+        for (int i = 0; i < count; i++) {
+            archive.append(newMatch(i));
+        }
+        archive.close();
+        archive = MatchArchive.open(dir);
+
+        // assert
+        assertThat(archive.size(), equalTo((long) count));
+        assertThat(archive.get(MatchArchive.CHUNK_RECORDS - 1), equalTo(newMatch(MatchArchive.CHUNK_RECORDS - 1)));
+        assertThat(archive.get(count - 1), equalTo(newMatch(count - 1)));
+        assertThat(archive.tail(2), equalTo(Arrays.asList(newMatch(count - 2), newMatch(count - 1))));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_failsBeyondTheEnd() throws Exception {
+        // arrange
+        archive.append(newMatch(0));
+
+        // act
+        archive.get(1);
+    }
+
+    @Test
+    public void appendMissing_appendsTheMatchesAfterTheLastArchivedOne() throws Exception {
+        // arrange
+        archive.append(newMatch(0));
+        archive.append(newMatch(1));
+        List<Match> recent = Arrays.asList(newMatch(0), newMatch(1), newMatch(2), newMatch(3));
+
+        // act
+        int appended = archive.appendMissing(recent);
+
+        // assert
+        assertThat(appended, equalTo(2));
+        assertThat(archive.tail(10), equalTo(recent));
+        assertThat(archive.appendMissing(recent), equalTo(0));
+    }
+
+    @Test
+    public void appendMissing_seedsAnEmptyArchive() throws Exception {
+        // arrange
+        List<Match> recent = Arrays.asList(newMatch(0), newMatch(1));
+
+        // act
+        int appended = archive.appendMissing(recent);
+
+        // assert
+        assertThat(appended, equalTo(2));
+        assertThat(archive.tail(10), equalTo(recent));
+    }
+
+    @Test
+    public void appendMissing_appendsNothingWhenTheArchiveIsAhead() throws Exception {
+        // arrange
+        archive.append(newMatch(5));
+
+        // act
+        int appended = archive.appendMissing(Collections.singletonList(newMatch(1)));
+
+        // assert
+        assertThat(appended, equalTo(0));
+        assertThat(archive.size(), equalTo(1L));
+    }
+
+    @Test
+    public void open_dropsAnIncompleteRecordAtTheEnd() throws Exception {
+        // arrange
+        archive.append(newMatch(0));
+        archive.append(newMatch(1));
+        archive.close();
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("matches.arc").toFile(), "rw")) {
+            file.seek(64 + MatchArchive.RECORD_SIZE + 10);
+            file.write(0xFF);
+        }
+
+        // act
+        archive = MatchArchive.open(dir);
+
+        // assert
+        assertThat(archive.size(), equalTo(1L));
+        assertThat(archive.get(0), equalTo(newMatch(0)));
+    }
+
+    @Test
+    public void get_readsConstantsWhichNoLongerExistAsNull() throws Exception {
+        // arrange
+        archive.append(newMatch(0));
+        archive.close();
+        Path names = dir.resolve("names.txt");
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(names, StandardCharsets.UTF_8)) {
+            lines.add(line.replace("TRAPPER", "REMOVED_KILLER"));
+        }
+        Files.write(names, lines, StandardCharsets.UTF_8);
+
+        // act
+        archive = MatchArchive.open(dir);
+
+        // assert
+        Match match = archive.get(0);
+        assertThat(match.getKiller(), nullValue());
+        assertThat(match.getRealmMap(), equalTo(RealmMap.COAL_TOWER));
+    }
+
+
+    private Match newMatch(int i) {
+        return Match.builder()
+                .lobbiesFound(1)
+                .secondsQueued(10 + i)
+                .secondsWaited(20)
+                .secondsPlayed(300)
+                .matchStartTime(TIME.plusMinutes(i))
+                .killer(Killer.TRAPPER)
+                .realmMap(RealmMap.COAL_TOWER)
+                .escaped(i % 2 == 0)
+                .killerPlayerSteamId64("7656119800000000" + (i % 10))
+                .build();
+    }
+
+}
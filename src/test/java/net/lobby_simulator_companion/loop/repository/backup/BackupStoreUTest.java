@@ -0,0 +1,177 @@
+package net.lobby_simulator_companion.loop.repository.backup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class BackupStoreUTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2020, 5, 4, 12, 0);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    @Test
+    public void restore_returnsTheContentOfEachFileInTheBackup() throws Exception {
+        // arrange
+        byte[] data = randomBytes(1, 500_000);
+        byte[] players = randomBytes(2, 300_000);
+        BackupStore store = BackupStore.open(dir(), true);
+        store.backup(TIME, files(data, players));
+
+        // act
+        BackupStore reopenedStore = BackupStore.open(dir(), true);
+
+        // assert
+        assertThat(reopenedStore.list(), equalTo(Arrays.asList(TIME)));
+        assertThat(reopenedStore.files(TIME), equalTo(Arrays.asList("loop.dat", "players-0.dat")));
+        assertThat(restore(reopenedStore, TIME, "loop.dat"), equalTo(data));
+        assertThat(restore(reopenedStore, TIME, "players-0.dat"), equalTo(players));
+    }
+
+    @Test
+    public void backup_onlyWritesTheChunksAroundTheChanges() throws Exception {
+        // arrange
+        byte[] data = randomBytes(1, 2_000_000);
+        BackupStore store = BackupStore.open(dir(), false);
+        BackupStore.Report firstReport = store.backup(TIME, files(data));
+        byte[] changedData = new byte[data.length + 10];
+        System.arraycopy(data, 0, changedData, 0, 1_000_000);
+        System.arraycopy(data, 1_000_000, changedData, 1_000_010, data.length - 1_000_000);
+
+        // act
+        BackupStore.Report report = BackupStore.open(dir(), false).backup(TIME.plusHours(1), files(changedData));
+
+        // assert
+        assertThat(firstReport.getNewChunks(), equalTo(firstReport.getChunks()));
+        assertThat(report.getBytesRead(), equalTo((long) changedData.length));
+        assertThat(report.getNewChunks() <= 2, equalTo(true));
+        assertThat(report.getBytesWritten() < 2 * ChunkingOutputStream.MAX_SIZE, equalTo(true));
+        assertThat(restore(store, TIME, "loop.dat"), equalTo(data));
+        assertThat(restore(BackupStore.open(dir(), false), TIME.plusHours(1), "loop.dat"), equalTo(changedData));
+    }
+
+    @Test
+    public void backup_writesNoPackWhenNothingChanged() throws Exception {
+        // arrange
+        byte[] data = randomBytes(1, 100_000);
+        BackupStore store = BackupStore.open(dir(), true);
+        store.backup(TIME, files(data));
+
+        // act
+        BackupStore.Report report = store.backup(TIME.plusMinutes(1), files(data));
+
+        // assert
+        assertThat(report.getNewChunks(), equalTo(0));
+        assertThat(report.getBytesWritten(), equalTo(0L));
+        assertThat(listFiles("packs").size(), equalTo(1));
+    }
+
+    @Test
+    public void prune_deletesTheBackupsNotKeptAndThePacksNoLongerUsed() throws Exception {
+        // arrange
+        BackupStore store = BackupStore.open(dir(), true);
+        LocalDateTime[] times = {TIME, TIME.plusHours(1), TIME.plusDays(1), TIME.plusDays(1).plusHours(1)};
+        for (int i = 0; i < times.length; i++) {
+            store.backup(times[i], files(randomBytes(i, 50_000)));
+        }
+
+        // act
+        int deleted = store.prune(new RetentionPolicy(1, 0, 0));
+
+        // assert
+        assertThat(deleted, equalTo(3));
+        assertThat(store.list(), equalTo(Arrays.asList(times[3])));
+        assertThat(listFiles("packs").size(), equalTo(1));
+        assertThat(listFiles("snapshots").size(), equalTo(1));
+        assertThat(restore(BackupStore.open(dir(), true), times[3], "loop.dat"), equalTo(randomBytes(3, 50_000)));
+    }
+
+    @Test
+    public void select_keepsTheNewestBackupOfEachPeriod() {
+        // arrange
+        LocalDateTime monday = LocalDateTime.of(2020, 5, 4, 12, 0);
+        List<LocalDateTime> times = Arrays.asList(
+                monday.minusMonths(2),
+                monday.minusMonths(1),
+                monday.minusWeeks(2),
+                monday.minusWeeks(1),
+                monday.minusDays(1),
+                monday,
+                monday.plusHours(1),
+                monday.plusDays(1),
+                monday.plusDays(1).plusHours(1));
+
+        // act
+        Set<LocalDateTime> kept = new RetentionPolicy(2, 2, 2).select(times);
+
+        // assert
+        assertThat(kept, equalTo(new HashSet<>(Arrays.asList(
+                monday.plusDays(1).plusHours(1),
+                monday.plusHours(1),
+                monday.minusDays(1),
+                monday.minusWeeks(1)))));
+    }
+
+
+    private Path dir() {
+        return tempFolder.getRoot().toPath().resolve("backups");
+    }
+
+    private static Map<String, BackupStore.ContentSource> files(byte[]... contents) {
+        Map<String, BackupStore.ContentSource> files = new LinkedHashMap<>();
+        files.put("loop.dat", out -> out.write(contents[0]));
+        for (int i = 1; i < contents.length; i++) {
+            byte[] content = contents[i];
+            files.put(String.format("players-%d.dat", i - 1), out -> out.write(content));
+        }
+        return files;
+    }
+
+    private static byte[] restore(BackupStore store, LocalDateTime time, String name) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        store.restore(time, name, content);
+        return content.toByteArray();
+    }
+
+    /**
+     * Bytes which compress about as much as the stored data.
+     */
+    private static byte[] randomBytes(long seed, int length) {
+        Random random = new Random(seed);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return bytes;
+    }
+
+    private List<String> listFiles(String subdir) throws IOException {
+        try (Stream<Path> files = Files.list(dir().resolve(subdir))) {
+            return files.map(file -> file.getFileName().toString()).collect(Collectors.toList());
+        }
+    }
+
+}
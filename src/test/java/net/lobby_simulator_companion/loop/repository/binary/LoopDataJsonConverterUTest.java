@@ -0,0 +1,54 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import com.google.gson.Gson;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * @author NickyRamone
+ */
+public class LoopDataJsonConverterUTest {
+
+    private final Gson gson = LoopGsonFactory.gson(false);
+    private final LoopDataJsonConverter converter = new LoopDataJsonConverter(gson);
+
+
+    @Test
+    public void jsonToBinary_keepsAllData() throws Exception {
+        // arrange
+        String json = gson.toJson(SampleData.loopData());
+        // the JSON format stores times with a precision of seconds, so compare with what it actually holds
+        LoopData expected = gson.fromJson(json, LoopData.class);
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+
+        // act
+        converter.jsonToBinary(new StringReader(json), binary);
+
+        // assert
+        LoopData result = new LoopDataReader(new ByteArrayInputStream(binary.toByteArray())).read();
+        SampleData.assertSameData(result, expected);
+    }
+
+    @Test
+    public void binaryToJson_keepsAllData() throws Exception {
+        // arrange
+        LoopData loopData = SampleData.loopData();
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        new LoopDataWriter(binary, loopData.getVersion()).write(loopData);
+        StringWriter json = new StringWriter();
+
+        // act
+        converter.binaryToJson(new ByteArrayInputStream(binary.toByteArray()), json);
+
+        // assert
+        LoopData result = gson.fromJson(json.toString(), LoopData.class);
+        SampleData.assertSameData(result, gson.fromJson(gson.toJson(loopData), LoopData.class));
+    }
+
+}
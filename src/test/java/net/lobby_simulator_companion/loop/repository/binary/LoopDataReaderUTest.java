@@ -0,0 +1,111 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class LoopDataReaderUTest {
+
+    @Test
+    public void read_returnsWrittenData() throws Exception {
+        // arrange
+        LoopData loopData = SampleData.loopData();
+        byte[] binary = write(loopData);
+
+        // act
+        LoopData result = new LoopDataReader(new ByteArrayInputStream(binary)).read();
+
+        // assert
+        SampleData.assertSameData(result, loopData);
+    }
+
+    @Test
+    public void readPlayer_streamsPlayersOneAtATime() throws Exception {
+        // arrange
+        LoopData loopData = SampleData.loopData();
+        LoopDataReader reader = new LoopDataReader(new ByteArrayInputStream(write(loopData)));
+        List<Player> players = new ArrayList<>();
+
+        // act
+        LoopDataReader.Section section;
+        while ((section = reader.nextSection()) != LoopDataReader.Section.END) {
+            switch (section) {
+                case CHANGE_LOG_SEQUENCE:
+                    reader.readChangeLogSequence();
+                    break;
+                case STATS:
+                    reader.readStats();
+                    break;
+                case MATCH_LOG:
+                    while (reader.readMatch() != null) {
+                        // skip
+                    }
+                    break;
+                case ROLLING_STATS:
+                    reader.readRollingStats();
+                    break;
+                case PLAYERS:
+                    Player player;
+                    while ((player = reader.readPlayer()) != null) {
+                        players.add(player);
+                    }
+                    break;
+            }
+        }
+
+        // assert
+        assertThat(players, equalTo(loopData.getPlayers()));
+    }
+
+    @Test
+    public void readUpToPlayers_leavesPlayersForLater() throws Exception {
+        // arrange
+        LoopData loopData = SampleData.loopData();
+        LoopDataReader reader = new LoopDataReader(new ByteArrayInputStream(write(loopData)));
+
+        // act
+        LoopData result = reader.readUpToPlayers();
+        int playersBefore = result.getPlayers().size();
+        int playersRead = reader.readRemainingPlayers(result.getPlayers()::add);
+
+        // assert
+        assertThat(playersBefore, equalTo(0));
+        assertThat(playersRead, equalTo(loopData.getPlayers().size()));
+        SampleData.assertSameData(result, loopData);
+    }
+
+    @Test
+    public void binaryIsSmallerThanJson() throws Exception {
+        // arrange
+        LoopData loopData = SampleData.loopData();
+
+        // act
+        int binarySize = write(loopData).length;
+        int jsonSize = LoopGsonFactory.gson(false).toJson(loopData).length();
+
+        // assert
+        assertThat(binarySize < jsonSize / 3, equalTo(true));
+    }
+
+
+    private static byte[] write(LoopData loopData) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LoopDataWriter(out, loopData.getVersion()).write(loopData);
+
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,99 @@
+package net.lobby_simulator_companion.loop.repository.binary;
+
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Data covering the different encodings of the binary format, and assertions for comparing it.
+ *
+ * @author NickyRamone
+ */
+public final class SampleData {
+
+    private SampleData() {
+    }
+
+
+    public static LoopData loopData() {
+        Player numericIdPlayer = Player.builder()
+                .steamId64("76561198000000001")
+                .dbdPlayerId("ab12cd34-0000-0000-0000-000000000001")
+                .firstSeen(LocalDateTime.of(2020, 5, 1, 10, 0, 0))
+                .lastSeen(LocalDateTime.of(2020, 6, 3, 18, 30, 15))
+                .timesEncountered(12)
+                .matchesPlayed(10)
+                .secondsPlayed(7200)
+                .escapes(4)
+                .deaths(6)
+                .names(new ArrayList<>(Arrays.asList("Some Name", "Another Name")))
+                .rating(Player.Rating.THUMBS_DOWN)
+                .description("Camps a lot")
+                .build();
+        Player textIdPlayer = Player.builder()
+                .steamId64("not-a-number")
+                .firstSeen(LocalDateTime.of(2019, 12, 31, 23, 0, 0, 500))
+                .lastSeen(LocalDateTime.of(2019, 12, 31, 23, 59, 59))
+                // the same name as another player: goes through the string table
+                .names(new ArrayList<>(Arrays.asList("Some Name")))
+                .rating(Player.Rating.UNRATED)
+                .build();
+
+        LoopData loopData = new LoopData(new Stats(), new MatchLog(), Arrays.asList(numericIdPlayer, textIdPlayer));
+        for (Stats.Period period : Stats.Period.values()) {
+            loopData.getStats().get(period).reset(LocalDateTime.of(2020, 6, 1, 9, 0, 0));
+        }
+        for (int i = 0; i < 60; i++) {
+            Match match = Match.builder()
+                    .lobbiesFound(1 + i % 3)
+                    .secondsQueued(30 + i)
+                    .secondsWaited(90 + i)
+                    .secondsPlayed(600 + 10 * i)
+                    .matchStartTime(LocalDateTime.of(2020, 6, 1, 12, 0).plusHours(i))
+                    .escaped(i % 5 == 0 ? null : i % 2 == 0)
+                    .killer(i % 4 == 0 ? null : Killer.values()[i % Killer.values().length])
+                    .realmMap(RealmMap.values()[i % RealmMap.values().length])
+                    .killerPlayerSteamId64(i % 3 == 0 ? null : "7656119800000000" + i % 7)
+                    .killerPlayerDbdId(i % 3 == 0 ? null : "dbd-" + i % 7)
+                    .build();
+            loopData.getStats().addMatchStats(match);
+            loopData.getMatchLog().add(match);
+        }
+        loopData.setChangeLogSequence(42);
+
+        return loopData;
+    }
+
+    public static void assertSameData(LoopData actual, LoopData expected) {
+        assertThat(actual.getVersion(), equalTo(expected.getVersion()));
+        assertThat(actual.getChangeLogSequence(), equalTo(expected.getChangeLogSequence()));
+        assertThat(actual.getPlayers(), equalTo(expected.getPlayers()));
+        assertThat(new ArrayList<>(actual.getMatchLog().getMatches()),
+                equalTo(new ArrayList<>(expected.getMatchLog().getMatches())));
+
+        for (Stats.Period period : Stats.Period.values()) {
+            PeriodStats actualStats = actual.getStats().get(period);
+            PeriodStats expectedStats = expected.getStats().get(period);
+            assertThat(actualStats, equalTo(expectedStats));
+            assertThat(actualStats.getClass(), equalTo(expectedStats.getClass()));
+            assertThat(actualStats.getPeriodStart(), equalTo(expectedStats.getPeriodStart()));
+            assertThat(actualStats.getPeriodEnd(), equalTo(expectedStats.getPeriodEnd()));
+        }
+        for (MatchLog.RollingGroup group : MatchLog.RollingGroup.values()) {
+            assertThat(actual.getMatchLog().getStats(group), equalTo(expected.getMatchLog().getStats(group)));
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+package net.lobby_simulator_companion.loop.repository.changelog;
+
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.crypto.StorageCipher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class ChangeLogUTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    @Test
+    public void appendAndReplay_allChangeTypes() throws Exception {
+        // arrange
+        Player player = new Player();
+        player.setSteamId64("76561198000000001");
+        player.addName("Some Name");
+        // timestamps are stored with a precision of seconds
+        player.setFirstSeen(LocalDateTime.of(2020, 5, 1, 10, 0, 0));
+        player.setLastSeen(LocalDateTime.of(2020, 5, 3, 18, 30, 0));
+        Match match = Match.builder().secondsPlayed(300).killer(Killer.NURSE).realmMap(RealmMap.COAL_TOWER)
+                .escaped(false).build();
+        List<DataChange> changes = Arrays.asList(
+                DataChange.playerUpsert(player),
+                DataChange.matchAdd(match),
+                DataChange.statsReset(Stats.Period.WEEKLY, LocalDateTime.of(2020, 5, 4, 0, 0, 5)));
+        ChangeLog changeLog = newChangeLog();
+
+        // act
+        changeLog.append(changes);
+        changeLog.close();
+        List<DataChange> replayed = new ArrayList<>();
+        newChangeLog().replay(0, replayed::add);
+
+        // assert
+        assertThat(replayed, equalTo(changes));
+    }
+
+    @Test
+    public void replay_skipsSegmentsIncludedInSnapshot() throws Exception {
+        // arrange
+        ChangeLog changeLog = newChangeLog();
+        changeLog.append(Collections.singletonList(DataChange.matchAdd(new Match())));
+        long snapshotSequence = changeLog.roll();
+        DataChange laterChange = DataChange.statsReset(Stats.Period.DAILY, LocalDateTime.of(2020, 1, 1, 0, 0));
+        changeLog.append(Collections.singletonList(laterChange));
+        changeLog.close();
+
+        // act
+        List<DataChange> replayed = new ArrayList<>();
+        newChangeLog().replay(snapshotSequence, replayed::add);
+
+        // assert
+        assertThat(replayed, equalTo(Collections.singletonList(laterChange)));
+    }
+
+    @Test
+    public void replay_stopsAtTornRecord() throws Exception {
+        // arrange
+        ChangeLog changeLog = newChangeLog();
+        DataChange change = DataChange.matchAdd(new Match());
+        changeLog.append(Arrays.asList(change, change));
+        changeLog.close();
+        Path segment = tempFolder.getRoot().toPath().resolve("changes-00000001.log");
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        // act
+        List<DataChange> replayed = new ArrayList<>();
+        newChangeLog().replay(0, replayed::add);
+
+        // assert
+        assertThat(replayed, equalTo(Collections.singletonList(change)));
+    }
+
+    @Test
+    public void replay_stopsAtUndecodableRecordWithAValidChecksum() throws Exception {
+        // arrange
+        ChangeLog changeLog = newChangeLog();
+        DataChange change = DataChange.statsReset(Stats.Period.DAILY, LocalDateTime.of(2020, 1, 1, 0, 0));
+        DataChange laterChange = DataChange.statsReset(Stats.Period.WEEKLY, LocalDateTime.of(2020, 1, 2, 0, 0));
+        changeLog.append(Collections.singletonList(change));
+        changeLog.roll();
+        changeLog.append(Collections.singletonList(laterChange));
+        changeLog.close();
+        byte[] payload = "not an encrypted change".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        Path segment = tempFolder.getRoot().toPath().resolve("changes-00000001.log");
+        Files.write(segment, record.array(), StandardOpenOption.APPEND);
+
+        // act
+        List<DataChange> replayed = new ArrayList<>();
+        newChangeLog().replay(0, replayed::add);
+
+        // assert
+        assertThat(replayed, equalTo(Arrays.asList(change, laterChange)));
+    }
+
+    @Test
+    public void replay_readsLegacyDesSegments() throws Exception {
+        // arrange
+        DataChange change = DataChange.statsReset(Stats.Period.DAILY, LocalDateTime.of(2020, 1, 1, 0, 0));
+        byte[] payload = StorageCipher.legacyCipher(Cipher.ENCRYPT_MODE)
+                .doFinal(LoopGsonFactory.gson(false).toJson(change).getBytes(StandardCharsets.UTF_8));
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        Files.write(tempFolder.getRoot().toPath().resolve("changes-00000001.log"), record.array());
+
+        // act
+        List<DataChange> replayed = new ArrayList<>();
+        newChangeLog().replay(0, replayed::add);
+
+        // assert
+        assertThat(replayed, equalTo(Collections.singletonList(change)));
+    }
+
+    @Test
+    public void append_discardsTheRecordsOfAFailedAppend() throws Exception {
+        // arrange
+        FailingChannels channels = new FailingChannels();
+        ChangeLog changeLog = newChangeLog(channels);
+        DataChange firstChange = DataChange.statsReset(Stats.Period.DAILY, LocalDateTime.of(2020, 1, 1, 0, 0));
+        DataChange failedChange = DataChange.statsReset(Stats.Period.WEEKLY, LocalDateTime.of(2020, 1, 2, 0, 0));
+        DataChange laterChange = DataChange.statsReset(Stats.Period.MONTHLY, LocalDateTime.of(2020, 1, 3, 0, 0));
+        changeLog.append(Collections.singletonList(firstChange));
+
+        // act
+        channels.failWrites = true;
+        IOException error = null;
+        try {
+            changeLog.append(Collections.singletonList(failedChange));
+        } catch (IOException e) {
+            error = e;
+        }
+        channels.failWrites = false;
+        changeLog.append(Collections.singletonList(laterChange));
+        changeLog.close();
+        List<DataChange> replayed = new ArrayList<>();
+        newChangeLog().replay(0, replayed::add);
+
+        // assert
+        assertThat(error != null, equalTo(true));
+        assertThat(replayed, equalTo(Arrays.asList(firstChange, laterChange)));
+    }
+
+    @Test
+    public void append_movesToANewSegmentWhenAFailedAppendCannotBeDiscarded() throws Exception {
+        // arrange
+        FailingChannels channels = new FailingChannels();
+        ChangeLog changeLog = newChangeLog(channels);
+        DataChange firstChange = DataChange.statsReset(Stats.Period.DAILY, LocalDateTime.of(2020, 1, 1, 0, 0));
+        DataChange failedChange = DataChange.statsReset(Stats.Period.WEEKLY, LocalDateTime.of(2020, 1, 2, 0, 0));
+        DataChange laterChange = DataChange.statsReset(Stats.Period.MONTHLY, LocalDateTime.of(2020, 1, 3, 0, 0));
+        changeLog.append(Collections.singletonList(firstChange));
+
+        // act
+        channels.failWrites = true;
+        channels.failTruncates = true;
+        try {
+            changeLog.append(Collections.singletonList(failedChange));
+        } catch (IOException e) {
+            // expected
+        }
+        channels.failWrites = false;
+        changeLog.append(Collections.singletonList(laterChange));
+        changeLog.close();
+        List<DataChange> replayed = new ArrayList<>();
+        newChangeLog().replay(0, replayed::add);
+
+        // assert
+        assertThat(replayed, equalTo(Arrays.asList(firstChange, laterChange)));
+        assertThat(Files.exists(tempFolder.getRoot().toPath().resolve("changes-00000002.log")), equalTo(true));
+    }
+
+
+    private ChangeLog newChangeLog() {
+        return new ChangeLog(tempFolder.getRoot().toPath(), LoopGsonFactory.gson(false), true, 1024 * 1024);
+    }
+
+    private ChangeLog newChangeLog(FailingChannels channels) {
+        return new ChangeLog(tempFolder.getRoot().toPath(), LoopGsonFactory.gson(false), true, 1024 * 1024,
+                path -> new FailingChannel(channels,
+                        FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+    }
+
+
+    /**
+     * Switches to make the writes and truncations of the segments fail.
+     */
+    private static class FailingChannels {
+        private volatile boolean failWrites;
+        private volatile boolean failTruncates;
+    }
+
+    /**
+     * Segment channel which, when its writes fail, writes part of the given bytes before failing, like a full disk.
+     */
+    private static class FailingChannel extends FileChannel {
+
+        private final FailingChannels switches;
+        private final FileChannel channel;
+
+        FailingChannel(FailingChannels switches, FileChannel channel) {
+            this.switches = switches;
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (switches.failWrites) {
+                ByteBuffer part = src.duplicate();
+                part.limit(part.position() + part.remaining() / 2);
+                channel.write(part);
+                throw new IOException("No space left on device.");
+            }
+            return channel.write(src);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (switches.failTruncates) {
+                throw new IOException("Input/output error.");
+            }
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package net.lobby_simulator_companion.loop.repository.compression;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author NickyRamone
+ */
+public class BlockGzipUTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    @Test
+    public void roundTrip_inParallelAndSequentially() throws Exception {
+        for (int length : new int[]{0, 1, BLOCK_SIZE, BLOCK_SIZE + 1, 40 * BLOCK_SIZE + 17}) {
+            // arrange
+            byte[] data = sampleData(length);
+
+            // act
+            byte[] compressed = compress(data);
+            byte[] parallel = readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed),
+                    ForkJoinPool.commonPool(), 4));
+            byte[] sequential = readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed),
+                    Runnable::run, 1));
+
+            // assert
+            assertArrayEquals(data, parallel);
+            assertArrayEquals(data, sequential);
+        }
+    }
+
+    @Test
+    public void container_isReadableAsStandardGzip() throws Exception {
+        // arrange
+        byte[] data = sampleData(10 * BLOCK_SIZE + 5);
+
+        // act
+        byte[] decompressed = readAll(new GZIPInputStream(new ByteArrayInputStream(compress(data))));
+
+        // assert
+        assertArrayEquals(data, decompressed);
+    }
+
+    @Test
+    public void open_readsStandardGzipSequentially() throws Exception {
+        // arrange
+        byte[] data = sampleData(5000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzipStream = new GZIPOutputStream(out)) {
+            gzipStream.write(data);
+        }
+
+        // act
+        InputStream blockStream = BlockGzipInputStream.open(new ByteArrayInputStream(compress(data)));
+        InputStream gzipStream = BlockGzipInputStream.open(new ByteArrayInputStream(out.toByteArray()));
+
+        // assert
+        assertThat(blockStream, instanceOf(BlockGzipInputStream.class));
+        assertThat(gzipStream, instanceOf(GZIPInputStream.class));
+        assertArrayEquals(data, readAll(blockStream));
+        assertArrayEquals(data, readAll(gzipStream));
+    }
+
+    @Test
+    public void index_allowsReadingFromAnyBlock() throws Exception {
+        // arrange
+        byte[] data = sampleData(7 * BLOCK_SIZE + 300);
+        Path file = tempFolder.getRoot().toPath().resolve("data.gz");
+        Files.write(file, compress(data));
+        FileChannel channel = FileChannel.open(file);
+
+        // act
+        Optional<BlockGzipIndex> index = BlockGzipIndex.read(channel);
+        int block = index.get().blockAt(5 * BLOCK_SIZE + 10);
+        byte[] tail = readAll(BlockGzipInputStream.openAt(channel, index.get(), block));
+
+        // assert
+        assertThat(index.get().getBlockCount(), equalTo(8));
+        assertThat(block, equalTo(5));
+        assertArrayEquals(Arrays.copyOfRange(data, 5 * BLOCK_SIZE, data.length), tail);
+    }
+
+    @Test
+    public void corruptBlock_isDetected() throws Exception {
+        // arrange
+        byte[] compressed = compress(sampleData(3 * BLOCK_SIZE));
+        compressed[compressed.length / 2] ^= 0x55;
+
+        // act
+        try {
+            readAll(new BlockGzipInputStream(new ByteArrayInputStream(compressed)));
+            fail("Reading should have failed.");
+        } catch (IOException e) {
+            // assert: expected
+        }
+    }
+
+
+    /**
+     * Somewhat compressible data.
+     */
+    private static byte[] sampleData(int length) {
+        Random random = new Random(length);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream compressingStream = new BlockGzipOutputStream(out, BLOCK_SIZE, ForkJoinPool.commonPool(),
+                4)) {
+            // in uneven pieces, to cross block boundaries in the middle of a write
+            for (int offset = 0; offset < data.length; offset += 777) {
+                compressingStream.write(data, offset, Math.min(777, data.length - offset));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[333];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,140 @@
+package net.lobby_simulator_companion.loop.repository.crypto;
+
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author NickyRamone
+ */
+public class StorageCipherUTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+
+    @Test
+    public void stream_roundTrips_sequentiallyAndInParallel() throws Exception {
+        for (int length : new int[]{0, 1, CHUNK_SIZE, CHUNK_SIZE + 1, 50 * CHUNK_SIZE + 17}) {
+            // arrange
+            byte[] data = randomBytes(length);
+
+            // act
+            byte[] encrypted = encrypt(data);
+            byte[] sequential = readAll(new AesGcmInputStream(new ByteArrayInputStream(encrypted), false));
+            byte[] parallel = readAll(new AesGcmInputStream(new ByteArrayInputStream(encrypted), true));
+            byte[] detected = readAll(StorageCipher.decryptingStream(new ByteArrayInputStream(encrypted)));
+
+            // assert
+            assertArrayEquals(data, sequential);
+            assertArrayEquals(data, parallel);
+            assertArrayEquals(data, detected);
+        }
+    }
+
+    @Test
+    public void stream_failsWhenTruncatedAtChunkBoundary() throws Exception {
+        // arrange
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE));
+        int headerSize = Integer.BYTES + 1 + Integer.BYTES + AesGcmOutputStream.NONCE_PREFIX_SIZE;
+        int chunkFrameSize = Integer.BYTES + CHUNK_SIZE + StorageCipher.TAG_SIZE;
+        byte[] truncated = Arrays.copyOf(encrypted, headerSize + 2 * chunkFrameSize);
+
+        // act & assert
+        assertReadFails(truncated);
+    }
+
+    @Test
+    public void stream_failsWhenTampered() throws Exception {
+        // arrange
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE));
+        encrypted[encrypted.length / 2] ^= 1;
+
+        // act & assert
+        assertReadFails(encrypted);
+    }
+
+    @Test
+    public void decryptingStream_readsLegacyDesData() throws Exception {
+        // arrange
+        byte[] data = randomBytes(5000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream cipherStream = new CipherOutputStream(out,
+                StorageCipher.legacyCipher(Cipher.ENCRYPT_MODE))) {
+            cipherStream.write(data);
+        }
+
+        // act
+        byte[] decrypted = readAll(StorageCipher.decryptingStream(new ByteArrayInputStream(out.toByteArray())));
+
+        // assert
+        assertArrayEquals(data, decrypted);
+    }
+
+    @Test
+    public void record_roundTrips() throws Exception {
+        // arrange
+        byte[] data = randomBytes(300);
+
+        // act
+        byte[] record = StorageCipher.encrypt(data);
+
+        // assert
+        assertThat(record.length, equalTo(StorageCipher.NONCE_SIZE + data.length + StorageCipher.TAG_SIZE));
+        assertArrayEquals(data, StorageCipher.decrypt(record));
+    }
+
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] encrypt(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream encryptingStream = new AesGcmOutputStream(out, CHUNK_SIZE)) {
+            // in uneven pieces, to cross chunk boundaries in the middle of a write
+            for (int offset = 0; offset < data.length; offset += 777) {
+                encryptingStream.write(data, offset, Math.min(777, data.length - offset));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[333];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertReadFails(byte[] encrypted) {
+        for (boolean parallel : new boolean[]{false, true}) {
+            try {
+                readAll(new AesGcmInputStream(new ByteArrayInputStream(encrypted), parallel));
+                fail("Reading should have failed (parallel: " + parallel + ").");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+}
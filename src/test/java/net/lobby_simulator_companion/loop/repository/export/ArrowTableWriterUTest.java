@@ -0,0 +1,152 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Reads the written file following the Arrow IPC and FlatBuffers specifications.
+ *
+ * @author NickyRamone
+ */
+public class ArrowTableWriterUTest {
+
+    private static final int ROW_COUNT = ArrowTableWriter.BATCH_ROWS + 100;
+    private static final LocalDateTime START_TIME = LocalDateTime.of(2020, 5, 4, 21, 30);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    @Test
+    public void write_writesTheRowsInRecordBatchesListedInTheFooter() throws Exception {
+        // arrange
+        Path file = tempFolder.getRoot().toPath().resolve("matches.arrow");
+
+        // act
+        try (TableWriter<Match> writer = ExportFormat.ARROW.open(file, ExportTable.MATCHES)) {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                writer.write(newMatch(i));
+            }
+        }
+
+        // assert
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(string(bytes, 0, 6), equalTo("ARROW1"));
+        assertThat(string(bytes, bytes.capacity() - 6, 6), equalTo("ARROW1"));
+
+        int footerLength = bytes.getInt(bytes.capacity() - 10);
+        int footer = root(bytes, bytes.capacity() - 10 - footerLength);
+        assertThat(fieldNames(bytes, indirect(bytes, field(bytes, footer, 1))),
+                equalTo(ExportTable.MATCHES.getColumns().stream().map(ExportColumn::getName)
+                        .collect(Collectors.toList())));
+
+        int blocks = indirect(bytes, field(bytes, footer, 3));
+        assertThat(bytes.getInt(blocks), equalTo(2));
+        List<Integer> rowsPerBatch = new ArrayList<>();
+        int row = 0;
+        for (int block = 0; block < 2; block++) {
+            int blockPosition = blocks + Integer.BYTES + block * 24;
+            int messageStart = (int) bytes.getLong(blockPosition);
+            int metadataLength = bytes.getInt(blockPosition + 8);
+            assertThat(bytes.getInt(messageStart), equalTo(-1));
+            assertThat((messageStart + metadataLength) % 8, equalTo(0));
+
+            int message = root(bytes, messageStart + 8);
+            assertThat(bytes.get(field(bytes, message, 1)), equalTo((byte) 3));
+            int recordBatch = indirect(bytes, field(bytes, message, 2));
+            int rows = (int) bytes.getLong(field(bytes, recordBatch, 0));
+            rowsPerBatch.add(rows);
+
+            int body = messageStart + metadataLength;
+            int nodes = indirect(bytes, field(bytes, recordBatch, 1));
+            int buffers = indirect(bytes, field(bytes, recordBatch, 2));
+            // start_time: validity, values
+            assertThat(bytes.getLong(nodes + Integer.BYTES + 8), equalTo(0L));
+            long startTimes = body + bytes.getLong(buffers + Integer.BYTES + 16);
+            // killer: validity, offsets, data
+            long killerValidity = body + bytes.getLong(buffers + Integer.BYTES + 2 * 16);
+            long killerOffsets = body + bytes.getLong(buffers + Integer.BYTES + 3 * 16);
+            long killerData = body + bytes.getLong(buffers + Integer.BYTES + 4 * 16);
+            for (int i = 0; i < rows; i++, row++) {
+                long expectedTime = START_TIME.plusMinutes(row).toInstant(ZoneOffset.UTC).toEpochMilli();
+                assertThat(bytes.getLong((int) startTimes + i * 8), equalTo(expectedTime));
+                boolean valid = (bytes.get((int) killerValidity + i / 8) & (1 << (i % 8))) != 0;
+                assertThat(valid, equalTo(row % 3 != 0));
+                if (valid) {
+                    int start = bytes.getInt((int) killerOffsets + i * 4);
+                    int end = bytes.getInt((int) killerOffsets + (i + 1) * 4);
+                    assertThat(string(bytes, (int) killerData + start, end - start), equalTo(Killer.HAG.name()));
+                }
+            }
+        }
+        assertThat(rowsPerBatch.get(0), equalTo(ArrowTableWriter.BATCH_ROWS));
+        assertThat(row, equalTo(ROW_COUNT));
+    }
+
+
+    private static Match newMatch(int i) {
+        return Match.builder()
+                .matchStartTime(START_TIME.plusMinutes(i))
+                .killer(i % 3 == 0 ? null : Killer.HAG)
+                .escaped(i % 2 == 0)
+                .secondsPlayed(i)
+                .build();
+    }
+
+    private static List<String> fieldNames(ByteBuffer bytes, int schema) {
+        int fields = indirect(bytes, field(bytes, schema, 1));
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < bytes.getInt(fields); i++) {
+            int fieldTable = indirect(bytes, fields + Integer.BYTES + i * Integer.BYTES);
+            int name = indirect(bytes, field(bytes, fieldTable, 0));
+            names.add(string(bytes, name + Integer.BYTES, bytes.getInt(name)));
+        }
+        return names;
+    }
+
+    private static int root(ByteBuffer bytes, int bufferStart) {
+        return indirect(bytes, bufferStart);
+    }
+
+    private static int indirect(ByteBuffer bytes, int position) {
+        return position + bytes.getInt(position);
+    }
+
+    /**
+     * @return the position of a field of a table, which must be present.
+     */
+    private static int field(ByteBuffer bytes, int table, int field) {
+        int vtable = table - bytes.getInt(table);
+        int vtableSize = bytes.getShort(vtable);
+        assertThat(4 + 2 * field < vtableSize, equalTo(true));
+        int offset = bytes.getShort(vtable + 4 + 2 * field);
+        assertThat(offset > 0, equalTo(true));
+        return table + offset;
+    }
+
+    private static String string(ByteBuffer bytes, int position, int length) {
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = bytes.get(position + i);
+        }
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,62 @@
+package net.lobby_simulator_companion.loop.repository.export;
+
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class CsvTableWriterUTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    @Test
+    public void write_writesAHeaderAndOneLinePerRow() throws Exception {
+        // arrange
+        Path file = tempFolder.getRoot().toPath().resolve("matches.csv");
+        Match match = Match.builder()
+                .matchStartTime(LocalDateTime.of(2020, 5, 4, 21, 30, 15))
+                .killer(Killer.TRAPPER)
+                .realmMap(RealmMap.COAL_TOWER)
+                .escaped(true)
+                .lobbiesFound(2)
+                .secondsPlayed(600)
+                .killerPlayerSteamId64("76561198000000001")
+                .killerPlayerDbdId("say \"hi\", bye")
+                .build();
+
+        // act
+        long rowCount;
+        try (TableWriter<Match> writer = ExportFormat.CSV.open(file, ExportTable.MATCHES)) {
+            writer.write(match);
+            writer.write(new Match());
+            rowCount = writer.rowCount();
+        }
+
+        // assert
+        List<String> lines = Arrays.asList(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).split("\r\n"));
+        assertThat(rowCount, equalTo(2L));
+        assertThat(lines, equalTo(Arrays.asList(
+                "start_time,killer,realm_map,escaped,lobbies_found,seconds_queued,seconds_waited,seconds_played,"
+                        + "killer_player_steam_id,killer_player_dbd_id",
+                "2020-05-04 21:30:15,TRAPPER,COAL_TOWER,true,2,,,600,76561198000000001,\"say \"\"hi\"\", bye\"",
+                ",,,,,,,,,")));
+    }
+
+}
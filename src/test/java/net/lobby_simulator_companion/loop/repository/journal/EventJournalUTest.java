@@ -0,0 +1,175 @@
+package net.lobby_simulator_companion.loop.repository.journal;
+
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.Survivor;
+import net.lobby_simulator_companion.loop.service.PlayerDto;
+import net.lobby_simulator_companion.loop.service.log_processing.DbdLogEvent;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.dto.ChaseEvent;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.dto.HitEvent;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class EventJournalUTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer");
+
+
+    @Test
+    public void appendAndScan_allEventTypes() throws Exception {
+        // arrange
+        Path journalDir = tempFolder.getRoot().toPath();
+        List<JournalEntry> expected = Arrays.asList(
+                new JournalEntry(1, DbdLogEvent.MATCH_WAIT, null),
+                new JournalEntry(2, DbdLogEvent.SERVER_CONNECT, InetSocketAddress.createUnresolved("10.0.0.1", 7777)),
+                new JournalEntry(3, DbdLogEvent.KILLER_PLAYER, new PlayerDto("76561198000000000", "dbd-id")),
+                new JournalEntry(4, DbdLogEvent.KILLER_CHARACTER, Killer.HILLBILLY),
+                new JournalEntry(5, DbdLogEvent.MAP_GENERATE, RealmMap.COAL_TOWER),
+                new JournalEntry(6, DbdLogEvent.MATCH_START, null),
+                new JournalEntry(7, DbdLogEvent.CHASE_START,
+                        new ChaseEvent(LocalDateTime.of(2020, 7, 13, 19, 59, 9, 349_000_000), Survivor.MEG_THOMAS, 1)),
+                new JournalEntry(8, DbdLogEvent.KILLER_HIT, new HitEvent(Survivor.MEG_THOMAS, 1, "Some Player")),
+                new JournalEntry(9, DbdLogEvent.CHASE_END,
+                        new ChaseEvent(LocalDateTime.of(2020, 7, 13, 20, 0, 1), Survivor.MEG_THOMAS, 1)),
+                new JournalEntry(10, DbdLogEvent.USER_LEFT_REALM, null),
+                new JournalEntry(11, DbdLogEvent.MATCH_END, true),
+                new JournalEntry(12, DbdLogEvent.SERVER_DISCONNECT, null)
+        );
+
+        // act
+        EventJournal journal = new EventJournal(journalDir, 1024 * 1024, timer);
+        journal.open();
+        for (JournalEntry entry : expected) {
+            journal.append(entry.getTimestamp(), entry.getEvent(), entry.getValue());
+        }
+        journal.close();
+
+        // assert
+        assertThat(scan(journalDir), equalTo(expected));
+    }
+
+
+    @Test
+    public void append_skipsEventsTooLargeForARecord() throws Exception {
+        // arrange
+        Path journalDir = tempFolder.getRoot().toPath();
+        JournalEntry entry = new JournalEntry(3, DbdLogEvent.MATCH_START, null);
+        EventJournal journal = new EventJournal(journalDir, 1024 * 1024, timer);
+        journal.open();
+
+        // act
+        journal.append(1, DbdLogEvent.KILLER_HIT, new HitEvent(Survivor.MEG_THOMAS, 1, StringUtils.repeat('a', 10_000)));
+        journal.append(2, DbdLogEvent.KILLER_HIT, new HitEvent(Survivor.MEG_THOMAS, 1, StringUtils.repeat('a', 70_000)));
+        journal.append(entry.getTimestamp(), entry.getEvent(), entry.getValue());
+        journal.close();
+
+        // assert
+        assertThat(scan(journalDir), equalTo(Collections.singletonList(entry)));
+    }
+
+    @Test
+    public void periodicSync_isHandedOverToTheSyncExecutor() throws Exception {
+        // arrange
+        Path journalDir = tempFolder.getRoot().toPath();
+        HashedWheelTimer runningTimer = new HashedWheelTimer("test-timer", Clock.systemUTC(), 10, 64);
+        Queue<Runnable> syncTasks = new ConcurrentLinkedQueue<>();
+        EventJournal journal = new EventJournal(journalDir, 1024 * 1024, runningTimer, syncTasks::add);
+        JournalEntry entry = new JournalEntry(1, DbdLogEvent.MATCH_START, null);
+        runningTimer.start();
+        journal.open();
+        journal.append(entry.getTimestamp(), entry.getEvent(), entry.getValue());
+
+        // act
+        Thread.sleep(2500);
+        List<JournalEntry> scannedBeforeSync = scan(journalDir);
+        int pendingSyncs = syncTasks.size();
+        syncTasks.forEach(Runnable::run);
+        runningTimer.stop();
+
+        // assert
+        assertThat(pendingSyncs, equalTo(1));
+        assertThat(scannedBeforeSync.isEmpty(), equalTo(true));
+        assertThat(scan(journalDir), equalTo(Collections.singletonList(entry)));
+        journal.close();
+    }
+
+    @Test
+    public void append_rollsSegmentsAndKeepsOrderAcrossSessions() throws Exception {
+        // arrange
+        Path journalDir = tempFolder.getRoot().toPath();
+        List<JournalEntry> expected = new ArrayList<>();
+
+        // act
+        for (int session = 0; session < 2; session++) {
+            EventJournal journal = new EventJournal(journalDir, 256, timer);
+            journal.open();
+            for (int i = 0; i < 100; i++) {
+                JournalEntry entry = new JournalEntry(session * 100 + i, DbdLogEvent.KILLER_CHARACTER, Killer.NURSE);
+                journal.append(entry.getTimestamp(), entry.getEvent(), entry.getValue());
+                expected.add(entry);
+            }
+            journal.close();
+        }
+
+        // assert
+        assertThat(EventJournalReader.listSegments(journalDir).size() > 2, equalTo(true));
+        assertThat(scan(journalDir), equalTo(expected));
+    }
+
+
+    @Test
+    public void scan_stopsAtTornTail() throws Exception {
+        // arrange
+        Path journalDir = tempFolder.getRoot().toPath();
+        EventJournal journal = new EventJournal(journalDir, 1024 * 1024, timer);
+        journal.open();
+        journal.append(1, DbdLogEvent.MATCH_WAIT, null);
+        journal.append(2, DbdLogEvent.MAP_GENERATE, RealmMap.THE_GAME);
+        journal.close();
+
+        Path segment = EventJournalReader.listSegments(journalDir).get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        // act
+        List<JournalEntry> entries = scan(journalDir);
+
+        // assert
+        assertThat(entries, equalTo(Arrays.asList(new JournalEntry(1, DbdLogEvent.MATCH_WAIT, null))));
+    }
+
+
+    private List<JournalEntry> scan(Path journalDir) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        new EventJournalReader(journalDir).scan(entries::add);
+
+        return entries;
+    }
+
+}
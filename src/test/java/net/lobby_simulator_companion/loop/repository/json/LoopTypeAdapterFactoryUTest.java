@@ -0,0 +1,82 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.binary.SampleData;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class LoopTypeAdapterFactoryUTest {
+
+    private final Gson gson = LoopGsonFactory.gson(false);
+    private final Gson reflectiveGson = ReflectiveLoopGson.gson();
+
+
+    @Test
+    public void write_producesTheSameJsonAsTheReflectiveBinding() {
+        // arrange
+        LoopData loopData = SampleData.loopData();
+
+        // act
+        String json = gson.toJson(loopData);
+
+        // assert
+        assertThat(json, equalTo(reflectiveGson.toJson(loopData)));
+    }
+
+    @Test
+    public void read_keepsAllTheDataWrittenByTheReflectiveBinding() {
+        // arrange
+        String json = reflectiveGson.toJson(SampleData.loopData());
+
+        // act
+        LoopData loopData = gson.fromJson(json, LoopData.class);
+
+        // assert
+        SampleData.assertSameData(loopData, reflectiveGson.fromJson(json, LoopData.class));
+    }
+
+    @Test
+    public void dataChanges_roundTrip() {
+        // arrange
+        Player player = Player.builder()
+                .steamId64("76561198000000001")
+                .firstSeen(LocalDateTime.of(2020, 5, 1, 10, 0, 0))
+                .lastSeen(LocalDateTime.of(2020, 5, 2, 10, 0, 0))
+                .names(Arrays.asList("Some Name"))
+                .rating(Player.Rating.THUMBS_UP)
+                .build();
+        Match match = Match.builder()
+                .lobbiesFound(2)
+                .secondsPlayed(600)
+                .matchStartTime(LocalDateTime.of(2020, 5, 1, 11, 0, 0))
+                .escaped(false)
+                .build();
+        List<DataChange> changes = Arrays.asList(DataChange.playerUpsert(player), DataChange.matchAdd(match),
+                DataChange.statsReset(Stats.Period.WEEKLY, LocalDateTime.of(2020, 5, 4, 0, 0, 5)));
+
+        for (DataChange change : changes) {
+            // act
+            String json = gson.toJson(change);
+
+            // assert
+            assertThat(json, equalTo(reflectiveGson.toJson(change)));
+            assertThat(gson.fromJson(json, DataChange.class), equalTo(change));
+        }
+    }
+
+}
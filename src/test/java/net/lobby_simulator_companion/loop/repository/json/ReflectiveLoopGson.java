@@ -0,0 +1,84 @@
+package net.lobby_simulator_companion.loop.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.DailyStats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.GlobalStats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.MonthlyStats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.WeeklyStats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.YearlyStats;
+import net.lobby_simulator_companion.loop.util.gson.LowercaseEnumTypeAdapterFactory;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+
+/**
+ * The Gson configuration used before the stored classes had their own adapters: reflective binding, plus tree-based
+ * adapters for the stats, the match log and times. Used as the reference for compatibility and performance.
+ *
+ * @author NickyRamone
+ */
+public final class ReflectiveLoopGson {
+
+    private ReflectiveLoopGson() {
+    }
+
+
+    public static Gson gson() {
+        return new GsonBuilder()
+                .enableComplexMapKeySerialization()
+                .registerTypeAdapter(LocalDateTime.class, (JsonSerializer<LocalDateTime>) (src, type, context) ->
+                        new JsonPrimitive(src.toEpochSecond(OffsetDateTime.now().getOffset())))
+                .registerTypeAdapter(LocalDateTime.class, (JsonDeserializer<LocalDateTime>) (json, type, context) ->
+                        LocalDateTime.ofEpochSecond(json.getAsLong(), 0, OffsetDateTime.now().getOffset()))
+                .registerTypeAdapter(Stats.class, (JsonSerializer<Stats>) (src, type, context) -> {
+                    JsonObject jsonObj = new JsonObject();
+                    for (Stats.Period period : Stats.Period.values()) {
+                        jsonObj.add(period.name().toLowerCase(), context.serialize(src.get(period)));
+                    }
+                    return jsonObj;
+                })
+                .registerTypeAdapter(Stats.class, (JsonDeserializer<Stats>) (json, type, context) -> {
+                    Stats result = new Stats();
+                    json.getAsJsonObject().entrySet().forEach(e -> {
+                        Stats.Period period = Stats.Period.valueOf(e.getKey().toUpperCase());
+                        PeriodStats periodStats = context.deserialize(e.getValue(), periodStatsClass(period));
+                        result.get(period).restore(periodStats, periodStats.getPeriodStart(),
+                                periodStats.getPeriodEnd());
+                    });
+                    return result;
+                })
+                .registerTypeAdapter(MatchLog.class, (JsonDeserializer<MatchLog>) (json, type, context) -> {
+                    MatchLog result = new MatchLog();
+                    json.getAsJsonObject().getAsJsonArray("matches")
+                            .forEach(e -> result.add(context.deserialize(e, Match.class)));
+                    return result;
+                })
+                .registerTypeAdapterFactory(new LowercaseEnumTypeAdapterFactory())
+                .create();
+    }
+
+    private static Class<? extends PeriodStats> periodStatsClass(Stats.Period period) {
+        switch (period) {
+            case DAILY:
+                return DailyStats.class;
+            case WEEKLY:
+                return WeeklyStats.class;
+            case MONTHLY:
+                return MonthlyStats.class;
+            case YEARLY:
+                return YearlyStats.class;
+            default:
+                return GlobalStats.class;
+        }
+    }
+
+}
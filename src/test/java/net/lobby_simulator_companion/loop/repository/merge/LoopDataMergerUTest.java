@@ -0,0 +1,169 @@
+package net.lobby_simulator_companion.loop.repository.merge;
+
+import com.google.gson.Gson;
+import net.lobby_simulator_companion.loop.config.AppProperties;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.LoopRepository;
+import net.lobby_simulator_companion.loop.repository.archive.MatchArchive;
+import net.lobby_simulator_companion.loop.repository.changelog.ChangeLog;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author NickyRamone
+ */
+public class LoopDataMergerUTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2020, 3, 10, 18, 0);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Gson gson = LoopGsonFactory.gson(false);
+    private AppProperties properties;
+    private LoopDataMerger merger;
+
+
+    @Before
+    public void setUp() {
+        properties = mock(AppProperties.class);
+        when(properties.get("storage.file")).thenReturn("loop.dat");
+        when(properties.get("storage.write.format")).thenReturn("binary");
+        when(properties.get("storage.player_shards.dir")).thenReturn("player-shards");
+        when(properties.getInt("storage.player_shards.count")).thenReturn(2);
+        when(properties.get("storage.changelog.dir")).thenReturn("changes");
+        when(properties.get("storage.match_archive.dir")).thenReturn("matches");
+        merger = new LoopDataMerger(properties, gson, 4, 2);
+    }
+
+
+    @Test
+    public void merge_mergesThePlayersWithTheSameSteamId() throws Exception {
+        // arrange
+        Player firstPlayer = newPlayer("1", TIME, "name a", 2);
+        Player updatedFirstPlayer = newPlayer("1", TIME.plusDays(1), "name c", 3);
+        save(home("a"), Arrays.asList(firstPlayer, newPlayer("2", TIME, "other", 1)));
+        appendChanges(home("a"), DataChange.playerUpsert(updatedFirstPlayer));
+        Player sameFirstPlayer = newPlayer("1", TIME.minusDays(1), "name b", 4);
+        sameFirstPlayer.setRating(Player.Rating.THUMBS_DOWN);
+        save(home("b"), Collections.singletonList(sameFirstPlayer));
+
+        // act
+        LoopDataMerger.MergeReport report = merger.merge(Arrays.asList(home("a"), home("b")), home("merged"));
+
+        // assert
+        List<Player> players = load(home("merged")).getPlayers();
+        players.sort(Comparator.comparing(Player::getSteamId64));
+        assertThat(report.getPlayersRead(), equalTo(4L));
+        assertThat(report.getPlayers(), equalTo(2));
+        assertThat(players.size(), equalTo(2));
+        Player mergedPlayer = players.get(0);
+        assertThat(mergedPlayer.getNames(), equalTo(Arrays.asList("name b", "name c")));
+        assertThat(mergedPlayer.getTimesEncountered(), equalTo(7));
+        assertThat(mergedPlayer.getFirstSeen(), equalTo(TIME.minusDays(1)));
+        assertThat(mergedPlayer.getLastSeen(), equalTo(TIME.plusDays(1)));
+        assertThat(mergedPlayer.getRating(), equalTo(Player.Rating.THUMBS_DOWN));
+        assertThat(players.get(1).getNames(), equalTo(Collections.singletonList("other")));
+    }
+
+    @Test
+    public void merge_mergesTheMatchesByTimeWithoutDuplicates() throws Exception {
+        // arrange
+        List<Match> matches = Arrays.asList(newMatch(0), newMatch(1), newMatch(2), newMatch(3));
+        try (MatchArchive archive = MatchArchive.open(home("a").resolve("matches"))) {
+            archive.append(matches.get(0));
+            archive.append(matches.get(2));
+        }
+        save(home("a"), Collections.emptyList(), matches.get(0), matches.get(2));
+        appendChanges(home("a"), DataChange.matchAdd(matches.get(3)));
+        save(home("b"), Collections.emptyList(), matches.get(1), matches.get(2));
+
+        // act
+        LoopDataMerger.MergeReport report = merger.merge(Arrays.asList(home("a"), home("b")), home("merged"));
+
+        // assert
+        assertThat(report.getMatches(), equalTo(4L));
+        List<Match> archivedMatches = new ArrayList<>();
+        try (MatchArchive archive = MatchArchive.open(home("merged").resolve("matches"))) {
+            for (long i = 0; i < archive.size(); i++) {
+                archivedMatches.add(archive.get(i));
+            }
+        }
+        assertThat(archivedMatches, equalTo(matches));
+        LoopData mergedData = load(home("merged"));
+        assertThat(new ArrayList<>(mergedData.getMatchLog().getMatches()), equalTo(matches));
+        assertThat(mergedData.getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(), equalTo(4));
+    }
+
+
+    private Path home(String name) {
+        return tempFolder.getRoot().toPath().resolve(name);
+    }
+
+    private void save(Path home, List<Player> players, Match... matches) throws IOException {
+        LoopData data = new LoopData();
+        for (Match match : matches) {
+            data.getStats().addMatchStats(match);
+            data.getMatchLog().add(match);
+        }
+        new LoopRepository(properties, gson, home).save(data, players);
+    }
+
+    private LoopData load(Path home) throws IOException {
+        return new LoopRepository(properties, gson, home).load();
+    }
+
+    private void appendChanges(Path home, DataChange... changes) throws IOException {
+        ChangeLog changeLog = new ChangeLog(home.resolve("changes"), LoopGsonFactory.gson(false), false, 0);
+        changeLog.append(Arrays.asList(changes), true);
+        changeLog.close();
+    }
+
+    private static Player newPlayer(String steamId, LocalDateTime lastSeen, String name, int timesEncountered) {
+        Player player = new Player();
+        player.setSteamId64(steamId);
+        player.setFirstSeen(lastSeen);
+        player.setLastSeen(lastSeen);
+        player.setTimesEncountered(timesEncountered);
+        player.addName(name);
+        return player;
+    }
+
+    private static Match newMatch(int index) {
+        return Match.builder()
+                .lobbiesFound(1)
+                .secondsQueued(10)
+                .secondsWaited(20)
+                .secondsPlayed(600 + index)
+                .matchStartTime(TIME.plusHours(index))
+                .killer(Killer.TRAPPER)
+                .realmMap(RealmMap.COAL_TOWER)
+                .escaped(index % 2 == 0)
+                .killerPlayerSteamId64(String.valueOf(100 + index))
+                .build();
+    }
+
+}
@@ -0,0 +1,230 @@
+package net.lobby_simulator_companion.loop.repository.migration;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.binary.SampleData;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class LoopDataMigratorUTest {
+
+    private static final String FIXTURE_PATH = "/migration/loop-v%d.json";
+
+    private final Gson gson = LoopGsonFactory.gson(false);
+
+
+    @Test
+    public void fixtures_ofEveryVersionAreRead() throws IOException {
+        LoopDataMigrator migrator = new LoopDataMigrator();
+        int fixturesRead = 0;
+
+        for (int version = 1; version <= LoopData.CURRENT_VERSION; version++) {
+            InputStream fixture = getClass().getResourceAsStream(String.format(FIXTURE_PATH, version));
+            if (fixture == null) {
+                continue;
+            }
+            try (InputStream inputStream = new BufferedInputStream(fixture)) {
+                // arrange
+                int storedVersion = LoopDataMigrator.peekVersion(inputStream);
+                JsonReader reader = gson.newJsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+                // act
+                LoopData loopData = gson.fromJson(migrator.migrate(reader, storedVersion), LoopData.class);
+
+                // assert
+                assertThat(storedVersion, equalTo(version));
+                assertThat(loopData.getPlayers().size(), equalTo(2));
+                assertThat(loopData.getPlayers().get(0).getSteamId64(), equalTo("76561198000000001"));
+                assertThat(loopData.getMatchLog().matchCount(), equalTo(60));
+                fixturesRead++;
+            }
+        }
+
+        assertThat(fixturesRead > 0, equalTo(true));
+    }
+
+    @Test
+    public void migrate_keepsAllTheDataThroughCompatibleMigrations() throws IOException {
+        // arrange
+        String json = gson.toJson(SampleData.loopData()).replaceFirst("\"version\":3", "\"version\":1");
+        LoopDataMigrator migrator = new LoopDataMigrator();
+
+        // act
+        LoopData loopData = gson.fromJson(migrator.migrate(jsonReader(json), 1), LoopData.class);
+
+        // assert
+        SampleData.assertSameData(loopData, gson.fromJson(json, LoopData.class));
+    }
+
+    @Test
+    public void migrate_chainsTheMigrationsInOrder() throws IOException {
+        // arrange
+        String json = "{\"version\":1,\"players\":[{\"steamId64\":\"76561198000000001\",\"name\":\"Some Name\","
+                + "\"score\":{\"kills\":[1,2]},\"rating\":\"1\"}],\"changeLogSequence\":7}";
+        LoopDataMigrator migrator = new LoopDataMigrator(Arrays.asList(
+                NameToNamesMigration::new, DropScoreAddDescriptionMigration::new));
+
+        // act
+        JsonObject migrated = new JsonParser().parse(migrator.migrate(jsonReader(json), 1)).getAsJsonObject();
+        LoopData loopData = gson.fromJson(migrator.migrate(jsonReader(json), 1), LoopData.class);
+
+        // assert
+        assertThat(migrated.toString(), equalTo("{\"version\":3,\"players\":[{\"steamId64\":\"76561198000000001\","
+                + "\"names\":[\"Some Name\"],\"rating\":\"1\",\"description\":\"Migrated\"}],"
+                + "\"changeLogSequence\":7}"));
+        Player player = loopData.getPlayers().get(0);
+        assertThat(player.getNames(), equalTo(Collections.singletonList("Some Name")));
+        assertThat(player.getDescription(), equalTo("Migrated"));
+        assertThat(loopData.getChangeLogSequence(), equalTo(7L));
+    }
+
+    @Test
+    public void migrate_startsAtTheVersionOfTheData() throws IOException {
+        // arrange
+        String json = "{\"version\":2,\"players\":[{\"name\":\"Not Renamed\",\"score\":1}]}";
+        LoopDataMigrator migrator = new LoopDataMigrator(Arrays.asList(
+                NameToNamesMigration::new, DropScoreAddDescriptionMigration::new));
+
+        // act
+        JsonObject migrated = new JsonParser().parse(migrator.migrate(jsonReader(json), 2)).getAsJsonObject();
+
+        // assert
+        assertThat(migrated.toString(), equalTo(
+                "{\"version\":3,\"players\":[{\"name\":\"Not Renamed\",\"description\":\"Migrated\"}]}"));
+    }
+
+    @Test
+    public void migrate_returnsTheSameReaderForCurrentData() throws IOException {
+        // arrange
+        JsonReader reader = jsonReader("{}");
+
+        // act
+        JsonReader result = new LoopDataMigrator().migrate(reader, LoopData.CURRENT_VERSION);
+
+        // assert
+        assertThat(result == reader, equalTo(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void migrate_rejectsDataOfNewerVersions() throws IOException {
+        new LoopDataMigrator().migrate(jsonReader("{}"), LoopData.CURRENT_VERSION + 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void migrate_rejectsVersionsWithoutMigration() throws IOException {
+        new LoopDataMigrator(Collections.emptyList()).migrate(jsonReader("{}"), 1);
+    }
+
+    @Test
+    public void peekVersion_leavesTheStreamAtItsStart() throws IOException {
+        // arrange
+        String json = "{\"version\":2,\"players\":[]}";
+        InputStream inputStream = new BufferedInputStream(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        // act
+        int version = LoopDataMigrator.peekVersion(inputStream);
+
+        // assert
+        assertThat(version, equalTo(2));
+        assertThat(readAll(inputStream), equalTo(json));
+    }
+
+    @Test
+    public void peekVersion_treatsDataWithoutLeadingVersionAsCurrent() throws IOException {
+        // arrange
+        InputStream inputStream = new BufferedInputStream(
+                new ByteArrayInputStream("{\"players\":[],\"version\":1}".getBytes(StandardCharsets.UTF_8)));
+
+        // act
+        int version = LoopDataMigrator.peekVersion(inputStream);
+
+        // assert
+        assertThat(version, equalTo(LoopData.CURRENT_VERSION));
+        assertThat(inputStream.read(), equalTo((int) '{'));
+    }
+
+    private JsonReader jsonReader(String json) {
+        return gson.newJsonReader(new StringReader(json));
+    }
+
+    private static String readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int b;
+        while ((b = inputStream.read()) >= 0) {
+            bytes.write(b);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Turns the single name of each player into a list of names.
+     */
+    private static class NameToNamesMigration extends SchemaMigration {
+        @Override
+        public int fromVersion() {
+            return 1;
+        }
+
+        @Override
+        protected void transform(JsonEvent event) {
+            if (isAt("players", ANY_ELEMENT, "name")) {
+                if (event.getToken() == JsonToken.NAME) {
+                    emit(JsonEvent.name("names"));
+                } else {
+                    emit(JsonEvent.BEGIN_ARRAY);
+                    emit(event);
+                    emit(JsonEvent.END_ARRAY);
+                }
+            } else {
+                emit(event);
+            }
+        }
+    }
+
+    /**
+     * Drops the score of each player, and adds a description.
+     */
+    private static class DropScoreAddDescriptionMigration extends SchemaMigration {
+        @Override
+        public int fromVersion() {
+            return 2;
+        }
+
+        @Override
+        protected void transform(JsonEvent event) throws IOException {
+            if (isAt("players", ANY_ELEMENT, "score")) {
+                skipValue();
+                return;
+            }
+            if (isAt("players", ANY_ELEMENT) && event.getToken() == JsonToken.END_OBJECT) {
+                emitProperty("description", JsonEvent.string("Migrated"));
+            }
+            emit(event);
+        }
+    }
+
+}
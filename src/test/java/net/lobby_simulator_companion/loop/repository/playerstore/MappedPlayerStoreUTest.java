@@ -0,0 +1,140 @@
+package net.lobby_simulator_companion.loop.repository.playerstore;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * @author NickyRamone
+ */
+public class MappedPlayerStoreUTest {
+
+    private static final int CACHE_SIZE = 10;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private MappedPlayerStore store;
+
+
+    @Before
+    public void setUp() throws Exception {
+        store = MappedPlayerStore.open(tempFolder.getRoot().toPath(), CACHE_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+
+    @Test
+    public void get_returnsStoredPlayers_whenNotCached() {
+        // arrange
+        Player numericIdPlayer = Player.builder()
+                .steamId64("76561198000000001")
+                .dbdPlayerId("ab12cd34")
+                .firstSeen(LocalDateTime.of(2020, 5, 1, 10, 0, 0, 123))
+                .lastSeen(LocalDateTime.of(2020, 6, 3, 18, 30, 15))
+                .timesEncountered(12)
+                .matchesPlayed(10)
+                .secondsPlayed(7200)
+                .escapes(4)
+                .deaths(6)
+                .names(new ArrayList<>(Arrays.asList("Some Name", "Ñame")))
+                .rating(Player.Rating.THUMBS_DOWN)
+                .description("Camps a lot")
+                .build();
+        Player textIdPlayer = Player.builder()
+                .steamId64("not-a-number")
+                .names(null)
+                .rating(null)
+                .build();
+
+        // act
+        store.put(numericIdPlayer);
+        store.put(textIdPlayer);
+        // push them out of the cache
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            store.put(newPlayer(i, 0));
+        }
+
+        // assert
+        assertThat(store.get("76561198000000001"), equalTo(numericIdPlayer));
+        assertThat(store.get("not-a-number"), equalTo(textIdPlayer));
+        assertThat(store.get("76561198000000002"), nullValue());
+        assertThat(store.size(), equalTo(CACHE_SIZE + 2));
+    }
+
+    @Test
+    public void put_replacesPlayer_andPutIfAbsentDoesNot() {
+        // arrange
+        store.put(newPlayer(1, 1));
+
+        // act
+        store.put(newPlayer(1, 2));
+        boolean stored = store.putIfAbsent(newPlayer(1, 3));
+
+        // assert
+        assertThat(stored, equalTo(false));
+        assertThat(store.get(steamId(1)).getMatchesPlayed(), equalTo(2));
+        assertThat(store.size(), equalTo(1));
+        List<Player> players = new ArrayList<>();
+        store.players().forEach(players::add);
+        assertThat(players, equalTo(Arrays.asList(newPlayer(1, 2))));
+    }
+
+    @Test
+    public void manyPlayers_growIndexAndRecords() {
+        // arrange
+        int playerCount = 200_000;
+        for (int i = 0; i < playerCount; i++) {
+            store.putIfAbsent(newPlayer(i, i % 7));
+        }
+
+        // act
+        for (int i = 0; i < playerCount; i += 2) {
+            store.put(newPlayer(i, 100));
+        }
+
+        // assert
+        assertThat(store.size(), equalTo(playerCount));
+        for (int i = 0; i < playerCount; i += 997) {
+            assertThat(store.get(steamId(i)), equalTo(newPlayer(i, i % 2 == 0 ? 100 : i % 7)));
+        }
+        Map<String, Player> players = new HashMap<>();
+        store.players().forEach(player -> players.put(player.getSteamId64(), player));
+        assertThat(players.size(), equalTo(playerCount));
+        assertThat(players.get(steamId(2)).getMatchesPlayed(), equalTo(100));
+    }
+
+
+    private static String steamId(int i) {
+        return String.valueOf(76561197960265728L + i);
+    }
+
+    private static Player newPlayer(int i, int matchesPlayed) {
+        return Player.builder()
+                .steamId64(steamId(i))
+                .firstSeen(LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(i))
+                .lastSeen(LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(i * 2L))
+                .matchesPlayed(matchesPlayed)
+                .names(new ArrayList<>(Arrays.asList("name " + i)))
+                .build();
+    }
+
+}
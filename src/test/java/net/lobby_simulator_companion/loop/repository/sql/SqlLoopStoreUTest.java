@@ -0,0 +1,260 @@
+package net.lobby_simulator_companion.loop.repository.sql;
+
+import com.google.gson.Gson;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.domain.stats.periodic.PeriodStats;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
+import net.lobby_simulator_companion.loop.repository.TieredLoad;
+import net.lobby_simulator_companion.loop.repository.binary.SampleData;
+import net.lobby_simulator_companion.loop.repository.changelog.DataChange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author NickyRamone
+ */
+public class SqlLoopStoreUTest {
+
+    private static final String STEAM_ID = "76561198000000001";
+    private static final String OTHER_STEAM_ID = "76561198000000002";
+    private static final LocalDateTime TIME = LocalDateTime.of(2020, 3, 10, 18, 0);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Gson gson = LoopGsonFactory.gson(false);
+    private SqlLoopStore store;
+
+
+    @Before
+    public void setUp() throws IOException {
+        store = SqlLoopStore.open(tempFolder.getRoot().toPath().resolve("loop-db"), gson);
+        store.load().close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+
+    @Test
+    public void writtenChanges_areLoadedAfterReopening() throws IOException {
+        // arrange
+        store.write(Arrays.asList(
+                DataChange.playerUpsert(newPlayer(STEAM_ID, "first")),
+                DataChange.matchAdd(newMatch(STEAM_ID, TIME)),
+                DataChange.playerUpsert(newPlayer(STEAM_ID, "second"))), true);
+        store.write(Arrays.asList(DataChange.matchAdd(newMatch(OTHER_STEAM_ID, TIME.plusHours(1)))), true);
+        store.close();
+
+        // act
+        store = SqlLoopStore.open(tempFolder.getRoot().toPath().resolve("loop-db"), gson);
+        TieredLoad load = store.load();
+        List<Player> players = new ArrayList<>();
+        load.readPlayers(players::add);
+
+        // assert
+        LoopData data = load.getData();
+        assertThat(data.getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(), equalTo(2));
+        assertThat(data.getMatchLog().matchCount(), equalTo(2));
+        assertThat(data.getMatchLog().getMatches().iterator().next().getKillerPlayerSteamId64(), equalTo(STEAM_ID));
+        assertThat(players.size(), equalTo(1));
+        assertThat(players.get(0).getDescription(), equalTo("second"));
+    }
+
+    @Test
+    public void writtenStats_areLoadedAfterEveryRestart() throws IOException {
+        // arrange
+        for (int session = 0; session < 3; session++) {
+            store.close();
+            store = SqlLoopStore.open(tempFolder.getRoot().toPath().resolve("loop-db"), gson);
+            store.load().close();
+            store.write(Arrays.asList(DataChange.matchAdd(newMatch(STEAM_ID, TIME.plusHours(session)))), true);
+        }
+        store.close();
+
+        // act
+        store = SqlLoopStore.open(tempFolder.getRoot().toPath().resolve("loop-db"), gson);
+        TieredLoad load = store.load();
+
+        // assert
+        assertThat(load.getData().getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(), equalTo(3));
+    }
+
+    @Test
+    public void findMatchesAgainst_findsOnlyTheMatchesAgainstThePlayer() throws IOException {
+        // arrange
+        store.write(Arrays.asList(
+                DataChange.matchAdd(newMatch(STEAM_ID, TIME)),
+                DataChange.matchAdd(newMatch(OTHER_STEAM_ID, TIME.plusHours(1))),
+                DataChange.matchAdd(newMatch(STEAM_ID, TIME.plusHours(2)))), true);
+
+        // act
+        List<Match> matches = store.findMatchesAgainst(STEAM_ID);
+
+        // assert
+        assertThat(matches.size(), equalTo(2));
+        assertThat(matches.get(0).getMatchStartTime(), equalTo(TIME));
+        assertThat(matches.get(1).getMatchStartTime(), equalTo(TIME.plusHours(2)));
+    }
+
+    @Test
+    public void findPeriodStats_findsPeriodsWhichHaveEnded() throws IOException {
+        // arrange
+        LocalDateTime nextMonth = TIME.plusMonths(1);
+        store.write(Arrays.asList(
+                DataChange.statsReset(Stats.Period.MONTHLY, TIME),
+                DataChange.matchAdd(newMatch(STEAM_ID, TIME)),
+                DataChange.matchAdd(newMatch(STEAM_ID, TIME))), true);
+        store.write(Arrays.asList(
+                DataChange.statsReset(Stats.Period.MONTHLY, nextMonth),
+                DataChange.matchAdd(newMatch(STEAM_ID, nextMonth))), true);
+
+        // act
+        Optional<PeriodStats> march = store.findPeriodStats(Stats.Period.MONTHLY, TIME.withDayOfMonth(31));
+        Optional<PeriodStats> april = store.findPeriodStats(Stats.Period.MONTHLY, nextMonth);
+        Optional<PeriodStats> february = store.findPeriodStats(Stats.Period.MONTHLY, TIME.minusMonths(1));
+
+        // assert
+        assertThat(march.get().getMatchesPlayed(), equalTo(2));
+        assertThat(march.get().getPeriodStart(), equalTo(LocalDateTime.of(2020, 3, 1, 0, 0)));
+        assertThat(april.get().getMatchesPlayed(), equalTo(1));
+        assertThat(february.isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void write_writesAllTheChangesOrNone() throws IOException {
+        // arrange
+        Player invalidPlayer = newPlayer(null, "no id");
+
+        // act
+        IOException error = null;
+        try {
+            store.write(Arrays.asList(
+                    DataChange.playerUpsert(newPlayer(STEAM_ID, "first")),
+                    DataChange.matchAdd(newMatch(STEAM_ID, TIME)),
+                    DataChange.playerUpsert(invalidPlayer)), true);
+        } catch (IOException e) {
+            error = e;
+        }
+        store.write(Arrays.asList(DataChange.matchAdd(newMatch(OTHER_STEAM_ID, TIME))), true);
+
+        // assert
+        assertThat(error != null, equalTo(true));
+        TieredLoad load = store.load();
+        List<Player> players = new ArrayList<>();
+        load.readPlayers(players::add);
+        assertThat(players.size(), equalTo(0));
+        assertThat(load.getData().getMatchLog().matchCount(), equalTo(1));
+        assertThat(load.getData().getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(), equalTo(1));
+        assertThat(store.findMatchesAgainst(STEAM_ID).size(), equalTo(0));
+    }
+
+    @Test
+    public void write_rollsBackTheChangesWhenOneCannotBeApplied() throws IOException {
+        // arrange
+        Match invalidMatch = newMatch(STEAM_ID, TIME);
+        invalidMatch.setSecondsPlayed(null);
+
+        // act
+        IOException error = null;
+        try {
+            store.write(Arrays.asList(
+                    DataChange.playerUpsert(newPlayer(STEAM_ID, "first")),
+                    DataChange.matchAdd(invalidMatch)), true);
+        } catch (IOException e) {
+            error = e;
+        }
+        store.write(Arrays.asList(DataChange.matchAdd(newMatch(OTHER_STEAM_ID, TIME))), true);
+
+        // assert
+        assertThat(error != null, equalTo(true));
+        TieredLoad load = store.load();
+        List<Player> players = new ArrayList<>();
+        load.readPlayers(players::add);
+        assertThat(players.size(), equalTo(0));
+        assertThat(load.getData().getMatchLog().matchCount(), equalTo(1));
+        assertThat(store.findMatchesAgainst(STEAM_ID).size(), equalTo(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void importFrom_copiesTheDataAndTheLaterChanges() throws IOException {
+        // arrange
+        store.close();
+        store = SqlLoopStore.open(tempFolder.getRoot().toPath().resolve("imported-db"), gson);
+        LoopData sourceData = SampleData.loopData();
+        int sourcePlayers = sourceData.getPlayers().size();
+        int sourceMatches = sourceData.getMatchLog().matchCount();
+        int sourceMatchesPlayed = sourceData.getStats().get(Stats.Period.GLOBAL).getMatchesPlayed();
+        LoopStore source = mock(LoopStore.class);
+        when(source.load()).thenReturn(TieredLoad.of(sourceData));
+        when(source.replay(any(), any())).thenAnswer(invocation -> {
+            ((Consumer<DataChange>) invocation.getArgument(1)).accept(DataChange.matchAdd(newMatch(STEAM_ID, TIME)));
+            return 1;
+        });
+        boolean emptyBefore = store.isEmpty();
+
+        // act
+        store.importFrom(source);
+
+        // assert
+        TieredLoad load = store.load();
+        List<Player> players = new ArrayList<>();
+        load.readPlayers(players::add);
+        assertThat(emptyBefore, equalTo(true));
+        assertThat(store.isEmpty(), equalTo(false));
+        assertThat(players.size(), equalTo(sourcePlayers));
+        assertThat(load.getData().getMatchLog().matchCount(), equalTo(sourceMatches + 1));
+        assertThat(load.getData().getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(),
+                equalTo(sourceMatchesPlayed + 1));
+    }
+
+
+    private Player newPlayer(String steamId, String description) {
+        Player player = new Player();
+        player.setSteamId64(steamId);
+        player.setDescription(description);
+
+        return player;
+    }
+
+    private Match newMatch(String killerSteamId, LocalDateTime startTime) {
+        return Match.builder()
+                .lobbiesFound(1)
+                .secondsQueued(10)
+                .secondsWaited(20)
+                .secondsPlayed(300)
+                .matchStartTime(startTime)
+                .killer(Killer.TRAPPER)
+                .realmMap(RealmMap.COAL_TOWER)
+                .escaped(true)
+                .killerPlayerSteamId64(killerSteamId)
+                .build();
+    }
+
+}
@@ -0,0 +1,105 @@
+package net.lobby_simulator_companion.loop.repository.sync;
+
+import net.lobby_simulator_companion.loop.domain.Player;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class PlayerReplicaUTest {
+
+    private static final String STEAM_ID = "76561198000000001";
+    private static final long TIME = 1_600_000_000_000L;
+
+
+    @Test
+    public void merge_sumsTheIncrementsOfEveryNodeInAnyOrder() {
+        // arrange
+        PlayerReplica nodeA = new PlayerReplica(STEAM_ID);
+        PlayerReplica nodeB = new PlayerReplica(STEAM_ID);
+        PlayerReplica deltaA = nodeA.recordChanges(null, newPlayer(2, "name"), "a", TIME);
+        PlayerReplica deltaB = nodeB.recordChanges(null, newPlayer(3, "name"), "b", TIME);
+        PlayerReplica mergedAB = new PlayerReplica(STEAM_ID);
+        PlayerReplica mergedBA = new PlayerReplica(STEAM_ID);
+
+        // act
+        mergedAB.merge(deltaA);
+        mergedAB.merge(deltaB);
+        mergedAB.merge(deltaA);
+        mergedBA.merge(deltaB);
+        mergedBA.merge(deltaA);
+
+        // assert
+        assertThat(mergedAB.get(PlayerReplica.Counter.TIMES_ENCOUNTERED), equalTo(5L));
+        assertThat(mergedBA.get(PlayerReplica.Counter.TIMES_ENCOUNTERED), equalTo(5L));
+        assertThat(mergedAB.getNames(), equalTo(mergedBA.getNames()));
+    }
+
+    @Test
+    public void merge_keepsANameAddedOnANodeWhileRemovedOnAnother() {
+        // arrange
+        PlayerReplica nodeA = new PlayerReplica(STEAM_ID);
+        Player player = newPlayer(1, "old name");
+        player.addName("other name");
+        nodeA.recordChanges(null, player, "a", TIME);
+        PlayerReplica nodeB = new PlayerReplica(STEAM_ID);
+        nodeB.merge(nodeA);
+        Player playerWithoutName = player.copy();
+        playerWithoutName.setNames(Collections.singletonList("other name"));
+        PlayerReplica removal = nodeA.recordChanges(player, playerWithoutName, "a", TIME + 1);
+        Player playerWithName = player.copy();
+        playerWithName.addName("old name");
+        PlayerReplica concurrentAddition = nodeB.recordChanges(player, playerWithName, "b", TIME + 1);
+
+        // act
+        nodeA.merge(concurrentAddition);
+        nodeB.merge(removal);
+
+        // assert
+        assertThat(nodeA.getNames(), equalTo(Arrays.asList("other name", "old name")));
+        assertThat(nodeB.getNames(), equalTo(nodeA.getNames()));
+    }
+
+    @Test
+    public void merge_keepsTheLastWrittenRating() {
+        // arrange
+        PlayerReplica nodeA = new PlayerReplica(STEAM_ID);
+        Player player = newPlayer(1, "name");
+        nodeA.recordChanges(null, player, "a", TIME);
+        PlayerReplica nodeB = new PlayerReplica(STEAM_ID);
+        nodeB.merge(nodeA);
+        Player thumbsDown = player.copy();
+        thumbsDown.setRating(Player.Rating.THUMBS_DOWN);
+        PlayerReplica firstRating = nodeA.recordChanges(player, thumbsDown, "a", TIME + 1);
+        Player thumbsUp = player.copy();
+        thumbsUp.setRating(Player.Rating.THUMBS_UP);
+        PlayerReplica lastRating = nodeB.recordChanges(player, thumbsUp, "b", TIME + 2);
+
+        // act
+        nodeA.merge(lastRating);
+        nodeB.merge(firstRating);
+
+        // assert
+        Player result = player.copy();
+        nodeB.applyTo(result);
+        assertThat(result.getRating(), equalTo(Player.Rating.THUMBS_UP));
+        nodeA.applyTo(result);
+        assertThat(result.getRating(), equalTo(Player.Rating.THUMBS_UP));
+    }
+
+
+    private static Player newPlayer(int timesEncountered, String name) {
+        Player player = new Player();
+        player.setSteamId64(STEAM_ID);
+        player.setTimesEncountered(timesEncountered);
+        player.addName(name);
+        return player;
+    }
+
+}
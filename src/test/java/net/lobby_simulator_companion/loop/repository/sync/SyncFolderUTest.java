@@ -0,0 +1,91 @@
+package net.lobby_simulator_companion.loop.repository.sync;
+
+import com.google.gson.Gson;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Player;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class SyncFolderUTest {
+
+    private static final long SEGMENT_BYTES = 256;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Gson gson = LoopGsonFactory.gson(false);
+
+
+    @Test
+    public void read_readsOnlyTheDeltasWrittenSinceTheLastRead() throws Exception {
+        // arrange
+        Path dir = tempFolder.getRoot().toPath();
+        SyncFolder writer = new SyncFolder(dir, "a", gson, true, SEGMENT_BYTES, Collections.emptyMap());
+        SyncFolder reader = new SyncFolder(dir, "b", gson, true, SEGMENT_BYTES, Collections.emptyMap());
+        writer.append(Arrays.asList(newDelta("1"), newDelta("2"), newDelta("3")));
+        List<String> firstRead = new ArrayList<>();
+        reader.read(delta -> firstRead.add(delta.getSteamId()));
+        writer.append(Arrays.asList(newDelta("4"), newDelta("5")));
+        SyncFolder resumedReader = new SyncFolder(dir, "b", gson, true, SEGMENT_BYTES, reader.getCursors());
+
+        // act
+        List<String> secondRead = new ArrayList<>();
+        int count = resumedReader.read(delta -> secondRead.add(delta.getSteamId()));
+
+        // assert
+        assertThat(firstRead, equalTo(Arrays.asList("1", "2", "3")));
+        assertThat(count, equalTo(2));
+        assertThat(secondRead, equalTo(Arrays.asList("4", "5")));
+        writer.close();
+    }
+
+    @Test
+    public void read_stopsBeforeALineNotCompletelyWritten() throws Exception {
+        // arrange
+        Path dir = tempFolder.getRoot().toPath();
+        SyncFolder writer = new SyncFolder(dir, "a", gson, false, SEGMENT_BYTES, Collections.emptyMap());
+        SyncFolder reader = new SyncFolder(dir, "b", gson, false, SEGMENT_BYTES, Collections.emptyMap());
+        writer.append(Collections.singletonList(newDelta("1")));
+        writer.close();
+        Path segment = dir.resolve("a").resolve("deltas-00000001.jsonl");
+        String line = gson.toJson(newDelta("2")) + "\n";
+        Files.write(segment, line.substring(0, 10).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        List<String> firstRead = new ArrayList<>();
+        reader.read(delta -> firstRead.add(delta.getSteamId()));
+        Files.write(segment, line.substring(10).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        // act
+        List<String> secondRead = new ArrayList<>();
+        reader.read(delta -> secondRead.add(delta.getSteamId()));
+
+        // assert
+        assertThat(firstRead, equalTo(Collections.singletonList("1")));
+        assertThat(secondRead, equalTo(Collections.singletonList("2")));
+    }
+
+
+    private static PlayerReplica newDelta(String steamId) {
+        Player player = new Player();
+        player.setSteamId64(steamId);
+        player.setTimesEncountered(1);
+        player.addName("player " + steamId);
+        return new PlayerReplica(steamId).recordChanges(null, player, "a", 1_600_000_000_000L);
+    }
+
+}
@@ -0,0 +1,101 @@
+package net.lobby_simulator_companion.loop.service;
+
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
+import net.lobby_simulator_companion.loop.repository.TieredLoad;
+import net.lobby_simulator_companion.loop.repository.export.ExportFormat;
+import net.lobby_simulator_companion.loop.repository.playerstore.HeapPlayerStore;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author NickyRamone
+ */
+public class DataExporterUTest {
+
+    private static final String STEAM_ID = "76561198000000001";
+    private static final long LOAD_DELAY_MS = 200;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer");
+
+
+    @Test
+    public void export_waitsForThePlayersToBeLoaded() throws Exception {
+        // arrange
+        LoopData storedData = new LoopData();
+        Player player = new Player();
+        player.setSteamId64(STEAM_ID);
+        player.addName("name");
+        storedData.getPlayers().add(player);
+        LoopDataService dataService = startDataService(TieredLoad.of(storedData));
+        Path dir = tempFolder.getRoot().toPath().resolve("export");
+
+        // act
+        DataExporter.ExportReport report = new DataExporter(dataService).export(dir, ExportFormat.CSV);
+
+        // assert
+        assertThat(report.getPlayers(), equalTo(1L));
+        assertThat(Files.readAllLines(report.getPlayersFile()).size(), equalTo(2));
+    }
+
+    @Test
+    public void export_failsWhenThePlayersCannotBeLoaded() throws Exception {
+        // arrange
+        LoopDataService dataService = startDataService(new TieredLoad(new LoopData(), consumer -> {
+            throw new IOException("Corrupt players.");
+        }, () -> {
+        }));
+        Path dir = tempFolder.getRoot().toPath().resolve("export");
+
+        // act
+        IOException error = null;
+        try {
+            new DataExporter(dataService).export(dir, ExportFormat.CSV);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        // assert
+        assertThat(error != null, equalTo(true));
+        assertThat(Files.exists(dir), equalTo(false));
+    }
+
+
+    /**
+     * Starts a data service which loads the players in the background, after a delay.
+     */
+    private LoopDataService startDataService(TieredLoad load) throws IOException {
+        LoopStore store = mock(LoopStore.class);
+        when(store.load()).thenReturn(load);
+        Executor delayedBackground = task -> new Thread(() -> {
+            try {
+                Thread.sleep(LOAD_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.run();
+        }).start();
+        LoopDataService dataService = new LoopDataService(store, new HeapPlayerStore(),
+                Runnable::run, Runnable::run, delayedBackground, timer);
+        dataService.start();
+
+        return dataService;
+    }
+
+}
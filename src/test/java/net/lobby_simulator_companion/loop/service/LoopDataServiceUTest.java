@@ -0,0 +1,452 @@
+package net.lobby_simulator_companion.loop.service;
+
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Killer;
+import net.lobby_simulator_companion.loop.domain.LoopData;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.domain.RealmMap;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.FileLoopStore;
+import net.lobby_simulator_companion.loop.repository.LoopRepository;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
+import net.lobby_simulator_companion.loop.repository.TieredLoad;
+import net.lobby_simulator_companion.loop.repository.archive.MatchArchive;
+import net.lobby_simulator_companion.loop.repository.changelog.ChangeLog;
+import net.lobby_simulator_companion.loop.repository.playerstore.HeapPlayerStore;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author NickyRamone
+ */
+public class LoopDataServiceUTest {
+
+    private static final String STEAM_ID = "76561198000000001";
+    private static final long COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer");
+    private final LoopRepository repository = mock(LoopRepository.class);
+    private LoopDataService dataService;
+
+
+    @Before
+    public void setUp() {
+        dataService = newDataService(newChangeLog(COMPACTION_THRESHOLD_BYTES));
+    }
+
+
+    @Test
+    public void concurrentMutationsAreSerialized() throws Exception {
+        // arrange
+        int threadCount = 4;
+        int matchesPerThread = 500;
+        dataService.addPlayer(newPlayer());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < matchesPerThread; j++) {
+                    dataService.addMatch(newMatch());
+                    dataService.updatePlayer(STEAM_ID, Player::incrementTimesEncountered);
+                    dataService.getStats().get(Stats.Period.GLOBAL).getMatchesPlayed();
+                }
+            }));
+        }
+
+        // act
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        dataService.save();
+
+        // assert
+        int totalMatches = threadCount * matchesPerThread;
+        Player player = dataService.getPlayerBySteamId(STEAM_ID).get();
+        assertThat(dataService.getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(), equalTo(totalMatches));
+        assertThat(dataService.getSnapshot().getVersion(), equalTo((long) totalMatches));
+        assertThat(player.getMatchesPlayed(), equalTo(totalMatches));
+        assertThat(player.getTimesEncountered(), equalTo(totalMatches));
+    }
+
+    @Test
+    public void publishedSnapshotIsNotModifiedByLaterMatches() {
+        // arrange
+        LoopDataSnapshot snapshot = dataService.getSnapshot();
+
+        // act
+        dataService.addMatch(newMatch());
+        dataService.save();
+
+        // assert
+        assertThat(snapshot.getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(), equalTo(0));
+        assertThat(snapshot.getMatchLog().matchCount(), equalTo(0));
+        assertThat(dataService.getSnapshot().getVersion(), equalTo(snapshot.getVersion() + 1));
+        assertThat(dataService.getMatchLog().matchCount(), equalTo(1));
+    }
+
+    @Test
+    public void returnedPlayerIsNotModifiedByLaterUpdates() {
+        // arrange
+        dataService.addPlayer(newPlayer());
+        Player created = dataService.updatePlayer(STEAM_ID, p -> p.addName("first")).join();
+
+        // act
+        Player updated = dataService.updatePlayer(STEAM_ID, p -> p.setDescription("some notes")).join();
+
+        // assert
+        assertThat(created.getDescription(), equalTo(null));
+        assertThat(updated.getDescription(), equalTo("some notes"));
+        assertThat(updated.getMostRecentName().orElse(null), equalTo("first"));
+    }
+
+    @Test
+    public void updatePlayer_createsMissingPlayer() {
+        // act
+        Player player = dataService.updatePlayer(STEAM_ID, this::newPlayer, Player::incrementTimesEncountered).join();
+
+        // assert
+        assertThat(player.getTimesEncountered(), equalTo(1));
+        assertThat(dataService.getPlayerBySteamId(STEAM_ID).get(), equalTo(player));
+    }
+
+    @Test
+    public void save_writesOnlyTheLatestVersionOfEachModifiedPlayer() {
+        // arrange
+        dataService.addPlayer(newPlayer());
+        dataService.updatePlayer(STEAM_ID, this::newPlayer, p -> p.setDescription("first notes"));
+        dataService.updatePlayer(STEAM_ID, this::newPlayer, p -> p.setDescription("second notes"));
+        dataService.addMatch(newMatch());
+
+        // act
+        SaveReport report = dataService.save();
+        SaveReport secondReport = dataService.save();
+
+        // assert
+        assertThat(report.getPlayersWritten(), equalTo(1));
+        assertThat(report.getMatchesWritten(), equalTo(1));
+        assertThat(report.getStatResetsWritten(), equalTo(0));
+        assertThat(secondReport.getEntitiesWritten(), equalTo(0));
+    }
+
+    @Test
+    public void mutations_doNotWaitForTheDisk() throws Exception {
+        // arrange
+        CountDownLatch diskBlocked = new CountDownLatch(1);
+        ExecutorService saver = Executors.newSingleThreadExecutor();
+        saver.execute(() -> {
+            try {
+                diskBlocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // no save on match end, which could take the player before the save below
+        dataService = new LoopDataService(newStore(newChangeLog(COMPACTION_THRESHOLD_BYTES)), new HeapPlayerStore(),
+                Executors.newSingleThreadExecutor(), saver, Runnable::run, LoopDataService.Durability.ASYNC, timer);
+        dataService.addPlayer(newPlayer());
+        CompletableFuture<SaveReport> save = CompletableFuture.supplyAsync(dataService::save);
+
+        // act
+        Player updated = dataService.updatePlayer(STEAM_ID, p -> p.setDescription("notes")).get(5, TimeUnit.SECONDS);
+        dataService.addMatch(newMatch());
+        Player afterMatch = dataService.updatePlayer(STEAM_ID, p -> p.setRating(Player.Rating.THUMBS_UP))
+                .get(5, TimeUnit.SECONDS);
+
+        // assert
+        assertThat(updated.getDescription(), equalTo("notes"));
+        assertThat(afterMatch.getMatchesPlayed(), equalTo(1));
+        assertThat(save.isDone(), equalTo(false));
+        diskBlocked.countDown();
+        assertThat(save.get(5, TimeUnit.SECONDS).getPlayersWritten(), equalTo(1));
+        saver.shutdown();
+    }
+
+    @Test
+    public void savedChanges_areReplayedOnStart() throws Exception {
+        // arrange
+        dataService.addPlayer(newPlayer());
+        dataService.addMatch(newMatch());
+        dataService.save();
+        when(repository.loadTiered()).thenReturn(TieredLoad.of(new LoopData()));
+        LoopDataService restartedService = newDataService(newChangeLog(COMPACTION_THRESHOLD_BYTES));
+
+        // act
+        restartedService.start();
+
+        // assert
+        verify(repository, never()).save(any(), any(), any());
+        assertThat(restartedService.getStats().get(Stats.Period.GLOBAL).getMatchesPlayed(), equalTo(1));
+        assertThat(restartedService.getMatchLog().matchCount(), equalTo(1));
+        assertThat(restartedService.getPlayerBySteamId(STEAM_ID).get().getMatchesPlayed(), equalTo(1));
+    }
+
+    @Test
+    public void compaction_writesSnapshotAndDeletesCoveredChanges() throws Exception {
+        // arrange
+        dataService = newDataService(newChangeLog(1));
+        dataService.addPlayer(newPlayer());
+        dataService.addMatch(newMatch());
+
+        // act
+        dataService.save();
+
+        // assert
+        ArgumentCaptor<LoopData> savedData = ArgumentCaptor.forClass(LoopData.class);
+        ArgumentCaptor<Iterable<Player>> savedPlayers = ArgumentCaptor.forClass(Iterable.class);
+        ArgumentCaptor<Collection<String>> modifiedSteamIds = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).save(savedData.capture(), savedPlayers.capture(), modifiedSteamIds.capture());
+        assertThat(savedData.getValue().getChangeLogSequence(), equalTo(1L));
+        assertThat(savedPlayers.getValue().iterator().next().getSteamId64(), equalTo(STEAM_ID));
+        assertThat(new ArrayList<>(modifiedSteamIds.getValue()), equalTo(Collections.singletonList(STEAM_ID)));
+        assertThat(savedData.getValue().getMatchLog().matchCount(), equalTo(1));
+        assertThat(tempFolder.getRoot().list().length, equalTo(0));
+    }
+
+
+    @Test
+    public void start_returnsBeforePlayersAreLoaded_andLookupsWaitForThem() throws Exception {
+        // arrange
+        LoopData storedData = new LoopData();
+        storedData.getMatchLog().add(newMatch());
+        storedData.getStats().addMatchStats(newMatch());
+        storedData.addPlayers(Collections.singletonList(newPlayer()));
+        when(repository.loadTiered()).thenReturn(TieredLoad.of(storedData));
+        Queue<Runnable> backgroundTasks = new ArrayDeque<>();
+        dataService = new LoopDataService(newStore(newChangeLog(COMPACTION_THRESHOLD_BYTES)), new HeapPlayerStore(),
+                Runnable::run, Runnable::run, backgroundTasks::add, timer);
+
+        // act
+        dataService.start();
+        CompletableFuture<Optional<Player>> lookup = CompletableFuture.supplyAsync(
+                () -> dataService.getPlayerBySteamId(STEAM_ID));
+
+        // assert
+        assertThat(dataService.getMatchLog().matchCount(), equalTo(1));
+        Thread.sleep(100);
+        assertThat(lookup.isDone(), equalTo(false));
+
+        backgroundTasks.forEach(Runnable::run);
+        assertThat(lookup.get(5, TimeUnit.SECONDS).isPresent(), equalTo(true));
+        assertThat(dataService.getPlayerBySteamId("unknown").isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void mutationsOfPlayersNotLoadedYet_doNotHoldUpTheWriter() throws Exception {
+        // arrange
+        LoopData storedData = new LoopData();
+        storedData.addPlayers(Collections.singletonList(newPlayer()));
+        when(repository.loadTiered()).thenReturn(TieredLoad.of(storedData));
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Queue<Runnable> backgroundTasks = new ArrayDeque<>();
+        dataService = new LoopDataService(newStore(newChangeLog(COMPACTION_THRESHOLD_BYTES)), new HeapPlayerStore(),
+                writer, Runnable::run, backgroundTasks::add, timer);
+        dataService.start();
+
+        // act
+        CompletableFuture<Player> update = dataService.updatePlayer(STEAM_ID, Player::incrementTimesEncountered);
+        dataService.addMatch(newMatch());
+        CompletableFuture.runAsync(() -> {
+        }, writer).get(5, TimeUnit.SECONDS);
+        int matchesBeforePlayersLoaded = dataService.getMatchLog().matchCount();
+        boolean updatedBeforePlayersLoaded = update.isDone();
+        backgroundTasks.forEach(Runnable::run);
+        Player updated = update.get(5, TimeUnit.SECONDS);
+        CompletableFuture.runAsync(() -> {
+        }, writer).get(5, TimeUnit.SECONDS);
+
+        // assert
+        assertThat(matchesBeforePlayersLoaded, equalTo(1));
+        assertThat(updatedBeforePlayersLoaded, equalTo(false));
+        assertThat(updated.getTimesEncountered(), equalTo(1));
+        assertThat(updated.getMatchesPlayed(), equalTo(0));
+        Player player = dataService.getPlayerBySteamId(STEAM_ID).get();
+        assertThat(player.getTimesEncountered(), equalTo(1));
+        assertThat(player.getMatchesPlayed(), equalTo(1));
+        writer.shutdown();
+    }
+
+    @Test
+    public void forEachMatch_goesThroughTheMatchLogFromTheCallingThread() throws Exception {
+        // arrange
+        dataService.addMatch(newMatch());
+        dataService.save();
+        List<Thread> threads = new ArrayList<>();
+
+        // act
+        long count = dataService.forEachMatch(match -> threads.add(Thread.currentThread())).get(5, TimeUnit.SECONDS);
+
+        // assert
+        assertThat(count, equalTo(1L));
+        assertThat(threads, equalTo(Collections.singletonList(Thread.currentThread())));
+    }
+
+
+    @Test
+    public void getMatchesAgainst_findsTheMatchesInTheMatchLogWhenTheStoreDoesNotKeepTheMatchHistory() throws Exception {
+        // arrange
+        dataService.addMatch(newMatch());
+        Match otherMatch = newMatch();
+        otherMatch.setKillerPlayerSteamId64("76561198000000002");
+        dataService.addMatch(otherMatch);
+        dataService.save();
+
+        // act
+        List<Match> matches = dataService.getMatchesAgainst(STEAM_ID).get(5, TimeUnit.SECONDS);
+
+        // assert
+        assertThat(matches.size(), equalTo(1));
+        assertThat(matches.get(0).getKillerPlayerSteamId64(), equalTo(STEAM_ID));
+    }
+
+    @Test
+    public void getMatchesAgainst_findsTheArchivedMatchesWhenTheStoreKeepsTheMatchHistory() throws Exception {
+        // arrange
+        MatchArchive archive = MatchArchive.open(tempFolder.newFolder("matches").toPath());
+        dataService = new LoopDataService(new FileLoopStore(repository, newChangeLog(COMPACTION_THRESHOLD_BYTES),
+                archive), new HeapPlayerStore(), timer);
+        dataService.addMatch(newMatch());
+        Match otherMatch = newMatch();
+        otherMatch.setKillerPlayerSteamId64("76561198000000002");
+        dataService.addMatch(otherMatch);
+
+        // act
+        List<Match> matches = dataService.getMatchesAgainst(STEAM_ID).get(5, TimeUnit.SECONDS);
+
+        // assert
+        assertThat(archive.size(), equalTo(2L));
+        assertThat(matches.size(), equalTo(1));
+        assertThat(matches.get(0).getKillerPlayerSteamId64(), equalTo(STEAM_ID));
+    }
+
+    @Test
+    public void matchEndDurability_writesAndForcesNewMatchesRightAway() throws Exception {
+        // arrange
+        LoopStore store = mock(LoopStore.class);
+        dataService = newDataService(store, LoopDataService.Durability.MATCH_END);
+
+        // act
+        dataService.addPlayer(newPlayer());
+        dataService.addMatch(newMatch());
+
+        // assert
+        verify(store, times(1)).write(anyList(), eq(true));
+    }
+
+    @Test
+    public void syncDurability_writesAndForcesEveryChangeRightAway() throws Exception {
+        // arrange
+        LoopStore store = mock(LoopStore.class);
+        dataService = newDataService(store, LoopDataService.Durability.SYNC);
+
+        // act
+        dataService.addPlayer(newPlayer());
+
+        // assert
+        verify(store, times(1)).write(anyList(), eq(true));
+    }
+
+    @Test
+    public void asyncDurability_leavesChangesToThePeriodicSaves() throws Exception {
+        // arrange
+        LoopStore store = mock(LoopStore.class);
+        dataService = newDataService(store, LoopDataService.Durability.ASYNC);
+
+        // act
+        dataService.addMatch(newMatch());
+
+        // assert
+        verify(store, never()).write(anyList(), anyBoolean());
+    }
+
+    @Test
+    public void close_savesThePendingChangesAndClosesTheStore() throws Exception {
+        // arrange
+        LoopStore store = mock(LoopStore.class);
+        dataService = newDataService(store, LoopDataService.Durability.ASYNC);
+        dataService.addMatch(newMatch());
+
+        // act
+        dataService.close();
+
+        // assert
+        verify(store).write(anyList(), eq(true));
+        verify(store).close();
+    }
+
+
+    /**
+     * Without saves of its own, so that the tests decide when the changes are saved.
+     */
+    private LoopDataService newDataService(ChangeLog changeLog) {
+        return new LoopDataService(newStore(changeLog), new HeapPlayerStore(), LoopDataService.Durability.ASYNC,
+                timer);
+    }
+
+    private LoopDataService newDataService(LoopStore store, LoopDataService.Durability durability) {
+        return new LoopDataService(store, new HeapPlayerStore(), Runnable::run, Runnable::run, Runnable::run,
+                durability, timer);
+    }
+
+    private LoopStore newStore(ChangeLog changeLog) {
+        return new FileLoopStore(repository, changeLog);
+    }
+
+    private ChangeLog newChangeLog(long compactionThresholdBytes) {
+        return new ChangeLog(tempFolder.getRoot().toPath(), LoopGsonFactory.gson(false), true,
+                compactionThresholdBytes);
+    }
+
+    private Player newPlayer() {
+        Player player = new Player();
+        player.setSteamId64(STEAM_ID);
+
+        return player;
+    }
+
+    private Match newMatch() {
+        return Match.builder()
+                .lobbiesFound(1)
+                .secondsQueued(10)
+                .secondsWaited(20)
+                .secondsPlayed(300)
+                .killer(Killer.TRAPPER)
+                .realmMap(RealmMap.COAL_TOWER)
+                .escaped(true)
+                .killerPlayerSteamId64(STEAM_ID)
+                .build();
+    }
+
+}
@@ -0,0 +1,81 @@
+package net.lobby_simulator_companion.loop.service;
+
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.Player;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
+import net.lobby_simulator_companion.loop.repository.playerstore.HeapPlayerStore;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author NickyRamone
+ */
+public class PlayerSyncServiceUTest {
+
+    private static final String STEAM_ID = "76561198000000001";
+    private static final long SYNC_PERIOD_MS = 60_000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer");
+
+
+    @Test
+    public void syncedNodesConvergeToTheSameCountersAndNames() throws Exception {
+        // arrange
+        LoopDataService dataServiceA = newDataService();
+        dataServiceA.addPlayer(newPlayer(2, "name a"));
+        PlayerSyncService syncA = newSyncService(dataServiceA, "a");
+        syncA.start();
+        LoopDataService dataServiceB = newDataService();
+        dataServiceB.addPlayer(newPlayer(1, "name b"));
+        PlayerSyncService syncB = newSyncService(dataServiceB, "b");
+        syncB.start();
+        dataServiceB.updatePlayer(STEAM_ID, Player::incrementTimesEncountered).join();
+
+        // act
+        syncB.syncNow().join();
+        syncA.syncNow().join();
+
+        // assert
+        Player playerA = dataServiceA.getPlayerBySteamId(STEAM_ID).get();
+        Player playerB = dataServiceB.getPlayerBySteamId(STEAM_ID).get();
+        assertThat(playerA.getTimesEncountered(), equalTo(4));
+        assertThat(playerB.getTimesEncountered(), equalTo(4));
+        assertThat(playerA.getNames(), equalTo(Arrays.asList("name a", "name b")));
+        assertThat(playerB.getNames(), equalTo(playerA.getNames()));
+        syncA.close();
+        syncB.close();
+    }
+
+
+    private LoopDataService newDataService() {
+        return new LoopDataService(mock(LoopStore.class), new HeapPlayerStore(),
+                Runnable::run, Runnable::run, Runnable::run, timer);
+    }
+
+    private PlayerSyncService newSyncService(LoopDataService dataService, String node) {
+        Path root = tempFolder.getRoot().toPath();
+        return new PlayerSyncService(dataService, root.resolve("shared"), root.resolve(node + "-sync-state.dat"),
+                LoopGsonFactory.gson(false), true, SYNC_PERIOD_MS, 100, timer, Runnable::run);
+    }
+
+    private static Player newPlayer(int timesEncountered, String name) {
+        Player player = new Player();
+        player.setSteamId64(STEAM_ID);
+        player.setTimesEncountered(timesEncountered);
+        player.addName(name);
+        return player;
+    }
+
+}
@@ -0,0 +1,166 @@
+package net.lobby_simulator_companion.loop.service.replay;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.domain.MatchLog;
+import net.lobby_simulator_companion.loop.domain.stats.Match;
+import net.lobby_simulator_companion.loop.domain.stats.Stats;
+import net.lobby_simulator_companion.loop.repository.LoopStore;
+import net.lobby_simulator_companion.loop.repository.SteamProfileDao;
+import net.lobby_simulator_companion.loop.repository.playerstore.HeapPlayerStore;
+import net.lobby_simulator_companion.loop.repository.journal.EventJournalReader;
+import net.lobby_simulator_companion.loop.service.DbdLogMonitor;
+import net.lobby_simulator_companion.loop.service.GameEvent;
+import net.lobby_simulator_companion.loop.service.GameStateManager;
+import net.lobby_simulator_companion.loop.service.LoopDataService;
+import net.lobby_simulator_companion.loop.service.log_event_orchestrators.ChaseEventManager;
+import net.lobby_simulator_companion.loop.service.log_processing.LogProcessorUtil;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.ChaseLogProcessor;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.KillerLogProcessor;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.MainLogProcessor;
+import net.lobby_simulator_companion.loop.service.log_processing.impl.RealmMapLogProcessor;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import net.lobby_simulator_companion.loop.util.concurrent.ManagedIoExecutor;
+import net.lobby_simulator_companion.loop.util.event.EventSupport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Deterministic replay of recorded game sessions.
+ * <p>
+ * Wires the real log processors, {@link GameStateManager}, {@link ChaseEventManager} and {@link LoopDataService}
+ * together with a {@link SimulatedClock} and same-thread executors, so that a recorded DBD log (or event journal)
+ * can be fed as fast as the CPU allows and always produce the same matches and stats.
+ * Time only advances with the timestamps found in the recorded stream.
+ *
+ * @author NickyRamone
+ */
+public class ReplayHarness {
+
+    private final SimulatedClock clock = new SimulatedClock();
+    private final EventSupport logEventSupport = new EventSupport();
+    private final DbdLogMonitor logMonitor;
+    private final LoopDataService dataService;
+    private final ChaseEventManager chaseEventManager;
+    private final GameStateManager gameStateManager;
+    private final List<Match> matches = new ArrayList<>();
+    private final Gson gson = LoopGsonFactory.gson(true);
+
+
+    public ReplayHarness() throws IOException {
+        logMonitor = new DbdLogMonitor(logEventSupport, new File("replay.log"));
+        logMonitor.registerProcessor(new MainLogProcessor(logEventSupport));
+        logMonitor.registerProcessor(new KillerLogProcessor(logEventSupport));
+        logMonitor.registerProcessor(new RealmMapLogProcessor(logEventSupport));
+        logMonitor.registerProcessor(new ChaseLogProcessor(logEventSupport));
+
+        dataService = new LoopDataService(mock(LoopStore.class), new HeapPlayerStore(),
+                Runnable::run, Runnable::run, Runnable::run,
+                new HashedWheelTimer("replay-timer", clock, 100, 64));
+        chaseEventManager = new ChaseEventManager(logMonitor, Runnable::run);
+        gameStateManager = new GameStateManager(null, logMonitor, dataService, mockSteamProfileDao(),
+                chaseEventManager, clock, new ManagedIoExecutor(Runnable::run, null, 0));
+
+        gameStateManager.registerListener(GameEvent.MATCH_ENDED, evt -> {
+            Match match = (Match) evt.getValue();
+            if (!match.isCancelled()) {
+                matches.add(match);
+            }
+        });
+    }
+
+
+    private static SteamProfileDao mockSteamProfileDao() throws IOException {
+        SteamProfileDao dao = mock(SteamProfileDao.class);
+        when(dao.getPlayerName(any())).thenAnswer(invocation -> "Player " + invocation.getArgument(0));
+
+        return dao;
+    }
+
+
+    /**
+     * Feeds raw DBD log lines. The simulated clock is moved to the timestamp of every line that has one.
+     */
+    public void replayLog(Stream<String> logLines) {
+        logLines.forEach(line -> {
+            LocalDateTime timestamp = LogProcessorUtil.extractTimestamp(line);
+            if (timestamp != null) {
+                clock.set(timestamp);
+            }
+            logMonitor.processLine(line);
+        });
+    }
+
+    /**
+     * Feeds the events recorded in an event journal, skipping the log parsing stage.
+     */
+    public void replayJournal(Path journalDir) throws IOException {
+        new EventJournalReader(journalDir).scan(entry -> {
+            clock.set(entry.getTimestamp());
+            logEventSupport.fireEvent(entry.getEvent(), entry.getValue());
+        });
+    }
+
+
+    public SimulatedClock getClock() {
+        return clock;
+    }
+
+    public DbdLogMonitor getLogMonitor() {
+        return logMonitor;
+    }
+
+    public LoopDataService getDataService() {
+        return dataService;
+    }
+
+    public List<Match> getMatches() {
+        return matches;
+    }
+
+
+    /**
+     * Builds a JSON snapshot of the replay results: the recorded matches, the global stats and the rolling stats.
+     * Period boundaries are excluded since they depend on the real date on which the replay is run, and match start
+     * times are kept as local date-times so that the snapshot does not depend on the system time zone.
+     */
+    public JsonElement snapshot() {
+        JsonObject snapshot = new JsonObject();
+
+        JsonArray matchesJson = new JsonArray();
+        matches.forEach(m -> {
+            JsonObject matchJson = gson.toJsonTree(m).getAsJsonObject();
+            matchJson.addProperty("matchStartTime", String.valueOf(m.getMatchStartTime()));
+            matchesJson.add(matchJson);
+        });
+        snapshot.add("matches", matchesJson);
+
+        JsonObject globalStats = gson.toJsonTree(dataService.getStats().get(Stats.Period.GLOBAL)).getAsJsonObject();
+        globalStats.remove("periodStart");
+        globalStats.remove("periodEnd");
+        snapshot.add("globalStats", globalStats);
+
+        JsonObject rollingStats = new JsonObject();
+        MatchLog matchLog = dataService.getMatchLog();
+        for (MatchLog.RollingGroup group : MatchLog.RollingGroup.values()) {
+            rollingStats.add(group.name().toLowerCase(), gson.toJsonTree(matchLog.getStats(group)));
+        }
+        snapshot.add("rollingStats", rollingStats);
+
+        return snapshot;
+    }
+
+}
@@ -0,0 +1,109 @@
+package net.lobby_simulator_companion.loop.service.replay;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import net.lobby_simulator_companion.loop.config.LoopGsonFactory;
+import net.lobby_simulator_companion.loop.repository.journal.EventJournal;
+import net.lobby_simulator_companion.loop.service.log_processing.DbdLogEvent;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Replays recorded sessions and compares the outcome against stored snapshots.
+ * Run with {@code -Dreplay.updateSnapshots=true} to regenerate the snapshots after an intended behavior change.
+ *
+ * @author NickyRamone
+ */
+public class ReplayHarnessUTest {
+
+    private static final String SNAPSHOT_DIR = "src/test/resources/replay";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+
+    @Test
+    public void replayLog_matchesSnapshot() throws Exception {
+        // arrange
+        ReplayHarness harness = new ReplayHarness();
+
+        // act
+        try (Stream<String> lines = readResourceLines("replay/session_basic.log")) {
+            harness.replayLog(lines);
+        }
+
+        // assert
+        assertThat(harness.getMatches().size(), equalTo(3));
+        assertMatchesSnapshot(harness.snapshot(), "session_basic.expected.json");
+    }
+
+
+    @Test
+    public void replayJournal_isEquivalentToReplayingTheLog() throws Exception {
+        // arrange
+        Path journalDir = tempFolder.getRoot().toPath();
+        ReplayHarness recordingHarness = new ReplayHarness();
+        EventJournal journal = new EventJournal(journalDir, 1024 * 1024, new HashedWheelTimer("test-timer"));
+        journal.open();
+        recordingHarness.getLogMonitor().registerListener(evt -> {
+            try {
+                journal.append(recordingHarness.getClock().millis(),
+                        DbdLogEvent.valueOf(evt.getType().toString()), evt.getValue());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        try (Stream<String> lines = readResourceLines("replay/session_basic.log")) {
+            recordingHarness.replayLog(lines);
+        }
+        journal.close();
+
+        // act
+        ReplayHarness journalHarness = new ReplayHarness();
+        journalHarness.replayJournal(journalDir);
+
+        // assert
+        assertThat(journalHarness.snapshot(), equalTo(recordingHarness.snapshot()));
+    }
+
+
+    private Stream<String> readResourceLines(String resourceName) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream(resourceName), StandardCharsets.UTF_8));
+
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private void assertMatchesSnapshot(JsonElement actual, String snapshotName) throws IOException {
+        Path snapshotPath = Paths.get(SNAPSHOT_DIR, snapshotName);
+
+        if (Boolean.getBoolean("replay.updateSnapshots")) {
+            Files.write(snapshotPath, LoopGsonFactory.gson(true).toJson(actual).getBytes(StandardCharsets.UTF_8));
+        }
+
+        JsonElement expected = new JsonParser().parse(
+                new String(Files.readAllBytes(snapshotPath), StandardCharsets.UTF_8));
+        assertThat(actual, equalTo(expected));
+    }
+
+}
@@ -0,0 +1,51 @@
+package net.lobby_simulator_companion.loop.service.replay;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that only moves when told to. Runs in UTC, like the DBD log timestamps.
+ *
+ * @author NickyRamone
+ */
+public class SimulatedClock extends Clock {
+
+    private volatile long millis;
+
+
+    public void set(long epochMillis) {
+        millis = epochMillis;
+    }
+
+    public void set(LocalDateTime utcDateTime) {
+        millis = utcDateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public void advance(long deltaMillis) {
+        millis += deltaMillis;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        throw new UnsupportedOperationException("The simulated clock only supports UTC.");
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+}
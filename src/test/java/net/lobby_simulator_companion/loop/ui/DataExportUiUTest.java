@@ -0,0 +1,75 @@
+package net.lobby_simulator_companion.loop.ui;
+
+import net.lobby_simulator_companion.loop.config.AppProperties;
+import net.lobby_simulator_companion.loop.repository.export.ExportFormat;
+import net.lobby_simulator_companion.loop.service.DataExporter;
+import net.lobby_simulator_companion.loop.util.concurrent.HashedWheelTimer;
+import net.lobby_simulator_companion.loop.util.concurrent.ManagedIoExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author NickyRamone
+ */
+public class DataExportUiUTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", Clock.systemUTC(), 10, 64);
+    private final ManagedIoExecutor ioExecutor = ManagedIoExecutor.create("test-io", 2, 5000, timer);
+    private final CountDownLatch exportStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+
+    @Before
+    public void setUp() {
+        timer.start();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        timer.stop();
+    }
+
+
+    @Test
+    public void export_isNotInterruptedByADisconnect() throws Exception {
+        // arrange
+        Path dir = Paths.get("export");
+        DataExporter.ExportReport expectedReport = new DataExporter.ExportReport(
+                dir.resolve("matches.csv"), 1, dir.resolve("players.csv"), 2, Duration.ZERO);
+        DataExporter dataExporter = mock(DataExporter.class);
+        when(dataExporter.export(dir, ExportFormat.CSV)).then(invocation -> {
+            exportStarted.countDown();
+            release.await();
+            return expectedReport;
+        });
+        AppProperties appProperties = mock(AppProperties.class);
+        when(appProperties.getInt("export.task_deadline_ms")).thenReturn(5000);
+        DataExportUi dataExportUi = new DataExportUi(appProperties, dataExporter, timer);
+        CompletableFuture<DataExporter.ExportReport> export = dataExportUi.export(dir, ExportFormat.CSV);
+        exportStarted.await(5, TimeUnit.SECONDS);
+
+        // act
+        // what leaving the lobby does
+        ioExecutor.cancelAll();
+        release.countDown();
+
+        // assert
+        assertThat(export.get(5, TimeUnit.SECONDS), equalTo(expectedReport));
+    }
+
+}
@@ -0,0 +1,110 @@
+package net.lobby_simulator_companion.loop.util.concurrent;
+
+import net.lobby_simulator_companion.loop.service.replay.SimulatedClock;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class HashedWheelTimerUTest {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 8;
+
+    private final SimulatedClock clock = new SimulatedClock();
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", clock, TICK_MS, WHEEL_SIZE);
+
+
+    @Test
+    public void tasksRunWhenTheirDeadlineIsReached() {
+        // arrange
+        List<String> executed = new ArrayList<>();
+        timer.schedule(() -> executed.add("a"), 250);
+        timer.schedule(() -> executed.add("b"), 100);
+        // beyond one full rotation of the wheel
+        timer.schedule(() -> executed.add("c"), 2000);
+
+        // act & assert
+        advance(100);
+        assertThat(executed, equalTo(Arrays.asList("b")));
+
+        advance(100);
+        assertThat(executed, equalTo(Arrays.asList("b")));
+
+        advance(100);
+        assertThat(executed, equalTo(Arrays.asList("b", "a")));
+
+        advance(1600);
+        assertThat(executed, equalTo(Arrays.asList("b", "a")));
+
+        advance(100);
+        assertThat(executed, equalTo(Arrays.asList("b", "a", "c")));
+        assertThat(timer.getPendingTimeouts(), equalTo(0));
+    }
+
+    @Test
+    public void cancelledTaskDoesNotRun() {
+        // arrange
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.schedule(runs::incrementAndGet, 100);
+
+        // act
+        timeout.cancel();
+        advance(500);
+
+        // assert
+        assertThat(runs.get(), equalTo(0));
+        assertThat(timer.getPendingTimeouts(), equalTo(0));
+    }
+
+    @Test
+    public void periodicTask_runsOncePerPeriod() {
+        // arrange
+        AtomicInteger runs = new AtomicInteger();
+        timer.scheduleAtFixedRate(runs::incrementAndGet, 200, 200);
+
+        // act
+        for (int i = 0; i < 10; i++) {
+            advance(100);
+        }
+
+        // assert
+        assertThat(runs.get(), equalTo(5));
+    }
+
+    @Test
+    public void wakeUpFromSleep_runsOverdueTasksOnce() {
+        // arrange
+        AtomicInteger periodicRuns = new AtomicInteger();
+        AtomicInteger resets = new AtomicInteger();
+        timer.scheduleAtFixedRate(periodicRuns::incrementAndGet, 200, 200);
+        timer.scheduleAt(Instant.ofEpochMilli(clock.millis() + 3_600_000), resets::incrementAndGet);
+
+        // act: the system is suspended for a few hours
+        advance(5 * 3_600_000);
+
+        // assert
+        assertThat(periodicRuns.get(), equalTo(1));
+        assertThat(resets.get(), equalTo(1));
+
+        // and the periodic task goes back to its normal rate
+        advance(200);
+        assertThat(periodicRuns.get(), equalTo(2));
+    }
+
+
+    private void advance(long millis) {
+        clock.advance(millis);
+        timer.advance();
+    }
+
+}
@@ -0,0 +1,118 @@
+package net.lobby_simulator_companion.loop.util.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+
+/**
+ * @author NickyRamone
+ */
+public class ManagedIoExecutorUTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", Clock.systemUTC(), 10, 64);
+    private final ManagedIoExecutor executor = ManagedIoExecutor.create("test-io", 2, 5000, timer);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+
+    @Before
+    public void setUp() {
+        timer.start();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        timer.stop();
+    }
+
+
+    @Test
+    public void concurrencyIsBounded() throws Exception {
+        // arrange
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture[10];
+
+        // act
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = executor.submit("task", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return null;
+            });
+        }
+        CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+
+        // assert
+        assertThat(maxRunning.get(), equalTo(2));
+        assertThat(executor.getMetrics().getCompletedTasks(), equalTo(10L));
+        assertThat(executor.getMetrics().getQueueDepth(), equalTo(0));
+    }
+
+    @Test
+    public void taskExceedingDeadline_timesOutAndIsInterrupted() throws Exception {
+        // arrange
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        // act
+        CompletableFuture<Object> future = executor.submit("slow", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }, 50);
+
+        // assert
+        assertThat(failureOf(future), instanceOf(TimeoutException.class));
+        assertThat(interrupted.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(executor.getMetrics().getTimedOutTasks(), equalTo(1L));
+    }
+
+    @Test
+    public void cancelAll_cancelsRunningAndQueuedTasks() throws Exception {
+        // arrange
+        CompletableFuture<?>[] futures = new CompletableFuture[4];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = executor.submit("blocked", () -> {
+                release.await();
+                return null;
+            });
+        }
+
+        // act
+        executor.cancelAll();
+
+        // assert
+        for (CompletableFuture<?> future : futures) {
+            assertThat(future.isCancelled(), equalTo(true));
+        }
+        assertThat(executor.getMetrics().getCancelledTasks(), equalTo(4L));
+        assertThat(executor.getMetrics().getQueueDepth(), equalTo(0));
+    }
+
+
+    private Throwable failureOf(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package net.lobby_simulator_companion.loop.util.concurrent;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * @author NickyRamone
+ */
+public class ShutdownCoordinatorUTest {
+
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+
+
+    @Test
+    public void shutdown_runsTheStepsInOrderEvenIfOneFails() {
+        // arrange
+        ShutdownCoordinator coordinator = new ShutdownCoordinator(5000)
+                .addStep("a", () -> executed.add("a"))
+                .addStep("b", () -> {
+                    throw new IOException("failed");
+                })
+                .addStep("c", () -> executed.add("c"));
+
+        // act
+        boolean completed = coordinator.shutdown();
+
+        // assert
+        assertThat(completed, equalTo(true));
+        assertThat(executed, equalTo(Arrays.asList("a", "c")));
+    }
+
+    @Test
+    public void shutdown_runsTheStepsOnlyOnce() {
+        // arrange
+        ShutdownCoordinator coordinator = new ShutdownCoordinator(5000)
+                .addStep("a", () -> executed.add("a"));
+
+        // act
+        coordinator.shutdown();
+        boolean completed = coordinator.shutdown();
+
+        // assert
+        assertThat(completed, equalTo(true));
+        assertThat(executed, equalTo(Arrays.asList("a")));
+    }
+
+    @Test
+    public void shutdown_returnsOnceTheDeadlineIsReached() throws Exception {
+        // arrange
+        CountDownLatch stuck = new CountDownLatch(1);
+        ShutdownCoordinator coordinator = new ShutdownCoordinator(200)
+                .addStep("a", () -> executed.add("a"))
+                .addStep("stuck", stuck::await)
+                .addStep("c", () -> executed.add("c"));
+
+        // act
+        long startTime = System.nanoTime();
+        boolean completed = coordinator.shutdown();
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+
+        // assert
+        assertThat(completed, equalTo(false));
+        assertThat(elapsedMs < 2000, equalTo(true));
+        assertThat(executed, equalTo(Arrays.asList("a")));
+        // a later request does not wait beyond the same deadline
+        assertThat(coordinator.shutdown(), equalTo(false));
+        stuck.countDown();
+    }
+
+}